@@ -51,6 +51,21 @@ public final class HttpHeaderNames {
 
     // note: the other constants should also be migrated away from deprecated methods and classes.
     public static final CharSequence CONTENT_LANGUAGE = io.netty.handler.codec.http.HttpHeaderNames.CONTENT_LANGUAGE;
+    public static final CharSequence ACCEPT_ENCODING = io.netty.handler.codec.http.HttpHeaderNames.ACCEPT_ENCODING;
+    public static final CharSequence CONTENT_ENCODING = io.netty.handler.codec.http.HttpHeaderNames.CONTENT_ENCODING;
+    public static final CharSequence RETRY_AFTER = io.netty.handler.codec.http.HttpHeaderNames.RETRY_AFTER;
+    public static final CharSequence AGE = io.netty.handler.codec.http.HttpHeaderNames.AGE;
+    public static final CharSequence AUTHORIZATION = io.netty.handler.codec.http.HttpHeaderNames.AUTHORIZATION;
+    public static final CharSequence ETAG = io.netty.handler.codec.http.HttpHeaderNames.ETAG;
+    public static final CharSequence EXPIRES = io.netty.handler.codec.http.HttpHeaderNames.EXPIRES;
+    public static final CharSequence IF_MODIFIED_SINCE = io.netty.handler.codec.http.HttpHeaderNames.IF_MODIFIED_SINCE;
+    public static final CharSequence IF_NONE_MATCH = io.netty.handler.codec.http.HttpHeaderNames.IF_NONE_MATCH;
+    public static final CharSequence LAST_MODIFIED = io.netty.handler.codec.http.HttpHeaderNames.LAST_MODIFIED;
+    public static final CharSequence VARY = io.netty.handler.codec.http.HttpHeaderNames.VARY;
+    public static final CharSequence ACCEPT_RANGES = io.netty.handler.codec.http.HttpHeaderNames.ACCEPT_RANGES;
+    public static final CharSequence CONTENT_RANGE = io.netty.handler.codec.http.HttpHeaderNames.CONTENT_RANGE;
+    public static final CharSequence IF_RANGE = io.netty.handler.codec.http.HttpHeaderNames.IF_RANGE;
+    public static final CharSequence RANGE = io.netty.handler.codec.http.HttpHeaderNames.RANGE;
 
     private HttpHeaderNames() {
     }
@@ -27,6 +27,7 @@ public final class HttpHeaderValues {
     public static final CharSequence CLOSE = io.netty.handler.codec.http.HttpHeaderValues.CLOSE;
     public static final CharSequence KEEP_ALIVE = io.netty.handler.codec.http.HttpHeaderValues.KEEP_ALIVE;
     public static final CharSequence CHUNKED = io.netty.handler.codec.http.HttpHeaderValues.CHUNKED;
+    public static final CharSequence GZIP = io.netty.handler.codec.http.HttpHeaderValues.GZIP;
 
     private HttpHeaderValues() {
     }
@@ -31,25 +31,48 @@ import static java.util.stream.StreamSupport.stream;
 
 /**
  * Query part of a URL.
+ * <p>
+ * A query created from a raw query string keeps the string as it is. Its parameters are
+ * decoded, and its encoded form computed, only when first needed. Both are immutable once
+ * computed, and may be computed concurrently by more than one thread with the same result.
  */
 final class UrlQuery {
-    private final List<Parameter> parameters;
-    private final String encodedQuery;
     private final String rawQuery;
+    private volatile List<Parameter> parameters;
+    private volatile String encodedQuery;
 
     private UrlQuery(List<Parameter> parameters, String rawQuery) {
-        this.parameters = unmodifiableList(new ArrayList<>(parameters));
+        this.parameters = parameters == null ? null : unmodifiableList(new ArrayList<>(parameters));
+        this.rawQuery = rawQuery;
+    }
 
-        QueryStringEncoder encoder = new QueryStringEncoder("", UTF_8);
+    private static String removeInitialCharacter(String encodedQuery) {
+        return encodedQuery.isEmpty() ? "" : encodedQuery.substring(1);
+    }
 
-        parameters.forEach(parameter -> encoder.addParam(parameter.key, parameter.value));
+    private static List<Parameter> decode(String rawQuery) {
+        if (rawQuery == null) {
+            return emptyList();
+        }
 
-        this.encodedQuery = removeInitialCharacter(encoder.toString()); // remove initial '?' character
-        this.rawQuery = rawQuery;
+        QueryStringDecoder decoder = new QueryStringDecoder(rawQuery, UTF_8, false);
+
+        return decoder.parameters().entrySet().stream()
+                .flatMap(entry -> {
+                    List<String> values = entry.getValue();
+
+                    return values.stream()
+                            .map(value -> new Parameter(entry.getKey(), value));
+                })
+                .collect(toList());
     }
 
-    private String removeInitialCharacter(String encodedQuery) {
-        return encodedQuery.isEmpty() ? "" : encodedQuery.substring(1);
+    private static String encode(List<Parameter> parameters) {
+        QueryStringEncoder encoder = new QueryStringEncoder("", UTF_8);
+
+        parameters.forEach(parameter -> encoder.addParam(parameter.key, parameter.value));
+
+        return removeInitialCharacter(encoder.toString()); // remove initial '?' character
     }
 
     Optional<String> parameterValue(String name) {
@@ -64,7 +87,12 @@ final class UrlQuery {
     }
 
     List<Parameter> parameters() {
-        return parameters;
+        List<Parameter> decoded = parameters;
+        if (decoded == null) {
+            decoded = unmodifiableList(decode(rawQuery));
+            parameters = decoded;
+        }
+        return decoded;
     }
 
     public String getRawQuery() {
@@ -81,7 +109,12 @@ final class UrlQuery {
     }
 
     String encodedQuery() {
-        return encodedQuery;
+        String encoded = encodedQuery;
+        if (encoded == null) {
+            encoded = encode(parameters());
+            encodedQuery = encoded;
+        }
+        return encoded;
     }
 
     Builder newBuilder() {
@@ -97,12 +130,12 @@ final class UrlQuery {
             return false;
         }
         UrlQuery query = (UrlQuery) o;
-        return Objects.equals(encodedQuery, query.encodedQuery);
+        return Objects.equals(encodedQuery(), query.encodedQuery());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(encodedQuery);
+        return Objects.hash(encodedQuery());
     }
 
     @Override
@@ -110,9 +143,9 @@ final class UrlQuery {
         return new StringBuilder(64)
                 .append(this.getClass().getSimpleName())
                 .append("{parameters=")
-                .append(parameters)
+                .append(parameters())
                 .append(", encodedQuery=")
-                .append(encodedQuery)
+                .append(encodedQuery())
                 .append('}')
                 .toString();
     }
@@ -159,6 +192,7 @@ final class UrlQuery {
     }
 
     public static class Builder {
+        // Stays null until parameters are added, in which case the built query decodes rawQuery on demand.
         private List<Parameter> parameters;
         private String rawQuery;
 
@@ -167,33 +201,18 @@ final class UrlQuery {
         }
 
         Builder(String rawQuery) {
-            if (rawQuery != null) {
-                populateParametersFrom(rawQuery);
-            }
             this.rawQuery = rawQuery;
         }
 
         Builder(UrlQuery query) {
-            this.parameters = new ArrayList<>(query.parameters());
+            List<Parameter> decoded = query.parameters;
+            this.parameters = decoded == null ? null : new ArrayList<>(decoded);
             this.rawQuery = query.getRawQuery();
         }
 
-        private void populateParametersFrom(String rawQuery) {
-            QueryStringDecoder decoder = new QueryStringDecoder(rawQuery, UTF_8, false);
-
-            parameters = decoder.parameters().entrySet().stream()
-                    .flatMap(entry -> {
-                        List<String> values = entry.getValue();
-
-                        return values.stream()
-                                .map(value -> new Parameter(entry.getKey(), value));
-                    })
-                    .collect(toList());
-        }
-
         Builder addParam(String name, String value) {
             if (parameters == null) {
-                parameters = new ArrayList<>();
+                parameters = new ArrayList<>(decode(rawQuery));
             }
 
             parameters.add(new Parameter(name, value));
@@ -209,7 +228,7 @@ final class UrlQuery {
         }
 
         UrlQuery build() {
-            return new UrlQuery(parameters == null ? emptyList() : parameters, rawQuery);
+            return new UrlQuery(parameters, rawQuery);
         }
     }
 }
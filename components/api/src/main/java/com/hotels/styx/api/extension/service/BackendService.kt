@@ -34,6 +34,7 @@ data class BackendService(
     private val origins: Set<Origin>,
     private val healthCheckConfig: HealthCheckConfig?,
     private val stickySessionConfig: StickySessionConfig,
+    private val collapsedForwardingConfig: CollapsedForwardingConfig,
     private val rewrites: List<RewriteConfig>,
     private val overrideHostHeader: Boolean,
     private val responseTimeoutMillis: Int,
@@ -61,6 +62,7 @@ data class BackendService(
         origins = builder.origins,
         healthCheckConfig = nullIfDisabled(builder.healthCheckConfig),
         stickySessionConfig = builder.stickySessionConfig,
+        collapsedForwardingConfig = builder.collapsedForwardingConfig,
         rewrites = builder.rewrites,
         overrideHostHeader = builder.overrideHostHeader,
         responseTimeoutMillis = if (builder.responseTimeoutMillis == 0)
@@ -80,6 +82,7 @@ data class BackendService(
         var origins: Set<Origin> = emptySet(),
         var connectionPoolSettings: ConnectionPoolSettings = ConnectionPoolSettings.defaultConnectionPoolSettings(),
         var stickySessionConfig: StickySessionConfig = StickySessionConfig.stickySessionDisabled(),
+        var collapsedForwardingConfig: CollapsedForwardingConfig = CollapsedForwardingConfig.collapsedForwardingDisabled(),
         var healthCheckConfig: HealthCheckConfig? = null,
         var rewrites: List<RewriteConfig> = emptyList(),
         var overrideHostHeader: Boolean = false,
@@ -93,6 +96,7 @@ data class BackendService(
             this.origins = backendService.origins
             this.connectionPoolSettings = backendService.connectionPoolSettings
             this.stickySessionConfig = backendService.stickySessionConfig
+            this.collapsedForwardingConfig = backendService.collapsedForwardingConfig
             this.healthCheckConfig = backendService.healthCheckConfig
             this.rewrites = backendService.rewrites
             this.overrideHostHeader = backendService.overrideHostHeader
@@ -139,6 +143,10 @@ data class BackendService(
             this.stickySessionConfig = stickySessionConfig
         }
 
+        fun collapsedForwardingConfig(collapsedForwardingConfig: CollapsedForwardingConfig) = apply {
+            this.collapsedForwardingConfig = collapsedForwardingConfig
+        }
+
         fun healthCheckConfig(healthCheckConfig: HealthCheckConfig?) = apply {
             this.healthCheckConfig = healthCheckConfig
         }
@@ -204,6 +212,8 @@ data class BackendService(
 
     fun stickySessionConfig(): StickySessionConfig = stickySessionConfig
 
+    fun collapsedForwardingConfig(): CollapsedForwardingConfig = collapsedForwardingConfig
+
     fun rewrites(): List<RewriteConfig> = rewrites
 
     fun responseTimeoutMillis(): Int = responseTimeoutMillis
@@ -234,6 +244,8 @@ data class BackendService(
         .append(healthCheckConfig)
         .append(", stickySessionConfig=")
         .append(stickySessionConfig)
+        .append(", collapsedForwardingConfig=")
+        .append(collapsedForwardingConfig)
         .append(", rewrites=")
         .append(rewrites)
         .append(", tlsSettings=")
@@ -0,0 +1,144 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.api.extension.service;
+
+import static java.lang.String.format;
+import static java.util.Objects.hash;
+
+/**
+ * Configuration for collapsed forwarding, where concurrent identical requests share one exchange with an origin.
+ */
+public final class CollapsedForwardingConfig {
+    public static final int DEFAULT_MAX_WAIT_MILLIS = 1000;
+    public static final int DEFAULT_MAX_BODY_SIZE_BYTES = 1024 * 1024;
+
+    private final boolean enabled;
+    private final int maxWaitMillis;
+    private final int maxBodySizeBytes;
+
+    private CollapsedForwardingConfig(boolean enabled, Integer maxWaitMillis, Integer maxBodySizeBytes) {
+        this.enabled = enabled;
+        this.maxWaitMillis = maxWaitMillis != null ? maxWaitMillis : DEFAULT_MAX_WAIT_MILLIS;
+        this.maxBodySizeBytes = maxBodySizeBytes != null ? maxBodySizeBytes : DEFAULT_MAX_BODY_SIZE_BYTES;
+
+        if (this.maxWaitMillis < 1) {
+            throw new IllegalArgumentException(format("maxWaitMillis [%s] cannot be < 1 ms", this.maxWaitMillis));
+        }
+        if (this.maxBodySizeBytes < 0) {
+            throw new IllegalArgumentException(format("maxBodySizeBytes [%s] cannot be negative", this.maxBodySizeBytes));
+        }
+    }
+
+    private CollapsedForwardingConfig(Builder builder) {
+        this(builder.enabled, builder.maxWaitMillis, builder.maxBodySizeBytes);
+    }
+
+    public static CollapsedForwardingConfig collapsedForwardingDisabled() {
+        return new CollapsedForwardingConfig(false, null, null);
+    }
+
+    public static Builder newCollapsedForwardingConfigBuilder() {
+        return new Builder();
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * How long a request waits for the response to an identical request already in flight,
+     * before it is forwarded on its own.
+     *
+     * @return wait time in milliseconds
+     */
+    public int maxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /**
+     * The largest response body that is shared. Larger responses, and responses of unknown length,
+     * go to the request that caused them only.
+     *
+     * @return body size in bytes
+     */
+    public int maxBodySizeBytes() {
+        return maxBodySizeBytes;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder(96)
+                .append(this.getClass().getSimpleName())
+                .append("{enabled=")
+                .append(enabled)
+                .append(", maxWaitMillis=")
+                .append(maxWaitMillis)
+                .append(", maxBodySizeBytes=")
+                .append(maxBodySizeBytes)
+                .append('}')
+                .toString();
+    }
+
+    @Override
+    public int hashCode() {
+        return hash(enabled, maxWaitMillis, maxBodySizeBytes);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+
+        CollapsedForwardingConfig that = (CollapsedForwardingConfig) obj;
+
+        return this.enabled == that.enabled
+                && this.maxWaitMillis == that.maxWaitMillis
+                && this.maxBodySizeBytes == that.maxBodySizeBytes;
+    }
+
+    /**
+     * A builder for {@link CollapsedForwardingConfig}.
+     */
+    public static final class Builder {
+        private boolean enabled;
+        private Integer maxWaitMillis;
+        private Integer maxBodySizeBytes;
+
+        public Builder enabled(boolean enabled) {
+            this.enabled = enabled;
+            return this;
+        }
+
+        public Builder maxWaitMillis(int maxWaitMillis) {
+            this.maxWaitMillis = maxWaitMillis;
+            return this;
+        }
+
+        public Builder maxBodySizeBytes(int maxBodySizeBytes) {
+            this.maxBodySizeBytes = maxBodySizeBytes;
+            return this;
+        }
+
+        public CollapsedForwardingConfig build() {
+            return new CollapsedForwardingConfig(this);
+        }
+    }
+}
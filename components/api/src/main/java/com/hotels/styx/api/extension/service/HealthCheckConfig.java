@@ -34,6 +34,7 @@ public final class HealthCheckConfig {
 
     private final Optional<String> uri;
     private final long intervalMillis;
+    private final long maxIntervalMillis;
     private final long timeoutMillis;
     private final int healthyThreshold;
     private final int unhealthyThreshold;
@@ -45,6 +46,7 @@ public final class HealthCheckConfig {
     private HealthCheckConfig(Builder builder) {
         this(builder.uri,
                 builder.intervalMillis,
+                builder.maxIntervalMillis,
                 builder.timeoutMillis,
                 builder.healthyThreshold,
                 builder.unhealthyThreshold);
@@ -52,11 +54,13 @@ public final class HealthCheckConfig {
 
     private HealthCheckConfig(Optional<String> uri,
                               Optional<Long> intervalMillis,
+                              Optional<Long> maxIntervalMillis,
                               Optional<Long> timeoutMillis,
                               Optional<Integer> healthyThreshold,
                               Optional<Integer> unhealthyThreshold) {
         this.uri = uri.map(this::checkValidUri);
         this.intervalMillis = zeroToAbsent(intervalMillis).orElse(DEFAULT_HEALTH_CHECK_INTERVAL);
+        this.maxIntervalMillis = zeroToAbsent(maxIntervalMillis).orElse(this.intervalMillis);
         this.timeoutMillis = zeroToAbsent(timeoutMillis).orElse(DEFAULT_TIMEOUT_VALUE);
         this.healthyThreshold = healthyThreshold.orElse(DEFAULT_HEALTHY_THRESHOLD_VALUE);
         this.unhealthyThreshold = unhealthyThreshold.orElse(DEFAULT_UNHEALTHY_THRESHOLD_VALUE);
@@ -64,6 +68,9 @@ public final class HealthCheckConfig {
         if (this.intervalMillis < 1) {
             throw new IllegalArgumentException(format("intervalMillis [%s] cannot be < 1 ms", intervalMillis));
         }
+        if (this.maxIntervalMillis < this.intervalMillis) {
+            throw new IllegalArgumentException(format("maxIntervalMillis [%s] cannot be < intervalMillis [%s]", this.maxIntervalMillis, this.intervalMillis));
+        }
         if (this.timeoutMillis < 1) {
             throw new IllegalArgumentException(format("timeoutMillis [%s] cannot be < 1 ms", timeoutMillis));
         }
@@ -124,6 +131,26 @@ public final class HealthCheckConfig {
         return intervalMillis;
     }
 
+    /**
+     * Longest interval between health checks, in milliseconds, for an origin that has been healthy
+     * for a while. Equals {@link #intervalMillis()} unless adaptive health checking is enabled.
+     *
+     * @return maximum health check interval
+     */
+    public long maxIntervalMillis() {
+        return maxIntervalMillis;
+    }
+
+    /**
+     * Whether health check intervals adapt to origin health. They do when the maximum interval is longer
+     * than the interval.
+     *
+     * @return true if health check intervals adapt to origin health
+     */
+    public boolean isAdaptive() {
+        return maxIntervalMillis > intervalMillis;
+    }
+
     public long timeoutMillis() {
         return timeoutMillis;
     }
@@ -142,7 +169,7 @@ public final class HealthCheckConfig {
 
     @Override
     public int hashCode() {
-        return Objects.hash(this.uri, this.intervalMillis, this.timeoutMillis, this.healthyThreshold, this.unhealthyThreshold);
+        return Objects.hash(this.uri, this.intervalMillis, this.maxIntervalMillis, this.timeoutMillis, this.healthyThreshold, this.unhealthyThreshold);
     }
 
     @Override
@@ -156,6 +183,7 @@ public final class HealthCheckConfig {
         HealthCheckConfig other = (HealthCheckConfig) obj;
         return Objects.equals(this.uri, other.uri)
                 && Objects.equals(this.intervalMillis, other.intervalMillis)
+                && Objects.equals(this.maxIntervalMillis, other.maxIntervalMillis)
                 && Objects.equals(this.timeoutMillis, other.timeoutMillis)
                 && Objects.equals(this.healthyThreshold, other.healthyThreshold)
                 && Objects.equals(this.unhealthyThreshold, other.unhealthyThreshold);
@@ -169,6 +197,8 @@ public final class HealthCheckConfig {
                 .append(uri)
                 .append(", intervalMillis=")
                 .append(intervalMillis)
+                .append(", maxIntervalMillis=")
+                .append(maxIntervalMillis)
                 .append(", timeoutMillis=")
                 .append(timeoutMillis)
                 .append(", healthyThreshold=")
@@ -204,6 +234,7 @@ public final class HealthCheckConfig {
     public static final class Builder {
         private Optional<String> uri = Optional.empty();
         private Optional<Long> intervalMillis = Optional.empty();
+        private Optional<Long> maxIntervalMillis = Optional.empty();
         private Optional<Long> timeoutMillis = Optional.empty();
         private Optional<Integer> healthyThreshold = Optional.empty();
         private Optional<Integer> unhealthyThreshold = Optional.empty();
@@ -214,6 +245,9 @@ public final class HealthCheckConfig {
         private Builder(HealthCheckConfig healthCheckConfig) {
             this.uri = healthCheckConfig.uri;
             this.intervalMillis = Optional.of(healthCheckConfig.intervalMillis);
+            if (healthCheckConfig.isAdaptive()) {
+                this.maxIntervalMillis = Optional.of(healthCheckConfig.maxIntervalMillis);
+            }
             this.healthyThreshold = Optional.of(healthCheckConfig.healthyThreshold);
             this.unhealthyThreshold = Optional.of(healthCheckConfig.unhealthyThreshold);
         }
@@ -261,6 +295,30 @@ public final class HealthCheckConfig {
             return this;
         }
 
+        /**
+         * Sets the longest interval between health-checks in milliseconds. When it is longer than the interval,
+         * health-checks back off for origins that have been healthy for a while, and probes are skipped while
+         * an origin is serving live traffic successfully.
+         *
+         * @param maxInterval maximum interval in milliseconds
+         * @return this builder
+         */
+        public Builder maxInterval(long maxInterval) {
+            return maxInterval(maxInterval, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Sets the longest interval between health-checks in a specified unit.
+         *
+         * @param maxInterval maximum interval in the specified unit
+         * @param timeUnit    time unit of maximum interval
+         * @return this builder
+         */
+        public Builder maxInterval(long maxInterval, TimeUnit timeUnit) {
+            this.maxIntervalMillis = Optional.of(timeUnit.toMillis(maxInterval));
+            return this;
+        }
+
         /**
          * Sets the socket timeout for health-checks in milliseconds.
          *
@@ -67,6 +67,40 @@ public class UrlQueryTest {
         ));
     }
 
+    @Test
+    public void decodesRawQueryOnDemand() {
+        UrlQuery raw = new UrlQuery.Builder("foo=alpha&bar=beta&foo=gamma").build();
+
+        assertThat(raw.getRawQuery(), is("foo=alpha&bar=beta&foo=gamma"));
+        assertThat(raw.parameterValues("foo"), contains("alpha", "gamma"));
+        assertThat(raw.encodedQuery(), is("foo=alpha&foo=gamma&bar=beta"));
+    }
+
+    @Test
+    public void rawQueryEqualsQueryWithSameParameters() {
+        UrlQuery raw = new UrlQuery.Builder("foo=alpha%20beta&bar=gamma").build();
+        UrlQuery built = new UrlQuery.Builder()
+                .addParam("foo", "alpha beta")
+                .addParam("bar", "gamma")
+                .build();
+
+        assertThat(raw, equalTo(built));
+        assertThat(raw.hashCode(), is(built.hashCode()));
+    }
+
+    @Test
+    public void addsParametersToRawQuery() {
+        UrlQuery query = new UrlQuery.Builder("foo=alpha")
+                .addParam("bar", "beta")
+                .build();
+
+        assertThat(query.getRawQuery(), is("foo=alpha&bar=beta"));
+        assertThat(query.parameters(), contains(
+                new Parameter("foo", "alpha"),
+                new Parameter("bar", "beta")
+        ));
+    }
+
     @Test
     public void buildsNewQueryFromExistingQuery() {
         assertThat(query.newBuilder().build(), equalTo(query));
@@ -42,6 +42,37 @@ public class HealthCheckConfigTest {
         assertEquals("Invalid health check URI. URI='/version.txt   # default used'", e.getMessage());
     }
 
+    @Test
+    public void maxIntervalDefaultsToInterval() {
+        HealthCheckConfig healthCheckConfig = newHealthCheckConfigBuilder()
+                .uri("/someuri")
+                .interval(3000)
+                .build();
+        assertThat(healthCheckConfig.maxIntervalMillis(), is(3000L));
+        assertThat(healthCheckConfig.isAdaptive(), is(false));
+    }
+
+    @Test
+    public void isAdaptiveIfMaxIntervalIsLongerThanInterval() {
+        HealthCheckConfig healthCheckConfig = newHealthCheckConfigBuilder()
+                .uri("/someuri")
+                .interval(3000)
+                .maxInterval(30000)
+                .build();
+        assertThat(healthCheckConfig.maxIntervalMillis(), is(30000L));
+        assertThat(healthCheckConfig.isAdaptive(), is(true));
+        assertThat(newHealthCheckConfigBuilder(healthCheckConfig).build(), is(healthCheckConfig));
+    }
+
+    @Test
+    public void rejectsMaxIntervalShorterThanInterval() {
+        Exception e = assertThrows(IllegalArgumentException.class, () -> newHealthCheckConfigBuilder()
+                .interval(3000)
+                .maxInterval(1000)
+                .build());
+        assertEquals("maxIntervalMillis [1000] cannot be < intervalMillis [3000]", e.getMessage());
+    }
+
     @Test
     public void shouldBeDisabledIfHasNotUriSet() throws Exception {
         HealthCheckConfig healthCheckConfig = newHealthCheckConfigBuilder()
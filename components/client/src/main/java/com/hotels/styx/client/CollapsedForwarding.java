@@ -0,0 +1,219 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.client;
+
+import com.hotels.styx.api.HttpResponse;
+import com.hotels.styx.api.LiveHttpRequest;
+import com.hotels.styx.api.LiveHttpResponse;
+import com.hotels.styx.api.extension.service.CollapsedForwardingConfig;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import static com.hotels.styx.api.HttpHeaderNames.AUTHORIZATION;
+import static com.hotels.styx.api.HttpHeaderNames.CACHE_CONTROL;
+import static com.hotels.styx.api.HttpHeaderNames.HOST;
+import static com.hotels.styx.api.HttpHeaderNames.SET_COOKIE;
+import static com.hotels.styx.api.HttpHeaderNames.VARY;
+import static com.hotels.styx.api.HttpMethod.GET;
+import static com.hotels.styx.api.HttpMethod.HEAD;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Collapses concurrent identical requests into one exchange with an origin.
+ * <p>
+ * The first GET or HEAD request for a key is forwarded. Identical requests arriving while it is in flight
+ * wait for its response instead of being forwarded. The key is made of the method, the Host header and the URL.
+ * Requests with a body or an {@code Authorization} header are always forwarded on their own.
+ * <p>
+ * A response is shared if its body has a known length of at most {@code maxBodySizeBytes}, and it does not set
+ * cookies, is neither {@code private} nor {@code no-store}, and does not vary on {@code *}. The body of a shared
+ * response is aggregated once, and every request gets a copy of it. Errors are shared too.
+ * <p>
+ * A waiting request is forwarded on its own when:
+ * <ul>
+ *     <li>its wait exceeds {@code maxWaitMillis},</li>
+ *     <li>the response is not shared, or the first request is cancelled before the response arrives,</li>
+ *     <li>its headers named by {@code Vary} differ from those of the first request.</li>
+ * </ul>
+ */
+public final class CollapsedForwarding {
+    private static final Outcome NOT_SHARED = new Outcome(null, null, null);
+
+    private final CollapsedForwardingConfig config;
+    private final Runnable onCollapsed;
+    private final ConcurrentMap<String, Exchange> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs an instance.
+     *
+     * @param config      collapsed forwarding settings
+     * @param onCollapsed called for each request served with the response to another request, for metrics
+     */
+    public CollapsedForwarding(CollapsedForwardingConfig config, Runnable onCollapsed) {
+        this.config = requireNonNull(config);
+        this.onCollapsed = requireNonNull(onCollapsed);
+    }
+
+    /**
+     * Forwards a request, unless an identical request is already in flight.
+     * The request is looked up, and forwarded if needed, on subscription.
+     *
+     * @param request request
+     * @param forward forwards a request to an origin
+     * @return response publisher
+     */
+    public Publisher<LiveHttpResponse> execute(LiveHttpRequest request, Function<LiveHttpRequest, Publisher<LiveHttpResponse>> forward) {
+        if (!collapsible(request)) {
+            return forward.apply(request);
+        }
+
+        String key = key(request);
+        return Flux.defer(() -> {
+            Exchange exchange = new Exchange(request);
+            Exchange leader = inFlight.putIfAbsent(key, exchange);
+            return leader == null
+                    ? lead(key, exchange, forward)
+                    : follow(leader, request, forward);
+        });
+    }
+
+    /**
+     * The number of exchanges in flight that other requests can join.
+     *
+     * @return exchanges in flight
+     */
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    private Flux<LiveHttpResponse> lead(String key, Exchange exchange, Function<LiveHttpRequest, Publisher<LiveHttpResponse>> forward) {
+        return Flux.from(forward.apply(exchange.request))
+                .concatMap(response -> {
+                    if (!shareable(response)) {
+                        finish(key, exchange, NOT_SHARED);
+                        return Mono.just(response);
+                    }
+                    return Mono.from(response.aggregate(config.maxBodySizeBytes()))
+                            .map(aggregated -> {
+                                finish(key, exchange, new Outcome(aggregated, exchange.request, null));
+                                return copy(aggregated, response.request());
+                            });
+                })
+                .doOnError(cause -> finish(key, exchange, new Outcome(null, null, cause)))
+                .doOnCancel(() -> finish(key, exchange, NOT_SHARED))
+                .doOnComplete(() -> finish(key, exchange, NOT_SHARED));
+    }
+
+    private Flux<LiveHttpResponse> follow(Exchange leader, LiveHttpRequest request, Function<LiveHttpRequest, Publisher<LiveHttpResponse>> forward) {
+        // Each follower waits on a copy, so that a follower that is cancelled does not cancel the exchange for the others.
+        return Mono.fromFuture(leader.outcome.copy())
+                .timeout(Duration.ofMillis(config.maxWaitMillis()), Mono.just(NOT_SHARED))
+                .flatMapMany(outcome -> {
+                    if (outcome.cause != null) {
+                        return Flux.error(outcome.cause);
+                    }
+                    if (outcome.response == null || !sameVariant(outcome, request)) {
+                        return Flux.from(forward.apply(request));
+                    }
+                    onCollapsed.run();
+                    return Flux.just(copy(outcome.response, request));
+                });
+    }
+
+    private void finish(String key, Exchange exchange, Outcome outcome) {
+        inFlight.remove(key, exchange);
+        exchange.outcome.complete(outcome);
+    }
+
+    private static LiveHttpResponse copy(HttpResponse response, LiveHttpRequest request) {
+        return response.stream().newBuilder()
+                .request(request)
+                .build();
+    }
+
+    private static boolean collapsible(LiveHttpRequest request) {
+        return (request.method().equals(GET) || request.method().equals(HEAD))
+                && !request.header(AUTHORIZATION).isPresent()
+                && !request.chunked()
+                && request.contentLength().orElse(0L) == 0;
+    }
+
+    private static String key(LiveHttpRequest request) {
+        return request.method() + " " + request.header(HOST).orElse("") + " " + request.url();
+    }
+
+    private boolean shareable(LiveHttpResponse response) {
+        return response.contentLength().filter(length -> length <= config.maxBodySizeBytes()).isPresent()
+                && !response.header(SET_COOKIE).isPresent()
+                && !hasToken(response.headers(CACHE_CONTROL), "private")
+                && !hasToken(response.headers(CACHE_CONTROL), "no-store")
+                && !hasToken(response.headers(VARY), "*");
+    }
+
+    private static boolean sameVariant(Outcome outcome, LiveHttpRequest request) {
+        for (String value : outcome.response.headers(VARY)) {
+            for (String name : value.split(",")) {
+                String header = name.trim();
+                if (!header.isEmpty() && !Objects.equals(outcome.request.headers(header), request.headers(header))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasToken(List<String> values, String token) {
+        for (String value : values) {
+            for (String element : value.split(",")) {
+                String name = element.split("=", 2)[0].trim();
+                if (name.equalsIgnoreCase(token)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static final class Exchange {
+        private final LiveHttpRequest request;
+        private final CompletableFuture<Outcome> outcome = new CompletableFuture<>();
+
+        private Exchange(LiveHttpRequest request) {
+            this.request = request;
+        }
+    }
+
+    private static final class Outcome {
+        private final HttpResponse response;
+        private final LiveHttpRequest request;
+        private final Throwable cause;
+
+        private Outcome(HttpResponse response, LiveHttpRequest request, Throwable cause) {
+            this.response = response;
+            this.request = request;
+            this.cause = cause;
+        }
+    }
+}
@@ -19,7 +19,9 @@ import com.hotels.styx.api.LiveHttpRequest;
 import com.hotels.styx.client.netty.connectionpool.HttpRequestOperation;
 import com.hotels.styx.common.format.DefaultHttpMessageFormatter;
 import com.hotels.styx.common.format.HttpMessageFormatter;
+import com.hotels.styx.common.logging.HttpRequestMessageLogger;
 
+import static com.hotels.styx.client.netty.connectionpool.HttpRequestOperation.OUTBOUND_MESSAGES_LOGGER;
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -80,13 +82,17 @@ public interface HttpRequestOperationFactory {
         }
 
         public HttpRequestOperationFactory build() {
+            OriginStatsFactory originStatsFactory = this.originStatsFactory;
+            int responseTimeoutMillis = this.responseTimeoutMillis;
+            boolean requestLoggingEnabled = this.requestLoggingEnabled;
+            HttpRequestMessageLogger httpRequestMessageLogger = new HttpRequestMessageLogger(OUTBOUND_MESSAGES_LOGGER, longFormat, httpMessageFormatter);
+
             return request -> new HttpRequestOperation(
                     request,
                     originStatsFactory,
                     responseTimeoutMillis,
                     requestLoggingEnabled,
-                    longFormat,
-                    httpMessageFormatter);
+                    httpRequestMessageLogger);
         }
     }
 
@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -18,6 +18,7 @@ package com.hotels.styx.client;
 import com.hotels.styx.api.extension.Origin;
 import com.hotels.styx.client.applications.OriginStats;
 import com.hotels.styx.client.applications.metrics.OriginMetrics;
+import com.hotels.styx.client.healthcheck.PassiveHealthSignals;
 import com.hotels.styx.common.SimpleCache;
 import com.hotels.styx.metrics.CentralisedMetrics;
 
@@ -49,6 +50,18 @@ public interface OriginStatsFactory {
             this.metricsByOrigin = new SimpleCache<>(origin -> new OriginMetrics(metrics, origin));
         }
 
+        /**
+         * Constructs a new instance that also records response outcomes as passive health evidence.
+         *
+         * @param metrics centralised meter registry
+         * @param signals passive health signals
+         */
+        public CachingOriginStatsFactory(CentralisedMetrics metrics, PassiveHealthSignals signals) {
+            requireNonNull(metrics);
+            requireNonNull(signals);
+            this.metricsByOrigin = new SimpleCache<>(origin -> new OriginMetrics(metrics, origin, signals));
+        }
+
         /**
          * Construct a new {@link OriginStats} for an origin, or return a previously created one if it exists.
          *
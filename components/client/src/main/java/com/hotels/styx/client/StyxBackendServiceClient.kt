@@ -35,6 +35,7 @@ import com.hotels.styx.api.extension.service.RewriteRule
 import com.hotels.styx.client.stickysession.StickySessionLoadBalancingStrategy
 import com.hotels.styx.client.stickysession.StickySessionCookie
 import com.hotels.styx.client.retry.RetryNTimes
+import com.hotels.styx.common.AdaptiveConcurrencyLimiter
 import org.reactivestreams.Publisher
 import org.slf4j.LoggerFactory
 import java.lang.StringBuilder
@@ -43,6 +44,11 @@ import java.util.Optional
 
 /**
  * A configurable HTTP client that uses connection pooling, load balancing, etc.
+ *
+ * With a concurrency limiter, requests beyond the limit are rejected before an origin is selected.
+ *
+ * With collapsed forwarding, requests identical to one already in flight wait for its response, and
+ * take no place under the concurrency limit.
  */
 class StyxBackendServiceClient(
     private val id: Id,
@@ -54,7 +60,9 @@ class StyxBackendServiceClient(
     private val loadBalancer: LoadBalancer,
     private val retryPolicy: RetryPolicy,
     private val metrics: CentralisedMetrics,
-    private val overrideHostHeader: Boolean
+    private val overrideHostHeader: Boolean,
+    private val concurrencyLimiter: AdaptiveConcurrencyLimiter? = null,
+    private val collapsedForwarding: CollapsedForwarding? = null
 ) : BackendServiceClient {
     private val rewriteRuleset: RewriteRuleset = RewriteRuleset(rewriteRules)
 
@@ -68,7 +76,9 @@ class StyxBackendServiceClient(
         stickySessionConfig = builder.stickySessionConfig,
         originIdHeader = builder.originIdHeader,
         retryPolicy = builder.retryPolicy,
-        overrideHostHeader = builder.overrideHostHeader
+        overrideHostHeader = builder.overrideHostHeader,
+        concurrencyLimiter = builder.concurrencyLimiter,
+        collapsedForwarding = builder.collapsedForwarding
     )
 
     /**
@@ -86,6 +96,8 @@ class StyxBackendServiceClient(
         var originIdHeader: CharSequence = StyxHeaderConfig.ORIGIN_ID_DEFAULT
         var retryPolicy: RetryPolicy = RetryNTimes(3)
         var overrideHostHeader: Boolean = false
+        var concurrencyLimiter: AdaptiveConcurrencyLimiter? = null
+        var collapsedForwarding: CollapsedForwarding? = null
 
         fun id(id: Id) = apply {
             this.id = id
@@ -127,6 +139,14 @@ class StyxBackendServiceClient(
             this.overrideHostHeader = overrideHostHeader
         }
 
+        fun concurrencyLimiter(concurrencyLimiter: AdaptiveConcurrencyLimiter?) = apply {
+            this.concurrencyLimiter = concurrencyLimiter
+        }
+
+        fun collapsedForwarding(collapsedForwarding: CollapsedForwarding?) = apply {
+            this.collapsedForwarding = collapsedForwarding
+        }
+
         fun build(): StyxBackendServiceClient {
             if(loadBalancer == null) {
                 throw IllegalStateException("load balancer property is required")
@@ -142,7 +162,12 @@ class StyxBackendServiceClient(
     }
 
     override fun sendRequest(request: LiveHttpRequest, context: HttpInterceptor.Context): Publisher<LiveHttpResponse> =
-        sendRequest(rewriteUrl(request), emptyList(), 0, context)
+        collapsedForwarding?.execute(rewriteUrl(request)) { limited(it, context) }
+            ?: limited(rewriteUrl(request), context)
+
+    private fun limited(request: LiveHttpRequest, context: HttpInterceptor.Context): Publisher<LiveHttpResponse> =
+        concurrencyLimiter?.execute { sendRequest(request, emptyList(), 0, context) }
+            ?: sendRequest(request, emptyList(), 0, context)
 
     private fun isError(status: HttpResponseStatus): Boolean = status.code() >= 400
 
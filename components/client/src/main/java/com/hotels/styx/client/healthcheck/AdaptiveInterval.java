@@ -0,0 +1,97 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.client.healthcheck;
+
+import java.time.Duration;
+
+import static com.hotels.styx.common.Preconditions.checkArgument;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * The health check interval of a single target, adapted to the outcome of its recent health checks.
+ * <p>
+ * The interval starts at the base interval. Every {@value #BACKOFF_ROUNDS} consecutive healthy rounds
+ * double it, up to the maximum interval. An unhealthy round halves the base interval, so a failing
+ * target is checked again sooner, and its state settles in less time. The next healthy round
+ * restores the base interval.
+ * <p>
+ * If the maximum interval equals the base interval, the interval is fixed.
+ */
+public final class AdaptiveInterval {
+    static final int BACKOFF_ROUNDS = 3;
+
+    private final long baseNanos;
+    private final long minNanos;
+    private final long maxNanos;
+
+    private volatile long currentNanos;
+    private int healthyRounds;
+
+    /**
+     * Constructs an instance.
+     *
+     * @param base interval while the target's health is unknown
+     * @param max  maximum interval for a target that has been healthy for a while
+     */
+    public AdaptiveInterval(Duration base, Duration max) {
+        checkArgument(!base.isNegative() && !base.isZero(), "base interval must be positive");
+        checkArgument(max.compareTo(base) >= 0, "maximum interval must not be shorter than the base interval");
+        this.baseNanos = base.toNanos();
+        this.maxNanos = max.toNanos();
+        this.minNanos = isAdaptive() ? max(1, baseNanos / 2) : baseNanos;
+        this.currentNanos = baseNanos;
+    }
+
+    /**
+     * Returns true if the interval adapts to the health of the target, or false if it is fixed.
+     *
+     * @return true if the interval adapts to the health of the target
+     */
+    public boolean isAdaptive() {
+        return maxNanos > baseNanos;
+    }
+
+    /**
+     * Current interval.
+     *
+     * @return current interval
+     */
+    public Duration current() {
+        return Duration.ofNanos(currentNanos);
+    }
+
+    /**
+     * Records a round in which the target was found healthy.
+     */
+    public synchronized void healthy() {
+        if (currentNanos < baseNanos) {
+            currentNanos = baseNanos;
+            healthyRounds = 0;
+        } else if (++healthyRounds >= BACKOFF_ROUNDS) {
+            currentNanos = min(maxNanos, currentNanos * 2);
+            healthyRounds = 0;
+        }
+    }
+
+    /**
+     * Records a round in which the target was found unhealthy.
+     */
+    public synchronized void unhealthy() {
+        currentNanos = minNanos;
+        healthyRounds = 0;
+    }
+}
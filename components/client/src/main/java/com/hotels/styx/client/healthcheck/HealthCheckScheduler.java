@@ -0,0 +1,416 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.client.healthcheck;
+
+import com.hotels.styx.metrics.CentralisedMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import static com.hotels.styx.common.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Runs periodic health check probes for any number of targets from a single hashed timing wheel.
+ * <p>
+ * Each probe is registered under a key. The key determines a fixed phase within the probe interval,
+ * so probes for different targets are spread across the interval instead of firing together, and a
+ * given target is probed at the same point in every round. Probes are asynchronous, and at most
+ * {@code maxInFlight} of them await a response at any time. Probes that fall due while all slots
+ * are taken wait in a FIFO queue.
+ * <p>
+ * A target whose previous probe is still in flight when the next round falls due skips that round.
+ * Its slot is released at that point, so a probe that never completes cannot hold a slot for more
+ * than one interval.
+ * <p>
+ * The interval may vary between rounds. It is read each time a probe falls due, and determines
+ * when the following probe falls due.
+ */
+public final class HealthCheckScheduler implements AutoCloseable {
+    public static final int DEFAULT_MAX_IN_FLIGHT = 32;
+    public static final Duration DEFAULT_TICK = Duration.ofMillis(20);
+
+    private static final Logger LOGGER = getLogger(HealthCheckScheduler.class);
+    private static final int WHEEL_SIZE = 512;
+
+    private final LongSupplier clock;
+    private final long epoch;
+    private final long tickNanos;
+    private final int maxInFlight;
+    private final List<ArrayDeque<Task>> wheel = new ArrayList<>(WHEEL_SIZE);
+    private final Queue<Task> incoming = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger scheduled = new AtomicInteger();
+
+    // Guarded by `this`.
+    private final ArrayDeque<Pending> waiting = new ArrayDeque<>();
+    private int inFlight;
+
+    private final Timer lag;
+    private final Counter skipped;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    // Only accessed from the thread that advances the wheel.
+    private long tick;
+
+    /**
+     * Creates a scheduler with default settings, driven by its own daemon thread.
+     *
+     * @param metrics metrics
+     */
+    public HealthCheckScheduler(CentralisedMetrics metrics) {
+        this(metrics, DEFAULT_MAX_IN_FLIGHT, DEFAULT_TICK);
+    }
+
+    /**
+     * Creates a scheduler driven by its own daemon thread.
+     *
+     * @param metrics     metrics
+     * @param maxInFlight maximum number of probes awaiting a response at any time
+     * @param tick        timing wheel resolution
+     */
+    public HealthCheckScheduler(CentralisedMetrics metrics, int maxInFlight, Duration tick) {
+        this(metrics, maxInFlight, tick, System::nanoTime);
+        worker.start();
+    }
+
+    // Visible for testing. The wheel only advances on explicit calls to advance().
+    HealthCheckScheduler(CentralisedMetrics metrics, int maxInFlight, Duration tick, LongSupplier clock) {
+        checkArgument(maxInFlight > 0, "maxInFlight must be positive");
+        checkArgument(!tick.isNegative() && !tick.isZero(), "tick must be positive");
+        this.clock = requireNonNull(clock);
+        this.epoch = clock.getAsLong();
+        this.tickNanos = tick.toNanos();
+        this.maxInFlight = maxInFlight;
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel.add(new ArrayDeque<>());
+        }
+
+        CentralisedMetrics.Proxy.Client clientMetrics = metrics.proxy().client();
+        this.lag = clientMetrics.healthCheckLag();
+        this.skipped = clientMetrics.healthChecksSkipped();
+        clientMetrics.healthChecksScheduled().register(scheduled::get);
+        clientMetrics.healthChecksInFlight().register(this::inFlight);
+        clientMetrics.healthChecksQueued().register(this::queued);
+
+        this.worker = new Thread(this::run, "STYX-HEALTH-CHECK-SCHEDULER");
+        this.worker.setDaemon(true);
+    }
+
+    /**
+     * Registers a probe to run periodically until the returned registration is cancelled.
+     *
+     * @param key      identifies the probed target. It determines the phase of the probe within the interval
+     * @param interval time between consecutive probes
+     * @param probe    an asynchronous probe. The scheduler considers it in flight until the returned stage completes
+     * @return a registration that stops the probe when cancelled
+     */
+    public Registration schedule(String key, Duration interval, Probe probe) {
+        checkArgument(isPositive(interval), "interval must be positive");
+        return schedule(key, () -> interval, probe);
+    }
+
+    /**
+     * Registers a probe to run periodically, at an interval that may change between rounds,
+     * until the returned registration is cancelled.
+     *
+     * @param key      identifies the probed target. It determines the phase of the first probe within the interval
+     * @param interval supplies the time until the next probe. It is called each time a probe falls due
+     * @param probe    an asynchronous probe. The scheduler considers it in flight until the returned stage completes
+     * @return a registration that stops the probe when cancelled
+     */
+    public Registration schedule(String key, Supplier<Duration> interval, Probe probe) {
+        Task task = new Task(requireNonNull(key), requireNonNull(interval), requireNonNull(probe));
+        task.deadline = firstDeadline(key, task.intervalNanos());
+        scheduled.incrementAndGet();
+        incoming.add(task);
+        return task;
+    }
+
+    /**
+     * Stops the scheduler. Probes already in flight are allowed to complete.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(worker);
+    }
+
+    int inFlight() {
+        synchronized (this) {
+            return inFlight;
+        }
+    }
+
+    int queued() {
+        synchronized (this) {
+            return waiting.size();
+        }
+    }
+
+    int scheduled() {
+        return scheduled.get();
+    }
+
+    /*
+     * Deterministic jitter: the phase is a function of the key alone, so it does not change
+     * across rounds or restarts, and keys hash uniformly across the interval.
+     */
+    private long firstDeadline(String key, long intervalNanos) {
+        long phase = Math.floorMod(mix(key.hashCode()), intervalNanos);
+        long now = clock.getAsLong();
+        return now + Math.floorMod(phase - (now - epoch), intervalNanos);
+    }
+
+    private static boolean isPositive(Duration duration) {
+        return !duration.isNegative() && !duration.isZero();
+    }
+
+    private static long mix(long hash) {
+        long h = hash * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 31);
+    }
+
+    private void run() {
+        while (running) {
+            long sleep = epoch + (tick + 1) * tickNanos - clock.getAsLong();
+            if (sleep > 0) {
+                LockSupport.parkNanos(this, sleep);
+            } else {
+                try {
+                    advance();
+                } catch (RuntimeException e) {
+                    LOGGER.error("Health check scheduler tick failed", e);
+                }
+            }
+        }
+    }
+
+    // Visible for testing
+    void advance() {
+        long now = clock.getAsLong();
+        while (epoch + (tick + 1) * tickNanos <= now) {
+            transferIncoming();
+            List<Task> expired = expire(wheel.get((int) (tick % WHEEL_SIZE)));
+            tick++;
+            for (Task task : expired) {
+                fire(task, now);
+            }
+        }
+        transferIncoming();
+    }
+
+    private void transferIncoming() {
+        Task task;
+        while ((task = incoming.poll()) != null) {
+            if (!task.cancelled) {
+                place(task);
+            }
+        }
+    }
+
+    private void place(Task task) {
+        long deadlineTick = Math.max(tick, (task.deadline - epoch) / tickNanos);
+        task.rounds = (deadlineTick - tick) / WHEEL_SIZE;
+        wheel.get((int) (deadlineTick % WHEEL_SIZE)).add(task);
+    }
+
+    private static List<Task> expire(ArrayDeque<Task> bucket) {
+        List<Task> expired = new ArrayList<>();
+        Iterator<Task> tasks = bucket.iterator();
+        while (tasks.hasNext()) {
+            Task task = tasks.next();
+            if (task.cancelled) {
+                tasks.remove();
+            } else if (task.rounds > 0) {
+                task.rounds--;
+            } else {
+                tasks.remove();
+                expired.add(task);
+            }
+        }
+        return expired;
+    }
+
+    private void fire(Task task, long now) {
+        long due = task.deadline;
+        long interval = task.intervalNanos();
+        long next = due + interval;
+        while (next <= now) {
+            next += interval;
+        }
+        task.deadline = next;
+        place(task);
+
+        long previous = task.inFlightAttempt.get();
+        if (previous != 0) {
+            skipped.increment();
+            finish(task, previous);
+            return;
+        }
+        dispatch(task, due);
+    }
+
+    private void dispatch(Task task, long due) {
+        long attempt = ++task.attempts;
+        task.inFlightAttempt.set(attempt);
+        synchronized (this) {
+            if (inFlight >= maxInFlight) {
+                waiting.add(new Pending(task, due, attempt));
+                return;
+            }
+            inFlight++;
+        }
+        start(task, due, attempt);
+    }
+
+    private void start(Task task, long due, long attempt) {
+        lag.record(clock.getAsLong() - due, NANOSECONDS);
+
+        CompletionStage<?> completion;
+        try {
+            completion = task.probe.run();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Health check probe failed to start. key={}", task.key, e);
+            completion = null;
+        }
+
+        if (completion == null) {
+            finish(task, attempt);
+        } else {
+            completion.whenComplete((result, cause) -> finish(task, attempt));
+        }
+    }
+
+    /*
+     * Releases the slot held by a task, and hands it over to the next waiting probe, if any.
+     * A late completion of an attempt that has already been released is ignored.
+     */
+    private void finish(Task task, long attempt) {
+        if (!task.inFlightAttempt.compareAndSet(attempt, 0)) {
+            return;
+        }
+
+        Pending next;
+        synchronized (this) {
+            if (waiting.removeIf(pending -> pending.task == task)) {
+                // The task was still waiting for a slot, so it never held one.
+                return;
+            }
+            next = pollWaiting();
+            if (next == null) {
+                inFlight--;
+                return;
+            }
+        }
+        start(next.task, next.due, next.attempt);
+    }
+
+    private Pending pollWaiting() {
+        Pending next = waiting.poll();
+        while (next != null && next.task.cancelled) {
+            next.task.inFlightAttempt.compareAndSet(next.attempt, 0);
+            next = waiting.poll();
+        }
+        return next;
+    }
+
+    /**
+     * An asynchronous health check probe.
+     */
+    @FunctionalInterface
+    public interface Probe {
+        /**
+         * Starts a probe. Must not block.
+         *
+         * @return a stage that completes when the probe has finished, or null if it finished synchronously
+         */
+        CompletionStage<?> run();
+    }
+
+    /**
+     * A registered probe.
+     */
+    public interface Registration {
+        /**
+         * Stops running the probe. A probe in flight is allowed to complete.
+         */
+        void cancel();
+    }
+
+    private final class Task implements Registration {
+        private final String key;
+        private final Supplier<Duration> interval;
+        private final Probe probe;
+        private final AtomicLong inFlightAttempt = new AtomicLong();
+        private final AtomicBoolean registered = new AtomicBoolean(true);
+        private volatile boolean cancelled;
+
+        // Only accessed from the thread that advances the wheel, after the task has been handed over.
+        private long deadline;
+        private long rounds;
+        private long attempts;
+
+        Task(String key, Supplier<Duration> interval, Probe probe) {
+            this.key = key;
+            this.interval = interval;
+            this.probe = probe;
+        }
+
+        long intervalNanos() {
+            Duration next = interval.get();
+            checkArgument(next != null && isPositive(next), "interval must be positive. key=" + key);
+            return next.toNanos();
+        }
+
+        @Override
+        public void cancel() {
+            if (registered.compareAndSet(true, false)) {
+                cancelled = true;
+                scheduled.decrementAndGet();
+            }
+        }
+    }
+
+    private static final class Pending {
+        private final Task task;
+        private final long due;
+        private final long attempt;
+
+        Pending(Task task, long due, long attempt) {
+            this.task = task;
+            this.due = due;
+            this.attempt = attempt;
+        }
+    }
+}
@@ -22,48 +22,52 @@ import com.hotels.styx.client.healthcheck.monitors.AnomalyExcludingOriginHealthS
 import com.hotels.styx.client.healthcheck.monitors.NoOriginHealthStatusMonitor;
 import com.hotels.styx.client.healthcheck.monitors.ScheduledOriginHealthStatusMonitor;
 
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ThreadFactory;
+import java.time.Duration;
 import java.util.function.Supplier;
 
-import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
-import static java.util.concurrent.Executors.defaultThreadFactory;
-import static java.util.concurrent.Executors.newScheduledThreadPool;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 /**
  * Factory that produces {@link OriginHealthStatusMonitor}s based on configuration.
  */
 public final class OriginHealthStatusMonitorFactory {
+    private final HealthCheckScheduler scheduler;
+    private final PassiveHealthSignals signals;
+
+    /**
+     * Constructs an instance.
+     *
+     * @param scheduler scheduler that runs the health checks of all monitors created by this factory
+     */
+    public OriginHealthStatusMonitorFactory(HealthCheckScheduler scheduler) {
+        this(scheduler, new PassiveHealthSignals());
+    }
+
+    /**
+     * Constructs an instance.
+     *
+     * @param scheduler scheduler that runs the health checks of all monitors created by this factory
+     * @param signals   health evidence from live traffic, consulted by monitors with adaptive intervals
+     */
+    public OriginHealthStatusMonitorFactory(HealthCheckScheduler scheduler, PassiveHealthSignals signals) {
+        this.scheduler = requireNonNull(scheduler);
+        this.signals = requireNonNull(signals);
+    }
 
     public OriginHealthStatusMonitor create(Id id, HealthCheckConfig healthCheckConfig, Supplier<OriginHealthCheckFunction> healthCheckFunction, HttpClient client) {
         if (healthCheckConfig == null || !healthCheckConfig.isEnabled()) {
             return new NoOriginHealthStatusMonitor();
         }
 
-        ScheduledExecutorService executorService = newScheduledThreadPool(1,
-                threadFactory(format("STYX-ORIGINS-MONITOR-%s", requireNonNull(id))));
-
         ScheduledOriginHealthStatusMonitor healthStatusMonitor = new ScheduledOriginHealthStatusMonitor(
-                executorService,
+                scheduler,
                 healthCheckFunction.get(),
                 new Schedule(healthCheckConfig.intervalMillis(), MILLISECONDS),
+                Duration.ofMillis(healthCheckConfig.maxIntervalMillis()),
+                signals,
                 client);
 
         return new AnomalyExcludingOriginHealthStatusMonitor(healthStatusMonitor, healthCheckConfig.healthyThreshold(), healthCheckConfig.unhealthyThreshold());
     }
-
-    private static ThreadFactory threadFactory(String name) {
-        requireNonNull(name);
-
-        ThreadFactory defaultThreadFactory = defaultThreadFactory();
-
-        return runnable -> {
-            Thread thread = defaultThreadFactory.newThread(runnable);
-            thread.setName(name);
-            thread.setDaemon(true);
-            return thread;
-        };
-    }
 }
@@ -0,0 +1,195 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.client.healthcheck;
+
+import com.hotels.styx.api.extension.Origin;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Health evidence gathered from live traffic, as opposed to health check probes.
+ * <p>
+ * Live traffic records the outcome of each response against the {@link Signal} of the target that
+ * served it. Health check monitors consult the same signal to skip probes while a target is
+ * demonstrably serving live requests. Targets are identified by the keys that monitors register them
+ * with in the {@link HealthCheckScheduler}: {@code <application>/<origin id>}.
+ * <p>
+ * Monitors and traffic handlers hold on to a signal independently of each other, so each of them
+ * {@link #signal(String) takes} it and {@link #release(Signal) releases} it when done. A signal is dropped
+ * once nothing holds it any more, and the next one taken for the same target starts afresh.
+ * <p>
+ * Traffic handlers that live as long as their targets' metrics, and have nowhere to release a signal,
+ * record outcomes by key instead. These are only kept while something else holds the signal.
+ */
+public final class PassiveHealthSignals {
+    private final ConcurrentMap<String, Signal> signals = new ConcurrentHashMap<>();
+    private final LongSupplier clock;
+
+    public PassiveHealthSignals() {
+        this(System::nanoTime);
+    }
+
+    // Visible for testing
+    PassiveHealthSignals(LongSupplier clock) {
+        this.clock = requireNonNull(clock);
+    }
+
+    /**
+     * Key for an origin.
+     *
+     * @param origin origin
+     * @return key
+     */
+    public static String key(Origin origin) {
+        return origin.applicationId() + "/" + origin.id();
+    }
+
+    /**
+     * Takes the signal for an origin, creating it if necessary.
+     *
+     * @param origin origin
+     * @return signal
+     */
+    public Signal signal(Origin origin) {
+        return signal(key(origin));
+    }
+
+    /**
+     * Takes the signal for a target, creating it if necessary. The signal is kept until each
+     * call has been matched by a {@link #release(Signal)}.
+     *
+     * @param key target key
+     * @return signal
+     */
+    public Signal signal(String key) {
+        return signals.compute(requireNonNull(key), (it, existing) -> {
+            Signal signal = existing != null ? existing : new Signal(it);
+            signal.holders++;
+            return signal;
+        });
+    }
+
+    /**
+     * Releases a signal taken with {@link #signal(String)}.
+     *
+     * @param signal signal
+     */
+    public void release(Signal signal) {
+        signals.computeIfPresent(signal.key, (it, existing) -> {
+            if (existing != signal) {
+                return existing;
+            }
+            signal.holders--;
+            return signal.holders > 0 ? signal : null;
+        });
+    }
+
+    /**
+     * Records a successful live response for a target, if its signal is held.
+     *
+     * @param key target key
+     */
+    public void recordSuccess(String key) {
+        Signal signal = signals.get(key);
+        if (signal != null) {
+            signal.success();
+        }
+    }
+
+    /**
+     * Records a failed live request for a target, if its signal is held.
+     *
+     * @param key target key
+     */
+    public void recordFailure(String key) {
+        Signal signal = signals.get(key);
+        if (signal != null) {
+            signal.failure();
+        }
+    }
+
+    // Visible for testing
+    int size() {
+        return signals.size();
+    }
+
+    /**
+     * Outcomes of live traffic to a single target.
+     */
+    public final class Signal {
+        private final String key;
+        private volatile long lastSuccess;
+        private volatile long lastFailure;
+
+        // Guarded by the map entry of the signal.
+        private int holders;
+
+        private Signal(String key) {
+            this.key = key;
+            // Predates any mark taken from now on.
+            long never = clock.getAsLong() - 1;
+            this.lastSuccess = never;
+            this.lastFailure = never;
+        }
+
+        /**
+         * Records a successful live response.
+         */
+        public void success() {
+            lastSuccess = clock.getAsLong();
+        }
+
+        /**
+         * Records a failed live request.
+         */
+        public void failure() {
+            lastFailure = clock.getAsLong();
+        }
+
+        /**
+         * A mark in time, to be passed to {@link #servedSince(long)} later on.
+         *
+         * @return current time
+         */
+        public long mark() {
+            return clock.getAsLong();
+        }
+
+        /**
+         * Returns true if live traffic has succeeded, and not failed, since a mark.
+         *
+         * @param mark a value previously returned by {@link #mark()}
+         * @return true if live traffic has succeeded, and not failed, since the mark
+         */
+        public boolean servedSince(long mark) {
+            return lastSuccess - mark >= 0 && lastFailure - mark < 0;
+        }
+
+        /**
+         * Returns true if live traffic has failed since a mark.
+         *
+         * @param mark a value previously returned by {@link #mark()}
+         * @return true if live traffic has failed since the mark
+         */
+        public boolean failedSince(long mark) {
+            return lastFailure - mark >= 0;
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -19,59 +19,103 @@ import com.hotels.styx.api.extension.Announcer;
 import com.hotels.styx.api.extension.Origin;
 import com.hotels.styx.api.extension.service.spi.AbstractStyxService;
 import com.hotels.styx.client.HttpClient;
+import com.hotels.styx.client.healthcheck.AdaptiveInterval;
+import com.hotels.styx.client.healthcheck.HealthCheckScheduler;
 import com.hotels.styx.client.healthcheck.OriginHealthCheckFunction;
 import com.hotels.styx.client.healthcheck.OriginHealthStatusMonitor;
+import com.hotels.styx.client.healthcheck.PassiveHealthSignals;
 import com.hotels.styx.client.healthcheck.Schedule;
 
 import javax.annotation.concurrent.ThreadSafe;
+import java.time.Duration;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListSet;
-import java.util.concurrent.ScheduledExecutorService;
 
 import static com.hotels.styx.api.extension.service.spi.StyxServiceStatus.RUNNING;
-import static java.lang.Thread.currentThread;
 import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.CompletableFuture.completedFuture;
-import static java.util.concurrent.CompletableFuture.runAsync;
-import static java.util.concurrent.TimeUnit.SECONDS;
 
 /**
  * An {@link com.hotels.styx.client.healthcheck.OriginHealthStatusMonitor} that monitors the origins state
  * periodically.
+ * <p>
+ * Each origin is probed on its own phase within the interval of the {@link Schedule}, by a
+ * {@link HealthCheckScheduler} shared with other monitors.
+ * <p>
+ * If a maximum interval longer than the schedule is given, each origin is probed at an {@link AdaptiveInterval}.
+ * A round is then reported healthy without a probe if the origin has served live traffic successfully since
+ * the previous round, according to the {@link PassiveHealthSignals}.
  */
 @ThreadSafe
 public class ScheduledOriginHealthStatusMonitor extends AbstractStyxService implements OriginHealthStatusMonitor {
     private final Announcer<OriginHealthStatusMonitor.Listener> listeners = Announcer.to(OriginHealthStatusMonitor.Listener.class);
 
-    private final ScheduledExecutorService hostHealthMonitorExecutor;
+    private final HealthCheckScheduler scheduler;
     private final OriginHealthCheckFunction healthCheckingFunction;
-    private final Schedule schedule;
+    private final Duration interval;
+    private final Duration maxInterval;
+    private final PassiveHealthSignals signals;
     private final HttpClient client;
 
     private final Set<Origin> origins;
+    private final ConcurrentMap<Origin, Target> targets = new ConcurrentHashMap<>();
 
     /**
      * Construct an instance.
      *
-     * @param hostHealthMonitorExecutor service that will execute health-checks on a schedule
+     * @param scheduler scheduler that will execute health-checks
      * @param healthCheckingFunction function that performs health-checks
      * @param schedule schedule to follow for health-checking
      * @param client client that will perform the health-check
      */
-    public ScheduledOriginHealthStatusMonitor(ScheduledExecutorService hostHealthMonitorExecutor,
+    public ScheduledOriginHealthStatusMonitor(HealthCheckScheduler scheduler,
                                               OriginHealthCheckFunction healthCheckingFunction,
                                               Schedule schedule,
                                               HttpClient client) {
+        this(scheduler, healthCheckingFunction, schedule, intervalOf(schedule), new PassiveHealthSignals(), client);
+    }
+
+    /**
+     * Construct an instance that adapts the interval of each origin to its health.
+     *
+     * @param scheduler scheduler that will execute health-checks
+     * @param healthCheckingFunction function that performs health-checks
+     * @param schedule schedule to follow for health-checking while an origin's health is unknown
+     * @param maxInterval longest interval between health-checks of an origin that has been healthy for a while
+     * @param signals health evidence from live traffic
+     * @param client client that will perform the health-check
+     */
+    public ScheduledOriginHealthStatusMonitor(HealthCheckScheduler scheduler,
+                                              OriginHealthCheckFunction healthCheckingFunction,
+                                              Schedule schedule,
+                                              Duration maxInterval,
+                                              PassiveHealthSignals signals,
+                                              HttpClient client) {
         super("ScheduledOriginHealthStatusMonitor");
-        this.hostHealthMonitorExecutor = requireNonNull(hostHealthMonitorExecutor);
+        this.scheduler = requireNonNull(scheduler);
         this.healthCheckingFunction = requireNonNull(healthCheckingFunction);
-        this.schedule = requireNonNull(schedule);
+        this.interval = intervalOf(schedule);
+        this.maxInterval = requireNonNull(maxInterval);
+        this.signals = requireNonNull(signals);
         this.client = requireNonNull(client);
 
         this.origins = new ConcurrentSkipListSet<>();
     }
 
+    private static Duration intervalOf(Schedule schedule) {
+        return Duration.ofNanos(schedule.unit().toNanos(schedule.period()));
+    }
+
+    // Visible for testing
+    Duration currentInterval(Origin origin) {
+        Target target = targets.get(origin);
+        return target == null ? null : target.interval.current();
+    }
+
     // Visible for testing
     OriginHealthStatusMonitor monitor(Origin... origins) {
         return monitor(Set.of(origins));
@@ -81,6 +125,7 @@ public class ScheduledOriginHealthStatusMonitor extends AbstractStyxService impl
     public OriginHealthStatusMonitor monitor(Set<Origin> origins) {
         this.origins.addAll(origins);
         if (status() == RUNNING) {
+            origins.forEach(this::schedule);
             healthCheck(origins);
         }
         return this;
@@ -96,6 +141,7 @@ public class ScheduledOriginHealthStatusMonitor extends AbstractStyxService impl
     public OriginHealthStatusMonitor stopMonitoring(Set<Origin> origins) {
         resetListeners(origins);
         this.origins.removeAll(origins);
+        origins.forEach(this::unschedule);
         return this;
     }
 
@@ -107,27 +153,25 @@ public class ScheduledOriginHealthStatusMonitor extends AbstractStyxService impl
 
     @Override
     protected CompletableFuture<Void> startService() {
-        scheduleHealthCheck();
+        origins.forEach(this::schedule);
         return completedFuture(null);
     }
 
     @Override
     protected CompletableFuture<Void> stopService() {
-        this.hostHealthMonitorExecutor.shutdown();
-
-        return runAsync(() -> {
-            try {
-                hostHealthMonitorExecutor.awaitTermination(10, SECONDS);
-            } catch (InterruptedException e) {
-                currentThread().interrupt();
-                throw new RuntimeException(e);
-            }
-        });
+        targets.keySet().forEach(this::unschedule);
+        return completedFuture(null);
+    }
+
+    private void schedule(Origin origin) {
+        targets.computeIfAbsent(origin, Target::new);
     }
 
-    private void scheduleHealthCheck() {
-        this.hostHealthMonitorExecutor.scheduleAtFixedRate(() ->
-                healthCheck(origins), schedule.initialDelay(), schedule.period(), schedule.unit());
+    private void unschedule(Origin origin) {
+        Target target = targets.remove(origin);
+        if (target != null) {
+            target.cancel();
+        }
     }
 
     private void healthCheck(Set<Origin> origins) {
@@ -136,17 +180,27 @@ public class ScheduledOriginHealthStatusMonitor extends AbstractStyxService impl
         }
     }
 
-    private void healthCheckOriginAndAnnounceListeners(Origin origin) {
+    private CompletionStage<Void> healthCheckOriginAndAnnounceListeners(Origin origin) {
+        CompletableFuture<Void> completed = new CompletableFuture<>();
         healthCheckingFunction.check(client, origin, state -> {
+            Target target = targets.get(origin);
             switch (state) {
                 case HEALTHY:
+                    if (target != null) {
+                        target.interval.healthy();
+                    }
                     announceOriginHealthy(origin);
                     break;
                 case UNHEALTHY:
+                    if (target != null) {
+                        target.interval.unhealthy();
+                    }
                     announceOriginUnhealthy(origin);
                     break;
             }
+            completed.complete(null);
         });
+        return completed;
     }
 
     private void announceOriginHealthy(Origin origin) {
@@ -156,4 +210,37 @@ public class ScheduledOriginHealthStatusMonitor extends AbstractStyxService impl
     private void announceOriginUnhealthy(Origin origin) {
         this.listeners.announce().originUnhealthy(origin);
     }
+
+    private final class Target {
+        private final Origin origin;
+        private final AdaptiveInterval interval;
+        private final PassiveHealthSignals.Signal signal;
+        private final HealthCheckScheduler.Registration registration;
+        private volatile long lastRound;
+
+        Target(Origin origin) {
+            this.origin = origin;
+            this.interval = new AdaptiveInterval(ScheduledOriginHealthStatusMonitor.this.interval, maxInterval);
+            this.signal = signals.signal(origin);
+            this.lastRound = signal.mark();
+            this.registration = scheduler.schedule(PassiveHealthSignals.key(origin), interval::current, this::round);
+        }
+
+        private void cancel() {
+            registration.cancel();
+            signals.release(signal);
+        }
+
+        private CompletionStage<Void> round() {
+            long since = lastRound;
+            lastRound = signal.mark();
+
+            if (interval.isAdaptive() && signal.servedSince(since)) {
+                interval.healthy();
+                announceOriginHealthy(origin);
+                return null;
+            }
+            return healthCheckOriginAndAnnounceListeners(origin);
+        }
+    }
 }
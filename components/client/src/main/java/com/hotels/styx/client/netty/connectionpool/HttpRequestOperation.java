@@ -40,10 +40,8 @@ import reactor.core.publisher.BaseSubscriber;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.FluxSink;
 
-import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static com.hotels.styx.api.HttpHeaderNames.HOST;
@@ -57,16 +55,14 @@ import static org.slf4j.LoggerFactory.getLogger;
  * An operation that writes an HTTP request to an origin.
  */
 public class HttpRequestOperation {
+    public static final String OUTBOUND_MESSAGES_LOGGER = "com.hotels.styx.http-messages.outbound";
     private static final String IDLE_HANDLER_NAME = "idle-handler";
     private static final Logger LOGGER = getLogger(HttpRequestOperation.class);
 
     private final LiveHttpRequest request;
     private final Optional<OriginStatsFactory> originStatsFactory;
     private final int responseTimeoutMillis;
-    private final AtomicInteger terminationCount = new AtomicInteger(0);
-    private final AtomicInteger executeCount = new AtomicInteger(0);
     private final boolean requestLoggingEnabled;
-    private volatile long requestTime;
     private final HttpRequestMessageLogger httpRequestMessageLogger;
 
     /**
@@ -78,11 +74,26 @@ public class HttpRequestOperation {
      */
     public HttpRequestOperation(LiveHttpRequest request, OriginStatsFactory originStatsFactory,
                                 int responseTimeoutMillis, boolean requestLoggingEnabled, boolean longFormat, HttpMessageFormatter httpMessageFormatter) {
+        this(request, originStatsFactory, responseTimeoutMillis, requestLoggingEnabled,
+                new HttpRequestMessageLogger(OUTBOUND_MESSAGES_LOGGER, longFormat, httpMessageFormatter));
+    }
+
+    /**
+     * Constructs an instance that logs through a shared message logger.
+     *
+     * @param request                  HTTP request
+     * @param originStatsFactory       OriginStats factory
+     * @param responseTimeoutMillis    response timeout in milliseconds
+     * @param requestLoggingEnabled    whether requests and responses are logged
+     * @param httpRequestMessageLogger logger for requests and responses
+     */
+    public HttpRequestOperation(LiveHttpRequest request, OriginStatsFactory originStatsFactory,
+                                int responseTimeoutMillis, boolean requestLoggingEnabled, HttpRequestMessageLogger httpRequestMessageLogger) {
         this.request = requireNonNull(request);
         this.originStatsFactory = Optional.ofNullable(originStatsFactory);
         this.responseTimeoutMillis = responseTimeoutMillis;
         this.requestLoggingEnabled = requestLoggingEnabled;
-        this.httpRequestMessageLogger = new HttpRequestMessageLogger("com.hotels.styx.http-messages.outbound", longFormat, httpMessageFormatter);
+        this.httpRequestMessageLogger = requireNonNull(httpRequestMessageLogger);
     }
 
     // Visible for testing
@@ -114,14 +125,13 @@ public class HttpRequestOperation {
 
     public Flux<LiveHttpResponse> execute(NettyConnection nettyConnection) {
         AtomicReference<RequestBodyChunkSubscriber> requestRequestBodyChunkSubscriber = new AtomicReference<>();
-        requestTime = System.currentTimeMillis();
-        executeCount.incrementAndGet();
+        AtomicReference<Object> binding = new AtomicReference<>();
 
         Flux<LiveHttpResponse> responseFlux = Flux.create(sink -> {
             if (nettyConnection.isConnected()) {
                 RequestBodyChunkSubscriber bodyChunkSubscriber = new RequestBodyChunkSubscriber(request, nettyConnection);
                 requestRequestBodyChunkSubscriber.set(bodyChunkSubscriber);
-                addProxyBridgeHandlers(nettyConnection, sink);
+                binding.set(proxyBridge(nettyConnection).bind(sink, request));
                 new WriteRequestToOrigin(sink, nettyConnection, request, bodyChunkSubscriber)
                         .write();
                 if (requestLoggingEnabled) {
@@ -140,46 +150,44 @@ public class HttpRequestOperation {
         }
         return responseFlux.map(response ->
                         Requests.doFinally(response, cause -> {
-                            if (nettyConnection.isConnected()) {
-                                removeProxyBridgeHandlers(nettyConnection);
-
-                                if (requestIsOngoing(requestRequestBodyChunkSubscriber.get())) {
-                                    LOGGER.warn("Origin responded too quickly to an ongoing request, or it was cancelled. Connection={}, Request={}.",
-                                            new Object[]{nettyConnection.channel(), this.request});
-                                    nettyConnection.close();
-                                }
+                            NettyToStyxResponsePropagator propagator = nettyConnection.responsePropagator();
+                            if (propagator != null) {
+                                propagator.unbind(binding.get());
+                            }
+
+                            if (nettyConnection.isConnected() && requestIsOngoing(requestRequestBodyChunkSubscriber.get())) {
+                                LOGGER.warn("Origin responded too quickly to an ongoing request, or it was cancelled. Connection={}, Request={}.",
+                                        new Object[]{nettyConnection.channel(), this.request});
+                                nettyConnection.close();
                             }
                         }));
     }
 
-    private void addProxyBridgeHandlers(NettyConnection nettyConnection, FluxSink<LiveHttpResponse> sink) {
-        Origin origin = nettyConnection.getOrigin();
-        Channel channel = nettyConnection.channel();
-        channel.pipeline().addLast(IDLE_HANDLER_NAME, new IdleStateHandler(0, 0, responseTimeoutMillis, MILLISECONDS));
-        originStatsFactory.ifPresent(
-                originStatsFactory -> channel.pipeline()
-                        .addLast(RequestsToOriginMetricsCollector.NAME,
-                                new RequestsToOriginMetricsCollector(originStatsFactory.originStats(origin))));
-        channel.pipeline().addLast(
-                NettyToStyxResponsePropagator.NAME,
-                new NettyToStyxResponsePropagator(sink, origin, responseTimeoutMillis, MILLISECONDS, request));
+    /*
+     * The proxy bridge handlers are installed on the first request sent over a connection,
+     * and stay in its pipeline until the connection closes. Subsequent requests only rebind
+     * the response propagator to their own sink.
+     */
+    private NettyToStyxResponsePropagator proxyBridge(NettyConnection nettyConnection) {
+        NettyToStyxResponsePropagator propagator = nettyConnection.responsePropagator();
+        if (propagator == null) {
+            propagator = addProxyBridgeHandlers(nettyConnection);
+            nettyConnection.responsePropagator(propagator);
+        }
+        return propagator;
     }
 
-    private void removeProxyBridgeHandlers(NettyConnection connection) {
-        ChannelPipeline pipeline = connection.channel().pipeline();
-        terminationCount.incrementAndGet();
+    private NettyToStyxResponsePropagator addProxyBridgeHandlers(NettyConnection nettyConnection) {
+        Origin origin = nettyConnection.getOrigin();
+        ChannelPipeline pipeline = nettyConnection.channel().pipeline();
+        NettyToStyxResponsePropagator propagator = new NettyToStyxResponsePropagator(origin, responseTimeoutMillis, MILLISECONDS);
 
-        try {
-            pipeline.remove(IDLE_HANDLER_NAME);
-            if (originStatsFactory.isPresent()) {
-                pipeline.remove(RequestsToOriginMetricsCollector.NAME);
-            }
-            pipeline.remove(NettyToStyxResponsePropagator.NAME);
-        } catch (NoSuchElementException cause) {
-            long elapsedTime = System.currentTimeMillis() - requestTime;
-            LOGGER.error("Failed to remove pipeline handlers from pooled connection. elapsedTime={}, request={}, terminationCount={}, executionCount={}, cause={}",
-                    new Object[]{elapsedTime, request, terminationCount.get(), executeCount.get(), cause});
-        }
+        pipeline.addLast(IDLE_HANDLER_NAME, new IdleStateHandler(0, 0, responseTimeoutMillis, MILLISECONDS));
+        originStatsFactory.ifPresent(
+                originStatsFactory -> pipeline.addLast(RequestsToOriginMetricsCollector.NAME,
+                        new RequestsToOriginMetricsCollector(originStatsFactory.originStats(origin))));
+        pipeline.addLast(NettyToStyxResponsePropagator.NAME, propagator);
+        return propagator;
     }
 
     @Override
@@ -47,7 +47,7 @@ public class NettyConnection implements Connection {
     private final HttpRequestOperationFactory requestOperationFactory;
 
     private final Announcer<Listener> listeners = Announcer.to(Listener.class);
-
+    private volatile NettyToStyxResponsePropagator responsePropagator;
 
     /**
      * Constructs an instance with an arbitrary UUID.
@@ -92,6 +92,14 @@ public class NettyConnection implements Connection {
     }
 
 
+    NettyToStyxResponsePropagator responsePropagator() {
+        return responsePropagator;
+    }
+
+    void responsePropagator(NettyToStyxResponsePropagator responsePropagator) {
+        this.responsePropagator = responsePropagator;
+    }
+
     /**
      * The netty channel associated with this connection.
      *
@@ -39,9 +39,9 @@ import org.reactivestreams.Subscription;
 import org.slf4j.Logger;
 import reactor.core.publisher.FluxSink;
 
-import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.hotels.styx.api.HttpResponseStatus.statusWithCode;
 import static com.hotels.styx.api.LiveHttpResponse.response;
@@ -54,23 +54,19 @@ import static org.slf4j.LoggerFactory.getLogger;
 
 /**
  * A netty channel handler that reads from a channel and pass the message to a {@link Subscriber}.
+ * <p>
+ * A single instance stays in the pipeline for the lifetime of a pooled connection.
+ * Each request {@link #bind binds} it to the sink that receives the response, and
+ * {@link #unbind unbinds} it once the exchange is over. Messages and events that arrive
+ * while no exchange is bound do not belong to any request.
  */
 final class NettyToStyxResponsePropagator extends SimpleChannelInboundHandler {
     public static final String NAME = NettyToStyxResponsePropagator.class.getSimpleName();
     private static final Logger LOGGER = getLogger(NettyToStyxResponsePropagator.class);
 
-    private final AtomicBoolean responseCompleted = new AtomicBoolean(false);
-    private final AtomicBoolean responseReceived = new AtomicBoolean(false);
-    private final FluxSink<LiveHttpResponse> sink;
-    private final LiveHttpRequest request;
-
     private final Origin origin;
     private final Long idleTimeoutMillis;
-    private Optional<FlowControllingHttpContentProducer> contentProducer = Optional.empty();
-
-    // `toBeClosed` doesn't have to be volatile because all Netty events are guaranteed
-    // to be delivered from the same thread.
-    private boolean toBeClosed;
+    private final AtomicReference<Exchange> exchange = new AtomicReference<>();
 
     NettyToStyxResponsePropagator(FluxSink<LiveHttpResponse> sink, Origin origin) {
         this(sink, origin, 5L, TimeUnit.SECONDS, null);
@@ -81,15 +77,46 @@ final class NettyToStyxResponsePropagator extends SimpleChannelInboundHandler {
                                   long idleTimeout,
                                   TimeUnit timeUnit,
                                   LiveHttpRequest request) {
-        this.sink = sink;
+        this(origin, idleTimeout, timeUnit);
+        bind(sink, request);
+    }
+
+    NettyToStyxResponsePropagator(Origin origin, long idleTimeout, TimeUnit timeUnit) {
         this.origin = origin;
         this.idleTimeoutMillis = timeUnit.toMillis(idleTimeout);
-        this.request = request;
+    }
+
+    /**
+     * Directs the next response received on the channel to a sink.
+     *
+     * @param sink    receives the response
+     * @param request the request being sent, used for logging
+     * @return a handle that identifies this exchange when unbinding
+     */
+    Object bind(FluxSink<LiveHttpResponse> sink, LiveHttpRequest request) {
+        Exchange next = new Exchange(sink, request);
+        exchange.set(next);
+        return next;
+    }
+
+    /**
+     * Detaches an exchange from this handler, unless another one has been bound since.
+     *
+     * @param handle handle returned by {@link #bind}
+     */
+    void unbind(Object handle) {
+        exchange.compareAndSet((Exchange) handle, null);
     }
 
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
-        getContentProducer(ctx).channelException(toStyxException(cause));
+        Exchange current = exchange.get();
+        if (current != null) {
+            current.contentProducer(ctx).channelException(toStyxException(cause));
+        } else {
+            LOGGER.debug("Closing idle connection after an exception. origin={}, channel={}", new Object[]{origin, ctx.channel(), cause});
+            ctx.channel().close();
+        }
     }
 
     private RuntimeException toStyxException(Throwable cause) {
@@ -102,32 +129,37 @@ final class NettyToStyxResponsePropagator extends SimpleChannelInboundHandler {
 
     @Override
     public void channelInactive(ChannelHandlerContext ctx) {
-        TransportLostException cause = new TransportLostException(ctx.channel().remoteAddress(), origin);
-        getContentProducer(ctx).channelInactive(cause);
-    }
-
-    private void scheduleResourcesTearDown(ChannelHandlerContext ctx) {
-        ctx.channel().eventLoop().schedule(
-                () -> contentProducer.ifPresent(FlowControllingHttpContentProducer::tearDownResources),
-                idleTimeoutMillis,
-                MILLISECONDS);
+        Exchange current = exchange.get();
+        if (current != null) {
+            TransportLostException cause = new TransportLostException(ctx.channel().remoteAddress(), origin);
+            current.contentProducer(ctx).channelInactive(cause);
+        }
     }
 
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, Object msg) throws Exception {
-        FlowControllingHttpContentProducer producer = getContentProducer(ctx);
+        Exchange current = exchange.get();
+        if (current == null) {
+            if (msg instanceof io.netty.handler.codec.http.HttpResponse) {
+                LOGGER.warn("Unexpected response received on an idle connection: " + msg);
+                ctx.channel().close();
+            }
+            return;
+        }
+
+        FlowControllingHttpContentProducer producer = current.contentProducer(ctx);
 
         if (msg instanceof io.netty.handler.codec.http.HttpResponse) {
             io.netty.handler.codec.http.HttpResponse nettyResponse = (io.netty.handler.codec.http.HttpResponse) msg;
 
-            if (!responseReceived.compareAndSet(false, true)) {
+            if (!current.responseReceived.compareAndSet(false, true)) {
                 LOGGER.warn("Unexpected additional response received: " + nettyResponse);
                 ctx.channel().close();
                 return;
             }
 
             if (nettyResponse.getDecoderResult().isFailure()) {
-                emitResponseError(new BadHttpResponseException(origin, nettyResponse.getDecoderResult().cause()));
+                current.emitResponseError(new BadHttpResponseException(origin, nettyResponse.getDecoderResult().cause()));
                 return;
             }
 
@@ -141,11 +173,11 @@ final class NettyToStyxResponsePropagator extends SimpleChannelInboundHandler {
             Publisher<Buffer> contentPublisher = new ContentPublisher(eventLoop, producer);
 
             if ("close".equalsIgnoreCase(nettyResponse.headers().get(CONNECTION))) {
-                toBeClosed = true;
+                current.toBeClosed = true;
             }
 
             LiveHttpResponse response = toStyxResponse(nettyResponse, contentPublisher, origin);
-            this.sink.next(response);
+            current.sink.next(response);
         }
         if (msg instanceof HttpContent) {
             ByteBuf content = ((ByteBufHolder) msg).content();
@@ -156,7 +188,7 @@ final class NettyToStyxResponsePropagator extends SimpleChannelInboundHandler {
                 // Note: Netty may send a LastHttpContent as a response to TCP connection close.
                 // In this case channelReadComplete event will _not_ follow the LastHttpContent.
                 producer.lastHttpContent();
-                if (toBeClosed) {
+                if (current.toBeClosed) {
                     ctx.channel().close();
                 }
             }
@@ -165,54 +197,95 @@ final class NettyToStyxResponsePropagator extends SimpleChannelInboundHandler {
 
     @Override
     public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
-        FlowControllingHttpContentProducer producer = getContentProducer(ctx);
+        Exchange current = exchange.get();
 
         if (evt instanceof IdleStateEvent) {
-            producer.channelInactive(
-                    new ResponseTimeoutException(
-                            origin,
-                            "idleStateEvent",
-                            producer.receivedBytes(),
-                            producer.receivedChunks(),
-                            producer.emittedBytes(),
-                            producer.emittedChunks()));
+            if (current != null && current.idleSinceBound()) {
+                FlowControllingHttpContentProducer producer = current.contentProducer(ctx);
+                producer.channelInactive(
+                        new ResponseTimeoutException(
+                                origin,
+                                "idleStateEvent",
+                                producer.receivedBytes(),
+                                producer.receivedChunks(),
+                                producer.emittedBytes(),
+                                producer.emittedChunks()));
+            }
         } else {
             super.userEventTriggered(ctx, evt);
         }
     }
 
-    private FlowControllingHttpContentProducer getContentProducer(ChannelHandlerContext ctx) {
-        if (!this.contentProducer.isPresent()) {
-            this.contentProducer = Optional.of(createProducer(ctx, request));
+    /**
+     * State of a single request/response exchange. Callbacks from a content producer
+     * only ever reach the exchange that created it, even after the handler is rebound.
+     */
+    private final class Exchange {
+        private final AtomicBoolean responseCompleted = new AtomicBoolean(false);
+        private final AtomicBoolean responseReceived = new AtomicBoolean(false);
+        private final FluxSink<LiveHttpResponse> sink;
+        private final LiveHttpRequest request;
+        private final long boundNanos = System.nanoTime();
+        private FlowControllingHttpContentProducer contentProducer;
+
+        // `toBeClosed` doesn't have to be volatile because all Netty events are guaranteed
+        // to be delivered from the same thread.
+        private boolean toBeClosed;
+
+        Exchange(FluxSink<LiveHttpResponse> sink, LiveHttpRequest request) {
+            this.sink = sink;
+            this.request = request;
         }
-        return this.contentProducer.get();
-    }
 
-    private FlowControllingHttpContentProducer createProducer(ChannelHandlerContext ctx, LiveHttpRequest request) {
-        String requestPrefix = request != null ? format("Request(method=%s, url=%s, id=%s)", request.method(), request.url(), request.id()) : "Request NA";
-        String loggingPrefix = format("%s -> %s", ctx.channel().remoteAddress(), ctx.channel().localAddress());
-
-        return new FlowControllingHttpContentProducer(
-                () -> ctx.channel().read(),
-                () -> {
-                    ctx.channel().config().setAutoRead(true);
-                    emitResponseCompleted();
-                },
-                this::emitResponseError,
-                () -> scheduleResourcesTearDown(ctx),
-                format("%s, %s", loggingPrefix, requestPrefix),
-                origin);
-    }
+        /*
+         * The idle state handler outlives exchanges. An idle event that fires within one
+         * timeout of binding was caused by the connection sitting in the pool, not by this exchange.
+         */
+        boolean idleSinceBound() {
+            return System.nanoTime() - boundNanos >= MILLISECONDS.toNanos(idleTimeoutMillis);
+        }
 
-    private void emitResponseCompleted() {
-        if (responseCompleted.compareAndSet(false, true)) {
-            sink.complete();
+        FlowControllingHttpContentProducer contentProducer(ChannelHandlerContext ctx) {
+            if (contentProducer == null) {
+                contentProducer = createProducer(ctx);
+            }
+            return contentProducer;
         }
-    }
 
-    private void emitResponseError(Throwable cause) {
-        if (responseCompleted.compareAndSet(false, true)) {
-            this.sink.error(cause);
+        private FlowControllingHttpContentProducer createProducer(ChannelHandlerContext ctx) {
+            String requestPrefix = request != null ? format("Request(method=%s, url=%s, id=%s)", request.method(), request.url(), request.id()) : "Request NA";
+            String loggingPrefix = format("%s -> %s", ctx.channel().remoteAddress(), ctx.channel().localAddress());
+
+            return new FlowControllingHttpContentProducer(
+                    () -> ctx.channel().read(),
+                    () -> {
+                        ctx.channel().config().setAutoRead(true);
+                        emitResponseCompleted();
+                    },
+                    this::emitResponseError,
+                    () -> scheduleResourcesTearDown(ctx),
+                    format("%s, %s", loggingPrefix, requestPrefix),
+                    origin);
+        }
+
+        private void scheduleResourcesTearDown(ChannelHandlerContext ctx) {
+            FlowControllingHttpContentProducer producer = contentProducer;
+            ctx.channel().eventLoop().schedule(
+                    producer::tearDownResources,
+                    idleTimeoutMillis,
+                    MILLISECONDS);
+        }
+
+        private void emitResponseCompleted() {
+            if (responseCompleted.compareAndSet(false, true)) {
+                sink.complete();
+            }
+        }
+
+        private void emitResponseError(Throwable cause) {
+            if (responseCompleted.compareAndSet(false, true)) {
+                sink.error(cause);
+            }
         }
     }
 
@@ -31,6 +31,9 @@ import static java.util.Objects.requireNonNull;
 
 /**
  * A netty channel handler that collects statistics on outbound requests.
+ * <p>
+ * It stays in the pipeline of a pooled connection across requests. Timings start when
+ * a request is written, and each one is stopped at most once.
  */
 class RequestsToOriginMetricsCollector extends ChannelDuplexHandler {
     public static final String NAME = "outbound-request-stats-handler";
@@ -102,8 +105,12 @@ class RequestsToOriginMetricsCollector extends ChannelDuplexHandler {
 
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
-        stopAndRecordLatency();
-        stopAndRecordTimeToFirstByte();
+        if (requestLatencyTiming != null) {
+            stopAndRecordLatency();
+        }
+        if (timeToFirstByteTiming != null) {
+            stopAndRecordTimeToFirstByte();
+        }
         super.exceptionCaught(ctx, cause);
     }
 
@@ -113,6 +120,7 @@ class RequestsToOriginMetricsCollector extends ChannelDuplexHandler {
         // just because it doesn't record metrics
         if (requestLatencyTiming != null) {
             requestLatencyTiming.stop();
+            requestLatencyTiming = null;
         } else {
             LOG.warn("Attempted to stop timer and record latency when no timing had begun");
         }
@@ -121,6 +129,7 @@ class RequestsToOriginMetricsCollector extends ChannelDuplexHandler {
     private void stopAndRecordTimeToFirstByte() {
         if (timeToFirstByteTiming != null) {
             timeToFirstByteTiming.stop();
+            timeToFirstByteTiming = null;
         } else {
             LOG.warn("Attempted to stop timer and record time-to-first-byte when no timing had begun");
         }
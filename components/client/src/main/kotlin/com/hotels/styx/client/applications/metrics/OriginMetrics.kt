@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -17,6 +17,7 @@ package com.hotels.styx.client.applications.metrics
 
 import com.hotels.styx.api.extension.Origin
 import com.hotels.styx.client.applications.OriginStats
+import com.hotels.styx.client.healthcheck.PassiveHealthSignals
 import com.hotels.styx.common.SimpleCache
 import com.hotels.styx.metrics.CentralisedMetrics
 import com.hotels.styx.metrics.TimerMetric
@@ -31,8 +32,14 @@ import io.micrometer.core.instrument.Counter
  * <p/>
  * Consider twice before caching. The reference could accidentally being shared by two
  * connections scheduled on different event loops.
+ * <p/>
+ * Response outcomes are also recorded as passive health evidence, if signals are given.
  */
-class OriginMetrics(metrics: CentralisedMetrics, origin: Origin) : OriginStats {
+class OriginMetrics @JvmOverloads constructor(
+        metrics: CentralisedMetrics,
+        origin: Origin,
+        private val passiveHealth: PassiveHealthSignals? = null) : OriginStats {
+    private val passiveHealthKey = PassiveHealthSignals.key(origin)
     private val clientMetrics = metrics.proxy.client
     private var requestSuccessMeter: Counter = clientMetrics.originResponseNot5xx(origin)
     private var requestErrorMeter: Counter = clientMetrics.originResponse5xx(origin)
@@ -41,9 +48,15 @@ class OriginMetrics(metrics: CentralisedMetrics, origin: Origin) : OriginStats {
     private var timeToFirstByte: TimerMetric = clientMetrics.timeToFirstByte(origin)
     private var responseStatus: SimpleCache<Int, Counter> = clientMetrics.responsesByStatus(origin)
 
-    override fun requestSuccess() = requestSuccessMeter.increment()
+    override fun requestSuccess() {
+        requestSuccessMeter.increment()
+        passiveHealth?.recordSuccess(passiveHealthKey)
+    }
 
-    override fun requestError() = requestErrorMeter.increment()
+    override fun requestError() {
+        requestErrorMeter.increment()
+        passiveHealth?.recordFailure(passiveHealthKey)
+    }
 
     override fun responseWithStatusCode(statusCode: Int) = responseStatus[statusCode].increment()
 
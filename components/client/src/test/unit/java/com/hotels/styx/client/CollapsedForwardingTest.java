@@ -0,0 +1,171 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.client;
+
+import com.hotels.styx.api.HttpResponse;
+import com.hotels.styx.api.LiveHttpRequest;
+import com.hotels.styx.api.LiveHttpResponse;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.hotels.styx.api.HttpHeaderNames.AUTHORIZATION;
+import static com.hotels.styx.api.HttpHeaderNames.SET_COOKIE;
+import static com.hotels.styx.api.HttpHeaderNames.VARY;
+import static com.hotels.styx.api.HttpResponseStatus.OK;
+import static com.hotels.styx.api.LiveHttpRequest.get;
+import static com.hotels.styx.api.LiveHttpRequest.post;
+import static com.hotels.styx.api.extension.service.CollapsedForwardingConfig.newCollapsedForwardingConfigBuilder;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+
+public class CollapsedForwardingTest {
+    private static final String ACCEPT_LANGUAGE = "Accept-Language";
+
+    private final List<CompletableFuture<LiveHttpResponse>> exchanges = new CopyOnWriteArrayList<>();
+    private final AtomicInteger collapsed = new AtomicInteger();
+
+    @Test
+    public void sharesResponseWithIdenticalRequestsInFlight() {
+        CollapsedForwarding forwarding = forwarding(1000);
+
+        CompletableFuture<HttpResponse> first = send(forwarding, get("/page").header("Host", "example.com").build());
+        CompletableFuture<HttpResponse> second = send(forwarding, get("/page").header("Host", "example.com").build());
+
+        assertThat(exchanges.size(), is(1));
+        exchanges.get(0).complete(response("hello").build().stream());
+
+        assertThat(first.join().bodyAs(UTF_8), is("hello"));
+        assertThat(second.join().bodyAs(UTF_8), is("hello"));
+        assertThat(collapsed.get(), is(1));
+        assertThat(forwarding.inFlight(), is(0));
+    }
+
+    @Test
+    public void forwardsDifferentRequestsOnTheirOwn() {
+        CollapsedForwarding forwarding = forwarding(1000);
+
+        send(forwarding, get("/a").build());
+        send(forwarding, get("/b").build());
+        send(forwarding, get("/a").header("Host", "other.example.com").build());
+        send(forwarding, post("/a").build());
+        send(forwarding, get("/a").header(AUTHORIZATION, "Basic dXNlcjpwYXNz").build());
+
+        assertThat(exchanges.size(), is(5));
+    }
+
+    @Test
+    public void forwardsWaitingRequestsWhenResponseIsNotShareable() {
+        CollapsedForwarding forwarding = forwarding(1000);
+
+        CompletableFuture<HttpResponse> first = send(forwarding, get("/page").build());
+        CompletableFuture<HttpResponse> second = send(forwarding, get("/page").build());
+        exchanges.get(0).complete(response("for you").header(SET_COOKIE, "session=1").build().stream());
+
+        assertThat(exchanges.size(), is(2));
+        exchanges.get(1).complete(response("for you too").header(SET_COOKIE, "session=2").build().stream());
+
+        assertThat(first.join().bodyAs(UTF_8), is("for you"));
+        assertThat(second.join().bodyAs(UTF_8), is("for you too"));
+        assertThat(collapsed.get(), is(0));
+    }
+
+    @Test
+    public void forwardsWaitingRequestsForOtherVariants() {
+        CollapsedForwarding forwarding = forwarding(1000);
+
+        send(forwarding, get("/page").header(ACCEPT_LANGUAGE, "en").build());
+        CompletableFuture<HttpResponse> same = send(forwarding, get("/page").header(ACCEPT_LANGUAGE, "en").build());
+        CompletableFuture<HttpResponse> other = send(forwarding, get("/page").header(ACCEPT_LANGUAGE, "fr").build());
+        exchanges.get(0).complete(response("hello").header(VARY, ACCEPT_LANGUAGE).build().stream());
+
+        assertThat(exchanges.size(), is(2));
+        exchanges.get(1).complete(response("bonjour").build().stream());
+
+        assertThat(same.join().bodyAs(UTF_8), is("hello"));
+        assertThat(other.join().bodyAs(UTF_8), is("bonjour"));
+    }
+
+    @Test
+    public void forwardsWaitingRequestOnItsOwnAfterMaxWait() {
+        CollapsedForwarding forwarding = forwarding(50);
+
+        send(forwarding, get("/slow").build());
+        CompletableFuture<HttpResponse> second = send(forwarding, get("/slow").build());
+
+        Mono.delay(Duration.ofMillis(500)).block();
+
+        assertThat(exchanges.size(), is(2));
+        exchanges.get(1).complete(response("hello").build().stream());
+        assertThat(second.join().bodyAs(UTF_8), is("hello"));
+    }
+
+    @Test
+    public void sharesErrors() {
+        CollapsedForwarding forwarding = forwarding(1000);
+
+        CompletableFuture<HttpResponse> first = send(forwarding, get("/page").build());
+        CompletableFuture<HttpResponse> second = send(forwarding, get("/page").build());
+        exchanges.get(0).completeExceptionally(new IllegalStateException("origin failed"));
+
+        assertThat(exchanges.size(), is(1));
+        assertThat(first.handle((response, cause) -> cause).join(), is(instanceOf(IllegalStateException.class)));
+        assertThat(second.handle((response, cause) -> cause).join(), is(instanceOf(IllegalStateException.class)));
+    }
+
+    @Test
+    public void startsNewExchangeOnceResponseHasArrived() {
+        CollapsedForwarding forwarding = forwarding(1000);
+
+        send(forwarding, get("/page").build());
+        exchanges.get(0).complete(response("hello").build().stream());
+        send(forwarding, get("/page").build());
+
+        assertThat(exchanges.size(), is(2));
+    }
+
+    private CollapsedForwarding forwarding(int maxWaitMillis) {
+        return new CollapsedForwarding(
+                newCollapsedForwardingConfigBuilder().enabled(true).maxWaitMillis(maxWaitMillis).build(),
+                collapsed::incrementAndGet);
+    }
+
+    private CompletableFuture<HttpResponse> send(CollapsedForwarding forwarding, LiveHttpRequest request) {
+        return Flux.from(forwarding.execute(request, this::origin))
+                .flatMap(response -> response.aggregate(1024))
+                .next()
+                .toFuture();
+    }
+
+    private Publisher<LiveHttpResponse> origin(LiveHttpRequest request) {
+        CompletableFuture<LiveHttpResponse> exchange = new CompletableFuture<>();
+        exchanges.add(exchange);
+        return Mono.fromFuture(exchange);
+    }
+
+    private static HttpResponse.Builder response(String body) {
+        return HttpResponse.response(OK).body(body, UTF_8);
+    }
+}
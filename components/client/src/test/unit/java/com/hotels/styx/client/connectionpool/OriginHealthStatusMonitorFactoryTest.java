@@ -16,12 +16,16 @@
 package com.hotels.styx.client.connectionpool;
 
 import com.hotels.styx.api.Id;
+import com.hotels.styx.api.MicrometerRegistry;
 import com.hotels.styx.api.extension.service.HealthCheckConfig;
 import com.hotels.styx.client.HttpClient;
+import com.hotels.styx.client.healthcheck.HealthCheckScheduler;
 import com.hotels.styx.client.healthcheck.OriginHealthCheckFunction;
 import com.hotels.styx.client.healthcheck.OriginHealthStatusMonitorFactory;
 import com.hotels.styx.client.healthcheck.monitors.AnomalyExcludingOriginHealthStatusMonitor;
 import com.hotels.styx.client.healthcheck.monitors.NoOriginHealthStatusMonitor;
+import com.hotels.styx.metrics.CentralisedMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 
 import static com.hotels.styx.api.Id.GENERIC_APP;
@@ -34,7 +38,8 @@ import static org.mockito.Mockito.mock;
 
 public class OriginHealthStatusMonitorFactoryTest {
     final Id id = GENERIC_APP;
-    final OriginHealthStatusMonitorFactory factory = new OriginHealthStatusMonitorFactory();
+    final OriginHealthStatusMonitorFactory factory = new OriginHealthStatusMonitorFactory(
+            new HealthCheckScheduler(new CentralisedMetrics(new MicrometerRegistry(new SimpleMeterRegistry()))));
 
     @Test
     public void createsNoOpMonitorForAbsentHealthCheckUri() {
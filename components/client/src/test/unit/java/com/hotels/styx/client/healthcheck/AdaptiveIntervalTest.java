@@ -0,0 +1,104 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.client.healthcheck;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AdaptiveIntervalTest {
+    private static final Duration BASE = Duration.ofSeconds(5);
+    private static final Duration MAX = Duration.ofSeconds(30);
+
+    @Test
+    public void startsAtBaseInterval() {
+        assertThat(new AdaptiveInterval(BASE, MAX).current(), is(BASE));
+    }
+
+    @Test
+    public void backsOffAfterConsecutiveHealthyRounds() {
+        AdaptiveInterval interval = new AdaptiveInterval(BASE, MAX);
+
+        healthyRounds(interval, AdaptiveInterval.BACKOFF_ROUNDS - 1);
+        assertThat(interval.current(), is(BASE));
+
+        interval.healthy();
+        assertThat(interval.current(), is(Duration.ofSeconds(10)));
+
+        healthyRounds(interval, AdaptiveInterval.BACKOFF_ROUNDS);
+        assertThat(interval.current(), is(Duration.ofSeconds(20)));
+    }
+
+    @Test
+    public void doesNotBackOffBeyondMaximum() {
+        AdaptiveInterval interval = new AdaptiveInterval(BASE, MAX);
+
+        healthyRounds(interval, AdaptiveInterval.BACKOFF_ROUNDS * 10);
+
+        assertThat(interval.current(), is(MAX));
+    }
+
+    @Test
+    public void tightensAfterUnhealthyRound() {
+        AdaptiveInterval interval = new AdaptiveInterval(BASE, MAX);
+        healthyRounds(interval, AdaptiveInterval.BACKOFF_ROUNDS * 2);
+
+        interval.unhealthy();
+        assertThat(interval.current(), is(Duration.ofMillis(2500)));
+
+        interval.healthy();
+        assertThat(interval.current(), is(BASE));
+    }
+
+    @Test
+    public void unhealthyRoundRestartsBackOff() {
+        AdaptiveInterval interval = new AdaptiveInterval(BASE, MAX);
+
+        healthyRounds(interval, AdaptiveInterval.BACKOFF_ROUNDS - 1);
+        interval.unhealthy();
+        interval.healthy();
+        healthyRounds(interval, AdaptiveInterval.BACKOFF_ROUNDS - 1);
+
+        assertThat(interval.current(), is(BASE));
+    }
+
+    @Test
+    public void isFixedWhenMaximumEqualsBase() {
+        AdaptiveInterval interval = new AdaptiveInterval(BASE, BASE);
+
+        healthyRounds(interval, AdaptiveInterval.BACKOFF_ROUNDS * 2);
+        assertThat(interval.current(), is(BASE));
+
+        interval.unhealthy();
+        assertThat(interval.current(), is(BASE));
+        assertThat(interval.isAdaptive(), is(false));
+    }
+
+    @Test
+    public void rejectsMaximumShorterThanBase() {
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveInterval(BASE, Duration.ofSeconds(1)));
+    }
+
+    private static void healthyRounds(AdaptiveInterval interval, int rounds) {
+        for (int i = 0; i < rounds; i++) {
+            interval.healthy();
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.client.healthcheck;
+
+import com.hotels.styx.api.MicrometerRegistry;
+import com.hotels.styx.metrics.CentralisedMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+public class HealthCheckSchedulerTest {
+    private static final Duration TICK = Duration.ofMillis(10);
+    private static final Duration INTERVAL = Duration.ofSeconds(1);
+
+    private final AtomicLong clock = new AtomicLong(1_000_000L);
+    private SimpleMeterRegistry registry;
+    private HealthCheckScheduler scheduler;
+
+    @BeforeEach
+    public void setUp() {
+        registry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    public void spreadsProbesAcrossTheInterval() {
+        scheduler = scheduler(100);
+        long start = clock.get();
+        List<Long> startTimes = new ArrayList<>();
+
+        for (int i = 0; i < 100; i++) {
+            scheduler.schedule("origin-" + i, INTERVAL, () -> {
+                startTimes.add(clock.get() - start);
+                return completedFuture(null);
+            });
+        }
+
+        advanceBy(INTERVAL);
+
+        List<Integer> perDecile = new ArrayList<>(List.of(0, 0, 0, 0, 0, 0, 0, 0, 0, 0));
+        for (long time : startTimes) {
+            int decile = (int) Math.min(9, time * 10 / INTERVAL.toNanos());
+            perDecile.set(decile, perDecile.get(decile) + 1);
+        }
+
+        assertThat(startTimes.size(), is(100));
+        assertThat(perDecile, everyItem(allOf(greaterThan(0), lessThan(25))));
+    }
+
+    @Test
+    public void probesTargetAtTheSamePhaseInEveryRound() {
+        scheduler = scheduler(4);
+        long start = clock.get();
+        List<Long> startTimes = new ArrayList<>();
+
+        scheduler.schedule("origin-a", INTERVAL, () -> {
+            startTimes.add(clock.get() - start);
+            return completedFuture(null);
+        });
+
+        advanceBy(INTERVAL.multipliedBy(3));
+
+        assertThat(startTimes.size(), is(3));
+        assertThat(startTimes.get(1) - startTimes.get(0), is(INTERVAL.toNanos()));
+        assertThat(startTimes.get(2) - startTimes.get(1), is(INTERVAL.toNanos()));
+    }
+
+    @Test
+    public void readsIntervalEachRound() {
+        scheduler = scheduler(4);
+        long start = clock.get();
+        List<Long> startTimes = new ArrayList<>();
+        AtomicReference<Duration> interval = new AtomicReference<>(INTERVAL);
+
+        scheduler.schedule("origin-a", interval::get, () -> {
+            startTimes.add(clock.get() - start);
+            interval.set(INTERVAL.multipliedBy(2));
+            return completedFuture(null);
+        });
+
+        advanceBy(INTERVAL.multipliedBy(5));
+
+        assertThat(startTimes.size(), is(3));
+        assertThat(startTimes.get(1) - startTimes.get(0), is(INTERVAL.toNanos()));
+        assertThat(startTimes.get(2) - startTimes.get(1), is(INTERVAL.multipliedBy(2).toNanos()));
+    }
+
+    @Test
+    public void capsProbesInFlight() {
+        scheduler = scheduler(2);
+        List<CompletableFuture<Void>> probes = new ArrayList<>();
+
+        for (int i = 0; i < 5; i++) {
+            scheduler.schedule("origin-" + i, INTERVAL, () -> {
+                CompletableFuture<Void> probe = new CompletableFuture<>();
+                probes.add(probe);
+                return probe;
+            });
+        }
+
+        advanceBy(INTERVAL);
+
+        assertThat(probes.size(), is(2));
+        assertThat(scheduler.inFlight(), is(2));
+        assertThat(scheduler.queued(), is(3));
+
+        probes.get(0).complete(null);
+
+        assertThat(probes.size(), is(3));
+        assertThat(scheduler.inFlight(), is(2));
+        assertThat(scheduler.queued(), is(2));
+        assertThat(registry.get("proxy.client.healthCheck.queued").gauge().value(), is(2.0));
+    }
+
+    @Test
+    public void skipsRoundWhilePreviousProbeIsInFlight() {
+        scheduler = scheduler(4);
+        List<CompletableFuture<Void>> probes = new ArrayList<>();
+
+        scheduler.schedule("origin-a", INTERVAL, () -> {
+            CompletableFuture<Void> probe = new CompletableFuture<>();
+            probes.add(probe);
+            return probe;
+        });
+
+        advanceBy(INTERVAL);
+        assertThat(probes.size(), is(1));
+
+        advanceBy(INTERVAL);
+        assertThat(probes.size(), is(1));
+        assertThat(scheduler.inFlight(), is(0));
+        assertThat(registry.get("proxy.client.healthCheck.skipped").counter().count(), is(1.0));
+
+        probes.get(0).complete(null);
+        assertThat(scheduler.inFlight(), is(0));
+
+        advanceBy(INTERVAL);
+        assertThat(probes.size(), is(2));
+        assertThat(scheduler.inFlight(), is(1));
+    }
+
+    @Test
+    public void recordsTimeProbesWaitForASlot() {
+        scheduler = scheduler(1);
+        CompletableFuture<Void> first = new CompletableFuture<>();
+        List<CompletableFuture<Void>> probes = new ArrayList<>(List.of(first, new CompletableFuture<>()));
+
+        // Phases are deterministic: origin-1 falls due at about 245ms, and origin-0 at about 629ms.
+        scheduler.schedule("origin-0", INTERVAL, () -> probes.remove(0));
+        scheduler.schedule("origin-1", INTERVAL, () -> probes.remove(0));
+
+        advanceBy(INTERVAL);
+        assertThat(probes.size(), is(1));
+
+        first.complete(null);
+
+        assertThat(probes.size(), is(0));
+        assertThat(registry.get("proxy.client.healthCheck.lag").timer().count(), is(2L));
+        assertThat(registry.get("proxy.client.healthCheck.lag").timer().max(MILLISECONDS), greaterThan(300.0));
+    }
+
+    @Test
+    public void stopsRunningCancelledProbes() {
+        scheduler = scheduler(4);
+        List<Long> startTimes = new ArrayList<>();
+
+        HealthCheckScheduler.Registration registration = scheduler.schedule("origin-a", INTERVAL, () -> {
+            startTimes.add(clock.get());
+            return completedFuture(null);
+        });
+
+        advanceBy(INTERVAL);
+        assertThat(startTimes.size(), is(1));
+        assertThat(scheduler.scheduled(), is(1));
+
+        registration.cancel();
+        advanceBy(INTERVAL.multipliedBy(2));
+
+        assertThat(startTimes.size(), is(1));
+        assertThat(scheduler.scheduled(), is(0));
+    }
+
+    private HealthCheckScheduler scheduler(int maxInFlight) {
+        return new HealthCheckScheduler(new CentralisedMetrics(new MicrometerRegistry(registry)), maxInFlight, TICK, clock::get);
+    }
+
+    private void advanceBy(Duration duration) {
+        for (long elapsed = 0; elapsed < duration.toNanos(); elapsed += TICK.toNanos()) {
+            clock.addAndGet(TICK.toNanos());
+            scheduler.advance();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.client.healthcheck;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.hotels.styx.api.extension.Origin.newOriginBuilder;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class PassiveHealthSignalsTest {
+    private final AtomicLong clock = new AtomicLong(-1_000L);
+    private final PassiveHealthSignals signals = new PassiveHealthSignals(clock::get);
+
+    @Test
+    public void sharesSignalBetweenOriginAndItsKey() {
+        PassiveHealthSignals.Signal signal = signals.signal(newOriginBuilder("localhost", 8080).applicationId("app").id("app-01").build());
+
+        assertThat(signals.signal("app/app-01"), is(sameInstance(signal)));
+    }
+
+    @Test
+    public void keepsSignalUntilEveryHolderReleasesIt() {
+        PassiveHealthSignals.Signal monitored = signals.signal("app/app-01");
+        PassiveHealthSignals.Signal served = signals.signal("app/app-01");
+
+        signals.release(monitored);
+
+        assertThat(signals.size(), is(1));
+        assertThat(signals.signal("app/app-01"), is(sameInstance(served)));
+
+        signals.release(served);
+        signals.release(served);
+
+        assertThat(signals.size(), is(0));
+        assertThat(signals.signal("app/app-01"), is(not(sameInstance(served))));
+    }
+
+    @Test
+    public void ignoresReleaseOfReplacedSignal() {
+        PassiveHealthSignals.Signal dropped = signals.signal("app/app-01");
+        signals.release(dropped);
+        PassiveHealthSignals.Signal current = signals.signal("app/app-01");
+
+        signals.release(dropped);
+
+        assertThat(signals.signal("app/app-01"), is(sameInstance(current)));
+    }
+
+    @Test
+    public void hasNotServedBeforeAnyTraffic() {
+        PassiveHealthSignals.Signal signal = signals.signal("app/app-01");
+        long mark = signal.mark();
+
+        assertThat(signal.servedSince(mark), is(false));
+        assertThat(signal.failedSince(mark), is(false));
+    }
+
+    @Test
+    public void hasServedAfterSuccessfulTraffic() {
+        PassiveHealthSignals.Signal signal = signals.signal("app/app-01");
+        long mark = signal.mark();
+
+        clock.addAndGet(10);
+        signal.success();
+
+        assertThat(signal.servedSince(mark), is(true));
+        assertThat(signal.servedSince(clock.addAndGet(10)), is(false));
+    }
+
+    @Test
+    public void hasNotServedIfTrafficFailedSinceMark() {
+        PassiveHealthSignals.Signal signal = signals.signal("app/app-01");
+        long mark = signal.mark();
+
+        clock.addAndGet(10);
+        signal.success();
+        clock.addAndGet(10);
+        signal.failure();
+
+        assertThat(signal.servedSince(mark), is(false));
+        assertThat(signal.failedSince(mark), is(true));
+    }
+
+    @Test
+    public void recordsOutcomesByKeyOnHeldSignal() {
+        PassiveHealthSignals.Signal signal = signals.signal("app/app-01");
+        long mark = signal.mark();
+
+        clock.addAndGet(10);
+        signals.recordSuccess("app/app-01");
+
+        assertThat(signal.servedSince(mark), is(true));
+
+        clock.addAndGet(10);
+        signals.recordFailure("app/app-01");
+
+        assertThat(signal.failedSince(mark), is(true));
+    }
+
+    @Test
+    public void doesNotTakeSignalToRecordOutcomesByKey() {
+        signals.recordSuccess("app/app-01");
+        signals.recordFailure("app/app-01");
+
+        assertThat(signals.size(), is(0));
+    }
+}
@@ -15,24 +15,37 @@
  */
 package com.hotels.styx.client.healthcheck.monitors;
 
+import com.hotels.styx.api.MicrometerRegistry;
 import com.hotels.styx.api.extension.Origin;
 import com.hotels.styx.client.HttpClient;
+import com.hotels.styx.client.healthcheck.HealthCheckScheduler;
 import com.hotels.styx.client.healthcheck.OriginHealthCheckFunction;
 import com.hotels.styx.client.healthcheck.OriginHealthStatusMonitor;
+import com.hotels.styx.client.healthcheck.PassiveHealthSignals;
 import com.hotels.styx.client.healthcheck.Schedule;
-import com.hotels.styx.support.DeterministicScheduler;
+import com.hotels.styx.metrics.CentralisedMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static com.hotels.styx.api.extension.Origin.newOriginBuilder;
 import static com.hotels.styx.client.healthcheck.OriginHealthCheckFunction.OriginState.HEALTHY;
 import static com.hotels.styx.client.healthcheck.OriginHealthCheckFunction.OriginState.UNHEALTHY;
 import static com.hotels.styx.common.StyxFutures.await;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.mockito.Matchers.any;
-import static org.mockito.Mockito.atLeast;
-import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.after;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 
 public class ScheduledOriginHealthStatusMonitorTest {
@@ -41,7 +54,13 @@ public class ScheduledOriginHealthStatusMonitorTest {
     static final Origin DEAD_ORIGIN_2 = newOriginBuilder("localhost", 9091).build();
 
     final OriginHealthStatusMonitor.Listener listener = mock(OriginHealthStatusMonitor.Listener.class);
-    final DeterministicScheduler scheduler = new DeterministicScheduler();
+    final HealthCheckScheduler scheduler = new HealthCheckScheduler(
+            new CentralisedMetrics(new MicrometerRegistry(new SimpleMeterRegistry())), 4, Duration.ofMillis(1));
+
+    @AfterEach
+    public void closeScheduler() {
+        scheduler.close();
+    }
 
     @Test
     public void notifiesListenersWhenAnOriginIsUnreachable() {
@@ -50,7 +69,6 @@ public class ScheduledOriginHealthStatusMonitorTest {
         monitor.addOriginStatusListener(this.listener);
         await(monitor.start());
 
-        scheduler.runNextPendingCommand();
         verifyOriginIsDead(DEAD_ORIGIN);
     }
 
@@ -61,8 +79,50 @@ public class ScheduledOriginHealthStatusMonitorTest {
         monitor.addOriginStatusListener(this.listener);
 
         await(monitor.start());
-        scheduler.runNextPendingCommand();
-        verify(this.listener, atLeast(2)).originUnhealthy(anyOrigin());
+        verify(this.listener, timeout(1000).atLeast(2)).originUnhealthy(anyOrigin());
+    }
+
+    @Test
+    public void stopsCheckingOriginsThatAreNoLongerMonitored() {
+        ScheduledOriginHealthStatusMonitor monitor = makeScheduledOriginHealthMonitor(new StubOriginStateOriginHealthCheckFunction(LIVE_ORIGIN));
+        monitor.monitor(DEAD_ORIGIN);
+        await(monitor.start());
+        monitor.stopMonitoring(Set.of(DEAD_ORIGIN));
+        monitor.addOriginStatusListener(this.listener);
+
+        verify(this.listener, after(300).never()).originUnhealthy(DEAD_ORIGIN);
+    }
+
+    @Test
+    public void tightensIntervalForFailingOriginsAndBacksOffForHealthyOnes() {
+        ScheduledOriginHealthStatusMonitor monitor = makeAdaptiveOriginHealthMonitor(new StubOriginStateOriginHealthCheckFunction(LIVE_ORIGIN), new PassiveHealthSignals());
+        await(monitor.start());
+
+        monitor.monitor(DEAD_ORIGIN);
+        for (int i = 0; i < 3; i++) {
+            monitor.monitor(LIVE_ORIGIN);
+        }
+
+        assertThat(monitor.currentInterval(DEAD_ORIGIN), is(Duration.ofMillis(50)));
+        assertThat(monitor.currentInterval(LIVE_ORIGIN), greaterThan(Duration.ofMillis(100)));
+    }
+
+    @Test
+    public void skipsProbesWhileOriginServesLiveTraffic() throws InterruptedException {
+        StubOriginStateOriginHealthCheckFunction healthChecker = new StubOriginStateOriginHealthCheckFunction(LIVE_ORIGIN);
+        PassiveHealthSignals signals = new PassiveHealthSignals();
+        ScheduledOriginHealthStatusMonitor monitor = makeAdaptiveOriginHealthMonitor(healthChecker, signals);
+        monitor.monitor(LIVE_ORIGIN);
+        monitor.addOriginStatusListener(this.listener);
+        await(monitor.start());
+
+        for (int i = 0; i < 50; i++) {
+            signals.signal(LIVE_ORIGIN).success();
+            Thread.sleep(10);
+        }
+
+        verifyOriginIsLive(LIVE_ORIGIN);
+        assertThat(healthChecker.checks.get(), lessThanOrEqualTo(1));
     }
 
     // Test disabled because it fails due to a race condition that we currently don't understand
@@ -80,25 +140,30 @@ public class ScheduledOriginHealthStatusMonitorTest {
 
         healthChecker.raiseDeadOrigins();
 
-        scheduler.runNextPendingCommand();
         verifyOriginIsLive(DEAD_ORIGIN);
     }
 
     private void verifyOriginIsLive(Origin origin) {
-        verify(this.listener, atLeastOnce()).originHealthy(origin);
+        verify(this.listener, timeout(1000).atLeastOnce()).originHealthy(origin);
     }
 
     private void verifyOriginIsDead(Origin origin) {
-        verify(this.listener, atLeastOnce()).originUnhealthy(origin);
+        verify(this.listener, timeout(1000).atLeastOnce()).originUnhealthy(origin);
     }
 
     private ScheduledOriginHealthStatusMonitor makeScheduledOriginHealthMonitor(OriginHealthCheckFunction healthChecker) {
         return new ScheduledOriginHealthStatusMonitor(this.scheduler, healthChecker, new Schedule(100, MILLISECONDS), mock(HttpClient.class));
     }
 
+    private ScheduledOriginHealthStatusMonitor makeAdaptiveOriginHealthMonitor(OriginHealthCheckFunction healthChecker, PassiveHealthSignals signals) {
+        return new ScheduledOriginHealthStatusMonitor(this.scheduler, healthChecker, new Schedule(100, MILLISECONDS),
+                Duration.ofMillis(400), signals, mock(HttpClient.class));
+    }
+
     private static class StubOriginStateOriginHealthCheckFunction implements OriginHealthCheckFunction {
 
         private final Origin liveOrigin;
+        private final AtomicInteger checks = new AtomicInteger();
         private volatile boolean treatAllOriginsAsLive = false;
 
         StubOriginStateOriginHealthCheckFunction(Origin liveOrigin) {
@@ -107,6 +172,7 @@ public class ScheduledOriginHealthStatusMonitorTest {
 
         @Override
         public void check(HttpClient client, Origin origin, OriginHealthCheckFunction.Callback responseCallback) {
+            checks.incrementAndGet();
             responseCallback.originStateResponse(this.treatAllOriginsAsLive || origin.equals(this.liveOrigin) ? HEALTHY : UNHEALTHY);
         }
 
@@ -51,6 +51,8 @@ import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
 import static io.netty.handler.codec.http.LastHttpContent.EMPTY_LAST_CONTENT;
 import static io.netty.handler.timeout.IdleStateEvent.ALL_IDLE_STATE_EVENT;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.instanceOf;
@@ -134,7 +136,7 @@ public class NettyToStyxResponsePropagatorTest {
 
     @Test
     public void handlesIdleStateEvent() throws Exception {
-        EmbeddedChannel channel = new EmbeddedChannel(new NettyToStyxResponsePropagator(responseSubscriber, SOME_ORIGIN));
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyToStyxResponsePropagator(responseSubscriber, SOME_ORIGIN, 0, MILLISECONDS, null));
         channel.writeInbound(httpResponseHeaders);
 
         LiveHttpResponse response = verifyNextCalledOnResponseSubscriber();
@@ -303,6 +305,73 @@ public class NettyToStyxResponsePropagatorTest {
         assertThat(channel.isActive(), is(false));
     }
 
+    @Test
+    public void ignoresIdleStateEventRaisedBeforeTimeoutElapsesForBoundExchange() {
+        NettyToStyxResponsePropagator handler = new NettyToStyxResponsePropagator(responseSubscriber, SOME_ORIGIN);
+        EmbeddedChannel channel = new EmbeddedChannel(handler);
+
+        channel.pipeline().fireUserEventTriggered(ALL_IDLE_STATE_EVENT);
+
+        verify(responseSubscriber, never()).error(any());
+        assertThat(channel.isOpen(), is(true));
+    }
+
+    @Test
+    public void deliversResponsesToTheSinkOfEachBoundExchange() {
+        FluxSink<LiveHttpResponse> secondSubscriber = mock(FluxSink.class);
+        NettyToStyxResponsePropagator handler = new NettyToStyxResponsePropagator(SOME_ORIGIN, 5, SECONDS);
+        EmbeddedChannel channel = new EmbeddedChannel(handler);
+
+        Object first = handler.bind(responseSubscriber, null);
+        channel.writeInbound(new DefaultHttpResponse(HTTP_1_1, OK));
+        channel.writeInbound(EMPTY_LAST_CONTENT);
+        handler.unbind(first);
+
+        handler.bind(secondSubscriber, null);
+        channel.writeInbound(new DefaultHttpResponse(HTTP_1_1, OK));
+
+        verify(responseSubscriber, times(1)).next(any(LiveHttpResponse.class));
+        verify(secondSubscriber, times(1)).next(any(LiveHttpResponse.class));
+        assertThat(channel.isOpen(), is(true));
+    }
+
+    @Test
+    public void unbindingStaleExchangeKeepsCurrentOneBound() {
+        FluxSink<LiveHttpResponse> secondSubscriber = mock(FluxSink.class);
+        NettyToStyxResponsePropagator handler = new NettyToStyxResponsePropagator(SOME_ORIGIN, 5, SECONDS);
+        EmbeddedChannel channel = new EmbeddedChannel(handler);
+
+        Object stale = handler.bind(responseSubscriber, null);
+        handler.bind(secondSubscriber, null);
+        handler.unbind(stale);
+
+        channel.writeInbound(new DefaultHttpResponse(HTTP_1_1, OK));
+
+        verify(secondSubscriber).next(any(LiveHttpResponse.class));
+        verify(responseSubscriber, never()).next(any());
+    }
+
+    @Test
+    public void closesConnectionWhenResponseArrivesWithoutBoundExchange() {
+        NettyToStyxResponsePropagator handler = new NettyToStyxResponsePropagator(SOME_ORIGIN, 5, SECONDS);
+        EmbeddedChannel channel = new EmbeddedChannel(handler);
+
+        channel.writeInbound(new DefaultHttpResponse(HTTP_1_1, OK));
+
+        assertThat(channel.isOpen(), is(false));
+    }
+
+    @Test
+    public void ignoresEventsWithoutBoundExchange() {
+        NettyToStyxResponsePropagator handler = new NettyToStyxResponsePropagator(SOME_ORIGIN, 5, SECONDS);
+        EmbeddedChannel channel = new EmbeddedChannel(handler);
+
+        channel.pipeline().fireUserEventTriggered(ALL_IDLE_STATE_EVENT);
+        channel.writeInbound(EMPTY_LAST_CONTENT);
+
+        assertThat(channel.isOpen(), is(true));
+    }
+
     private static io.netty.handler.codec.http.HttpResponse newCorruptedResponse() {
         io.netty.handler.codec.http.HttpResponse corruptedResponse = new DefaultHttpResponse(HTTP_1_1, OK);
         corruptedResponse.setDecoderResult(DecoderResult.failure(new RuntimeException("decoding failed")));
@@ -54,6 +54,7 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.atMostOnce;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -239,6 +240,31 @@ public class RequestsToOriginMetricsCollectorTest {
         verify(stopper).stop();
     }
 
+    @Test
+    public void latencyIsRecordedOnceForEachRequestOnReusedConnection() throws Exception {
+        TimerMetric timer = mock(TimerMetric.class);
+        when(originMetrics.requestLatencyTimer()).thenReturn(timer);
+        Stopper first = mock(Stopper.class);
+        Stopper second = mock(Stopper.class);
+        when(timer.startTiming()).thenReturn(first, second);
+
+        RequestsToOriginMetricsCollector handler = new RequestsToOriginMetricsCollector(originMetrics);
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpClientCodec(), handler);
+
+        channel.writeOutbound(httpRequest(GET, "http://www.hotels.com/foo/bar/request"));
+        assertThat(grabSentBytes(channel).isPresent(), is(true));
+        channel.writeInbound(httpResponseAsBuf(OK, STOCK_BODY));
+
+        handler.exceptionCaught(ctx, new RuntimeException("after first response"));
+
+        channel.writeOutbound(httpRequest(GET, "http://www.hotels.com/foo/bar/request"));
+        assertThat(grabSentBytes(channel).isPresent(), is(true));
+        channel.writeInbound(httpResponseAsBuf(OK, STOCK_BODY));
+
+        verify(first, times(1)).stop();
+        verify(second, times(1)).stop();
+    }
+
     @Test
     public void timeToFirstByteHistogramUpdatedWhenFirstContentChunkReceived() {
         TimerMetric timer = mock(TimerMetric.class);
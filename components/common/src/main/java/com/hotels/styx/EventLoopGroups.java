@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -18,6 +18,7 @@ package com.hotels.styx;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.epoll.EpollEventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.incubator.channel.uring.IOUringEventLoopGroup;
 
 import static com.hotels.styx.javaconvenience.UtilKt.threadFactoryWithIncrementingName;
 
@@ -32,4 +33,8 @@ final class EventLoopGroups {
     public static EventLoopGroup epollEventLoopGroup(int threadsCount, String threadsNameFormat) {
         return new EpollEventLoopGroup(threadsCount, threadFactoryWithIncrementingName(threadsNameFormat));
     }
+
+    public static EventLoopGroup ioUringEventLoopGroup(int threadsCount, String threadsNameFormat) {
+        return new IOUringEventLoopGroup(threadsCount, threadFactoryWithIncrementingName(threadsNameFormat));
+    }
 }
@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -17,16 +17,18 @@ package com.hotels.styx;
 
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.ServerChannel;
-import io.netty.channel.epoll.Epoll;
 import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.epoll.EpollSocketChannel;
 import io.netty.channel.socket.SocketChannel;
+import io.netty.incubator.channel.uring.IOUringServerSocketChannel;
+import io.netty.incubator.channel.uring.IOUringSocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static com.hotels.styx.EventLoopGroups.epollEventLoopGroup;
+import static com.hotels.styx.EventLoopGroups.ioUringEventLoopGroup;
 import static com.hotels.styx.EventLoopGroups.nioEventLoopGroup;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
@@ -36,36 +38,69 @@ import static java.util.concurrent.TimeUnit.SECONDS;
 public class NettyExecutor {
     private static final Logger LOG = LoggerFactory.getLogger(NettyExecutor.class);
 
+    private final NettyTransport transport;
     private final Class<? extends ServerChannel> serverEventLoopClass;
     private final Class<? extends SocketChannel> clientEventLoopClass;
     private final EventLoopGroup eventLoopGroup;
 
     /**
-     * Constructs an netty/io event executor.
+     * Constructs an netty/io event executor, with the default transport.
      *
      * @param name  thread group name.
      * @param count thread count.
      * @return
+     * @see NettyTransport#defaultTransport()
      */
     public static NettyExecutor create(String name, int count) {
-        if (Epoll.isAvailable()) {
-            LOG.debug("Epoll is available. Using the native socket transport.");
-            return new NettyExecutor(
-                    epollEventLoopGroup(count, name + "-%d-Thread"),
-                    EpollServerSocketChannel.class,
-                    EpollSocketChannel.class);
-        } else {
-            LOG.debug("Epoll not available. Using nio socket transport.");
-            return new NettyExecutor(
-                    nioEventLoopGroup(count, name + "-%d-Thread"),
-                    NioServerSocketChannel.class,
-                    NioSocketChannel.class);
+        return create(name, count, NettyTransport.defaultTransport());
+    }
+
+    /**
+     * Constructs an netty/io event executor. If the requested transport is not available,
+     * falls back to the next best one.
+     *
+     * @param name      thread group name.
+     * @param count     thread count.
+     * @param transport requested socket transport.
+     * @return
+     */
+    public static NettyExecutor create(String name, int count, NettyTransport transport) {
+        NettyTransport resolved = transport.resolve();
+        if (resolved != transport && transport != NettyTransport.AUTO) {
+            LOG.warn("Transport {} is not available. Using {} instead. executor={}, cause={}",
+                    transport.configName(), resolved.configName(), name, String.valueOf(transport.unavailabilityCause()));
+        }
+
+        switch (resolved) {
+            case IO_URING:
+                LOG.debug("Using the io_uring socket transport.");
+                return new NettyExecutor(
+                        resolved,
+                        ioUringEventLoopGroup(count, name + "-%d-Thread"),
+                        IOUringServerSocketChannel.class,
+                        IOUringSocketChannel.class);
+            case EPOLL:
+                LOG.debug("Epoll is available. Using the native socket transport.");
+                return new NettyExecutor(
+                        resolved,
+                        epollEventLoopGroup(count, name + "-%d-Thread"),
+                        EpollServerSocketChannel.class,
+                        EpollSocketChannel.class);
+            default:
+                LOG.debug("Epoll not available. Using nio socket transport.");
+                return new NettyExecutor(
+                        resolved,
+                        nioEventLoopGroup(count, name + "-%d-Thread"),
+                        NioServerSocketChannel.class,
+                        NioSocketChannel.class);
         }
     }
 
-    private NettyExecutor(EventLoopGroup eventLoopGroup,
+    private NettyExecutor(NettyTransport transport,
+                          EventLoopGroup eventLoopGroup,
                           Class<? extends ServerChannel> serverEventLoopClass,
                           Class<? extends SocketChannel> clientEventLoopClass) {
+        this.transport = transport;
         this.serverEventLoopClass = serverEventLoopClass;
         this.clientEventLoopClass = clientEventLoopClass;
         this.eventLoopGroup = eventLoopGroup;
@@ -80,6 +115,15 @@ public class NettyExecutor {
         }
     }
 
+    /**
+     * The socket transport in use. This is never {@link NettyTransport#AUTO}.
+     *
+     * @return transport
+     */
+    public NettyTransport transport() {
+        return transport;
+    }
+
     public Class<? extends ServerChannel> serverEventLoopClass() {
         return serverEventLoopClass;
     }
@@ -0,0 +1,129 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx;
+
+import io.netty.channel.epoll.Epoll;
+import io.netty.incubator.channel.uring.IOUring;
+
+import java.util.stream.Stream;
+
+import static java.lang.String.format;
+import static java.util.stream.Collectors.joining;
+
+/**
+ * The socket transports a {@link NettyExecutor} can use.
+ * <p>
+ * The native transports are only available on Linux, with the native libraries on the class path.
+ * io_uring also needs a kernel that supports it (5.9 or later). When the requested transport is not
+ * available, the next best one is used instead: io_uring falls back to epoll, and epoll to NIO.
+ */
+public enum NettyTransport {
+    /**
+     * Epoll where available, NIO otherwise.
+     */
+    AUTO("auto"),
+    IO_URING("io_uring"),
+    EPOLL("epoll"),
+    NIO("nio");
+
+    /**
+     * System property that sets the transport used when none is configured.
+     */
+    public static final String TRANSPORT_PROPERTY = "styx.transport";
+
+    private final String configName;
+
+    NettyTransport(String configName) {
+        this.configName = configName;
+    }
+
+    /**
+     * The transport used when none is configured. This is {@link #AUTO}, unless overridden
+     * with the {@value #TRANSPORT_PROPERTY} system property.
+     *
+     * @return default transport
+     */
+    public static NettyTransport defaultTransport() {
+        return fromName(System.getProperty(TRANSPORT_PROPERTY, AUTO.configName));
+    }
+
+    /**
+     * Looks up a transport by its configuration name: "auto", "io_uring", "epoll" or "nio".
+     *
+     * @param name configuration name, case insensitive
+     * @return transport
+     * @throws IllegalArgumentException if there is no such transport
+     */
+    public static NettyTransport fromName(String name) {
+        return Stream.of(values())
+                .filter(transport -> transport.configName.equalsIgnoreCase(name.trim()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(format("Unknown transport '%s'. Expected one of: %s", name,
+                        Stream.of(values()).map(NettyTransport::configName).collect(joining(", ")))));
+    }
+
+    /**
+     * The name of this transport in configuration.
+     *
+     * @return configuration name
+     */
+    public String configName() {
+        return configName;
+    }
+
+    /**
+     * Returns the transport that will actually be used when this one is requested, taking into account
+     * what is available in this environment. The result is never {@link #AUTO}.
+     *
+     * @return an available transport
+     */
+    public NettyTransport resolve() {
+        switch (this) {
+            case IO_URING:
+                return IOUring.isAvailable() ? IO_URING : EPOLL.resolve();
+            case EPOLL:
+            case AUTO:
+                return Epoll.isAvailable() ? EPOLL : NIO;
+            default:
+                return NIO;
+        }
+    }
+
+    /**
+     * Returns true if server sockets of this transport can share a port with {@code SO_REUSEPORT}.
+     *
+     * @return true if {@code SO_REUSEPORT} is supported
+     */
+    public boolean supportsReusePort() {
+        return this == IO_URING || this == EPOLL;
+    }
+
+    /**
+     * Explains why a native transport is not available, or returns null if it is.
+     *
+     * @return cause of unavailability, or null
+     */
+    Throwable unavailabilityCause() {
+        switch (this) {
+            case IO_URING:
+                return IOUring.unavailabilityCause();
+            case EPOLL:
+                return Epoll.unavailabilityCause();
+            default:
+                return null;
+        }
+    }
+}
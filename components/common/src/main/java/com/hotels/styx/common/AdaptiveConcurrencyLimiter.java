@@ -0,0 +1,241 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.common;
+
+import com.hotels.styx.api.LiveHttpResponse;
+import com.hotels.styx.api.ResponseEventListener;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import static com.hotels.styx.api.HttpHeaderNames.CONTENT_LENGTH;
+import static com.hotels.styx.api.HttpResponseStatus.statusWithCode;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.sqrt;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Limits the number of requests in flight, adapting the limit to the latency observed.
+ * <p>
+ * The limit follows the gradient between the long term latency and the latency of the last few requests.
+ * While latency holds steady, the limit grows by about its square root per window, so that a small queue
+ * builds up. When latency rises, the limit shrinks in proportion, down to half per window. Samples are
+ * grouped in windows of at least {@value #MIN_WINDOW_SAMPLES} samples and 100 milliseconds, and the limit
+ * is smoothed between windows. Windows in which the load was well below the limit say nothing about
+ * the limit, and leave it unchanged.
+ * <p>
+ * Requests beyond the limit are rejected at once, with the configured status.
+ * <p>
+ * Latency is measured up to the response headers. A request stays in flight until its response
+ * body has been consumed, or the exchange has failed or been cancelled.
+ */
+public final class AdaptiveConcurrencyLimiter {
+    static final int MIN_WINDOW_SAMPLES = 10;
+    static final long MIN_WINDOW_NANOS = MILLISECONDS.toNanos(100);
+
+    private static final double SMOOTHING = 0.2;
+    private static final double TOLERANCE = 1.5;
+    private static final double LONG_RTT_WEIGHT = 2.0 / (600 + 1);
+
+    private final ConcurrencyLimitConfig config;
+    private final Runnable onShed;
+    private final LongSupplier nanoClock;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder shed = new LongAdder();
+
+    private volatile int limit;
+
+    // Guarded by `this`:
+    private double estimatedLimit;
+    private double longRtt;
+    private long windowStart;
+    private long windowRttSum;
+    private int windowSamples;
+    private int windowMaxInFlight;
+
+    /**
+     * Constructs an instance.
+     *
+     * @param config limiter settings
+     * @param onShed called for each request that is shed, for metrics
+     */
+    public AdaptiveConcurrencyLimiter(ConcurrencyLimitConfig config, Runnable onShed) {
+        this(config, onShed, System::nanoTime);
+    }
+
+    AdaptiveConcurrencyLimiter(ConcurrencyLimitConfig config, Runnable onShed, LongSupplier nanoClock) {
+        this.config = requireNonNull(config);
+        this.onShed = requireNonNull(onShed);
+        this.nanoClock = requireNonNull(nanoClock);
+        this.estimatedLimit = config.initialLimit();
+        this.limit = config.initialLimit();
+        this.windowStart = nanoClock.getAsLong();
+    }
+
+    /**
+     * Performs an exchange if the limit allows, or responds with the reject status otherwise.
+     * The exchange is started, and the limit checked, on subscription.
+     *
+     * @param exchange starts the exchange
+     * @return response publisher
+     */
+    public Publisher<LiveHttpResponse> execute(Supplier<? extends Publisher<LiveHttpResponse>> exchange) {
+        return Flux.defer(() -> {
+            Permit permit = tryAcquire();
+            if (permit == null) {
+                return Flux.just(LiveHttpResponse.response(statusWithCode(config.rejectStatus()))
+                        .header(CONTENT_LENGTH, 0)
+                        .build());
+            }
+
+            return ResponseEventListener.from(Flux.defer(exchange))
+                    .whenHeadersComplete(permit::responded)
+                    .whenFinished(permit::release)
+                    .apply();
+        });
+    }
+
+    /**
+     * Takes a place for a request, if the limit allows.
+     *
+     * @return a permit that must be released when the request finishes, or null if the request must be shed
+     */
+    Permit tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                shed.increment();
+                onShed.run();
+                return null;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return new Permit(nanoClock.getAsLong(), current + 1);
+            }
+        }
+    }
+
+    /**
+     * The current limit.
+     *
+     * @return limit
+     */
+    public int limit() {
+        return limit;
+    }
+
+    /**
+     * The number of requests in flight.
+     *
+     * @return requests in flight
+     */
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * The number of requests shed since this limiter was created.
+     *
+     * @return requests shed
+     */
+    public long shedCount() {
+        return shed.sum();
+    }
+
+    public ConcurrencyLimitConfig config() {
+        return config;
+    }
+
+    private synchronized void sample(long rttNanos, int inFlightAtStart) {
+        windowRttSum += rttNanos;
+        windowSamples++;
+        windowMaxInFlight = max(windowMaxInFlight, inFlightAtStart);
+
+        long now = nanoClock.getAsLong();
+        if (windowSamples < MIN_WINDOW_SAMPLES || now - windowStart < MIN_WINDOW_NANOS) {
+            return;
+        }
+
+        double shortRtt = max(1, windowRttSum / (double) windowSamples);
+        int maxInFlight = windowMaxInFlight;
+
+        windowStart = now;
+        windowRttSum = 0;
+        windowSamples = 0;
+        windowMaxInFlight = 0;
+
+        update(shortRtt, maxInFlight);
+    }
+
+    private void update(double shortRtt, int maxInFlight) {
+        longRtt = longRtt == 0 ? shortRtt : longRtt * (1 - LONG_RTT_WEIGHT) + shortRtt * LONG_RTT_WEIGHT;
+
+        // Let the long term latency catch up quickly once an episode of high latency is over:
+        if (longRtt / shortRtt > 2) {
+            longRtt *= 0.95;
+        }
+
+        if (maxInFlight < estimatedLimit / 2) {
+            return;
+        }
+
+        double gradient = max(0.5, min(1.0, TOLERANCE * longRtt / shortRtt));
+        double newLimit = estimatedLimit * gradient + sqrt(estimatedLimit);
+
+        estimatedLimit = estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        estimatedLimit = max(config.minLimit(), min(config.maxLimit(), estimatedLimit));
+        limit = (int) estimatedLimit;
+    }
+
+    /**
+     * A place taken by a request.
+     */
+    final class Permit {
+        private final long startTime;
+        private final int inFlightAtStart;
+        private final AtomicBoolean responded = new AtomicBoolean();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(long startTime, int inFlightAtStart) {
+            this.startTime = startTime;
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        /**
+         * Records the latency of the request, up to now. Only the first call counts.
+         */
+        void responded() {
+            if (responded.compareAndSet(false, true)) {
+                sample(nanoClock.getAsLong() - startTime, inFlightAtStart);
+            }
+        }
+
+        /**
+         * Gives the place back. Only the first call counts.
+         */
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+}
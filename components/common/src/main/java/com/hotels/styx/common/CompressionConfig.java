@@ -0,0 +1,228 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.common;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.hotels.styx.config.schema.Schema;
+
+import java.util.List;
+import java.util.Objects;
+
+import static com.hotels.styx.common.Preconditions.checkArgument;
+import static com.hotels.styx.config.schema.SchemaDsl.integer;
+import static com.hotels.styx.config.schema.SchemaDsl.list;
+import static com.hotels.styx.config.schema.SchemaDsl.object;
+import static com.hotels.styx.config.schema.SchemaDsl.optional;
+import static com.hotels.styx.config.schema.SchemaDsl.string;
+import static java.util.Locale.ROOT;
+import static java.util.stream.Collectors.toUnmodifiableList;
+
+/**
+ * Settings for compressing responses.
+ */
+public final class CompressionConfig {
+    public static final List<String> SUPPORTED_ENCODINGS = List.of("br", "zstd", "gzip", "deflate");
+    public static final List<String> DEFAULT_ENCODINGS = List.of("gzip", "deflate");
+    public static final List<String> DEFAULT_CONTENT_TYPES = List.of(
+            "text/plain",
+            "text/html",
+            "text/xml",
+            "text/css",
+            "text/json",
+            "application/xml",
+            "application/xhtml+xml",
+            "application/rss+xml",
+            "application/javascript",
+            "application/x-javascript",
+            "application/json");
+    public static final int DEFAULT_GZIP_LEVEL = 6;
+    public static final int DEFAULT_BROTLI_LEVEL = 4;
+    public static final int DEFAULT_ZSTD_LEVEL = 3;
+
+    public static final Schema.FieldType SCHEMA = object(
+            optional("encodings", list(string())),
+            optional("contentTypes", list(string())),
+            optional("minSizeBytes", integer()),
+            optional("gzipLevel", integer()),
+            optional("brotliLevel", integer()),
+            optional("zstdLevel", integer()),
+            optional("precompressedCacheSizeBytes", integer())
+    );
+
+    private final List<String> encodings;
+    private final List<String> contentTypes;
+    private final int minSizeBytes;
+    private final int gzipLevel;
+    private final int brotliLevel;
+    private final int zstdLevel;
+    private final int precompressedCacheSizeBytes;
+
+    // CHECKSTYLE:OFF
+    @JsonCreator
+    public CompressionConfig(@JsonProperty("encodings") List<String> encodings,
+                             @JsonProperty("contentTypes") List<String> contentTypes,
+                             @JsonProperty("minSizeBytes") Integer minSizeBytes,
+                             @JsonProperty("gzipLevel") Integer gzipLevel,
+                             @JsonProperty("brotliLevel") Integer brotliLevel,
+                             @JsonProperty("zstdLevel") Integer zstdLevel,
+                             @JsonProperty("precompressedCacheSizeBytes") Integer precompressedCacheSizeBytes) {
+        this.encodings = lowerCase(encodings != null ? encodings : DEFAULT_ENCODINGS);
+        this.contentTypes = lowerCase(contentTypes != null ? contentTypes : DEFAULT_CONTENT_TYPES);
+        this.minSizeBytes = minSizeBytes != null ? minSizeBytes : 0;
+        this.gzipLevel = gzipLevel != null ? gzipLevel : DEFAULT_GZIP_LEVEL;
+        this.brotliLevel = brotliLevel != null ? brotliLevel : DEFAULT_BROTLI_LEVEL;
+        this.zstdLevel = zstdLevel != null ? zstdLevel : DEFAULT_ZSTD_LEVEL;
+        this.precompressedCacheSizeBytes = precompressedCacheSizeBytes != null ? precompressedCacheSizeBytes : 0;
+
+        for (String encoding : this.encodings) {
+            checkArgument(SUPPORTED_ENCODINGS.contains(encoding), "encoding '%s' is not one of %s", encoding, SUPPORTED_ENCODINGS);
+        }
+        checkArgument(this.minSizeBytes >= 0, "minSizeBytes must not be negative, but was %s", this.minSizeBytes);
+        checkArgument(this.gzipLevel >= 1 && this.gzipLevel <= 9, "gzipLevel must be between 1 and 9, but was %s", this.gzipLevel);
+        checkArgument(this.brotliLevel >= 0 && this.brotliLevel <= 11, "brotliLevel must be between 0 and 11, but was %s", this.brotliLevel);
+        checkArgument(this.zstdLevel >= 1 && this.zstdLevel <= 22, "zstdLevel must be between 1 and 22, but was %s", this.zstdLevel);
+        checkArgument(this.precompressedCacheSizeBytes >= 0, "precompressedCacheSizeBytes must not be negative, but was %s", this.precompressedCacheSizeBytes);
+    }
+    // CHECKSTYLE:ON
+
+    /**
+     * Settings with gzip and deflate offered, no minimum size, and no cache of precompressed variants.
+     *
+     * @return default settings
+     */
+    public static CompressionConfig defaults() {
+        return new CompressionConfig(null, null, null, null, null, null, null);
+    }
+
+    /**
+     * The content codings offered to clients, in order of preference. When a client accepts several of them
+     * with the same q-value, the one listed first is used. Only gzip and deflate are offered by default, and
+     * Brotli and zstd must be listed to be offered. They are left out when their native libraries cannot be
+     * loaded on this platform.
+     *
+     * @return content coding names
+     */
+    public List<String> encodings() {
+        return encodings;
+    }
+
+    /**
+     * The media types that are compressed. Parameters such as {@code charset} are ignored when matching.
+     *
+     * @return media types
+     */
+    public List<String> contentTypes() {
+        return contentTypes;
+    }
+
+    /**
+     * Responses with a smaller {@code Content-Length} are sent uncompressed. Responses of unknown length
+     * are always compressed.
+     *
+     * @return size in bytes
+     */
+    public int minSizeBytes() {
+        return minSizeBytes;
+    }
+
+    /**
+     * The compression level for gzip and deflate, from 1 to 9.
+     *
+     * @return compression level
+     */
+    public int gzipLevel() {
+        return gzipLevel;
+    }
+
+    /**
+     * The Brotli quality, from 0 to 11.
+     *
+     * @return compression level
+     */
+    public int brotliLevel() {
+        return brotliLevel;
+    }
+
+    /**
+     * The zstd compression level, from 1 to 22.
+     *
+     * @return compression level
+     */
+    public int zstdLevel() {
+        return zstdLevel;
+    }
+
+    /**
+     * The memory given, on each connector, to compressed bodies kept for reuse. Zero disables the cache.
+     *
+     * @return size in bytes
+     */
+    public int precompressedCacheSizeBytes() {
+        return precompressedCacheSizeBytes;
+    }
+
+    private static List<String> lowerCase(List<String> values) {
+        return values.stream()
+                .map(value -> value.trim().toLowerCase(ROOT))
+                .collect(toUnmodifiableList());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        CompressionConfig that = (CompressionConfig) o;
+        return minSizeBytes == that.minSizeBytes
+                && gzipLevel == that.gzipLevel
+                && brotliLevel == that.brotliLevel
+                && zstdLevel == that.zstdLevel
+                && precompressedCacheSizeBytes == that.precompressedCacheSizeBytes
+                && encodings.equals(that.encodings)
+                && contentTypes.equals(that.contentTypes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(encodings, contentTypes, minSizeBytes, gzipLevel, brotliLevel, zstdLevel, precompressedCacheSizeBytes);
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder(256)
+                .append(this.getClass().getSimpleName())
+                .append("{encodings=")
+                .append(encodings)
+                .append(", contentTypes=")
+                .append(contentTypes)
+                .append(", minSizeBytes=")
+                .append(minSizeBytes)
+                .append(", gzipLevel=")
+                .append(gzipLevel)
+                .append(", brotliLevel=")
+                .append(brotliLevel)
+                .append(", zstdLevel=")
+                .append(zstdLevel)
+                .append(", precompressedCacheSizeBytes=")
+                .append(precompressedCacheSizeBytes)
+                .append('}')
+                .toString();
+    }
+}
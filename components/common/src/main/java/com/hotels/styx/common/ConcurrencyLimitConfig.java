@@ -0,0 +1,149 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.common;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.hotels.styx.config.schema.Schema;
+
+import java.util.Objects;
+
+import static com.hotels.styx.common.Preconditions.checkArgument;
+import static com.hotels.styx.config.schema.SchemaDsl.bool;
+import static com.hotels.styx.config.schema.SchemaDsl.integer;
+import static com.hotels.styx.config.schema.SchemaDsl.object;
+import static com.hotels.styx.config.schema.SchemaDsl.optional;
+
+/**
+ * Settings for an {@link AdaptiveConcurrencyLimiter}.
+ */
+public final class ConcurrencyLimitConfig {
+    public static final int DEFAULT_INITIAL_LIMIT = 100;
+    public static final int DEFAULT_MIN_LIMIT = 10;
+    public static final int DEFAULT_MAX_LIMIT = 1000;
+    public static final int DEFAULT_REJECT_STATUS = 503;
+
+    public static final Schema.FieldType SCHEMA = object(
+            optional("enabled", bool()),
+            optional("initialLimit", integer()),
+            optional("minLimit", integer()),
+            optional("maxLimit", integer()),
+            optional("rejectStatus", integer())
+    );
+
+    private final boolean enabled;
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int rejectStatus;
+
+    @JsonCreator
+    public ConcurrencyLimitConfig(@JsonProperty("enabled") Boolean enabled,
+                                  @JsonProperty("initialLimit") Integer initialLimit,
+                                  @JsonProperty("minLimit") Integer minLimit,
+                                  @JsonProperty("maxLimit") Integer maxLimit,
+                                  @JsonProperty("rejectStatus") Integer rejectStatus) {
+        this.enabled = enabled != null && enabled;
+        this.minLimit = minLimit != null ? minLimit : DEFAULT_MIN_LIMIT;
+        this.maxLimit = maxLimit != null ? maxLimit : DEFAULT_MAX_LIMIT;
+        this.initialLimit = initialLimit != null ? initialLimit : Math.min(Math.max(DEFAULT_INITIAL_LIMIT, this.minLimit), this.maxLimit);
+        this.rejectStatus = rejectStatus != null ? rejectStatus : DEFAULT_REJECT_STATUS;
+
+        checkArgument(this.minLimit > 0, "minLimit must be positive, but was %s", this.minLimit);
+        checkArgument(this.minLimit <= this.maxLimit, "minLimit (%s) must not exceed maxLimit (%s)", this.minLimit, this.maxLimit);
+        checkArgument(this.initialLimit >= this.minLimit && this.initialLimit <= this.maxLimit,
+                "initialLimit (%s) must be between minLimit (%s) and maxLimit (%s)", this.initialLimit, this.minLimit, this.maxLimit);
+        checkArgument(this.rejectStatus >= 400 && this.rejectStatus < 600, "rejectStatus must be a 4xx or 5xx status, but was %s", this.rejectStatus);
+    }
+
+    /**
+     * Settings with concurrency limiting disabled.
+     *
+     * @return disabled settings
+     */
+    public static ConcurrencyLimitConfig disabled() {
+        return new ConcurrencyLimitConfig(false, null, null, null, null);
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * The limit used until enough latency has been observed to adjust it.
+     *
+     * @return initial limit
+     */
+    public int initialLimit() {
+        return initialLimit;
+    }
+
+    public int minLimit() {
+        return minLimit;
+    }
+
+    public int maxLimit() {
+        return maxLimit;
+    }
+
+    /**
+     * The status code of the responses sent for requests that are shed.
+     *
+     * @return status code
+     */
+    public int rejectStatus() {
+        return rejectStatus;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ConcurrencyLimitConfig that = (ConcurrencyLimitConfig) o;
+        return enabled == that.enabled
+                && initialLimit == that.initialLimit
+                && minLimit == that.minLimit
+                && maxLimit == that.maxLimit
+                && rejectStatus == that.rejectStatus;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(enabled, initialLimit, minLimit, maxLimit, rejectStatus);
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder(128)
+                .append(this.getClass().getSimpleName())
+                .append("{enabled=")
+                .append(enabled)
+                .append(", initialLimit=")
+                .append(initialLimit)
+                .append(", minLimit=")
+                .append(minLimit)
+                .append(", maxLimit=")
+                .append(maxLimit)
+                .append(", rejectStatus=")
+                .append(rejectStatus)
+                .append('}')
+                .toString();
+    }
+}
@@ -32,6 +32,7 @@ import static com.hotels.styx.config.schema.SchemaDsl.string;
 import static com.hotels.styx.config.schema.SchemaDsl.union;
 import static com.hotels.styx.javaconvenience.UtilKt.iteratorToList;
 import static java.lang.Integer.parseInt;
+import static java.lang.Long.parseLong;
 import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toList;
@@ -260,6 +261,32 @@ public class Schema {
         }
     }
 
+    /**
+     * Long integer schema field type, for values that may exceed the range of an integer.
+     */
+    public static class LongField implements FieldType {
+        @Override
+        public void validate(List<String> parents, JsonNode parent, JsonNode value, Function<String, FieldType> typeExtensions) {
+            if (!(value.isIntegralNumber() && value.canConvertToLong()) && !canParseAsLong(value)) {
+                throw new SchemaValidationException(message(parents, describe(), value));
+            }
+        }
+
+        @Override
+        public String describe() {
+            return "LONG";
+        }
+
+        private static boolean canParseAsLong(JsonNode value) {
+            try {
+                parseLong(value.textValue());
+                return true;
+            } catch (NumberFormatException cause) {
+                return false;
+            }
+        }
+    }
+
     /**
      * String schema field type.
      */
@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -68,6 +68,15 @@ public final class SchemaDsl {
         return new Schema.IntegerField();
     }
 
+    /**
+     * A long integer field value type.
+     *
+     * @return A FieldType instance.
+     */
+    public static Schema.FieldType longInteger() {
+        return new Schema.LongField();
+    }
+
     /**
      * A string field value type.
      *
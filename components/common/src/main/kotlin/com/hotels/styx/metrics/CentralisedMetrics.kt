@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -57,6 +57,8 @@ import io.micrometer.core.instrument.*
  *
  */
 class CentralisedMetrics(val registry: MeterRegistry) {
+    private val boundGauges = HashMap<Pair<String, Tags>, BoundGauge>()
+
     @get:JvmName("os")
     val os = OS()
 
@@ -279,6 +281,37 @@ class CentralisedMetrics(val registry: MeterRegistry) {
 
             fun channelCount(thread: Thread): DistributionSummary = registry.summary("proxy.server.connection.channels", thread.tags)
 
+            /**
+             * Number of connections still open on a draining connector, tagged by server name and connector type.
+             * Zero while the connector is not draining.
+             */
+            fun drainingConnections(server: String, connector: String): GaugeId =
+                InnerGaugeId("proxy.server.connection.draining", Tags.of("server", server, "connector", connector))
+
+            /**
+             * Current adaptive concurrency limit of a connector, tagged by server name and connector type.
+             */
+            fun concurrencyLimit(server: String, connector: String): GaugeId =
+                InnerGaugeId("proxy.server.concurrency.limit", Tags.of("server", server, "connector", connector))
+
+            /**
+             * Requests rejected because a connector's concurrency limit was reached, tagged by server name and connector type.
+             */
+            fun requestsShed(server: String, connector: String): Counter =
+                registry.counter("proxy.server.concurrency.shed", Tags.of("server", server, "connector", connector))
+
+            /**
+             * Number of access log entries dropped because the access log buffer was full.
+             */
+            @get:JvmName("accessLogDropped")
+            val accessLogDropped: GaugeId = InnerGaugeId("proxy.server.accessLog.dropped")
+
+            /**
+             * Number of access log entries written to the access log file.
+             */
+            @get:JvmName("accessLogWritten")
+            val accessLogWritten: GaugeId = InnerGaugeId("proxy.server.accessLog.written")
+
             inner class OpenSSL {
                 /**
                  * The current number of SSL sessions in the internal session cache.
@@ -339,6 +372,21 @@ class CentralisedMetrics(val registry: MeterRegistry) {
         }
 
         inner class Client {
+            /**
+             * Number of event loops in a client executor.
+             */
+            fun executorThreads(executor: String): GaugeId = InnerGaugeId("proxy.client.executor.threads", executorTags(executor))
+
+            /**
+             * Number of tasks queued on the event loops of a client executor.
+             */
+            fun executorPendingTasks(executor: String): GaugeId = InnerGaugeId("proxy.client.executor.pendingTasks", executorTags(executor))
+
+            /**
+             * Number of routing objects currently using a client executor.
+             */
+            fun executorBorrowers(executor: String): GaugeId = InnerGaugeId("proxy.client.executor.borrowers", executorTags(executor))
+
             /**
              * Number of client connections in use for a particular origin.
              */
@@ -401,6 +449,37 @@ class CentralisedMetrics(val registry: MeterRegistry) {
                 registry.counter("proxy.client.originHealthCheckFailures", it.tags)
             }
 
+            /**
+             * Delay between the time a health check probe was due and the time it started.
+             * It grows when the health check scheduler falls behind, or when probes wait for an in-flight slot.
+             */
+            @get:JvmName("healthCheckLag")
+            val healthCheckLag: Timer = registry.timerWithStyxDefaults("proxy.client.healthCheck.lag", Tags.empty())
+
+            /**
+             * Number of health check probes registered with the health check scheduler.
+             */
+            @get:JvmName("healthChecksScheduled")
+            val healthChecksScheduled: GaugeId = InnerGaugeId("proxy.client.healthCheck.scheduled")
+
+            /**
+             * Number of health check probes currently awaiting a response.
+             */
+            @get:JvmName("healthChecksInFlight")
+            val healthChecksInFlight: GaugeId = InnerGaugeId("proxy.client.healthCheck.inFlight")
+
+            /**
+             * Number of due health check probes waiting for an in-flight slot.
+             */
+            @get:JvmName("healthChecksQueued")
+            val healthChecksQueued: GaugeId = InnerGaugeId("proxy.client.healthCheck.queued")
+
+            /**
+             * Counts health check rounds skipped because the previous probe of the same target had not completed.
+             */
+            @get:JvmName("healthChecksSkipped")
+            val healthChecksSkipped: Counter = registry.counter("proxy.client.healthCheck.skipped")
+
             /**
              * Counts request cancellations that happen at the client, i.e. sent out from Styx.
              *
@@ -464,6 +543,21 @@ class CentralisedMetrics(val registry: MeterRegistry) {
              */
             fun timeToFirstByte(origin: Origin): TimerMetric = InnerTimer("proxy.client.timeToFirstByte", origin.tags)
 
+            /**
+             * Current adaptive concurrency limit of a backend service.
+             */
+            fun concurrencyLimit(applicationId: String): GaugeId = InnerGaugeId("proxy.client.concurrency.limit", Tags.of("appId", applicationId))
+
+            /**
+             * Requests rejected because a backend service's concurrency limit was reached.
+             */
+            fun requestsShed(applicationId: String): Counter = registry.counter("proxy.client.concurrency.shed", Tags.of("appId", applicationId))
+
+            /**
+             * Requests served with the response to an identical request already in flight to a backend service.
+             */
+            fun requestsCollapsed(applicationId: String): Counter = registry.counter("proxy.client.collapsed", Tags.of("appId", applicationId))
+
         }
 
         inner class Plugins {
@@ -505,6 +599,32 @@ class CentralisedMetrics(val registry: MeterRegistry) {
         override fun register(number: Number) {
             registry.gauge(name, number)
         }
+
+        override fun bind(supplier: () -> Number): Deleter = synchronized(boundGauges) {
+            val gauge = boundGauges.getOrPut(name to tags) { BoundGauge(name, tags) }
+            gauge.supplier = supplier
+            BoundDeleter(gauge, supplier)
+        }
+    }
+
+    private inner class BoundGauge(val name: String, val tags: Tags) {
+        @Volatile
+        var supplier: (() -> Number)? = null
+
+        val gauge: Gauge = Gauge.builder(name) { supplier?.invoke() ?: Double.NaN }
+            .tags(tags)
+            .register(registry.micrometerRegistry())
+    }
+
+    private inner class BoundDeleter(val gauge: BoundGauge, val supplier: () -> Number) : Deleter {
+        override fun delete() {
+            synchronized(boundGauges) {
+                if (gauge.supplier === supplier) {
+                    boundGauges.remove(gauge.name to gauge.tags)
+                    registry.remove(gauge.gauge)
+                }
+            }
+        }
     }
 
     private inner class InnerDeleter(val gauge: Gauge) : Deleter {
@@ -553,6 +673,7 @@ private fun statusCodeTags(code: Int): Tags =
 
 private val Class<out Throwable>.formattedName get() = name.replace('.', '_')
 private val Thread.tags get() = Tags.of("eventloop", name)
+private fun executorTags(executor: String) = Tags.of("executor", executor)
 
 interface GaugeId {
     fun <T> register(stateObject: T, function: (T) -> Number)
@@ -560,6 +681,13 @@ interface GaugeId {
     fun register(supplier: () -> Int): Deleter
 
     fun register(number: Number)
+
+    /**
+     * Binds the gauge to a supplier, in place of the one bound before, if any. The returned deleter removes
+     * the gauge only while its supplier is still the bound one, so that an owner being replaced leaves
+     * the gauge of its replacement in place.
+     */
+    fun bind(supplier: () -> Number): Deleter
 }
 
 interface Deleter {
@@ -0,0 +1,61 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx;
+
+import io.netty.channel.epoll.Epoll;
+import io.netty.incubator.channel.uring.IOUring;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class NettyTransportTest {
+    @Test
+    public void looksUpTransportsByConfigName() {
+        assertThat(NettyTransport.fromName("auto"), is(NettyTransport.AUTO));
+        assertThat(NettyTransport.fromName("io_uring"), is(NettyTransport.IO_URING));
+        assertThat(NettyTransport.fromName("EPOLL"), is(NettyTransport.EPOLL));
+        assertThat(NettyTransport.fromName(" nio "), is(NettyTransport.NIO));
+    }
+
+    @Test
+    public void rejectsUnknownTransports() {
+        assertThrows(IllegalArgumentException.class, () -> NettyTransport.fromName("kqueue"));
+    }
+
+    @Test
+    public void resolvesToAnAvailableTransport() {
+        NettyTransport expectedFallback = Epoll.isAvailable() ? NettyTransport.EPOLL : NettyTransport.NIO;
+
+        assertThat(NettyTransport.AUTO.resolve(), is(expectedFallback));
+        assertThat(NettyTransport.EPOLL.resolve(), is(expectedFallback));
+        assertThat(NettyTransport.NIO.resolve(), is(NettyTransport.NIO));
+        assertThat(NettyTransport.IO_URING.resolve(), is(IOUring.isAvailable() ? NettyTransport.IO_URING : expectedFallback));
+    }
+
+    @Test
+    public void createsExecutorsWithResolvedTransport() {
+        NettyExecutor executor = NettyExecutor.create("NettyTransportTest", 1, NettyTransport.IO_URING);
+        try {
+            assertThat(executor.transport(), is(NettyTransport.IO_URING.resolve()));
+            assertThat(executor.transport(), is(not(NettyTransport.AUTO)));
+        } finally {
+            executor.shut();
+        }
+    }
+}
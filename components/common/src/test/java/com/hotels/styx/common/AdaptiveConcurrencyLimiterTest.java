@@ -0,0 +1,198 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.common;
+
+import com.hotels.styx.api.Buffer;
+import com.hotels.styx.api.ByteStream;
+import com.hotels.styx.api.LiveHttpResponse;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.hotels.styx.api.HttpResponseStatus.OK;
+import static com.hotels.styx.api.LiveHttpResponse.response;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AdaptiveConcurrencyLimiterTest {
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger shed = new AtomicInteger();
+
+    @Test
+    public void shedsRequestsBeyondLimit() {
+        AdaptiveConcurrencyLimiter limiter = limiter(2, 1, 10);
+
+        assertThat(limiter.tryAcquire(), is(notNullValue()));
+        assertThat(limiter.tryAcquire(), is(notNullValue()));
+        assertThat(limiter.tryAcquire(), is(nullValue()));
+
+        assertThat(limiter.inFlight(), is(2));
+        assertThat(limiter.shedCount(), is(1L));
+        assertThat(shed.get(), is(1));
+    }
+
+    @Test
+    public void releasesPlaceOnlyOnce() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 1, 10);
+
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire();
+        permit.release();
+        permit.release();
+
+        assertThat(limiter.inFlight(), is(0));
+        assertThat(limiter.tryAcquire(), is(notNullValue()));
+        assertThat(limiter.tryAcquire(), is(nullValue()));
+    }
+
+    @Test
+    public void growsLimitWhileLatencyHoldsSteady() {
+        AdaptiveConcurrencyLimiter limiter = limiter(20, 10, 100);
+
+        rounds(limiter, 10, 5);
+
+        assertThat(limiter.limit(), is(greaterThan(20)));
+    }
+
+    @Test
+    public void shrinksLimitWhenLatencyRises() {
+        AdaptiveConcurrencyLimiter limiter = limiter(20, 10, 100);
+        rounds(limiter, 10, 5);
+        int steadyLimit = limiter.limit();
+
+        rounds(limiter, 100, 3);
+
+        assertThat(limiter.limit(), is(lessThan(steadyLimit)));
+    }
+
+    @Test
+    public void staysWithinBounds() {
+        AdaptiveConcurrencyLimiter limiter = limiter(20, 15, 25);
+
+        rounds(limiter, 10, 50);
+        assertThat(limiter.limit(), is(25));
+
+        rounds(limiter, 1000, 50);
+        assertThat(limiter.limit(), is(15));
+    }
+
+    @Test
+    public void keepsLimitWhenLoadIsWellBelowIt() {
+        AdaptiveConcurrencyLimiter limiter = limiter(100, 10, 1000);
+
+        for (int i = 0; i < 20; i++) {
+            List<AdaptiveConcurrencyLimiter.Permit> permits = acquire(limiter, 20);
+            clock.addAndGet(MILLISECONDS.toNanos(500));
+            permits.forEach(permit -> {
+                permit.responded();
+                permit.release();
+            });
+        }
+
+        assertThat(limiter.limit(), is(100));
+    }
+
+    @Test
+    public void respondsWithRejectStatusWhenLimitIsReached() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+                new ConcurrencyLimitConfig(true, 1, 1, 10, 429), shed::incrementAndGet, clock::get);
+        limiter.tryAcquire();
+
+        StepVerifier.create(limiter.execute(() -> Flux.error(new AssertionError("must not be called"))))
+                .consumeNextWith(response -> assertThat(response.status().code(), is(429)))
+                .verifyComplete();
+
+        assertThat(shed.get(), is(1));
+    }
+
+    @Test
+    public void holdsPlaceUntilResponseBodyIsConsumed() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 1, 10);
+        LiveHttpResponse theResponse = response(OK).body(new ByteStream(Flux.just(new Buffer("hey", UTF_8)))).build();
+
+        StepVerifier.create(limiter.execute(() -> Flux.just(theResponse)))
+                .consumeNextWith(response -> {
+                    assertThat(limiter.inFlight(), is(1));
+                    response.consume();
+                })
+                .verifyComplete();
+
+        assertThat(limiter.inFlight(), is(0));
+    }
+
+    @Test
+    public void releasesPlaceWhenExchangeFails() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 1, 10);
+
+        StepVerifier.create(limiter.execute(() -> Flux.error(new RuntimeException("origin failed"))))
+                .verifyError(RuntimeException.class);
+
+        assertThat(limiter.inFlight(), is(0));
+    }
+
+    @Test
+    public void acquiresPlaceOnSubscription() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 1, 10);
+
+        limiter.execute(() -> Flux.just(response(OK).build()));
+
+        assertThat(limiter.inFlight(), is(0));
+    }
+
+    @Test
+    public void rejectsInconsistentSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new ConcurrencyLimitConfig(true, 5, 10, 20, null));
+        assertThrows(IllegalArgumentException.class, () -> new ConcurrencyLimitConfig(true, null, 30, 20, null));
+        assertThrows(IllegalArgumentException.class, () -> new ConcurrencyLimitConfig(true, null, null, null, 200));
+    }
+
+    private AdaptiveConcurrencyLimiter limiter(int initialLimit, int minLimit, int maxLimit) {
+        return new AdaptiveConcurrencyLimiter(
+                new ConcurrencyLimitConfig(true, initialLimit, minLimit, maxLimit, null), shed::incrementAndGet, clock::get);
+    }
+
+    // Each round saturates the limiter with requests of the given latency, and closes a sampling window.
+    private void rounds(AdaptiveConcurrencyLimiter limiter, long latencyMillis, int count) {
+        for (int i = 0; i < count; i++) {
+            List<AdaptiveConcurrencyLimiter.Permit> permits = acquire(limiter, limiter.limit());
+            clock.addAndGet(MILLISECONDS.toNanos(latencyMillis));
+            permits.forEach(permit -> {
+                permit.responded();
+                permit.release();
+            });
+            clock.addAndGet(AdaptiveConcurrencyLimiter.MIN_WINDOW_NANOS);
+        }
+    }
+
+    private static List<AdaptiveConcurrencyLimiter.Permit> acquire(AdaptiveConcurrencyLimiter limiter, int count) {
+        List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            permits.add(limiter.tryAcquire());
+        }
+        return permits;
+    }
+}
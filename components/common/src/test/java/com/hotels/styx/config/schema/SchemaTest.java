@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -33,6 +33,7 @@ import static com.hotels.styx.config.schema.SchemaDsl.bool;
 import static com.hotels.styx.config.schema.SchemaDsl.field;
 import static com.hotels.styx.config.schema.SchemaDsl.integer;
 import static com.hotels.styx.config.schema.SchemaDsl.list;
+import static com.hotels.styx.config.schema.SchemaDsl.longInteger;
 import static com.hotels.styx.config.schema.SchemaDsl.map;
 import static com.hotels.styx.config.schema.SchemaDsl.object;
 import static com.hotels.styx.config.schema.SchemaDsl.opaque;
@@ -213,6 +214,32 @@ public class SchemaTest {
     }
 
 
+    @Test
+    public void object_checksLongFieldTypes() throws Exception {
+        JsonNode validObject = YAML_MAPPER.readTree(""
+                + "root: \n"
+                + "  myLong: 5000000000 \n");
+
+        object(
+                field("root", object(
+                        field("myLong", longInteger())
+                ))
+        ).validate(List.of(), validObject, validObject, NO_EXTENSIONS);
+
+        JsonNode invalidObject = YAML_MAPPER.readTree(""
+                + "root: \n"
+                + "  myLong: 5.5 \n");
+
+        Exception e = assertThrows(SchemaValidationException.class,
+                () -> object(
+                        field("root", object(
+                                field("myLong", longInteger())
+                        ))
+                ).validate(List.of(), invalidObject, invalidObject, NO_EXTENSIONS));
+        assertEquals("Unexpected field type. Field 'root.myLong' should be LONG, but it is NUMBER", e.getMessage());
+    }
+
+
     @Test
     public void object_checksStringFieldTypes() throws Exception {
         JsonNode rootObject = YAML_MAPPER.readTree(""
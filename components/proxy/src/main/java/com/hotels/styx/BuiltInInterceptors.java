@@ -17,16 +17,17 @@ package com.hotels.styx;
 
 import com.hotels.styx.api.HttpInterceptor;
 import com.hotels.styx.common.format.HttpMessageFormatter;
+import com.hotels.styx.metrics.CentralisedMetrics;
+import com.hotels.styx.proxy.accesslog.AccessLog;
+import com.hotels.styx.proxy.interceptors.AccessLogInterceptor;
 import com.hotels.styx.proxy.interceptors.ConfigurationContextResolverInterceptor;
-import com.hotels.styx.proxy.interceptors.HopByHopHeadersRemovingInterceptor;
+import com.hotels.styx.proxy.interceptors.HeaderRewritingInterceptor;
 import com.hotels.styx.proxy.interceptors.HttpMessageLoggingInterceptor;
-import com.hotels.styx.proxy.interceptors.RequestEnrichingInterceptor;
 import com.hotels.styx.proxy.interceptors.TcpTunnelRequestRejector;
-import com.hotels.styx.proxy.interceptors.UnexpectedRequestContentLengthRemover;
-import com.hotels.styx.proxy.interceptors.ViaHeaderAppendingInterceptor;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 import static com.hotels.styx.api.configuration.ConfigurationContextResolver.EMPTY_CONFIGURATION_CONTEXT_RESOLVER;
 import static java.util.Arrays.asList;
@@ -38,9 +39,16 @@ final class BuiltInInterceptors {
     private BuiltInInterceptors() {
     }
 
-    static List<HttpInterceptor> internalStyxInterceptors(StyxConfig config, HttpMessageFormatter httpMessageFormatter) {
+    static List<HttpInterceptor> internalStyxInterceptors(StyxConfig config, Optional<AccessLog> accessLog, HttpMessageFormatter httpMessageFormatter,
+                                                          CentralisedMetrics metrics) {
         List<HttpInterceptor> builder = new ArrayList<>();
 
+        accessLog.ifPresent(it -> {
+            metrics.proxy().server().accessLogDropped().register(it, AccessLog::droppedCount);
+            metrics.proxy().server().accessLogWritten().register(it, AccessLog::writtenCount);
+            builder.add(new AccessLogInterceptor(it));
+        });
+
         boolean loggingEnabled = config.get("request-logging.inbound.enabled", Boolean.class)
                 .orElse(false);
 
@@ -53,12 +61,7 @@ final class BuiltInInterceptors {
 
         builder.addAll(asList(new TcpTunnelRequestRejector(),
                 new ConfigurationContextResolverInterceptor(EMPTY_CONFIGURATION_CONTEXT_RESOLVER),
-                new UnexpectedRequestContentLengthRemover(),
-                config.proxyServerConfig().via()
-                        .map(ViaHeaderAppendingInterceptor::new)
-                        .orElseGet(ViaHeaderAppendingInterceptor::new),
-                new HopByHopHeadersRemovingInterceptor(),
-                new RequestEnrichingInterceptor(config.styxHeaderConfig())));
+                new HeaderRewritingInterceptor(config.proxyServerConfig().via().orElse(null), config.styxHeaderConfig())));
 
         return List.copyOf(builder);
     }
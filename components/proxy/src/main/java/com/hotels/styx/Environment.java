@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -17,6 +17,8 @@ package com.hotels.styx;
 
 import com.google.common.eventbus.EventBus;
 import com.hotels.styx.api.MetricRegistry;
+import com.hotels.styx.client.healthcheck.HealthCheckScheduler;
+import com.hotels.styx.client.healthcheck.PassiveHealthSignals;
 import com.hotels.styx.common.format.DefaultHttpMessageFormatter;
 import com.hotels.styx.common.format.HttpMessageFormatter;
 import com.hotels.styx.metrics.CentralisedMetrics;
@@ -47,6 +49,8 @@ public final class Environment implements com.hotels.styx.api.Environment, Centr
     private final ServerEnvironment serverEnvironment;
     private final HttpMessageFormatter httpMessageFormatter;
     private final CentralisedMetrics metrics;
+    private final PassiveHealthSignals passiveHealthSignals = new PassiveHealthSignals();
+    private HealthCheckScheduler healthCheckScheduler;
 
     private Environment(Builder builder) {
         this.eventBus = firstNonNull(builder.eventBus, () -> new EventBus("Styx"));
@@ -123,6 +127,36 @@ public final class Environment implements com.hotels.styx.api.Environment, Centr
         return metrics;
     }
 
+    /**
+     * The scheduler shared by all active health checks. Created on first use.
+     *
+     * @return health check scheduler
+     */
+    public synchronized HealthCheckScheduler healthCheckScheduler() {
+        if (healthCheckScheduler == null) {
+            healthCheckScheduler = new HealthCheckScheduler(metrics);
+        }
+        return healthCheckScheduler;
+    }
+
+    /**
+     * Stops the health check scheduler, if it has been created.
+     */
+    public synchronized void closeHealthCheckScheduler() {
+        if (healthCheckScheduler != null) {
+            healthCheckScheduler.close();
+        }
+    }
+
+    /**
+     * Health evidence from live traffic, shared by traffic handlers and active health checks.
+     *
+     * @return passive health signals
+     */
+    public PassiveHealthSignals passiveHealthSignals() {
+        return passiveHealthSignals;
+    }
+
     /**
      * Builder for {@link com.hotels.styx.Environment}.
      */
@@ -15,11 +15,16 @@
  */
 package com.hotels.styx;
 
+import com.hotels.styx.api.Eventual;
 import com.hotels.styx.api.HttpHandler;
+import com.hotels.styx.common.AdaptiveConcurrencyLimiter;
+import com.hotels.styx.common.ConcurrencyLimitConfig;
 import com.hotels.styx.common.format.HttpMessageFormatter;
 import com.hotels.styx.metrics.CentralisedMetrics;
-import com.hotels.styx.proxy.HttpCompressor;
+import com.hotels.styx.metrics.Deleter;
 import com.hotels.styx.proxy.ServerProtocolDistributionRecorder;
+import com.hotels.styx.proxy.compression.HttpCompressor;
+import com.hotels.styx.proxy.compression.PrecompressedVariants;
 import com.hotels.styx.proxy.encoders.ConfigurableUnwiseCharsEncoder;
 import com.hotels.styx.server.ConnectorConfig;
 import com.hotels.styx.server.HttpErrorStatusListener;
@@ -33,10 +38,12 @@ import com.hotels.styx.server.netty.codec.NettyToStyxRequestDecoder;
 import com.hotels.styx.server.netty.connectors.HttpPipelineHandler;
 import com.hotels.styx.server.netty.connectors.ResponseEnhancer;
 import com.hotels.styx.server.netty.handlers.ChannelActivityEventConstrainer;
+import com.hotels.styx.server.netty.handlers.ConnectionDrainer;
 import com.hotels.styx.server.netty.handlers.ExcessConnectionRejector;
 import com.hotels.styx.server.netty.handlers.RequestTimeoutHandler;
 import com.hotels.styx.server.track.CurrentRequestTracker;
 import com.hotels.styx.server.track.RequestTracker;
+import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.DistributionSummary;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelDuplexHandler;
@@ -52,7 +59,9 @@ import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.util.concurrent.GlobalEventExecutor;
 import org.slf4j.Logger;
 
+import java.time.Duration;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static com.hotels.styx.server.netty.SslContextsKt.newSSLContext;
 import static io.netty.handler.timeout.IdleState.ALL_IDLE;
@@ -64,6 +73,7 @@ import static org.slf4j.LoggerFactory.getLogger;
  * Factory for proxy connectors.
  */
 public class ProxyConnectorFactory implements ServerConnectorFactory {
+    private final String serverName;
     private final HttpErrorStatusListener errorStatusListener;
     private final NettyServerConfig serverConfig;
     private final String unwiseCharacters;
@@ -74,7 +84,8 @@ public class ProxyConnectorFactory implements ServerConnectorFactory {
     private final CentralisedMetrics metrics;
 
     // CHECKSTYLE:OFF
-    public ProxyConnectorFactory(NettyServerConfig serverConfig,
+    public ProxyConnectorFactory(String serverName,
+                                 NettyServerConfig serverConfig,
                                  CentralisedMetrics centralisedMetrics,
                                  HttpErrorStatusListener errorStatusListener,
                                  String unwiseCharacters,
@@ -82,6 +93,7 @@ public class ProxyConnectorFactory implements ServerConnectorFactory {
                                  boolean requestTracking,
                                  HttpMessageFormatter httpMessageFormatter,
                                  CharSequence originsHeader) {
+        this.serverName = requireNonNull(serverName);
         this.serverConfig = requireNonNull(serverConfig);
         this.errorStatusListener = requireNonNull(errorStatusListener);
         this.unwiseCharacters = requireNonNull(unwiseCharacters);
@@ -112,6 +124,11 @@ public class ProxyConnectorFactory implements ServerConnectorFactory {
         private final RequestTracker requestTracker;
         private final HttpMessageFormatter httpMessageFormatter;
         private final CharSequence originsHeader;
+        private final ConnectionDrainer drainer = new ConnectionDrainer();
+        private final Optional<AdaptiveConcurrencyLimiter> concurrencyLimiter;
+        private final Deleter drainingGauge;
+        private final Optional<Deleter> concurrencyLimitGauge;
+        private final PrecompressedVariants precompressedVariants;
 
         private ProxyConnector(ConnectorConfig config, ProxyConnectorFactory factory) {
             this.config = requireNonNull(config);
@@ -131,6 +148,11 @@ public class ProxyConnectorFactory implements ServerConnectorFactory {
             this.requestTracker = factory.requestTracking ? CurrentRequestTracker.INSTANCE : RequestTracker.NO_OP;
             this.httpMessageFormatter = factory.httpMessageFormatter;
             this.originsHeader = factory.originsHeader;
+            this.drainingGauge = metrics.proxy().server().drainingConnections(factory.serverName, config.type()).bind(drainer::drainingConnections);
+            this.concurrencyLimiter = concurrencyLimiter(factory.serverName, config.type(), serverConfig.concurrencyLimit(), metrics);
+            this.concurrencyLimitGauge = concurrencyLimiter.map(limiter ->
+                    metrics.proxy().server().concurrencyLimit(factory.serverName, config.type()).bind(limiter::limit));
+            this.precompressedVariants = new PrecompressedVariants(serverConfig.compression().precompressedCacheSizeBytes());
         }
 
         @Override
@@ -165,11 +187,13 @@ public class ProxyConnectorFactory implements ServerConnectorFactory {
 
                     .addLast("keep-alive-handler", new IdleTransactionConnectionCloser(metrics))
 
+                    .addLast("connection-drainer", drainer.newHandler())
+
                     .addLast("server-protocol-distribution-recorder", new ServerProtocolDistributionRecorder(metrics, sslContext.isPresent()))
 
                     .addLast("styx-decoder", requestTranslator())
 
-                    .addLast("proxy", new HttpPipelineHandler.Builder(httpPipeline)
+                    .addLast("proxy", new HttpPipelineHandler.Builder(concurrencyLimited(httpPipeline))
                             .responseEnhancer(responseEnhancer)
                             .errorStatusListener(httpErrorStatusListener)
                             .progressListener(requestStatsCollector)
@@ -180,11 +204,41 @@ public class ProxyConnectorFactory implements ServerConnectorFactory {
                             .build());
 
             if (serverConfig.compressResponses()) {
-                channel.pipeline().addBefore("styx-decoder", "compression", new HttpCompressor());
+                channel.pipeline().addBefore("styx-decoder", "compression", new HttpCompressor(serverConfig.compression(), precompressedVariants));
             }
         }
 
 
+        @Override
+        public CompletableFuture<Void> drain(Duration deadline) {
+            return drainer.drain(deadline);
+        }
+
+        @Override
+        public int drainingConnections() {
+            return drainer.drainingConnections();
+        }
+
+        @Override
+        public void close() {
+            drainingGauge.delete();
+            concurrencyLimitGauge.ifPresent(Deleter::delete);
+        }
+
+        private HttpHandler concurrencyLimited(HttpHandler httpPipeline) {
+            return concurrencyLimiter
+                    .<HttpHandler>map(limiter -> (request, context) -> new Eventual<>(limiter.execute(() -> httpPipeline.handle(request, context))))
+                    .orElse(httpPipeline);
+        }
+
+        private static Optional<AdaptiveConcurrencyLimiter> concurrencyLimiter(String server, String connector, ConcurrencyLimitConfig config, CentralisedMetrics metrics) {
+            if (!config.enabled()) {
+                return Optional.empty();
+            }
+            Counter shed = metrics.proxy().server().requestsShed(server, connector);
+            return Optional.of(new AdaptiveConcurrencyLimiter(config, shed::increment));
+        }
+
         private NettyToStyxRequestDecoder requestTranslator() {
             return new NettyToStyxRequestDecoder.Builder()
                     .flowControlEnabled(true)
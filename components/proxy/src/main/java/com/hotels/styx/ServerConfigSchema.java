@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -15,6 +15,8 @@
  */
 package com.hotels.styx;
 
+import com.hotels.styx.common.CompressionConfig;
+import com.hotels.styx.common.ConcurrencyLimitConfig;
 import com.hotels.styx.config.schema.Schema;
 import com.hotels.styx.config.schema.SchemaValidationException;
 import com.hotels.styx.config.validator.DocumentFormat;
@@ -27,6 +29,7 @@ import static com.hotels.styx.config.schema.SchemaDsl.bool;
 import static com.hotels.styx.config.schema.SchemaDsl.field;
 import static com.hotels.styx.config.schema.SchemaDsl.integer;
 import static com.hotels.styx.config.schema.SchemaDsl.list;
+import static com.hotels.styx.config.schema.SchemaDsl.longInteger;
 import static com.hotels.styx.config.schema.SchemaDsl.map;
 import static com.hotels.styx.config.schema.SchemaDsl.object;
 import static com.hotels.styx.config.schema.SchemaDsl.opaque;
@@ -73,10 +76,14 @@ final class ServerConfigSchema {
                     .rootSchema(object(
                             optional("proxy", object(
                                     optional("compressResponses", bool()),
+                                    optional("compression", CompressionConfig.SCHEMA),
                                     field("connectors", serverConnectorsSchema),
                                     optional("bossThreadsCount", integer()),
                                     optional("clientWorkerThreadsCount", integer()),
                                     optional("workerThreadsCount", integer()),
+                                    optional("nioAcceptorBacklog", integer()),
+                                    optional("acceptorCount", integer()),
+                                    optional("transport", string()),
                                     // tcpNoDelay is deprecated by PR #464
                                     optional("tcpNoDelay", bool()),
                                     // nioReuseAddress is deprecated by PR #464
@@ -91,12 +98,18 @@ final class ServerConfigSchema {
                                     optional("requestTimeoutMillis", integer()),
                                     optional("keepAliveTimeoutMillis", integer()),
                                     optional("maxConnectionsCount", integer()),
+                                    optional("drainTimeoutMillis", integer()),
+                                    optional("concurrencyLimit", ConcurrencyLimitConfig.SCHEMA),
+                                    optional("backendConcurrencyLimit", ConcurrencyLimitConfig.SCHEMA),
                                     optional("via", string())
                             )),
                             field("admin", object(
                                     field("connectors", serverConnectorsSchema),
                                     optional("bossThreadsCount", integer()),
                                     optional("workerThreadsCount", integer()),
+                                    optional("nioAcceptorBacklog", integer()),
+                                    optional("drainTimeoutMillis", integer()),
+                                    optional("transport", string()),
                                     // tcpNoDelay is deprecated by PR #464
                                     optional("tcpNoDelay", bool()),
                                     // nioReuseAddress is deprecated by PR #464
@@ -127,7 +140,15 @@ final class ServerConfigSchema {
                             optional("request-logging", object(
                                     optional("inbound", logFormatSchema),
                                     optional("outbound", logFormatSchema),
-                                    atLeastOne("inbound", "outbound"),
+                                    optional("access", object(
+                                            field("enabled", bool()),
+                                            optional("path", string()),
+                                            optional("format", string()),
+                                            optional("bufferSize", integer()),
+                                            optional("maxFileSize", longInteger()),
+                                            optional("maxFiles", integer())
+                                    )),
+                                    atLeastOne("inbound", "outbound", "access"),
                                     optional("hideHeaders", list(string())),
                                     optional("hideCookies", list(string()))
                             )),
@@ -21,6 +21,7 @@ import com.hotels.styx.api.extension.service.BackendService;
 import com.hotels.styx.api.extension.service.spi.Registry;
 import com.hotels.styx.api.extension.service.spi.StyxService;
 import com.hotels.styx.infrastructure.MemoryBackedRegistry;
+import com.hotels.styx.proxy.accesslog.AccessLog;
 import com.hotels.styx.proxy.plugin.NamedPlugin;
 import com.hotels.styx.routing.RoutingObject;
 import com.hotels.styx.routing.StaticPipelineFactory;
@@ -45,25 +46,28 @@ public class StyxPipelineFactory {
     private final Map<String, StyxService> services;
     private final List<NamedPlugin> plugins;
     private final NettyExecutor executor;
+    private final Optional<AccessLog> accessLog;
 
     public StyxPipelineFactory(
             RoutingObjectFactory.Context builtinRoutingObjects,
             Environment environment,
             Map<String, StyxService> services,
             List<NamedPlugin> plugins,
-            NettyExecutor executor) {
+            NettyExecutor executor,
+            Optional<AccessLog> accessLog) {
         this.builtinRoutingObjects = requireNonNull(builtinRoutingObjects);
         this.environment = requireNonNull(environment);
         this.services = requireNonNull(services);
         this.plugins = requireNonNull(plugins);
         this.executor = requireNonNull(executor);
+        this.accessLog = requireNonNull(accessLog);
     }
 
     public HttpHandler create() {
         boolean requestTracking = environment.configuration().get("requestTracking", Boolean.class).orElse(false);
 
         return new HttpInterceptorPipeline(
-                internalStyxInterceptors(environment.styxConfig(), environment.httpMessageFormatter()),
+                internalStyxInterceptors(environment.styxConfig(), accessLog, environment.httpMessageFormatter(), environment.centralisedMetrics()),
                 configuredPipeline(builtinRoutingObjects),
                 requestTracking);
     }
@@ -30,6 +30,7 @@ import com.hotels.styx.api.extension.service.spi.Registry;
 import com.hotels.styx.config.schema.SchemaValidationException;
 import com.hotels.styx.infrastructure.MemoryBackedRegistry;
 import com.hotels.styx.javaconvenience.Stopwatch;
+import com.hotels.styx.proxy.accesslog.AccessLog;
 import com.hotels.styx.proxy.plugin.NamedPlugin;
 import com.hotels.styx.server.ConnectorConfig;
 import com.hotels.styx.server.netty.NettyServerBuilder;
@@ -48,6 +49,7 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 import java.net.InetSocketAddress;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
@@ -59,6 +61,7 @@ import static com.hotels.styx.infrastructure.logging.LOGBackConfigurer.shutdownL
 import static com.hotels.styx.proxy.encoders.ConfigurableUnwiseCharsEncoder.ENCODE_UNWISECHARS;
 import static com.hotels.styx.startup.CoreMetricsKt.registerCoreMetrics;
 import static io.netty.util.ResourceLeakDetector.Level.DISABLED;
+import static java.lang.Math.max;
 import static java.lang.Runtime.getRuntime;
 import static java.lang.String.format;
 import static java.lang.System.getProperty;
@@ -85,6 +88,7 @@ public final class StyxServer extends AbstractService {
     private final InetServer httpServer;
     private final InetServer httpsServer;
     private final InetServer adminServer;
+    private final Optional<AccessLog> accessLog;
 
     private final ServiceManager phase1Services;
     private final ServiceManager phase2Services;
@@ -193,12 +197,14 @@ public final class StyxServer extends AbstractService {
         // The plugins are loaded, but not initialised. And therefore not able to accept traffic.
         // This handler is for the "old" proxy servers, that are started from proxy.connectors configuration.
         // The new `HttpServer` object (https://github.com/HotelsDotCom/styx/pull/591) doesn't use it.
+        this.accessLog = AccessLog.fromConfig(components.environment().configuration());
         HttpHandler handlerForOldProxyServer = new StyxPipelineFactory(
                 components.routingObjectFactoryContext(),
                 components.environment(),
                 components.services(),
                 components.plugins(),
-                components.clientExecutor())
+                components.clientExecutor(),
+                accessLog)
                 .create();
 
         // Startup phase 1: start plugins, control plane providers, and other services:
@@ -213,8 +219,12 @@ public final class StyxServer extends AbstractService {
         // Phase 2: start HTTP services;
         StyxConfig styxConfig = components.environment().configuration();
 
-        proxyBossExecutor = NettyExecutor.create("Proxy-Boss", styxConfig.proxyServerConfig().bossThreadsCount());
-        proxyWorkerExecutor = NettyExecutor.create("Proxy-Worker", styxConfig.proxyServerConfig().workerThreadsCount());
+        // Each acceptor socket is served by a boss thread of its own:
+        proxyBossExecutor = NettyExecutor.create("Proxy-Boss",
+                max(styxConfig.proxyServerConfig().bossThreadsCount(), styxConfig.proxyServerConfig().acceptorCount()),
+                styxConfig.proxyServerConfig().transport());
+        proxyWorkerExecutor = NettyExecutor.create("Proxy-Worker", styxConfig.proxyServerConfig().workerThreadsCount(),
+                styxConfig.proxyServerConfig().transport());
 
         httpServer = styxConfig.proxyServerConfig()
                 .httpConnectorConfig()
@@ -270,6 +280,7 @@ public final class StyxServer extends AbstractService {
         ResponseInfoFormat responseInfoFormat = new ResponseInfoFormat(environment);
 
         ServerConnector proxyConnector = new ProxyConnectorFactory(
+                "proxy",
                 environment.configuration().proxyServerConfig(),
                 environment.centralisedMetrics(),
                 environment.errorListener(),
@@ -284,6 +295,9 @@ public final class StyxServer extends AbstractService {
                 .setMetricsRegistry(environment.metricRegistry())
                 .bossExecutor(proxyBossExecutor)
                 .workerExecutor(proxyWorkerExecutor)
+                .acceptorBacklog(environment.configuration().proxyServerConfig().nioAcceptorBacklog())
+                .acceptorCount(environment.configuration().proxyServerConfig().acceptorCount())
+                .drainTimeout(Duration.ofMillis(environment.configuration().proxyServerConfig().drainTimeoutMillis()))
                 .setProtocolConnector(proxyConnector)
                 .handler(styxDataPlane)
                 .build();
@@ -336,6 +350,9 @@ public final class StyxServer extends AbstractService {
     protected void doStop() {
         this.phase2Services.stopAsync().awaitStopped();
 
+        // The proxy servers have drained, so no more entries are coming. Write out the ones still buffered:
+        accessLog.ifPresent(AccessLog::close);
+
         proxyBossExecutor.shut();
         proxyWorkerExecutor.shut();
 
@@ -343,6 +360,8 @@ public final class StyxServer extends AbstractService {
                 .entrySet()
                 .forEach(entry -> entry.getValue().component4().shut());
 
+        components.environment().closeHealthCheckScheduler();
+
         this.phase1Services.stopAsync().awaitStopped();
         shutdownLogging(true);
     }
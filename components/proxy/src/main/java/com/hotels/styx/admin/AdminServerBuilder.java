@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -37,6 +37,7 @@ import com.hotels.styx.admin.handlers.PluginListHandler;
 import com.hotels.styx.admin.handlers.PluginToggleHandler;
 import com.hotels.styx.admin.handlers.PrometheusHandler;
 import com.hotels.styx.admin.handlers.ProviderRoutingHandler;
+import com.hotels.styx.admin.handlers.ResponseCacheHandler;
 import com.hotels.styx.admin.handlers.RoutingObjectHandler;
 import com.hotels.styx.admin.handlers.ServiceProviderHandler;
 import com.hotels.styx.admin.handlers.StartupConfigHandler;
@@ -125,13 +126,15 @@ public class AdminServerBuilder {
         StyxConfig styxConfig = environment.configuration();
         AdminServerConfig adminServerConfig = styxConfig.adminServerConfig();
 
-        NettyExecutor bossExecutor = NettyExecutor.create("Admin-Boss", adminServerConfig.bossThreadsCount());
-        NettyExecutor workerExecutor = NettyExecutor.create("Admin-Worker", adminServerConfig.workerThreadsCount());
+        NettyExecutor bossExecutor = NettyExecutor.create("Admin-Boss", adminServerConfig.bossThreadsCount(), adminServerConfig.transport());
+        NettyExecutor workerExecutor = NettyExecutor.create("Admin-Worker", adminServerConfig.workerThreadsCount(), adminServerConfig.transport());
 
         NettyServerBuilder builder = NettyServerBuilder.newBuilder()
                 .setMetricsRegistry(environment.metricRegistry())
                 .bossExecutor(bossExecutor)
                 .workerExecutor(workerExecutor)
+                .acceptorBacklog(adminServerConfig.nioAcceptorBacklog())
+                .drainTimeout(Duration.ofMillis(adminServerConfig.drainTimeoutMillis()))
                 .handler(adminEndpoints(styxConfig, startupConfig))
                 .shutdownAction(() -> {
                     bossExecutor.shut();
@@ -140,7 +143,7 @@ public class AdminServerBuilder {
 
         // Currently admin server cannot be started over TLS protocol.
         // This appears to be an existing issue that needs rectifying.
-        adminServerConfig.httpConnectorConfig().ifPresent(it -> builder.setProtocolConnector(new WebServerConnectorFactory().create(it)));
+        adminServerConfig.httpConnectorConfig().ifPresent(it -> builder.setProtocolConnector(new WebServerConnectorFactory("admin", environment.centralisedMetrics()).create(it)));
 
         return builder.build();
     }
@@ -168,6 +171,10 @@ public class AdminServerBuilder {
         httpRouter.aggregate("/admin/routing", routingObjectHandler);
         httpRouter.aggregate("/admin/routing/", routingObjectHandler);
 
+        ResponseCacheHandler responseCacheHandler = new ResponseCacheHandler(routeDatabase);
+        httpRouter.aggregate("/admin/routing/caches", responseCacheHandler);
+        httpRouter.aggregate("/admin/routing/caches/", responseCacheHandler);
+
         ServiceProviderHandler serviceProvideHandler = new ServiceProviderHandler(providerDatabase);
         httpRouter.aggregate("/admin/service/providers", serviceProvideHandler);
         httpRouter.aggregate("/admin/service/provider/", serviceProvideHandler);
@@ -207,7 +214,7 @@ public class AdminServerBuilder {
                 findRegistry(environment.meterRegistry().micrometerRegistry(), PrometheusMeterRegistry.class));
 
         if (optPrometheus.isPresent()) {
-            httpRouter.aggregate("/metrics", new PrometheusHandler(optPrometheus.get()));
+            httpRouter.stream("/metrics", new PrometheusHandler(optPrometheus.get()));
         } else {
             LOG.warn("No PrometheusMeterRegistry present, so we cannot publish to prometheus.");
         }
@@ -15,33 +15,229 @@
  */
 package com.hotels.styx.admin.handlers;
 
+import com.hotels.styx.api.Buffer;
+import com.hotels.styx.api.ByteStream;
 import com.hotels.styx.api.Eventual;
+import com.hotels.styx.api.HttpHandler;
 import com.hotels.styx.api.HttpInterceptor;
-import com.hotels.styx.api.HttpRequest;
-import com.hotels.styx.api.HttpResponse;
-import com.hotels.styx.api.WebServiceHandler;
+import com.hotels.styx.api.LiveHttpRequest;
+import com.hotels.styx.api.LiveHttpResponse;
 import io.micrometer.prometheus.PrometheusMeterRegistry;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.prometheus.client.Collector.MetricFamilySamples;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.exporter.common.TextFormat;
+import reactor.core.publisher.Flux;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import static com.hotels.styx.api.Buffers.fromByteBuf;
+import static com.hotels.styx.api.HttpHeaderNames.ACCEPT_ENCODING;
+import static com.hotels.styx.api.HttpHeaderNames.CONTENT_ENCODING;
 import static com.hotels.styx.api.HttpHeaderNames.CONTENT_TYPE;
+import static com.hotels.styx.api.HttpHeaderValues.GZIP;
 import static com.hotels.styx.api.HttpHeaderValues.PLAIN_TEXT;
 import static com.hotels.styx.api.HttpResponseStatus.OK;
+import static com.hotels.styx.api.LiveHttpResponse.response;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.enumeration;
+import static java.util.Collections.singletonList;
 import static java.util.Objects.requireNonNull;
 
-public class PrometheusHandler implements WebServiceHandler {
+/**
+ * Exposes the Prometheus registry in the text exposition format.
+ * <p>
+ * The exposition is streamed: metric families are encoded one at a time into pooled
+ * {@link ByteBuf} chunks as the connection demands them, so that large scrapes never
+ * materialise as a single {@code String}. The response is gzip encoded when the client
+ * accepts it, and the scrape may be restricted to particular metric families with
+ * {@code name[]=} query parameters.
+ */
+public class PrometheusHandler implements HttpHandler {
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    private static final String NAME_PARAMETER = "name[]";
+
     private final PrometheusMeterRegistry prometheusRegistry;
+    private final ByteBufAllocator allocator;
 
     public PrometheusHandler(PrometheusMeterRegistry prometheusRegistry) {
+        this(prometheusRegistry, PooledByteBufAllocator.DEFAULT);
+    }
+
+    PrometheusHandler(PrometheusMeterRegistry prometheusRegistry, ByteBufAllocator allocator) {
         this.prometheusRegistry = requireNonNull(prometheusRegistry);
+        this.allocator = requireNonNull(allocator);
     }
 
     @Override
-    public Eventual<HttpResponse> handle(final HttpRequest request, final HttpInterceptor.Context context) {
-        return Eventual.of(HttpResponse
-                .response(OK)
+    public Eventual<LiveHttpResponse> handle(LiveHttpRequest request, HttpInterceptor.Context context) {
+        boolean gzip = acceptsGzip(request);
+        Set<String> includedNames = includedNames(request);
+
+        LiveHttpResponse.Builder response = response(OK)
                 .disableCaching()
-                .header(CONTENT_TYPE, PLAIN_TEXT)
-                .body(prometheusRegistry.scrape(), UTF_8, true)
+                .header(CONTENT_TYPE, PLAIN_TEXT);
+
+        if (gzip) {
+            response.header(CONTENT_ENCODING, GZIP);
+        }
+
+        return Eventual.of(response
+                .body(new ByteStream(scrape(includedNames, gzip)))
                 .build());
     }
+
+    private Flux<Buffer> scrape(Set<String> includedNames, boolean gzip) {
+        return Flux.generate(
+                () -> new ChunkedScrape(samples(includedNames), allocator, gzip),
+                (scrape, sink) -> {
+                    ByteBuf chunk = scrape.nextChunk();
+                    if (chunk.isReadable()) {
+                        sink.next(fromByteBuf(chunk));
+                    } else {
+                        chunk.release();
+                    }
+                    if (scrape.finished()) {
+                        sink.complete();
+                    }
+                    return scrape;
+                },
+                ChunkedScrape::discard);
+    }
+
+    private Enumeration<MetricFamilySamples> samples(Set<String> includedNames) {
+        CollectorRegistry registry = prometheusRegistry.getPrometheusRegistry();
+        return includedNames.isEmpty()
+                ? registry.metricFamilySamples()
+                : registry.filteredMetricFamilySamples(includedNames);
+    }
+
+    private static Set<String> includedNames(LiveHttpRequest request) {
+        Set<String> names = new HashSet<>();
+        request.queryParams(NAME_PARAMETER).forEach(names::add);
+        return names;
+    }
+
+    private static boolean acceptsGzip(LiveHttpRequest request) {
+        for (String acceptEncoding : request.headers().getAll(ACCEPT_ENCODING)) {
+            for (String coding : acceptEncoding.split(",")) {
+                String[] parameters = coding.split(";");
+                if (parameters[0].trim().equalsIgnoreCase(GZIP.toString()) && !rejected(parameters)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean rejected(String[] parameters) {
+        for (int i = 1; i < parameters.length; i++) {
+            String parameter = parameters[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2)) <= 0;
+                } catch (NumberFormatException e) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Encodes metric families into successive chunks. Each chunk is filled until it reaches
+     * {@link #CHUNK_SIZE}, or until the registry is exhausted.
+     */
+    private static final class ChunkedScrape {
+        private final Enumeration<MetricFamilySamples> samples;
+        private final ByteBufAllocator allocator;
+        private final ChunkSink sink = new ChunkSink();
+        private final boolean gzip;
+        private Writer writer;
+        private boolean finished;
+
+        ChunkedScrape(Enumeration<MetricFamilySamples> samples, ByteBufAllocator allocator, boolean gzip) {
+            this.samples = samples;
+            this.allocator = allocator;
+            this.gzip = gzip;
+        }
+
+        ByteBuf nextChunk() {
+            ByteBuf chunk = allocator.buffer(CHUNK_SIZE);
+            sink.target = chunk;
+            try {
+                if (writer == null) {
+                    // Created against the first chunk, as the gzip stream writes its header eagerly.
+                    writer = new OutputStreamWriter(gzip ? new GZIPOutputStream(sink, CHUNK_SIZE) : sink, UTF_8);
+                }
+                while (chunk.readableBytes() < CHUNK_SIZE && samples.hasMoreElements()) {
+                    TextFormat.write004(writer, enumeration(singletonList(samples.nextElement())));
+                    writer.flush();
+                }
+                if (!samples.hasMoreElements()) {
+                    finished = true;
+                    writer.close();
+                }
+                return chunk;
+            } catch (IOException | RuntimeException e) {
+                chunk.release();
+                discard();
+                throw e instanceof IOException ? new UncheckedIOException((IOException) e) : (RuntimeException) e;
+            } finally {
+                sink.target = null;
+            }
+        }
+
+        boolean finished() {
+            return finished;
+        }
+
+        void discard() {
+            if (!finished) {
+                finished = true;
+                sink.target = null;
+                if (writer == null) {
+                    return;
+                }
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    // Nothing is written once the sink is detached.
+                }
+            }
+        }
+    }
+
+    /**
+     * An output stream that appends to whichever chunk is currently being filled.
+     * Writes are discarded while no chunk is attached.
+     */
+    private static final class ChunkSink extends OutputStream {
+        private ByteBuf target;
+
+        @Override
+        public void write(int b) {
+            if (target != null) {
+                target.writeByte(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            if (target != null) {
+                target.writeBytes(bytes, offset, length);
+            }
+        }
+    }
 }
@@ -30,11 +30,13 @@ import com.hotels.styx.api.WebServiceHandler;
 import com.hotels.styx.api.configuration.ObjectStore;
 import com.hotels.styx.api.extension.service.spi.StyxService;
 import com.hotels.styx.common.http.handler.HttpStreamer;
+import com.hotels.styx.routing.db.ChangeSet;
 import com.hotels.styx.routing.db.StyxObjectStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import reactor.core.publisher.Flux;
 
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -52,6 +54,7 @@ import static java.nio.charset.StandardCharsets.UTF_8;
  * Routes admin requests to the admin endpoints of each {@link com.hotels.styx.api.extension.service.spi.StyxService}
  * in the Provider {@link ObjectStore}, and to the index page that organizes and lists these endpoints.
  * This handler registers as a watcher on the store, and will keep the endpoint list up to date as the store data changes.
+ * Only the endpoints of added or replaced services are looked up again on each change.
  */
 public class ProviderRoutingHandler implements WebServiceHandler {
 
@@ -62,6 +65,7 @@ public class ProviderRoutingHandler implements WebServiceHandler {
             .configure(AUTO_CLOSE_SOURCE, true);
 
     private final String pathPrefix;
+    private final Map<String, Map<String, HttpStreamer>> adminHandlers = new LinkedHashMap<>();
     private volatile UrlPatternRouter router;
 
     /**
@@ -72,7 +76,7 @@ public class ProviderRoutingHandler implements WebServiceHandler {
      */
     public ProviderRoutingHandler(String pathPrefix, StyxObjectStore<? extends StyxObjectRecord<? extends StyxService>> providerDb) {
         this.pathPrefix = pathPrefix;
-        Flux.from(providerDb.watch()).subscribe(
+        Flux.from(providerDb.watchChanges()).subscribe(
                 this::refreshRoutes,
                 error -> LOG.error("Error in providerDB subscription", error));
     }
@@ -82,9 +86,24 @@ public class ProviderRoutingHandler implements WebServiceHandler {
         return router.handle(request, context);
     }
 
-    private void refreshRoutes(ObjectStore<? extends StyxObjectRecord<? extends StyxService>> db) {
+    private void refreshRoutes(ChangeSet<? extends StyxObjectRecord<? extends StyxService>> changes) {
         LOG.debug("Refreshing provider admin endpoint routes");
-        router = buildRouter(db);
+
+        if (changes.getResync()) {
+            adminHandlers.clear();
+        }
+        changes.getRemoved().keySet().forEach(adminHandlers::remove);
+        changes.getAdded().forEach((name, record) -> adminHandlers.put(name, adminHandlers(name, record)));
+        changes.getUpdated().forEach((name, update) -> adminHandlers.put(name, adminHandlers(name, update.getCurrent())));
+
+        router = buildRouter(changes.getSnapshot());
+    }
+
+    private Map<String, HttpStreamer> adminHandlers(String providerName, StyxObjectRecord<? extends StyxService> record) {
+        Map<String, HttpStreamer> handlers = new LinkedHashMap<>();
+        record.getStyxService().adminInterfaceHandlers(pathPrefix + "/" + providerName)
+                .forEach((relPath, handler) -> handlers.put(providerName + "/" + relPath, new HttpStreamer(MEGABYTE, handler)));
+        return handlers;
     }
 
     private UrlPatternRouter buildRouter(ObjectStore<? extends StyxObjectRecord<? extends StyxService>> db) {
@@ -96,13 +115,8 @@ public class ProviderRoutingHandler implements WebServiceHandler {
                 return handleRequestForOneObject(db, name);
             });
 
-        db.entrySet().forEach(entry -> {
-            String providerName = entry.getKey();
-            entry.getValue().getStyxService().adminInterfaceHandlers(pathPrefix + "/" + providerName)
-                .forEach((relPath, handler) ->
-                    routeBuilder.get(providerName + "/" + relPath, new HttpStreamer(MEGABYTE, handler))
-                );
-        });
+        adminHandlers.values().forEach(handlers ->
+                handlers.forEach(routeBuilder::get));
 
         return routeBuilder.build();
     }
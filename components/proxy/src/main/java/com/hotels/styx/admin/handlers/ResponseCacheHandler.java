@@ -0,0 +1,102 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.admin.handlers;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hotels.styx.api.Eventual;
+import com.hotels.styx.api.HttpInterceptor;
+import com.hotels.styx.api.HttpRequest;
+import com.hotels.styx.api.HttpResponse;
+import com.hotels.styx.api.WebServiceHandler;
+import com.hotels.styx.routing.RoutingObjectRecord;
+import com.hotels.styx.routing.cache.ResponseCache;
+import com.hotels.styx.routing.db.StyxObjectStore;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import static com.hotels.styx.admin.handlers.UrlPatternRouter.placeholders;
+import static com.hotels.styx.api.HttpHeaderNames.CONTENT_TYPE;
+import static com.hotels.styx.api.HttpHeaderValues.APPLICATION_JSON;
+import static com.hotels.styx.api.HttpResponse.response;
+import static com.hotels.styx.api.HttpResponseStatus.NOT_FOUND;
+import static com.hotels.styx.api.HttpResponseStatus.OK;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Provides admin interface access to the response caches declared as routing objects.
+ * <p>
+ * {@code GET /admin/routing/caches} lists the statistics of each cache.
+ * {@code POST /admin/routing/caches/<name>/purge} removes the cached responses of a cache, or only
+ * those whose path starts with the {@code path} query parameter.
+ */
+public class ResponseCacheHandler implements WebServiceHandler {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final StyxObjectStore<RoutingObjectRecord> routeDatabase;
+    private final UrlPatternRouter urlRouter;
+
+    public ResponseCacheHandler(StyxObjectStore<RoutingObjectRecord> routeDatabase) {
+        this.routeDatabase = requireNonNull(routeDatabase);
+        this.urlRouter = new UrlPatternRouter.Builder()
+                .get("/admin/routing/caches", (request, context) -> {
+                    Map<String, Map<String, Long>> stats = new TreeMap<>();
+                    routeDatabase.entrySet().forEach(entry ->
+                            cache(entry.getValue()).ifPresent(cache -> stats.put(entry.getKey(), cache.stats())));
+
+                    return Eventual.of(json(stats));
+                })
+                .post("/admin/routing/caches/:objectName/purge", (request, context) -> {
+                    String name = placeholders(context).get("objectName");
+                    String prefix = request.queryParam("path").orElse("");
+
+                    return Eventual.of(cache(name)
+                            .map(cache -> json(Map.of("purged", cache.purge(prefix))))
+                            .orElseGet(() -> response(NOT_FOUND).build()));
+                })
+                .build();
+    }
+
+    @Override
+    public Eventual<HttpResponse> handle(HttpRequest request, HttpInterceptor.Context context) {
+        return urlRouter.handle(request, context);
+    }
+
+    private Optional<ResponseCache> cache(String name) {
+        return routeDatabase.get(name).flatMap(ResponseCacheHandler::cache);
+    }
+
+    private static Optional<ResponseCache> cache(RoutingObjectRecord record) {
+        return Optional.of(record.getRoutingObject().delegate())
+                .filter(ResponseCache.class::isInstance)
+                .map(ResponseCache.class::cast);
+    }
+
+    private static HttpResponse json(Object content) {
+        try {
+            return response(OK)
+                    .addHeader(CONTENT_TYPE, APPLICATION_JSON)
+                    .disableCaching()
+                    .body(MAPPER.writeValueAsString(content), UTF_8)
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -21,6 +21,7 @@ import com.hotels.styx.api.extension.Origin;
 import com.hotels.styx.api.extension.OriginsSnapshot;
 import com.hotels.styx.api.extension.service.BackendService;
 import com.hotels.styx.api.extension.service.Certificate;
+import com.hotels.styx.api.extension.service.CollapsedForwardingConfig;
 import com.hotels.styx.api.extension.service.ConnectionPoolSettings;
 import com.hotels.styx.api.extension.service.HealthCheckConfig;
 import com.hotels.styx.api.extension.service.RewriteConfig;
@@ -28,6 +29,7 @@ import com.hotels.styx.api.extension.service.StickySessionConfig;
 import com.hotels.styx.api.extension.service.TlsSettings;
 import com.hotels.styx.infrastructure.configuration.json.mixins.BackendServiceMixin;
 import com.hotels.styx.infrastructure.configuration.json.mixins.CertificateMixin;
+import com.hotels.styx.infrastructure.configuration.json.mixins.CollapsedForwardingConfigMixin;
 import com.hotels.styx.infrastructure.configuration.json.mixins.ConnectionPoolSettingsMixin;
 import com.hotels.styx.infrastructure.configuration.json.mixins.HealthCheckConfigMixin;
 import com.hotels.styx.infrastructure.configuration.json.mixins.IdMixin;
@@ -61,6 +63,7 @@ public final class ObjectMappers {
                 .addMixIn(ConnectionPoolSettings.class, ConnectionPoolSettingsMixin.class)
                 .addMixIn(RewriteConfig.class, RewriteConfigMixin.class)
                 .addMixIn(StickySessionConfig.class, StickySessionConfigMixin.class)
+                .addMixIn(CollapsedForwardingConfig.class, CollapsedForwardingConfigMixin.class)
                 .addMixIn(TlsSettings.class, TlsSettingsMixin.class)
                 .addMixIn(TlsSettings.Builder.class, TlsSettingsMixin.Builder.class)
                 .addMixIn(Origin.class, OriginMixin.class)
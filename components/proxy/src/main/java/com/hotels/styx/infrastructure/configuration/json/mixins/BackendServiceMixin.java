@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -21,6 +21,7 @@ import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
 import com.hotels.styx.api.extension.Origin;
 import com.hotels.styx.api.extension.service.BackendService;
+import com.hotels.styx.api.extension.service.CollapsedForwardingConfig;
 import com.hotels.styx.api.extension.service.ConnectionPoolSettings;
 import com.hotels.styx.api.extension.service.HealthCheckConfig;
 import com.hotels.styx.api.extension.service.RewriteConfig;
@@ -54,6 +55,9 @@ public interface BackendServiceMixin {
     @JsonProperty("stickySession")
     StickySessionConfig stickySessionConfig();
 
+    @JsonProperty("collapsedForwarding")
+    CollapsedForwardingConfig collapsedForwardingConfig();
+
     @JsonProperty("rewrites")
     List<RewriteConfig> rewrites();
 
@@ -101,6 +105,9 @@ public interface BackendServiceMixin {
         @JsonProperty("stickySession")
         BackendService.Builder stickySessionConfig(StickySessionConfig stickySessionConfig);
 
+        @JsonProperty("collapsedForwarding")
+        BackendService.Builder collapsedForwardingConfig(CollapsedForwardingConfig collapsedForwardingConfig);
+
         @JsonProperty("healthCheck")
         BackendService.Builder healthCheckConfig(HealthCheckConfig healthCheckConfig);
     }
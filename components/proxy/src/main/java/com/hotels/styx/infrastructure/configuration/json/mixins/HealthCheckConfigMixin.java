@@ -32,6 +32,9 @@ public interface HealthCheckConfigMixin {
     @JsonProperty("intervalMillis")
     public long intervalMillis();
 
+    @JsonProperty("maxIntervalMillis")
+    public long maxIntervalMillis();
+
     @JsonProperty("timeoutMillis")
     public long timeoutMillis();
 
@@ -44,6 +47,9 @@ public interface HealthCheckConfigMixin {
     @JsonIgnore
     public boolean isEnabled();
 
+    @JsonIgnore
+    public boolean isAdaptive();
+
     /**
      * A builder of {@link HealthCheckConfigMixin}s.
      */
@@ -55,6 +61,9 @@ public interface HealthCheckConfigMixin {
         @JsonProperty("intervalMillis")
         public Builder interval(long interval);
 
+        @JsonProperty("maxIntervalMillis")
+        public Builder maxInterval(long maxInterval);
+
         @JsonProperty("timeoutMillis")
         public Builder timeout(long timeout);
 
@@ -114,7 +114,7 @@ public class BackendServicesRouter implements HttpRouter, Registry.ChangeListene
             boolean longFormat = environment.styxConfig().get("request-logging.outbound.longFormat", Boolean.class)
                     .orElse(false);
 
-            OriginStatsFactory originStatsFactory = new CachingOriginStatsFactory(environment.centralisedMetrics());
+            OriginStatsFactory originStatsFactory = new CachingOriginStatsFactory(environment.centralisedMetrics(), environment.passiveHealthSignals());
             ConnectionPoolSettings poolSettings = backendService.connectionPoolConfig();
 
             Connection.Factory connectionFactory = connectionFactory(
@@ -152,7 +152,7 @@ public class BackendServicesRouter implements HttpRouter, Registry.ChangeListene
     }
 
     private OriginHealthStatusMonitor healthStatusMonitor(BackendService backendService) {
-        return new OriginHealthStatusMonitorFactory()
+        return new OriginHealthStatusMonitorFactory(environment.healthCheckScheduler(), environment.passiveHealthSignals())
                         .create(backendService.id(),
                                 backendService.healthCheckConfig(),
                                 () -> originHealthCheckFunction(
@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -18,6 +18,8 @@ package com.hotels.styx.proxy;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+import com.hotels.styx.common.CompressionConfig;
+import com.hotels.styx.common.ConcurrencyLimitConfig;
 import com.hotels.styx.server.HttpConnectorConfig;
 import com.hotels.styx.server.HttpsConnectorConfig;
 import com.hotels.styx.server.netty.NettyServerConfig;
@@ -31,10 +33,12 @@ import java.util.Optional;
 public class ProxyServerConfig extends NettyServerConfig {
     private final int clientWorkerThreadsCount;
     private final String via;
+    private final ConcurrencyLimitConfig backendConcurrencyLimit;
 
     public ProxyServerConfig() {
         this.clientWorkerThreadsCount = HALF_OF_AVAILABLE_PROCESSORS;
         this.via = null;
+        this.backendConcurrencyLimit = ConcurrencyLimitConfig.disabled();
     }
 
     private ProxyServerConfig(Builder builder) {
@@ -44,6 +48,7 @@ public class ProxyServerConfig extends NettyServerConfig {
 
         this.clientWorkerThreadsCount = clientThreads == null || clientThreads == 0 ? HALF_OF_AVAILABLE_PROCESSORS : clientThreads;
         this.via = builder.via;
+        this.backendConcurrencyLimit = builder.backendConcurrencyLimit;
     }
 
     public int clientWorkerThreadsCount() {
@@ -54,6 +59,16 @@ public class ProxyServerConfig extends NettyServerConfig {
         return Optional.ofNullable(via);
     }
 
+    /**
+     * Adaptive limit on the number of requests in flight to each backend service. Each backend
+     * service has a limiter of its own.
+     *
+     * @return concurrency limit settings
+     */
+    public ConcurrencyLimitConfig backendConcurrencyLimit() {
+        return backendConcurrencyLimit;
+    }
+
     /**
      * Builder.
      */
@@ -62,6 +77,7 @@ public class ProxyServerConfig extends NettyServerConfig {
         private final NettyServerConfig.Builder builder = new NettyServerConfig.Builder();
         private Integer clientWorkerThreadsCount;
         private String via;
+        private ConcurrencyLimitConfig backendConcurrencyLimit = ConcurrencyLimitConfig.disabled();
 
         @JsonProperty("bossThreadsCount")
         public Builder setBossThreadsCount(Integer bossThreadsCount) {
@@ -81,6 +97,38 @@ public class ProxyServerConfig extends NettyServerConfig {
             return this;
         }
 
+        @JsonProperty("drainTimeoutMillis")
+        public Builder setDrainTimeoutMillis(Integer drainTimeoutMillis) {
+            builder.setDrainTimeoutMillis(drainTimeoutMillis);
+            return this;
+        }
+
+        @JsonProperty("acceptorCount")
+        public Builder setAcceptorCount(Integer acceptorCount) {
+            builder.setAcceptorCount(acceptorCount);
+            return this;
+        }
+
+        @JsonProperty("transport")
+        public Builder setTransport(String transport) {
+            builder.setTransport(transport);
+            return this;
+        }
+
+        @JsonProperty("concurrencyLimit")
+        public Builder setConcurrencyLimit(ConcurrencyLimitConfig concurrencyLimit) {
+            builder.setConcurrencyLimit(concurrencyLimit);
+            return this;
+        }
+
+        @JsonProperty("backendConcurrencyLimit")
+        public Builder setBackendConcurrencyLimit(ConcurrencyLimitConfig backendConcurrencyLimit) {
+            if (backendConcurrencyLimit != null) {
+                this.backendConcurrencyLimit = backendConcurrencyLimit;
+            }
+            return this;
+        }
+
         @JsonProperty("maxInitialLength")
         public Builder setMaxInitialLength(Integer maxInitialLength) {
             builder.setMaxInitialLength(maxInitialLength);
@@ -145,6 +193,12 @@ public class ProxyServerConfig extends NettyServerConfig {
             return this;
         }
 
+        @JsonProperty("compression")
+        public Builder setCompression(CompressionConfig compression) {
+            builder.setCompression(compression);
+            return this;
+        }
+
         @JsonProperty("via")
         public Builder setVia(final String via) {
             this.via = via;
@@ -16,10 +16,12 @@
 package com.hotels.styx.proxy
 
 import com.hotels.styx.Environment
+import com.hotels.styx.api.Id
 import com.hotels.styx.api.configuration.Configuration
 import com.hotels.styx.client.OriginsInventory
 import com.hotels.styx.client.OriginStatsFactory
 import com.hotels.styx.client.BackendServiceClient
+import com.hotels.styx.client.CollapsedForwarding
 import com.hotels.styx.api.extension.retrypolicy.spi.RetryPolicy
 import com.hotels.styx.serviceproviders.ServiceProvision
 import com.hotels.styx.api.extension.loadbalancing.spi.LoadBalancer
@@ -29,14 +31,20 @@ import com.hotels.styx.client.StyxBackendServiceClient
 import com.hotels.styx.client.stickysession.StickySessionLoadBalancingStrategy
 import com.hotels.styx.client.OriginRestrictionLoadBalancingStrategy
 import com.hotels.styx.client.retry.RetryNTimes
+import com.hotels.styx.common.AdaptiveConcurrencyLimiter
 import org.slf4j.LoggerFactory
+import java.util.concurrent.ConcurrentHashMap
 
 /**
  * Creates HTTP clients for connecting to backend services.
+ *
+ * When backend concurrency limiting is enabled, each backend service gets a limiter of its own. The limiter
+ * is kept when the backend service is updated, so that the limit it has learned survives configuration changes.
  */
 class StyxBackendServiceClientFactory(    // Todo: This can be package private if/when backend service router is created in a separate builder in styx.proxy package.
     private val environment: Environment
 ) : BackendServiceClientFactory {
+    private val concurrencyLimiters = ConcurrentHashMap<Id, AdaptiveConcurrencyLimiter>()
 
     override fun createClient(
         backendService: BackendService,
@@ -72,10 +80,34 @@ class StyxBackendServiceClientFactory(    // Todo: This can be package private i
             loadBalancer = loadBalancingStrategy,
             retryPolicy = retryPolicy,
             metrics = environment.centralisedMetrics(),
-            overrideHostHeader = backendService.isOverrideHostHeader()
+            overrideHostHeader = backendService.isOverrideHostHeader(),
+            concurrencyLimiter = concurrencyLimiter(backendService.id()),
+            collapsedForwarding = collapsedForwarding(backendService)
         )
     }
 
+    private fun collapsedForwarding(backendService: BackendService): CollapsedForwarding? =
+        backendService.collapsedForwardingConfig()
+            .takeIf { it.enabled() }
+            ?.let {
+                val collapsed = environment.centralisedMetrics().proxy.client.requestsCollapsed(backendService.idAsString())
+                CollapsedForwarding(it) { collapsed.increment() }
+            }
+
+    private fun concurrencyLimiter(appId: Id): AdaptiveConcurrencyLimiter? {
+        val config = environment.configuration().proxyServerConfig().backendConcurrencyLimit()
+        if (!config.enabled()) {
+            return null
+        }
+        return concurrencyLimiters.computeIfAbsent(appId) {
+            val metrics = environment.centralisedMetrics().proxy.client
+            val shed = metrics.requestsShed(appId.toString())
+            AdaptiveConcurrencyLimiter(config) { shed.increment() }.also {
+                metrics.concurrencyLimit(appId.toString()).register(it, AdaptiveConcurrencyLimiter::limit)
+            }
+        }
+    }
+
     private fun decorateLoadBalancer(
         configuredLbStrategy: LoadBalancer,
         stickySessionEnabled: Boolean,
@@ -0,0 +1,209 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.proxy.accesslog;
+
+import com.hotels.styx.StyxConfig;
+import org.slf4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * An asynchronous access log.
+ * <p>
+ * Request handling threads {@link #publish publish} entries into an {@link AccessLogRingBuffer}.
+ * A single background thread drains the ring, encodes the entries in the configured
+ * {@link AccessLogFormat}, and appends them in batches to a {@link RotatingFileChannel}.
+ * Entries published while the ring is full, or once the log is closed, are dropped and counted.
+ */
+public final class AccessLog implements Closeable {
+    private static final Logger LOGGER = getLogger(AccessLog.class);
+
+    private static final int WRITE_BUFFER_SIZE = 256 * 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final AccessLogRingBuffer ring;
+    private final AccessLogFormat format;
+    private final RotatingFileChannel file;
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+    private final StringBuilder scratch = new StringBuilder(256);
+    private final LongAdder written = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    // Publishers between their check of `running` and their entry landing in the ring.
+    private final AtomicInteger publishing = new AtomicInteger();
+    private final Thread writer;
+
+    private volatile boolean running = true;
+
+    AccessLog(AccessLogRingBuffer ring, AccessLogFormat format, RotatingFileChannel file) {
+        this.ring = requireNonNull(ring);
+        this.format = requireNonNull(format);
+        this.file = requireNonNull(file);
+        this.writer = new Thread(this::run, "STYX-ACCESS-LOG-WRITER");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Creates an access log as specified by the {@code request-logging.access} configuration block.
+     *
+     * @param config Styx configuration
+     * @return an access log, if it is enabled
+     */
+    public static Optional<AccessLog> fromConfig(StyxConfig config) {
+        boolean enabled = config.get("request-logging.access.enabled", Boolean.class).orElse(false);
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        Path path = Paths.get(config.get("request-logging.access.path").orElse("logs/access.log"));
+        AccessLogFormat format = parseFormat(config.get("request-logging.access.format").orElse("TEXT"));
+        int bufferSize = config.get("request-logging.access.bufferSize", Integer.class).orElse(64 * 1024);
+        long maxFileSize = config.get("request-logging.access.maxFileSize", Long.class).orElse(100L * 1024 * 1024);
+        int maxFiles = config.get("request-logging.access.maxFiles", Integer.class).orElse(10);
+
+        try {
+            return Optional.of(new AccessLog(new AccessLogRingBuffer(bufferSize), format, new RotatingFileChannel(path, maxFileSize, maxFiles)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open access log " + path, e);
+        }
+    }
+
+    private static AccessLogFormat parseFormat(String name) {
+        return Stream.of(AccessLogFormat.values())
+                .filter(candidate -> candidate.name().equalsIgnoreCase(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(format("Unknown access log format request-logging.access.format='%s'. Expected one of %s",
+                        name, Arrays.toString(AccessLogFormat.values()))));
+    }
+
+    /**
+     * Publishes an entry without blocking. Safe to call from any thread.
+     *
+     * @return true if the entry was accepted, false if it was dropped
+     */
+    public boolean publish(long timestampMillis, Object requestId, String method, int status, long requestBytes, long responseBytes,
+                           String originId, boolean secure, long timeToFirstByteNanos, long totalLatencyNanos) {
+        publishing.incrementAndGet();
+        try {
+            if (!running) {
+                rejected.increment();
+                return false;
+            }
+            return ring.publish(timestampMillis, requestId, method, status, requestBytes, responseBytes,
+                    originId, secure, timeToFirstByteNanos, totalLatencyNanos);
+        } finally {
+            publishing.decrementAndGet();
+        }
+    }
+
+    public long droppedCount() {
+        return ring.droppedCount() + rejected.sum();
+    }
+
+    public long writtenCount() {
+        return written.sum();
+    }
+
+    /**
+     * Stops accepting entries, writes out those already published, and closes the file.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                if (drainOnce() == 0) {
+                    flush();
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+            }
+            awaitPublishers();
+            while (drainOnce() > 0) {
+                // Write out everything published before close.
+            }
+            flush();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Access log writer failed. Further access log entries will be dropped.", e);
+            running = false;
+            awaitPublishers();
+            while (ring.drain(record -> rejected.increment(), ring.capacity()) > 0) {
+                // Count what can no longer be written.
+            }
+        } finally {
+            try {
+                file.close();
+            } catch (IOException e) {
+                LOGGER.warn("Failed to close access log file", e);
+            }
+        }
+    }
+
+    // Once `running` is false, publishers that have not yet checked it will reject their entries.
+    private void awaitPublishers() {
+        while (publishing.get() > 0) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private int drainOnce() {
+        return ring.drain(this::encode, ring.capacity());
+    }
+
+    private void encode(AccessLogRecord record) {
+        if (writeBuffer.remaining() < AccessLogFormat.MAX_RECORD_SIZE) {
+            try {
+                flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        format.encode(record, scratch, writeBuffer);
+        written.increment();
+    }
+
+    private void flush() throws IOException {
+        if (writeBuffer.position() > 0) {
+            writeBuffer.flip();
+            file.write(writeBuffer);
+            writeBuffer.clear();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.proxy.accesslog;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.time.format.DateTimeFormatter.ISO_INSTANT;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Encodings for access log records.
+ * <p>
+ * Each encoder writes a single record into a byte buffer that has at least
+ * {@link #MAX_RECORD_SIZE} bytes remaining. Variable-length fields are truncated
+ * to {@link #MAX_FIELD_LENGTH} characters to honour that bound.
+ */
+public enum AccessLogFormat {
+    /**
+     * One line of space separated {@code key=value} pairs per record.
+     */
+    TEXT {
+        @Override
+        void encode(AccessLogRecord record, StringBuilder scratch, ByteBuffer out) {
+            scratch.setLength(0);
+            ISO_INSTANT.formatTo(Instant.ofEpochMilli(record.timestampMillis()), scratch);
+            scratch.append(" requestId=");
+            appendTruncated(scratch, record.requestId());
+            scratch.append(" method=").append(record.method())
+                    .append(" status=").append(record.status())
+                    .append(" origin=");
+            appendTruncated(scratch, record.originId() == null ? "-" : record.originId());
+            scratch.append(" secure=").append(record.secure())
+                    .append(" requestBytes=").append(record.requestBytes())
+                    .append(" responseBytes=").append(record.responseBytes())
+                    .append(" timeToFirstByteMicros=").append(NANOSECONDS.toMicros(record.timeToFirstByteNanos()))
+                    .append(" latencyMicros=").append(NANOSECONDS.toMicros(record.totalLatencyNanos()))
+                    .append('\n');
+            out.put(UTF_8.encode(scratch.toString()));
+        }
+    },
+
+    /**
+     * One JSON object per line.
+     */
+    JSON {
+        @Override
+        void encode(AccessLogRecord record, StringBuilder scratch, ByteBuffer out) {
+            scratch.setLength(0);
+            scratch.append("{\"timestamp\":").append(record.timestampMillis())
+                    .append(",\"requestId\":");
+            appendJsonString(scratch, record.requestId());
+            scratch.append(",\"method\":");
+            appendJsonString(scratch, record.method());
+            scratch.append(",\"status\":").append(record.status())
+                    .append(",\"origin\":");
+            if (record.originId() == null) {
+                scratch.append("null");
+            } else {
+                appendJsonString(scratch, record.originId());
+            }
+            scratch.append(",\"secure\":").append(record.secure())
+                    .append(",\"requestBytes\":").append(record.requestBytes())
+                    .append(",\"responseBytes\":").append(record.responseBytes())
+                    .append(",\"timeToFirstByteMicros\":").append(NANOSECONDS.toMicros(record.timeToFirstByteNanos()))
+                    .append(",\"latencyMicros\":").append(NANOSECONDS.toMicros(record.totalLatencyNanos()))
+                    .append("}\n");
+            out.put(UTF_8.encode(scratch.toString()));
+        }
+    },
+
+    /**
+     * A compact, length-prefixed binary layout:
+     * <pre>
+     *   int    record length in bytes, excluding this field
+     *   long   timestamp (millis since epoch)
+     *   short  status
+     *   byte   flags (bit 0: secure)
+     *   long   request bytes
+     *   long   response bytes
+     *   long   time to first byte (nanos)
+     *   long   total latency (nanos)
+     *   string request ID
+     *   string method
+     *   string origin ID (empty if none)
+     * </pre>
+     * Strings are encoded as an unsigned short byte length followed by UTF-8 bytes.
+     */
+    BINARY {
+        @Override
+        void encode(AccessLogRecord record, StringBuilder scratch, ByteBuffer out) {
+            int start = out.position();
+            out.putInt(0);
+            out.putLong(record.timestampMillis());
+            out.putShort((short) record.status());
+            out.put((byte) (record.secure() ? 1 : 0));
+            out.putLong(record.requestBytes());
+            out.putLong(record.responseBytes());
+            out.putLong(record.timeToFirstByteNanos());
+            out.putLong(record.totalLatencyNanos());
+            putString(out, scratch, record.requestId());
+            putString(out, scratch, record.method());
+            putString(out, scratch, record.originId());
+            out.putInt(start, out.position() - start - Integer.BYTES);
+        }
+
+        private void putString(ByteBuffer out, StringBuilder scratch, Object value) {
+            scratch.setLength(0);
+            appendTruncated(scratch, value == null ? "" : value);
+            ByteBuffer bytes = UTF_8.encode(scratch.toString());
+            out.putShort((short) bytes.remaining());
+            out.put(bytes);
+        }
+    };
+
+    static final int MAX_FIELD_LENGTH = 256;
+    static final int MAX_RECORD_SIZE = 8192;
+
+    abstract void encode(AccessLogRecord record, StringBuilder scratch, ByteBuffer out);
+
+    private static void appendTruncated(StringBuilder builder, Object value) {
+        String text = String.valueOf(value);
+        builder.append(text, 0, Math.min(text.length(), MAX_FIELD_LENGTH));
+    }
+
+    private static void appendJsonString(StringBuilder builder, Object value) {
+        if (value == null) {
+            builder.append("null");
+            return;
+        }
+        String text = String.valueOf(value);
+        builder.append('"');
+        for (int i = 0; i < Math.min(text.length(), MAX_FIELD_LENGTH); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        builder.append('"');
+    }
+}
@@ -0,0 +1,124 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.proxy.accesslog;
+
+/**
+ * A fixed-layout access log entry.
+ * <p>
+ * Records are preallocated by the {@link AccessLogRingBuffer} and reused for the lifetime
+ * of the buffer. Producers fill a record in place, so that publishing an access log entry
+ * does not allocate. Readers must not retain a record beyond the callback it is passed to.
+ */
+public final class AccessLogRecord {
+    private long timestampMillis;
+    private Object requestId;
+    private String method;
+    private int status;
+    private long requestBytes;
+    private long responseBytes;
+    private String originId;
+    private boolean secure;
+    private long timeToFirstByteNanos;
+    private long totalLatencyNanos;
+
+    AccessLogRecord() {
+    }
+
+    void set(long timestampMillis, Object requestId, String method, int status, long requestBytes, long responseBytes,
+             String originId, boolean secure, long timeToFirstByteNanos, long totalLatencyNanos) {
+        this.timestampMillis = timestampMillis;
+        this.requestId = requestId;
+        this.method = method;
+        this.status = status;
+        this.requestBytes = requestBytes;
+        this.responseBytes = responseBytes;
+        this.originId = originId;
+        this.secure = secure;
+        this.timeToFirstByteNanos = timeToFirstByteNanos;
+        this.totalLatencyNanos = totalLatencyNanos;
+    }
+
+    void clear() {
+        this.requestId = null;
+        this.method = null;
+        this.originId = null;
+    }
+
+    /**
+     * Time at which the request was received, in milliseconds since the epoch.
+     *
+     * @return request timestamp
+     */
+    public long timestampMillis() {
+        return timestampMillis;
+    }
+
+    public Object requestId() {
+        return requestId;
+    }
+
+    public String method() {
+        return method;
+    }
+
+    /**
+     * The response status code, or {@code 0} if the exchange failed before a response was produced.
+     *
+     * @return status code
+     */
+    public int status() {
+        return status;
+    }
+
+    public long requestBytes() {
+        return requestBytes;
+    }
+
+    public long responseBytes() {
+        return responseBytes;
+    }
+
+    /**
+     * The ID of the origin that served the request, or {@code null} if the request was not proxied.
+     *
+     * @return origin ID
+     */
+    public String originId() {
+        return originId;
+    }
+
+    public boolean secure() {
+        return secure;
+    }
+
+    /**
+     * Time from receiving the request until the response headers became available.
+     *
+     * @return latency in nanoseconds
+     */
+    public long timeToFirstByteNanos() {
+        return timeToFirstByteNanos;
+    }
+
+    /**
+     * Time from receiving the request until the response body was fully sent.
+     *
+     * @return latency in nanoseconds
+     */
+    public long totalLatencyNanos() {
+        return totalLatencyNanos;
+    }
+}
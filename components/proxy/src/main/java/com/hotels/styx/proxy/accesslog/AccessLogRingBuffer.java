@@ -0,0 +1,113 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.proxy.accesslog;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import static com.hotels.styx.common.Preconditions.checkArgument;
+
+/**
+ * A bounded, lock-free, multi-producer single-consumer ring of preallocated {@link AccessLogRecord}s.
+ * <p>
+ * Producers claim a slot with a single CAS on the tail sequence and fill the record in place.
+ * When the ring is full the entry is dropped rather than blocking the producer, and the drop
+ * is counted. Only one thread may call {@link #drain(Consumer, int)}.
+ */
+public final class AccessLogRingBuffer {
+    private final AccessLogRecord[] records;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private long head;
+
+    public AccessLogRingBuffer(int capacity) {
+        checkArgument(capacity > 0 && Integer.bitCount(capacity) == 1, "Capacity must be a positive power of two, but was %s", capacity);
+        this.records = new AccessLogRecord[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            records[i] = new AccessLogRecord();
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Publishes an entry, or counts it as dropped if the ring is full.
+     *
+     * @return true if the entry was published
+     */
+    public boolean publish(long timestampMillis, Object requestId, String method, int status, long requestBytes, long responseBytes,
+                           String originId, boolean secure, long timeToFirstByteNanos, long totalLatencyNanos) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    records[index].set(timestampMillis, requestId, method, status, requestBytes, responseBytes,
+                            originId, secure, timeToFirstByteNanos, totalLatencyNanos);
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                dropped.increment();
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Passes up to {@code limit} published records to the consumer, in publication order.
+     * Must only be called from a single thread.
+     *
+     * @return number of records consumed
+     */
+    public int drain(Consumer<AccessLogRecord> consumer, int limit) {
+        int consumed = 0;
+        while (consumed < limit) {
+            int index = (int) head & mask;
+            if (sequences.get(index) != head + 1) {
+                break;
+            }
+            AccessLogRecord record = records[index];
+            try {
+                consumer.accept(record);
+            } finally {
+                record.clear();
+                sequences.lazySet(index, head + records.length);
+                head++;
+            }
+            consumed++;
+        }
+        return consumed;
+    }
+
+    public int capacity() {
+        return records.length;
+    }
+
+    public long droppedCount() {
+        return dropped.sum();
+    }
+}
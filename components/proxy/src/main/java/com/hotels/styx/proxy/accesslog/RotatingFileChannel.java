@@ -0,0 +1,92 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.proxy.accesslog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Appends to a file through a {@link FileChannel}, rolling it over once it exceeds a size limit.
+ * <p>
+ * On rollover {@code access.log} becomes {@code access.log.1}, {@code access.log.1} becomes
+ * {@code access.log.2}, and so on, keeping at most {@code maxFiles} rolled files.
+ * Writes never split a buffer across two files.
+ */
+final class RotatingFileChannel implements Closeable {
+    private final Path path;
+    private final long maxFileSize;
+    private final int maxFiles;
+    private FileChannel channel;
+
+    RotatingFileChannel(Path path, long maxFileSize, int maxFiles) throws IOException {
+        this.path = requireNonNull(path);
+        this.maxFileSize = maxFileSize;
+        this.maxFiles = maxFiles;
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.channel = open();
+    }
+
+    void write(ByteBuffer buffer) throws IOException {
+        if (channel.size() > 0 && channel.size() + buffer.remaining() > maxFileSize) {
+            rotate();
+        }
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void rotate() throws IOException {
+        channel.close();
+        if (maxFiles > 0) {
+            for (int i = maxFiles - 1; i >= 1; i--) {
+                Path source = rolled(i);
+                if (Files.exists(source)) {
+                    Files.move(source, rolled(i + 1), REPLACE_EXISTING);
+                }
+            }
+            Files.move(path, rolled(1), REPLACE_EXISTING);
+        } else {
+            Files.delete(path);
+        }
+        channel = open();
+    }
+
+    private Path rolled(int index) {
+        return path.resolveSibling(path.getFileName() + "." + index);
+    }
+
+    private FileChannel open() throws IOException {
+        return FileChannel.open(path, CREATE, WRITE, APPEND);
+    }
+}
@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -24,50 +24,60 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileTime;
 import java.time.Duration;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.Objects;
 import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.atomic.AtomicReference;
 
 import static com.hotels.styx.common.Files.fileContentMd5;
 import static java.lang.String.format;
 import static java.nio.file.Files.exists;
-import static java.nio.file.Files.getLastModifiedTime;
 import static java.nio.file.Files.isReadable;
+import static java.nio.file.Files.readAttributes;
 import static java.util.Objects.requireNonNull;
-import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 /**
  * Monitors a file system object and notifies the consumer of any changes.
+ * <p>
+ * Changes are detected by a {@link FileWatcher} shared by all monitors. The content of the file is
+ * hashed only when a change is detected, and the consumer is notified only if the hash differs from
+ * the last one. The file is also polled, as a fallback for changes that the watcher misses. A poll
+ * only compares the modification time and size of the file, and hashes it only if either changed.
  */
 public class FileChangeMonitor implements FileMonitor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileChangeMonitor.class);
+
     private final Path monitoredFile;
-    private final ScheduledExecutorService executor = newSingleThreadScheduledExecutor();
+    private final FileWatcher watcher;
     private final Duration pollPeriod;
-
-    private final AtomicReference<FileTime> lastChangedTime = new AtomicReference<>(FileTime.fromMillis(0));
-    private final AtomicReference<HashCode> hashCode = new AtomicReference<>();
     private final Duration initialDelay;
 
-    private volatile boolean performHashCheck;
-    private ScheduledFuture<?> monitoredTask;
+    // Accessed from the watcher's executor only.
+    private FileState lastState;
+    private HashCode lastHash;
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(FileChangeMonitor.class);
+    private ScheduledFuture<?> monitoredTask;
+    private FileWatcher.Watch watch;
 
     public FileChangeMonitor(String monitoredFile, Duration initialDelay, Duration pollPeriod) {
-        requireExists(requireNonNull(monitoredFile));
-        this.monitoredFile = Paths.get(monitoredFile);
-        this.pollPeriod = pollPeriod;
-        this.initialDelay = initialDelay;
-        this.hashCode.set(HashCode.fromLong(0));
+        this(monitoredFile, initialDelay, pollPeriod, FileWatcher.shared());
     }
 
     public FileChangeMonitor(String monitoredFile) {
         this(monitoredFile, Duration.ofMillis(0), Duration.ofSeconds(1));
     }
 
+    // Visible for testing
+    FileChangeMonitor(String monitoredFile, Duration initialDelay, Duration pollPeriod, FileWatcher watcher) {
+        requireExists(requireNonNull(monitoredFile));
+        this.monitoredFile = Paths.get(monitoredFile);
+        this.pollPeriod = requireNonNull(pollPeriod);
+        this.initialDelay = requireNonNull(initialDelay);
+        this.watcher = requireNonNull(watcher);
+    }
+
     @Override
     public void start(Listener listener) {
         LOGGER.debug("start, initialDelay={}, pollPeriod={}", new Object[] {initialDelay, pollPeriod});
@@ -77,8 +87,9 @@ public class FileChangeMonitor implements FileMonitor {
                 throw new IllegalStateException(message);
             }
 
-            monitoredTask = executor.scheduleAtFixedRate(
-                    detectFileChangesTask(listener),
+            watch = watcher.watch(monitoredFile, namesFile -> detectFileChanges(listener, namesFile));
+            monitoredTask = watcher.executor().scheduleWithFixedDelay(
+                    () -> detectFileChanges(listener, false),
                     initialDelay.toMillis(),
                     pollPeriod.toMillis(),
                     MILLISECONDS);
@@ -87,49 +98,49 @@ public class FileChangeMonitor implements FileMonitor {
 
     public void stop() {
         LOGGER.debug("stop");
-        if (monitoredTask != null) {
-            monitoredTask.cancel(true);
+        synchronized (this) {
+            if (monitoredTask != null) {
+                monitoredTask.cancel(false);
+            }
+            if (watch != null) {
+                watch.cancel();
+                watch = null;
+            }
         }
     }
 
-    private Runnable detectFileChangesTask(Listener listener) {
-        return () -> {
-            LOGGER.debug("Poll {}", monitoredFile);
+    private void detectFileChanges(Listener listener, boolean eventNamesFile) {
+        LOGGER.debug("Check {}, event={}", monitoredFile, eventNamesFile);
 
-            if (!exists(monitoredFile)) {
-                LOGGER.debug("Monitored file does not exist. Path={}", monitoredFile);
+        if (!exists(monitoredFile)) {
+            LOGGER.debug("Monitored file does not exist. Path={}", monitoredFile);
 
-            } else if (!isReadable(monitoredFile)) {
-                LOGGER.debug("Monitored file is no longer readable. Path={}", monitoredFile);
+        } else if (!isReadable(monitoredFile)) {
+            LOGGER.debug("Monitored file is no longer readable. Path={}", monitoredFile);
 
-            } else if (modificationTimeChanged(monitoredFile)) {
-                hashCode.set(fileContentMd5(monitoredFile));
-                performHashCheck = true;
-                listener.fileChanged();
-
-            } else if (performHashCheck && contentHashChanged(monitoredFile)) {
-                listener.fileChanged();
-            }
-        };
+        } else if ((stateChanged() || eventNamesFile) && contentHashChanged()) {
+            listener.fileChanged();
+        }
     }
 
-    private boolean modificationTimeChanged(Path monitoredFile) {
+    private boolean stateChanged() {
         try {
-            FileTime current = getLastModifiedTime(monitoredFile);
-            FileTime previous = lastChangedTime.getAndSet(current);
-            boolean changed = !previous.equals(current);
+            FileState current = new FileState(readAttributes(monitoredFile, BasicFileAttributes.class));
+            boolean changed = !current.equals(lastState);
+            lastState = current;
 
-            LOGGER.debug("modificationTimeChange probe. Changed={}", changed);
+            LOGGER.debug("fileState probe. Changed={}", changed);
             return changed;
         } catch (IOException e) {
-            String message = format("Cannot get modification time for Path=%s", monitoredFile);
+            String message = format("Cannot get file attributes for Path=%s", monitoredFile);
             throw new RuntimeException(message, e);
         }
     }
 
-    private boolean contentHashChanged(Path monitoredFile) {
-        HashCode newHashCode = fileContentMd5(monitoredFile);
-        boolean changed = !hashCode.getAndSet(newHashCode).equals(newHashCode);
+    private boolean contentHashChanged() {
+        HashCode newHash = fileContentMd5(monitoredFile);
+        boolean changed = !newHash.equals(lastHash);
+        lastHash = newHash;
 
         LOGGER.debug("contentHashChanged probe. Changed={}", changed);
         return changed;
@@ -141,6 +152,37 @@ public class FileChangeMonitor implements FileMonitor {
         }
     }
 
+    private static final class FileState {
+        private final FileTime lastModifiedTime;
+        private final long size;
+        private final Object fileKey;
+
+        FileState(BasicFileAttributes attributes) {
+            this.lastModifiedTime = attributes.lastModifiedTime();
+            this.size = attributes.size();
+            this.fileKey = attributes.fileKey();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            FileState other = (FileState) o;
+            return size == other.size
+                    && lastModifiedTime.equals(other.lastModifiedTime)
+                    && Objects.equals(fileKey, other.fileKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(lastModifiedTime, size, fileKey);
+        }
+    }
+
     // Visible for testing
     static class FileMonitorSettings {
         private final boolean enabled;
@@ -0,0 +1,232 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.proxy.backends.file;
+
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Watches files for changes with a {@link WatchService}, for any number of files, on two threads
+ * shared by all of them. One thread waits for file system events. The other runs the callbacks,
+ * and is also available for the watchers' own periodic tasks.
+ * <p>
+ * A watch service watches directories, so each file is watched through its parent directory.
+ * Any event in the directory notifies the watchers of all files in it. This covers files that are
+ * replaced by an atomic rename, and files reached through symbolic links that are swapped, as
+ * Kubernetes does for mounted config maps. Events arriving in quick succession are debounced into
+ * a single callback. The callback is told whether any of the events named the watched file itself.
+ * <p>
+ * Watching is best effort. Files on a file system other than the default one are not watched, and
+ * a directory that is deleted is no longer watched. Users are expected to poll as a fallback.
+ */
+final class FileWatcher {
+    static final Duration DEFAULT_DEBOUNCE = Duration.ofMillis(100);
+
+    private static final Logger LOGGER = getLogger(FileWatcher.class);
+
+    private final Duration debounce;
+    private final ScheduledExecutorService executor;
+    private final Map<WatchKey, List<Watch>> watches = new HashMap<>();
+
+    // Guarded by `this`.
+    private WatchService watchService;
+
+    // Visible for testing
+    FileWatcher(Duration debounce) {
+        this.debounce = requireNonNull(debounce);
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "STYX-FILE-MONITOR");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * The file watcher shared by all file monitors.
+     *
+     * @return file watcher
+     */
+    static FileWatcher shared() {
+        return Shared.INSTANCE;
+    }
+
+    /**
+     * The executor that runs the callbacks. File monitors schedule their polls on it too,
+     * so that polls and callbacks for the same file never run concurrently.
+     *
+     * @return executor
+     */
+    ScheduledExecutorService executor() {
+        return executor;
+    }
+
+    /**
+     * Starts watching a file.
+     *
+     * @param file     file to watch
+     * @param onChange called after changes in the file's directory have settled. The argument is true if any of
+     *                 the changes named the file itself
+     * @return a watch, or null if the file cannot be watched
+     */
+    synchronized Watch watch(Path file, Consumer<Boolean> onChange) {
+        Path absolute = file.toAbsolutePath();
+        Path directory = absolute.getParent();
+        if (directory == null || absolute.getFileSystem() != FileSystems.getDefault()) {
+            return null;
+        }
+
+        try {
+            WatchKey key = directory.register(watchService(), ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+            Watch watch = new Watch(key, absolute.getFileName(), onChange);
+            watches.computeIfAbsent(key, it -> new CopyOnWriteArrayList<>()).add(watch);
+            return watch;
+        } catch (IOException | UnsupportedOperationException e) {
+            LOGGER.warn("Cannot watch directory, falling back to polling. Path={}, Cause={}", directory, e.toString());
+            return null;
+        }
+    }
+
+    private WatchService watchService() throws IOException {
+        if (watchService == null) {
+            watchService = FileSystems.getDefault().newWatchService();
+            Thread thread = new Thread(() -> run(watchService), "STYX-FILE-WATCHER");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return watchService;
+    }
+
+    private synchronized void unwatch(Watch watch) {
+        List<Watch> forKey = watches.get(watch.key);
+        if (forKey != null && forKey.remove(watch) && forKey.isEmpty()) {
+            watches.remove(watch.key);
+            watch.key.cancel();
+        }
+    }
+
+    private synchronized List<Watch> watchesFor(WatchKey key) {
+        return watches.getOrDefault(key, List.of());
+    }
+
+    private void run(WatchService service) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                List<Watch> watching = watchesFor(key);
+
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    boolean overflow = event.kind() == OVERFLOW;
+                    for (Watch watch : watching) {
+                        watch.eventReceived(overflow || watch.fileName.equals(event.context()));
+                    }
+                }
+
+                if (!key.reset()) {
+                    LOGGER.debug("Watched directory is no longer accessible. Path={}", key.watchable());
+                    synchronized (this) {
+                        watches.remove(key);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            LOGGER.debug("Watch service closed");
+        }
+    }
+
+    /**
+     * A watched file.
+     */
+    final class Watch {
+        private final WatchKey key;
+        private final Path fileName;
+        private final Consumer<Boolean> onChange;
+
+        // Guarded by `this`.
+        private ScheduledFuture<?> pending;
+        private boolean named;
+
+        private Watch(WatchKey key, Path fileName, Consumer<Boolean> onChange) {
+            this.key = key;
+            this.fileName = fileName;
+            this.onChange = onChange;
+        }
+
+        private synchronized void eventReceived(boolean namesFile) {
+            named |= namesFile;
+            if (pending != null) {
+                pending.cancel(false);
+            }
+            pending = executor.schedule(this::settled, debounce.toNanos(), NANOSECONDS);
+        }
+
+        private void settled() {
+            boolean namesFile;
+            synchronized (this) {
+                namesFile = named;
+                named = false;
+                pending = null;
+            }
+            try {
+                onChange.accept(namesFile);
+            } catch (RuntimeException e) {
+                LOGGER.warn("File change callback failed. File={}", fileName, e);
+            }
+        }
+
+        /**
+         * Stops watching the file.
+         */
+        void cancel() {
+            synchronized (this) {
+                if (pending != null) {
+                    pending.cancel(false);
+                    pending = null;
+                }
+            }
+            unwatch(this);
+        }
+    }
+
+    private static final class Shared {
+        private static final FileWatcher INSTANCE = new FileWatcher(DEFAULT_DEBOUNCE);
+    }
+}
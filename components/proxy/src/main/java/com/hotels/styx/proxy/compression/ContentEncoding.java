@@ -0,0 +1,201 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.proxy.compression;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.BrotliOutputStream;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+import com.github.luben.zstd.ZstdOutputStreamNoFinalizer;
+import com.github.luben.zstd.util.Native;
+import com.hotels.styx.common.CompressionConfig;
+import io.netty.channel.ChannelHandler;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
+import io.netty.handler.codec.compression.ZlibWrapper;
+import org.slf4j.Logger;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Locale.ROOT;
+import static java.util.stream.Collectors.toUnmodifiableList;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * The content codings that responses can be compressed with.
+ */
+public enum ContentEncoding {
+    BROTLI("br") {
+        @Override
+        boolean available() {
+            return Natives.BROTLI;
+        }
+
+        @Override
+        ChannelHandler newEncoder(CompressionConfig config) {
+            Encoder.Parameters parameters = new Encoder.Parameters().setQuality(config.brotliLevel());
+            return new StreamingEncoder(sink -> new BrotliOutputStream(sink, parameters));
+        }
+    },
+
+    ZSTD("zstd") {
+        @Override
+        boolean available() {
+            return Natives.ZSTD;
+        }
+
+        @Override
+        ChannelHandler newEncoder(CompressionConfig config) {
+            int level = config.zstdLevel();
+            return new StreamingEncoder(sink -> new ZstdOutputStreamNoFinalizer(sink, level));
+        }
+    },
+
+    GZIP("gzip") {
+        @Override
+        ChannelHandler newEncoder(CompressionConfig config) {
+            return ZlibCodecFactory.newZlibEncoder(ZlibWrapper.GZIP, config.gzipLevel());
+        }
+    },
+
+    DEFLATE("deflate") {
+        @Override
+        ChannelHandler newEncoder(CompressionConfig config) {
+            return ZlibCodecFactory.newZlibEncoder(ZlibWrapper.ZLIB, config.gzipLevel());
+        }
+    };
+
+    private static final Logger LOGGER = getLogger(ContentEncoding.class);
+
+    private final String token;
+
+    ContentEncoding(String token) {
+        this.token = token;
+    }
+
+    /**
+     * The name of this coding in the {@code Accept-Encoding} and {@code Content-Encoding} headers.
+     *
+     * @return content coding name
+     */
+    public String token() {
+        return token;
+    }
+
+    boolean available() {
+        return true;
+    }
+
+    abstract ChannelHandler newEncoder(CompressionConfig config);
+
+    /**
+     * The codings named in the configuration, in the same order, leaving out those that cannot be used on this platform.
+     *
+     * @param tokens content coding names
+     * @return available codings
+     */
+    public static List<ContentEncoding> available(List<String> tokens) {
+        return tokens.stream()
+                .map(ContentEncoding::fromToken)
+                .filter(encoding -> encoding != null && encoding.available())
+                .collect(toUnmodifiableList());
+    }
+
+    /**
+     * Chooses the coding that the client prefers, going by the q-values of its {@code Accept-Encoding} header.
+     * Ties go to the coding offered first. Codings with a q-value of 0 are never chosen.
+     *
+     * @param acceptEncoding the Accept-Encoding header of the request
+     * @param offered        codings in order of preference
+     * @return chosen coding, or null if the client accepts none of them
+     */
+    public static ContentEncoding select(String acceptEncoding, List<ContentEncoding> offered) {
+        Map<String, Float> qualities = qualities(acceptEncoding);
+        Float wildcard = qualities.get("*");
+
+        ContentEncoding selected = null;
+        float selectedQuality = 0;
+        for (ContentEncoding encoding : offered) {
+            Float quality = qualities.getOrDefault(encoding.token, wildcard);
+            if (quality != null && quality > selectedQuality) {
+                selected = encoding;
+                selectedQuality = quality;
+            }
+        }
+        return selected;
+    }
+
+    private static ContentEncoding fromToken(String token) {
+        for (ContentEncoding encoding : values()) {
+            if (encoding.token.equals(token)) {
+                return encoding;
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, Float> qualities(String acceptEncoding) {
+        Map<String, Float> qualities = new HashMap<>();
+        for (String element : acceptEncoding.split(",")) {
+            String[] parameters = element.split(";");
+            String coding = parameters[0].trim().toLowerCase(ROOT);
+            if (!coding.isEmpty()) {
+                qualities.put(coding, quality(parameters));
+            }
+        }
+        return qualities;
+    }
+
+    private static float quality(String[] parameters) {
+        for (int i = 1; i < parameters.length; i++) {
+            String parameter = parameters[i].trim();
+            if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+                try {
+                    return Float.parseFloat(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Brotli and zstd use native libraries, which are looked up once.
+     */
+    private static final class Natives {
+        static final boolean BROTLI = brotli();
+        static final boolean ZSTD = zstd();
+
+        private static boolean brotli() {
+            if (!Brotli4jLoader.isAvailable()) {
+                LOGGER.warn("Brotli compression is not available on this platform", Brotli4jLoader.getUnavailabilityCause());
+                return false;
+            }
+            return true;
+        }
+
+        private static boolean zstd() {
+            try {
+                Native.load();
+                return true;
+            } catch (Throwable cause) {
+                LOGGER.warn("zstd compression is not available on this platform", cause);
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.proxy.compression;
+
+import com.hotels.styx.common.CompressionConfig;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.HttpContentEncoder;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpUtil;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+
+import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_ENCODING;
+import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_TYPE;
+import static io.netty.handler.codec.http.HttpHeaderNames.HOST;
+import static io.netty.handler.codec.http.HttpHeaderValues.IDENTITY;
+import static io.netty.handler.codec.http.HttpResponseStatus.CONTINUE;
+import static java.util.Locale.ROOT;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Compresses HTTP responses whose content type is compressible.
+ * <p>
+ * The content coding is chosen by the q-values of the {@code Accept-Encoding} header, among those offered
+ * by the configuration: Brotli, zstd, gzip and deflate. Responses whose {@code Content-Length} is below
+ * the configured minimum are sent as they are. Responses that can be validated may be compressed
+ * once, and served from {@link PrecompressedVariants} after that.
+ */
+public class HttpCompressor extends HttpContentEncoder {
+    private final CompressionConfig config;
+    private final List<ContentEncoding> encodings;
+    private final PrecompressedVariants precompressed;
+
+    // Request targets, matched to responses in the same way as HttpContentEncoder matches Accept-Encoding headers.
+    private final Queue<String> targets = new ArrayDeque<>();
+    private String target;
+    private ChannelHandlerContext ctx;
+
+    public HttpCompressor() {
+        this(CompressionConfig.defaults(), new PrecompressedVariants(0));
+    }
+
+    public HttpCompressor(CompressionConfig config, PrecompressedVariants precompressed) {
+        this.config = requireNonNull(config);
+        this.encodings = ContentEncoding.available(config.encodings());
+        this.precompressed = requireNonNull(precompressed);
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        this.ctx = ctx;
+        super.handlerAdded(ctx);
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, HttpRequest msg, List<Object> out) throws Exception {
+        targets.add(msg.headers().get(HOST, "") + msg.uri());
+        super.decode(ctx, msg, out);
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, HttpObject msg, List<Object> out) throws Exception {
+        if (msg instanceof HttpResponse && !((HttpResponse) msg).status().equals(CONTINUE)) {
+            target = targets.poll();
+        }
+        super.encode(ctx, msg, out);
+    }
+
+    @Override
+    protected Result beginEncode(HttpResponse response, String acceptEncoding) throws Exception {
+        if (!compressible(response)) {
+            return null;
+        }
+
+        ContentEncoding encoding = ContentEncoding.select(acceptEncoding, encodings);
+        if (encoding == null) {
+            return null;
+        }
+
+        String key = precompressed.key(target, response, encoding);
+        ChannelHandler[] handlers = key != null
+                ? precompressed.encoders(key, HttpUtil.getContentLength(response), () -> encoding.newEncoder(config))
+                : new ChannelHandler[]{encoding.newEncoder(config)};
+
+        return new Result(encoding.token(), new EmbeddedChannel(
+                ctx.channel().id(), ctx.channel().metadata().hasDisconnect(), ctx.channel().config(), handlers));
+    }
+
+    private boolean compressible(HttpResponse response) {
+        String contentEncoding = response.headers().get(CONTENT_ENCODING);
+        if (contentEncoding != null && !IDENTITY.contentEqualsIgnoreCase(contentEncoding)) {
+            return false;
+        }
+
+        long length = HttpUtil.getContentLength(response, -1L);
+        if (length >= 0 && length < config.minSizeBytes()) {
+            return false;
+        }
+
+        String contentType = response.headers().get(CONTENT_TYPE);
+        return contentType != null && config.contentTypes().contains(mediaType(contentType));
+    }
+
+    private static String mediaType(String contentType) {
+        int parameters = contentType.indexOf(';');
+        String mediaType = parameters >= 0 ? contentType.substring(0, parameters) : contentType;
+        return mediaType.trim().toLowerCase(ROOT);
+    }
+}
@@ -0,0 +1,231 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.proxy.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpUtil;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static com.hotels.styx.common.Preconditions.checkArgument;
+import static io.netty.handler.codec.http.HttpHeaderNames.CACHE_CONTROL;
+import static io.netty.handler.codec.http.HttpHeaderNames.ETAG;
+import static io.netty.handler.codec.http.HttpHeaderValues.NO_STORE;
+import static io.netty.handler.codec.http.HttpResponseStatus.OK;
+
+/**
+ * Keeps compressed response bodies, so that repeated responses are not compressed over and over.
+ * <p>
+ * A body is kept only when its response can be validated: a 200 response with a strong {@code ETag} and
+ * a {@code Content-Length}. A variant is keyed by the content coding, the request target, the entity tag and
+ * the length, so a response that changes at the origin gets a new entity tag, and is compressed afresh.
+ * A variant is stored once the whole uncompressed body has gone through the encoder.
+ * <p>
+ * The total size of the variants is bounded, and the least recently used ones are evicted first.
+ * A single variant may take at most an eighth of the space.
+ */
+public final class PrecompressedVariants {
+    private final long maxSizeBytes;
+    private final Map<String, ByteBuf> variants = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Guarded by `this`.
+    private long sizeBytes;
+
+    /**
+     * Constructs an instance.
+     *
+     * @param maxSizeBytes total size of the compressed bodies kept, or zero to keep none
+     */
+    public PrecompressedVariants(long maxSizeBytes) {
+        checkArgument(maxSizeBytes >= 0, "maxSizeBytes must not be negative");
+        this.maxSizeBytes = maxSizeBytes;
+    }
+
+    /**
+     * The key of the variant of a response, or null if the response cannot be validated.
+     *
+     * @param target   host and URI of the request
+     * @param response response
+     * @param encoding content coding
+     * @return variant key, or null
+     */
+    String key(String target, HttpResponse response, ContentEncoding encoding) {
+        if (maxSizeBytes == 0 || target == null || !response.status().equals(OK)) {
+            return null;
+        }
+        String etag = response.headers().get(ETAG);
+        long length = HttpUtil.getContentLength(response, -1L);
+        if (etag == null || etag.startsWith("W/") || length < 0 || response.headers().containsValue(CACHE_CONTROL, NO_STORE, true)) {
+            return null;
+        }
+        return encoding.token() + " " + target + " " + etag + " " + length;
+    }
+
+    /**
+     * The handlers that compress a response body, given its variant key. If the variant is kept, they send it
+     * in place of the body. Otherwise they compress the body, and keep the result.
+     *
+     * @param key     variant key
+     * @param length  uncompressed body length
+     * @param encoder creates an encoder
+     * @return handlers for an encoding channel
+     */
+    ChannelHandler[] encoders(String key, long length, Supplier<ChannelHandler> encoder) {
+        ByteBuf variant = get(key);
+        if (variant != null) {
+            return new ChannelHandler[]{new Replay(variant)};
+        }
+        Recorder recorder = new Recorder(key, length);
+        return new ChannelHandler[]{recorder.compressed, encoder.get(), recorder.uncompressed};
+    }
+
+    public synchronized int variants() {
+        return variants.size();
+    }
+
+    public synchronized long sizeBytes() {
+        return sizeBytes;
+    }
+
+    private synchronized ByteBuf get(String key) {
+        ByteBuf variant = variants.get(key);
+        return variant != null ? variant.retainedDuplicate() : null;
+    }
+
+    private synchronized void put(String key, ByteBuf variant) {
+        ByteBuf replaced = variants.put(key, variant);
+        if (replaced != null) {
+            sizeBytes -= replaced.readableBytes();
+            replaced.release();
+        }
+        sizeBytes += variant.readableBytes();
+
+        Iterator<ByteBuf> leastRecentlyUsed = variants.values().iterator();
+        while (sizeBytes > maxSizeBytes && leastRecentlyUsed.hasNext()) {
+            ByteBuf evicted = leastRecentlyUsed.next();
+            leastRecentlyUsed.remove();
+            sizeBytes -= evicted.readableBytes();
+            evicted.release();
+        }
+    }
+
+    private long maxVariantBytes() {
+        return maxSizeBytes / 8;
+    }
+
+    /**
+     * Sends a kept variant when the first buffer of the body arrives, and drops the body.
+     */
+    private static final class Replay extends ChannelOutboundHandlerAdapter {
+        private ByteBuf variant;
+
+        Replay(ByteBuf variant) {
+            this.variant = variant;
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+            if (!(msg instanceof ByteBuf)) {
+                ctx.write(msg, promise);
+                return;
+            }
+            ((ByteBuf) msg).release();
+
+            ByteBuf replayed = variant != null ? variant : Unpooled.EMPTY_BUFFER;
+            variant = null;
+            ctx.write(replayed, promise);
+        }
+
+        @Override
+        public void handlerRemoved(ChannelHandlerContext ctx) {
+            if (variant != null) {
+                variant.release();
+                variant = null;
+            }
+        }
+    }
+
+    /**
+     * Copies the output of an encoder, and keeps it once the encoder has seen the whole body.
+     * The handler for compressed bytes sits before the encoder, and the one for uncompressed bytes after it.
+     */
+    private final class Recorder {
+        private final String key;
+        private final long length;
+        private ByteBuf copy = Unpooled.buffer();
+        private long seen;
+
+        private final ChannelHandler compressed = new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+                if (msg instanceof ByteBuf && copy != null) {
+                    ByteBuf buf = (ByteBuf) msg;
+                    if (copy.readableBytes() + buf.readableBytes() <= maxVariantBytes()) {
+                        copy.writeBytes(buf, buf.readerIndex(), buf.readableBytes());
+                    } else {
+                        discard();
+                    }
+                }
+                ctx.write(msg, promise);
+            }
+
+            @Override
+            public void close(ChannelHandlerContext ctx, ChannelPromise promise) {
+                if (copy != null && seen == length) {
+                    put(key, copy.copy());
+                }
+                discard();
+                ctx.close(promise);
+            }
+
+            @Override
+            public void handlerRemoved(ChannelHandlerContext ctx) {
+                discard();
+            }
+        };
+
+        private final ChannelHandler uncompressed = new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+                if (msg instanceof ByteBuf) {
+                    seen += ((ByteBuf) msg).readableBytes();
+                }
+                ctx.write(msg, promise);
+            }
+        };
+
+        Recorder(String key, long length) {
+            this.key = key;
+            this.length = length;
+        }
+
+        private void discard() {
+            if (copy != null) {
+                copy.release();
+                copy = null;
+            }
+        }
+    }
+}
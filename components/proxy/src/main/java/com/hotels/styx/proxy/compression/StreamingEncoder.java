@@ -0,0 +1,141 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.proxy.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Compresses buffers with a compressing {@link OutputStream}, for codecs that Netty has no streaming encoder for.
+ * The stream is flushed after each buffer, so that streamed responses are not held back, and it is finished
+ * when the channel is closed.
+ */
+final class StreamingEncoder extends ChannelOutboundHandlerAdapter {
+    private final Codec codec;
+    private Sink sink;
+    private OutputStream stream;
+
+    StreamingEncoder(Codec codec) {
+        this.codec = requireNonNull(codec);
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        sink = new Sink(ctx.alloc());
+        stream = codec.open(sink);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (!(msg instanceof ByteBuf) || stream == null) {
+            ctx.write(msg, promise);
+            return;
+        }
+
+        ByteBuf content = (ByteBuf) msg;
+        try {
+            content.readBytes(stream, content.readableBytes());
+            stream.flush();
+        } finally {
+            content.release();
+        }
+        ctx.write(sink.drain(), promise);
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        if (stream != null) {
+            OutputStream finished = stream;
+            stream = null;
+            finished.close();
+            ctx.writeAndFlush(sink.drain());
+        }
+        ctx.close(promise);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        try {
+            if (stream != null) {
+                stream.close();
+                stream = null;
+            }
+        } finally {
+            if (sink != null) {
+                sink.release();
+            }
+        }
+    }
+
+    /**
+     * Opens a compressing stream.
+     */
+    @FunctionalInterface
+    interface Codec {
+        OutputStream open(OutputStream sink) throws IOException;
+    }
+
+    /**
+     * Collects the compressed bytes until they are written down the pipeline.
+     */
+    private static final class Sink extends OutputStream {
+        private final ByteBufAllocator alloc;
+        private ByteBuf buffer;
+
+        Sink(ByteBufAllocator alloc) {
+            this.alloc = alloc;
+        }
+
+        @Override
+        public void write(int b) {
+            buffer().writeByte(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            buffer().writeBytes(b, off, len);
+        }
+
+        ByteBuf drain() {
+            ByteBuf drained = buffer != null ? buffer : Unpooled.EMPTY_BUFFER;
+            buffer = null;
+            return drained;
+        }
+
+        void release() {
+            if (buffer != null) {
+                buffer.release();
+                buffer = null;
+            }
+        }
+
+        private ByteBuf buffer() {
+            if (buffer == null) {
+                buffer = alloc.buffer();
+            }
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.proxy.interceptors;
+
+import com.hotels.styx.api.Eventual;
+import com.hotels.styx.api.HttpInterceptor;
+import com.hotels.styx.api.LiveHttpRequest;
+import com.hotels.styx.api.LiveHttpResponse;
+import com.hotels.styx.proxy.accesslog.AccessLog;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.hotels.styx.client.StyxHostHttpClient.ORIGINID_CONTEXT_KEY;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Publishes an access log entry for each exchange once its response body has been sent.
+ * <p>
+ * Only counters and references already held by the request are captured on the request
+ * handling thread. Formatting and I/O happen on the access log's writer thread.
+ */
+public class AccessLogInterceptor implements HttpInterceptor {
+    private final AccessLog accessLog;
+
+    public AccessLogInterceptor(AccessLog accessLog) {
+        this.accessLog = requireNonNull(accessLog);
+    }
+
+    @Override
+    public Eventual<LiveHttpResponse> intercept(LiveHttpRequest request, Chain chain) {
+        Exchange exchange = new Exchange(request, chain.context());
+
+        LiveHttpRequest countedRequest = request.newBuilder()
+                .body(body -> body.doOnEach(signal -> {
+                    if (signal.hasValue()) {
+                        exchange.requestBytes.addAndGet(signal.get().size());
+                    }
+                }))
+                .build();
+
+        return chain.proceed(countedRequest)
+                .map(response -> {
+                    exchange.responseStarted(response.status().code());
+                    return response.newBuilder()
+                            .body(body -> body
+                                    .doOnEach(signal -> {
+                                        if (signal.hasValue()) {
+                                            exchange.responseBytes.addAndGet(signal.get().size());
+                                        }
+                                    })
+                                    .doOnEnd(cause -> exchange.publish())
+                                    .doOnCancel(exchange::publish))
+                            .build();
+                })
+                .onError(cause -> {
+                    exchange.publish();
+                    return Eventual.error(cause);
+                });
+    }
+
+    private final class Exchange {
+        private final long startMillis = System.currentTimeMillis();
+        private final long startNanos = System.nanoTime();
+        private final LiveHttpRequest request;
+        private final Context context;
+        // Bodies may be consumed on threads other than the one that publishes.
+        private final AtomicLong requestBytes = new AtomicLong();
+        private final AtomicLong responseBytes = new AtomicLong();
+        private final AtomicBoolean published = new AtomicBoolean();
+        private int status;
+        private long timeToFirstByteNanos;
+
+        Exchange(LiveHttpRequest request, Context context) {
+            this.request = request;
+            this.context = context;
+        }
+
+        void responseStarted(int status) {
+            this.status = status;
+            this.timeToFirstByteNanos = System.nanoTime() - startNanos;
+        }
+
+        void publish() {
+            if (!published.compareAndSet(false, true)) {
+                return;
+            }
+            accessLog.publish(
+                    startMillis,
+                    request.id(),
+                    request.method().name(),
+                    status,
+                    requestBytes.get(),
+                    responseBytes.get(),
+                    context.getIfAvailable(ORIGINID_CONTEXT_KEY, String.class).orElse(null),
+                    context.isSecure(),
+                    timeToFirstByteNanos,
+                    System.nanoTime() - startNanos);
+        }
+    }
+}
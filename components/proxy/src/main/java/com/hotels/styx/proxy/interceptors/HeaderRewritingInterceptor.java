@@ -0,0 +1,173 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.proxy.interceptors;
+
+import com.hotels.styx.api.Eventual;
+import com.hotels.styx.api.HttpInterceptor;
+import com.hotels.styx.api.HttpVersion;
+import com.hotels.styx.api.LiveHttpRequest;
+import com.hotels.styx.api.LiveHttpResponse;
+import com.hotels.styx.client.StyxHeaderConfig;
+import io.netty.util.AsciiString;
+import org.slf4j.Logger;
+
+import java.net.InetSocketAddress;
+import java.util.Optional;
+
+import static com.hotels.styx.api.HttpHeaderNames.CONNECTION;
+import static com.hotels.styx.api.HttpHeaderNames.CONTENT_LENGTH;
+import static com.hotels.styx.api.HttpHeaderNames.KEEP_ALIVE;
+import static com.hotels.styx.api.HttpHeaderNames.PROXY_AUTHENTICATE;
+import static com.hotels.styx.api.HttpHeaderNames.PROXY_AUTHORIZATION;
+import static com.hotels.styx.api.HttpHeaderNames.TE;
+import static com.hotels.styx.api.HttpHeaderNames.TRAILER;
+import static com.hotels.styx.api.HttpHeaderNames.TRANSFER_ENCODING;
+import static com.hotels.styx.api.HttpHeaderNames.UPGRADE;
+import static com.hotels.styx.api.HttpHeaderNames.VIA;
+import static com.hotels.styx.api.HttpHeaderNames.X_FORWARDED_FOR;
+import static com.hotels.styx.api.HttpHeaderNames.X_FORWARDED_PROTO;
+import static com.hotels.styx.api.HttpVersion.HTTP_1_0;
+import static com.hotels.styx.common.Strings.isBlank;
+import static com.hotels.styx.common.Strings.isNotEmpty;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Applies the header edits of {@link UnexpectedRequestContentLengthRemover}, {@link ViaHeaderAppendingInterceptor},
+ * {@link HopByHopHeadersRemovingInterceptor} and {@link RequestEnrichingInterceptor}, in that order,
+ * while copying the headers of each message only once.
+ * <p>
+ * Chaining those interceptors rebuilds the request four times and the response twice. Here each
+ * edit is applied to a single builder, and headers that an earlier edit would have removed are
+ * treated as absent by the later ones, so the outcome is the same.
+ */
+public class HeaderRewritingInterceptor implements HttpInterceptor {
+    private static final Logger LOGGER = getLogger(HeaderRewritingInterceptor.class);
+
+    private static final String DEFAULT_VIA = "styx";
+    private static final String[] NO_TOKENS = new String[0];
+
+    private static final CharSequence[] REQUEST_HOP_BY_HOP_HEADERS = {
+            CONNECTION, KEEP_ALIVE, PROXY_AUTHENTICATE, PROXY_AUTHORIZATION, TE, TRAILER, UPGRADE
+    };
+
+    private static final CharSequence[] RESPONSE_HOP_BY_HOP_HEADERS = {
+            CONNECTION, KEEP_ALIVE, PROXY_AUTHENTICATE, PROXY_AUTHORIZATION, TE, TRAILER, TRANSFER_ENCODING, UPGRADE
+    };
+
+    private final CharSequence via10;
+    private final CharSequence via11;
+    private final CharSequence requestIdHeaderName;
+
+    /**
+     * Creates an instance.
+     *
+     * @param via              the pseudonym for Styx in Via headers. Defaults to "styx" when blank or null.
+     * @param styxHeaderConfig Styx header names
+     */
+    public HeaderRewritingInterceptor(String via, StyxHeaderConfig styxHeaderConfig) {
+        String value = isBlank(via) ? DEFAULT_VIA : via;
+        this.via10 = AsciiString.of("1.0 " + value);
+        this.via11 = AsciiString.of("1.1 " + value);
+        this.requestIdHeaderName = styxHeaderConfig.requestIdHeaderName();
+    }
+
+    @Override
+    public Eventual<LiveHttpResponse> intercept(LiveHttpRequest request, Chain chain) {
+        return chain.proceed(rewrite(request, chain.context()))
+                .map(this::rewrite);
+    }
+
+    private LiveHttpRequest rewrite(LiveHttpRequest request, Context context) {
+        LiveHttpRequest.Transformer builder = request.newBuilder();
+
+        if (request.chunked() && request.contentLength().isPresent()) {
+            builder.removeHeader(CONTENT_LENGTH);
+        }
+
+        builder.header(VIA, via(request.header(VIA), request.version()));
+
+        String[] connectionTokens = connectionTokens(request.header(CONNECTION));
+        for (String token : connectionTokens) {
+            builder.removeHeader(token);
+        }
+        for (CharSequence header : REQUEST_HOP_BY_HOP_HEADERS) {
+            builder.removeHeader(header);
+        }
+
+        Optional<String> xForwardedFor = listed(connectionTokens, X_FORWARDED_FOR) ? Optional.empty() : request.header(X_FORWARDED_FOR);
+        Optional<String> xForwardedProto = listed(connectionTokens, X_FORWARDED_PROTO) ? Optional.empty() : request.header(X_FORWARDED_PROTO);
+
+        Optional<InetSocketAddress> clientAddress = context.clientAddress();
+        if (clientAddress.isPresent()) {
+            String hostName = clientAddress.get().getHostString();
+            builder.header(X_FORWARDED_FOR, xForwardedFor.map(previous -> previous + ", " + hostName).orElse(hostName));
+        } else {
+            LOGGER.warn("No clientAddress in context url={}", request.url());
+        }
+
+        return builder
+                .header(requestIdHeaderName, request.id())
+                .header(X_FORWARDED_PROTO, xForwardedProto.orElse(context.isSecure() ? "https" : "http"))
+                .build();
+    }
+
+    private LiveHttpResponse rewrite(LiveHttpResponse response) {
+        LiveHttpResponse.Transformer builder = response.newBuilder();
+
+        String[] connectionTokens = connectionTokens(response.header(CONNECTION));
+        for (String token : connectionTokens) {
+            builder.removeHeader(token);
+        }
+        for (CharSequence header : RESPONSE_HOP_BY_HOP_HEADERS) {
+            builder.removeHeader(header);
+        }
+
+        Optional<String> via = listed(connectionTokens, VIA) ? Optional.empty() : response.header(VIA);
+
+        return builder
+                .header(VIA, via(via, response.version()))
+                .build();
+    }
+
+    private CharSequence via(Optional<String> previous, HttpVersion version) {
+        CharSequence styxViaEntry = version.equals(HTTP_1_0) ? via10 : via11;
+
+        return previous
+                .map(viaHeader -> isNotEmpty(viaHeader) ? viaHeader + ", " + styxViaEntry : styxViaEntry)
+                .orElse(styxViaEntry);
+    }
+
+    private static String[] connectionTokens(Optional<String> connection) {
+        if (!connection.isPresent()) {
+            return NO_TOKENS;
+        }
+
+        String[] tokens = connection.get().split(",");
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = tokens[i].trim();
+        }
+        return tokens;
+    }
+
+    private static boolean listed(String[] tokens, CharSequence header) {
+        for (String token : tokens) {
+            if (AsciiString.contentEqualsIgnoreCase(token, header)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -27,6 +27,7 @@ import com.hotels.styx.metrics.CentralisedMetrics;
 import com.hotels.styx.metrics.CentralisedMetricsEnvironment;
 import io.micrometer.core.instrument.Counter;
 import org.slf4j.Logger;
+import reactor.core.publisher.Mono;
 
 import java.util.Map;
 
@@ -34,9 +35,6 @@ import static com.hotels.styx.api.HttpResponseStatus.BAD_REQUEST;
 import static com.hotels.styx.api.HttpResponseStatus.INTERNAL_SERVER_ERROR;
 import static java.util.Objects.requireNonNull;
 import static org.slf4j.LoggerFactory.getLogger;
-import static rx.Observable.error;
-import static rx.RxReactiveStreams.toObservable;
-import static rx.RxReactiveStreams.toPublisher;
 
 /**
  * Collects metrics on plugin.
@@ -87,10 +85,9 @@ public class InstrumentedPlugin implements NamedPlugin {
     public Eventual<LiveHttpResponse> intercept(LiveHttpRequest request, Chain originalChain) {
         StatusRecordingChain chain = new StatusRecordingChain(originalChain);
         try {
-            return new Eventual<>(toPublisher(
-                    toObservable(plugin.intercept(request, chain))
-                            .doOnNext(response -> recordStatusCode(chain, response))
-                            .onErrorResumeNext(error -> error(recordAndWrapError(chain, error)))));
+            return new Eventual<>(Mono.from(plugin.intercept(request, chain))
+                    .doOnNext(response -> recordStatusCode(chain, response))
+                    .onErrorMap(error -> recordAndWrapError(chain, error)));
         } catch (Throwable e) {
             recordException(e);
             return Eventual.error(new PluginException(e, plugin.name()));
@@ -167,10 +164,9 @@ public class InstrumentedPlugin implements NamedPlugin {
         @Override
         public Eventual<LiveHttpResponse> proceed(LiveHttpRequest request) {
             try {
-                return new Eventual<>(
-                        toPublisher(toObservable(chain.proceed(request))
-                                .doOnNext(response -> upstreamStatus = response.status())
-                                .doOnError(error -> upstreamException = true)));
+                return new Eventual<>(Mono.from(chain.proceed(request))
+                        .doOnNext(response -> upstreamStatus = response.status())
+                        .doOnError(error -> upstreamException = true));
             } catch (RuntimeException | Error e) {
                 upstreamException = true;
                 throw e;
@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -62,6 +62,15 @@ public class RoutingMetadataDecorator implements RoutingObject {
         return delegate.stop();
     }
 
+    /**
+     * The decorated routing object.
+     *
+     * @return routing object
+     */
+    public RoutingObject delegate() {
+        return delegate;
+    }
+
     public LoadBalancingMetric metric() {
         return new LoadBalancingMetric(allRequests.intValue() - finishedRequests.intValue());
     }
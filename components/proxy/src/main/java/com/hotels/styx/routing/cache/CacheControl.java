@@ -0,0 +1,99 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.routing.cache;
+
+import com.hotels.styx.api.HttpHeaders;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+
+import static com.hotels.styx.api.HttpHeaderNames.CACHE_CONTROL;
+import static java.util.Locale.ROOT;
+
+/**
+ * The directives of the {@code Cache-Control} headers of a message.
+ */
+final class CacheControl {
+    private final Map<String, String> directives;
+
+    private CacheControl(Map<String, String> directives) {
+        this.directives = directives;
+    }
+
+    static CacheControl of(HttpHeaders headers) {
+        Map<String, String> directives = new HashMap<>();
+        for (String header : headers.getAll(CACHE_CONTROL)) {
+            parse(header, directives);
+        }
+        return new CacheControl(directives);
+    }
+
+    /**
+     * Tells whether a directive is present, with or without an argument.
+     *
+     * @param directive directive name, in lower case
+     * @return true if present
+     */
+    boolean has(String directive) {
+        return directives.containsKey(directive);
+    }
+
+    /**
+     * The delta-seconds argument of a directive, such as {@code max-age}.
+     *
+     * @param directive directive name, in lower case
+     * @return seconds, or empty if the directive is absent or its argument is not a number
+     */
+    OptionalLong seconds(String directive) {
+        String value = directives.get(directive);
+        if (value == null) {
+            return OptionalLong.empty();
+        }
+        try {
+            return OptionalLong.of(Math.max(0, Long.parseLong(value)));
+        } catch (NumberFormatException e) {
+            return OptionalLong.empty();
+        }
+    }
+
+    // Splits on commas outside quoted strings, as in `no-cache="Set-Cookie, Set-Cookie2", max-age=60`.
+    private static void parse(String header, Map<String, String> directives) {
+        int start = 0;
+        boolean quoted = false;
+        for (int i = 0; i <= header.length(); i++) {
+            if (i == header.length() || (header.charAt(i) == ',' && !quoted)) {
+                directive(header.substring(start, i), directives);
+                start = i + 1;
+            } else if (header.charAt(i) == '"') {
+                quoted = !quoted;
+            }
+        }
+    }
+
+    private static void directive(String text, Map<String, String> directives) {
+        int equals = text.indexOf('=');
+        String name = (equals < 0 ? text : text.substring(0, equals)).trim().toLowerCase(ROOT);
+        if (name.isEmpty()) {
+            return;
+        }
+        String value = equals < 0 ? "" : text.substring(equals + 1).trim();
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            value = value.substring(1, value.length() - 1);
+        }
+        directives.putIfAbsent(name, value);
+    }
+}
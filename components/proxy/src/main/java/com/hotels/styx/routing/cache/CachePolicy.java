@@ -0,0 +1,160 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.routing.cache;
+
+import com.hotels.styx.api.HttpHeaders;
+import com.hotels.styx.api.LiveHttpRequest;
+import com.hotels.styx.api.LiveHttpResponse;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.Set;
+
+import static com.hotels.styx.api.HttpHeaderNames.AUTHORIZATION;
+import static com.hotels.styx.api.HttpHeaderNames.DATE;
+import static com.hotels.styx.api.HttpHeaderNames.ETAG;
+import static com.hotels.styx.api.HttpHeaderNames.EXPIRES;
+import static com.hotels.styx.api.HttpHeaderNames.LAST_MODIFIED;
+import static com.hotels.styx.api.HttpHeaderNames.SET_COOKIE;
+import static com.hotels.styx.api.HttpHeaderNames.VARY;
+import static com.hotels.styx.api.HttpMethod.GET;
+import static java.lang.Math.max;
+import static java.util.Locale.ROOT;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * The rules of a shared cache, from RFC 7234, for what may be stored and for how long.
+ * <p>
+ * Responses are stored only if they state how long they are fresh for, or carry a validator.
+ * Heuristic freshness is not used.
+ */
+final class CachePolicy {
+    private static final Set<Integer> CACHEABLE_STATUSES = Set.of(200, 203, 204, 300, 301, 404, 410);
+
+    private CachePolicy() {
+    }
+
+    /**
+     * Tells whether the response to a request may come from, or be stored in, the cache.
+     *
+     * @param request request
+     * @return true if the cache may be used
+     */
+    static boolean isCacheable(LiveHttpRequest request) {
+        return GET.equals(request.method())
+                && !request.headers().contains(AUTHORIZATION)
+                && !CacheControl.of(request.headers()).has("no-store");
+    }
+
+    /**
+     * Tells whether the request demands that a cached response is validated with the origin first.
+     *
+     * @param request request
+     * @return true if validation is required
+     */
+    static boolean requiresValidation(LiveHttpRequest request) {
+        CacheControl cacheControl = CacheControl.of(request.headers());
+        return cacheControl.has("no-cache") || cacheControl.seconds("max-age").orElse(1) == 0;
+    }
+
+    /**
+     * Tells whether a response may be stored.
+     *
+     * @param response response
+     * @return true if the response may be stored
+     */
+    static boolean isStorable(LiveHttpResponse response) {
+        HttpHeaders headers = response.headers();
+        CacheControl cacheControl = CacheControl.of(headers);
+
+        return CACHEABLE_STATUSES.contains(response.status().code())
+                && !cacheControl.has("no-store")
+                && !cacheControl.has("private")
+                && !headers.contains(SET_COOKIE)
+                && !varyHeaders(headers).contains("*")
+                && (freshnessLifetime(headers) > 0 || headers.contains(ETAG) || headers.contains(LAST_MODIFIED));
+    }
+
+    /**
+     * How long a response is fresh for, from {@code s-maxage}, {@code max-age}, or {@code Expires}.
+     *
+     * @param headers response headers
+     * @return freshness lifetime in milliseconds
+     */
+    static long freshnessLifetime(HttpHeaders headers) {
+        CacheControl cacheControl = CacheControl.of(headers);
+        if (cacheControl.has("no-cache")) {
+            return 0;
+        }
+
+        OptionalLong maxAge = cacheControl.seconds("s-maxage");
+        if (maxAge.isEmpty()) {
+            maxAge = cacheControl.seconds("max-age");
+        }
+        if (maxAge.isPresent()) {
+            return SECONDS.toMillis(maxAge.getAsLong());
+        }
+
+        return headers.get(EXPIRES)
+                .map(expires -> CachedResponse.parseDate(expires)
+                        .map(expiry -> max(0, expiry.toEpochMilli() - date(headers)))
+                        .orElse(0L))
+                .orElse(0L);
+    }
+
+    /**
+     * How long a stale response may be served while it is revalidated in the background.
+     *
+     * @param headers       response headers
+     * @param defaultMillis used when the response does not have a {@code stale-while-revalidate} directive
+     * @return milliseconds
+     */
+    static long staleWhileRevalidate(HttpHeaders headers, long defaultMillis) {
+        CacheControl cacheControl = CacheControl.of(headers);
+        if (cacheControl.has("must-revalidate") || cacheControl.has("proxy-revalidate") || cacheControl.has("no-cache")) {
+            return 0;
+        }
+        OptionalLong seconds = cacheControl.seconds("stale-while-revalidate");
+        return seconds.isPresent() ? SECONDS.toMillis(seconds.getAsLong()) : defaultMillis;
+    }
+
+    /**
+     * The names of the request headers that select a response variant, in lower case.
+     *
+     * @param headers response headers
+     * @return header names
+     */
+    static List<String> varyHeaders(HttpHeaders headers) {
+        List<String> names = new ArrayList<>();
+        for (String vary : headers.getAll(VARY)) {
+            for (String name : vary.split(",")) {
+                if (!name.isBlank()) {
+                    names.add(name.trim().toLowerCase(ROOT));
+                }
+            }
+        }
+        return names;
+    }
+
+    private static long date(HttpHeaders headers) {
+        return headers.get(DATE)
+                .flatMap(CachedResponse::parseDate)
+                .map(Instant::toEpochMilli)
+                .orElseGet(System::currentTimeMillis);
+    }
+}
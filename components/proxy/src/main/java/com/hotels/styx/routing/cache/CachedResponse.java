@@ -0,0 +1,266 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.routing.cache;
+
+import com.hotels.styx.api.HttpHeaders;
+import com.hotels.styx.api.HttpResponseStatus;
+import com.hotels.styx.api.LiveHttpRequest;
+import io.netty.buffer.ByteBuf;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.hotels.styx.api.HttpHeaderNames.AGE;
+import static com.hotels.styx.api.HttpHeaderNames.CACHE_CONTROL;
+import static com.hotels.styx.api.HttpHeaderNames.CONNECTION;
+import static com.hotels.styx.api.HttpHeaderNames.CONTENT_LENGTH;
+import static com.hotels.styx.api.HttpHeaderNames.DATE;
+import static com.hotels.styx.api.HttpHeaderNames.ETAG;
+import static com.hotels.styx.api.HttpHeaderNames.EXPIRES;
+import static com.hotels.styx.api.HttpHeaderNames.KEEP_ALIVE;
+import static com.hotels.styx.api.HttpHeaderNames.LAST_MODIFIED;
+import static com.hotels.styx.api.HttpHeaderNames.TRANSFER_ENCODING;
+import static com.hotels.styx.api.HttpResponseStatus.NO_CONTENT;
+import static java.lang.Math.max;
+import static java.time.format.DateTimeFormatter.RFC_1123_DATE_TIME;
+import static java.util.Locale.ROOT;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toMap;
+
+/**
+ * A response held by the cache. The body is a reference counted buffer, of which the cache holds
+ * one reference. Each response served from the cache takes a reference of its own.
+ */
+final class CachedResponse {
+    private static final Set<String> UPDATED_BY_REVALIDATION = Set.of(
+            CACHE_CONTROL.toString(), DATE.toString(), ETAG.toString(), EXPIRES.toString(), LAST_MODIFIED.toString());
+
+    private final String uri;
+    private final HttpResponseStatus status;
+    private final HttpHeaders headers;
+    private final ByteBuf body;
+    private final Map<String, String> variant;
+    private final long correctedResponseTime;
+    private final long freshnessLifetime;
+    private final long staleWhileRevalidate;
+    private final AtomicBoolean revalidating = new AtomicBoolean();
+
+    // CHECKSTYLE:OFF
+    private CachedResponse(String uri, HttpResponseStatus status, HttpHeaders headers, ByteBuf body, Map<String, String> variant,
+                           long correctedResponseTime, long freshnessLifetime, long staleWhileRevalidate) {
+        this.uri = requireNonNull(uri);
+        this.status = requireNonNull(status);
+        this.headers = requireNonNull(headers);
+        this.body = requireNonNull(body);
+        this.variant = requireNonNull(variant);
+        this.correctedResponseTime = correctedResponseTime;
+        this.freshnessLifetime = freshnessLifetime;
+        this.staleWhileRevalidate = staleWhileRevalidate;
+    }
+    // CHECKSTYLE:ON
+
+    /**
+     * Creates an entry, taking over the reference to the body.
+     *
+     * @param request               request that was forwarded
+     * @param status                response status
+     * @param headers               response headers
+     * @param body                  response body
+     * @param requestTime           when the request was forwarded, in milliseconds
+     * @param responseTime          when the response was received, in milliseconds
+     * @param defaultStaleWhileRevalidate how long a response may be served stale when it does not say, in milliseconds
+     * @return an entry
+     */
+    static CachedResponse create(LiveHttpRequest request, HttpResponseStatus status, HttpHeaders headers, ByteBuf body,
+                                 long requestTime, long responseTime, long defaultStaleWhileRevalidate) {
+        HttpHeaders.Builder stored = headers.newBuilder()
+                .remove(AGE)
+                .remove(CONNECTION)
+                .remove(KEEP_ALIVE)
+                .remove(TRANSFER_ENCODING);
+        if (status.code() != NO_CONTENT.code()) {
+            stored.set(CONTENT_LENGTH, body.readableBytes());
+        }
+
+        return new CachedResponse(
+                request.url().encodedUrl(),
+                status,
+                stored.build(),
+                body,
+                variant(request, headers),
+                responseTime - initialAge(headers, requestTime, responseTime),
+                CachePolicy.freshnessLifetime(headers),
+                CachePolicy.staleWhileRevalidate(headers, defaultStaleWhileRevalidate));
+    }
+
+    /**
+     * Creates an entry that is refreshed by a {@code 304 Not Modified} response, sharing the body
+     * with this entry.
+     *
+     * @param notModified  headers of the 304 response
+     * @param requestTime  when the conditional request was forwarded, in milliseconds
+     * @param responseTime when the 304 response was received, in milliseconds
+     * @param defaultStaleWhileRevalidate how long a response may be served stale when it does not say, in milliseconds
+     * @return a refreshed entry, holding a reference of its own to the body
+     */
+    CachedResponse revalidated(HttpHeaders notModified, long requestTime, long responseTime, long defaultStaleWhileRevalidate) {
+        HttpHeaders.Builder updated = headers.newBuilder();
+        for (String name : notModified.names()) {
+            if (UPDATED_BY_REVALIDATION.contains(name.toLowerCase(ROOT))) {
+                updated.set(name, notModified.getAll(name));
+            }
+        }
+        HttpHeaders merged = updated.build();
+
+        return new CachedResponse(
+                uri,
+                status,
+                merged,
+                body.retain(),
+                variant,
+                responseTime - initialAge(notModified, requestTime, responseTime),
+                CachePolicy.freshnessLifetime(merged),
+                CachePolicy.staleWhileRevalidate(merged, defaultStaleWhileRevalidate));
+    }
+
+    private static Map<String, String> variant(LiveHttpRequest request, HttpHeaders responseHeaders) {
+        return CachePolicy.varyHeaders(responseHeaders).stream()
+                .collect(toMap(name -> name, name -> String.join(",", request.headers().getAll(name)), (a, b) -> a));
+    }
+
+    private static long initialAge(HttpHeaders headers, long requestTime, long responseTime) {
+        long apparentAge = headers.get(DATE)
+                .flatMap(CachedResponse::parseDate)
+                .map(date -> max(0, responseTime - date.toEpochMilli()))
+                .orElse(0L);
+
+        long ageValue = headers.get(AGE)
+                .map(CachedResponse::parseSeconds)
+                .orElse(0L);
+
+        return max(apparentAge, SECONDS.toMillis(ageValue) + (responseTime - requestTime));
+    }
+
+    private static long parseSeconds(String value) {
+        try {
+            return max(0, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    static Optional<Instant> parseDate(String value) {
+        try {
+            return Optional.of(ZonedDateTime.parse(value.trim(), RFC_1123_DATE_TIME).toInstant());
+        } catch (DateTimeParseException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Tells whether this is the variant selected by the request, according to the {@code Vary} header.
+     *
+     * @param request request
+     * @return true if it matches
+     */
+    boolean matches(LiveHttpRequest request) {
+        for (Map.Entry<String, String> entry : variant.entrySet()) {
+            List<String> values = request.headers().getAll(entry.getKey());
+            if (!entry.getValue().equals(String.join(",", values))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean sameVariant(CachedResponse other) {
+        return variant.equals(other.variant);
+    }
+
+    long ageMillis(long now) {
+        return max(0, now - correctedResponseTime);
+    }
+
+    boolean isFresh(long now) {
+        return ageMillis(now) < freshnessLifetime;
+    }
+
+    boolean isServableStale(long now) {
+        return ageMillis(now) < freshnessLifetime + staleWhileRevalidate;
+    }
+
+    boolean hasValidators() {
+        return headers.contains(ETAG) || headers.contains(LAST_MODIFIED);
+    }
+
+    /**
+     * Marks the entry as being revalidated.
+     *
+     * @return true if the caller should revalidate the entry, false if it is already being revalidated
+     */
+    boolean startRevalidation() {
+        return revalidating.compareAndSet(false, true);
+    }
+
+    void revalidationFailed() {
+        revalidating.set(false);
+    }
+
+    String uri() {
+        return uri;
+    }
+
+    HttpResponseStatus status() {
+        return status;
+    }
+
+    HttpHeaders headers() {
+        return headers;
+    }
+
+    Optional<String> etag() {
+        return headers.get(ETAG);
+    }
+
+    Optional<String> lastModified() {
+        return headers.get(LAST_MODIFIED);
+    }
+
+    int size() {
+        return body.readableBytes();
+    }
+
+    /**
+     * Takes a reference to the body, for a response served from the cache.
+     * The buffer shares the memory of the cached body.
+     *
+     * @return a buffer to be released by the consumer
+     */
+    ByteBuf retainedBody() {
+        return body.retainedDuplicate();
+    }
+
+    void release() {
+        body.release();
+    }
+}
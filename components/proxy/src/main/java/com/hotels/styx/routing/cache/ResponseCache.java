@@ -0,0 +1,433 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.routing.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.hotels.styx.api.Buffer;
+import com.hotels.styx.api.Buffers;
+import com.hotels.styx.api.ByteStream;
+import com.hotels.styx.api.Eventual;
+import com.hotels.styx.api.HttpInterceptor;
+import com.hotels.styx.api.HttpMethod;
+import com.hotels.styx.api.LiveHttpRequest;
+import com.hotels.styx.api.LiveHttpResponse;
+import com.hotels.styx.config.schema.Schema;
+import com.hotels.styx.infrastructure.configuration.yaml.JsonNodeConfig;
+import com.hotels.styx.routing.RoutingObject;
+import com.hotels.styx.routing.config.Builtins;
+import com.hotels.styx.routing.config.RoutingObjectFactory;
+import com.hotels.styx.routing.config.StyxObjectDefinition;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import org.slf4j.Logger;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Signal;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import static com.hotels.styx.api.HttpHeaderNames.AGE;
+import static com.hotels.styx.api.HttpHeaderNames.CACHE_CONTROL;
+import static com.hotels.styx.api.HttpHeaderNames.CONTENT_LENGTH;
+import static com.hotels.styx.api.HttpHeaderNames.DATE;
+import static com.hotels.styx.api.HttpHeaderNames.ETAG;
+import static com.hotels.styx.api.HttpHeaderNames.EXPIRES;
+import static com.hotels.styx.api.HttpHeaderNames.HOST;
+import static com.hotels.styx.api.HttpHeaderNames.IF_MODIFIED_SINCE;
+import static com.hotels.styx.api.HttpHeaderNames.IF_NONE_MATCH;
+import static com.hotels.styx.api.HttpHeaderNames.LAST_MODIFIED;
+import static com.hotels.styx.api.HttpHeaderNames.VARY;
+import static com.hotels.styx.api.HttpMethod.DELETE;
+import static com.hotels.styx.api.HttpMethod.PATCH;
+import static com.hotels.styx.api.HttpMethod.POST;
+import static com.hotels.styx.api.HttpMethod.PUT;
+import static com.hotels.styx.api.HttpResponseStatus.NOT_MODIFIED;
+import static com.hotels.styx.api.HttpResponseStatus.OK;
+import static com.hotels.styx.config.schema.SchemaDsl.field;
+import static com.hotels.styx.config.schema.SchemaDsl.integer;
+import static com.hotels.styx.config.schema.SchemaDsl.object;
+import static com.hotels.styx.config.schema.SchemaDsl.optional;
+import static com.hotels.styx.config.schema.SchemaDsl.routingObject;
+import static com.hotels.styx.routing.config.RoutingConfigParser.toRoutingConfigNode;
+import static com.hotels.styx.routing.config.RoutingSupport.append;
+import static com.hotels.styx.routing.config.RoutingSupport.missingAttributeError;
+import static java.lang.String.join;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * A routing object that caches the responses of its handler in memory, as a shared cache.
+ * <p>
+ * Responses are stored according to their {@code Cache-Control}, {@code Expires} and {@code Vary}
+ * headers, and revalidated with their {@code ETag} and {@code Last-Modified} validators once stale.
+ * A stale response may be served while it is revalidated in the background, for as long as its
+ * {@code stale-while-revalidate} directive allows, or the configured default.
+ * <p>
+ * Response bodies are kept in off-heap buffers, up to a total size. Cached responses are sent
+ * from these buffers directly, without copying.
+ */
+public class ResponseCache implements RoutingObject {
+    public static final Schema.FieldType SCHEMA = object(
+            field("handler", routingObject()),
+            optional("maxSizeBytes", integer()),
+            optional("maxEntrySizeBytes", integer()),
+            optional("staleWhileRevalidateSeconds", integer())
+    );
+
+    private static final Logger LOGGER = getLogger(ResponseCache.class);
+
+    private static final int DEFAULT_MAX_SIZE_BYTES = 64 * 1024 * 1024;
+    private static final int DEFAULT_MAX_ENTRY_SIZE_BYTES = 1024 * 1024;
+    private static final int INITIAL_BODY_CAPACITY = 4096;
+    private static final Set<HttpMethod> UNSAFE_METHODS = Set.of(POST, PUT, PATCH, DELETE);
+    private static final List<CharSequence> NOT_MODIFIED_HEADERS = List.of(CACHE_CONTROL, DATE, ETAG, EXPIRES, LAST_MODIFIED, VARY);
+
+    private final RoutingObject handler;
+    private final ResponseCacheStore store;
+    private final int maxEntrySizeBytes;
+    private final long staleWhileRevalidate;
+    private final LongSupplier clock;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+
+    public ResponseCache(RoutingObject handler, long maxSizeBytes, int maxEntrySizeBytes, int staleWhileRevalidateSeconds) {
+        this(handler, maxSizeBytes, maxEntrySizeBytes, staleWhileRevalidateSeconds, System::currentTimeMillis);
+    }
+
+    ResponseCache(RoutingObject handler, long maxSizeBytes, int maxEntrySizeBytes, int staleWhileRevalidateSeconds, LongSupplier clock) {
+        this.handler = requireNonNull(handler);
+        this.store = new ResponseCacheStore(maxSizeBytes);
+        this.maxEntrySizeBytes = maxEntrySizeBytes;
+        this.staleWhileRevalidate = SECONDS.toMillis(staleWhileRevalidateSeconds);
+        this.clock = requireNonNull(clock);
+    }
+
+    @Override
+    public Eventual<LiveHttpResponse> handle(LiveHttpRequest request, HttpInterceptor.Context context) {
+        if (!CachePolicy.isCacheable(request)) {
+            return UNSAFE_METHODS.contains(request.method())
+                    ? invalidating(request, context)
+                    : handler.handle(request, context);
+        }
+
+        String key = key(request);
+        ResponseCacheStore.Hit hit = store.lookup(key, request);
+        if (hit == null) {
+            misses.increment();
+            return forward(key, request, context);
+        }
+
+        CachedResponse entry = hit.entry();
+        long now = clock.getAsLong();
+        if (!CachePolicy.requiresValidation(request)) {
+            if (entry.isFresh(now)) {
+                hits.increment();
+                return Eventual.of(serve(request, entry, hit.body(), now));
+            }
+            if (entry.isServableStale(now)) {
+                staleHits.increment();
+                if (entry.startRevalidation()) {
+                    revalidateInBackground(key, request, hit.retained(), context);
+                }
+                return Eventual.of(serve(request, entry, hit.body(), now));
+            }
+        }
+
+        if (entry.hasValidators()) {
+            return revalidate(key, request, hit, context);
+        }
+
+        hit.release();
+        misses.increment();
+        return forward(key, request, context);
+    }
+
+    @Override
+    public CompletableFuture<Void> stop() {
+        store.purge("");
+        return handler.stop();
+    }
+
+    /**
+     * Removes cached responses.
+     *
+     * @param uriPrefix prefix of the path and query of the responses to remove, or empty to remove all
+     * @return number of responses removed
+     */
+    public int purge(String uriPrefix) {
+        return store.purge(uriPrefix);
+    }
+
+    /**
+     * Cache statistics, for the admin interface.
+     *
+     * @return statistics by name
+     */
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("entries", (long) store.entries());
+        stats.put("sizeBytes", store.sizeBytes());
+        stats.put("maxSizeBytes", store.maxSizeBytes());
+        stats.put("hits", hits.sum());
+        stats.put("staleHits", staleHits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("revalidations", revalidations.sum());
+        stats.put("evictions", store.evictions());
+        return stats;
+    }
+
+    private static String key(LiveHttpRequest request) {
+        return request.header(HOST).orElse("") + request.url().encodedUrl();
+    }
+
+    private Eventual<LiveHttpResponse> forward(String key, LiveHttpRequest request, HttpInterceptor.Context context) {
+        long requestTime = clock.getAsLong();
+        return handler.handle(request, context)
+                .map(response -> storing(key, request, response, requestTime));
+    }
+
+    private Eventual<LiveHttpResponse> invalidating(LiveHttpRequest request, HttpInterceptor.Context context) {
+        String key = key(request);
+        return handler.handle(request, context)
+                .map(response -> {
+                    if (response.status().code() < 400) {
+                        store.invalidate(key);
+                    }
+                    return response;
+                });
+    }
+
+    private Eventual<LiveHttpResponse> revalidate(String key, LiveHttpRequest request, ResponseCacheStore.Hit hit, HttpInterceptor.Context context) {
+        revalidations.increment();
+        CachedResponse entry = hit.entry();
+        long requestTime = clock.getAsLong();
+
+        return handler.handle(conditional(request, entry), context)
+                .map(response -> {
+                    if (NOT_MODIFIED.equals(response.status())) {
+                        response.consume();
+                        long now = clock.getAsLong();
+                        CachedResponse refreshed = entry.revalidated(response.headers(), requestTime, now, staleWhileRevalidate);
+                        store.replace(key, entry, refreshed);
+                        return serve(request, refreshed, hit.body(), now);
+                    }
+                    hit.release();
+                    return storing(key, request, response, requestTime);
+                })
+                .onError(cause -> {
+                    hit.release();
+                    return Eventual.error(cause);
+                });
+    }
+
+    // Holds its own reference to the body until done, so that the entry may be refreshed even if it is evicted meanwhile.
+    private void revalidateInBackground(String key, LiveHttpRequest request, ResponseCacheStore.Hit hit, HttpInterceptor.Context context) {
+        revalidations.increment();
+        CachedResponse entry = hit.entry();
+        long requestTime = clock.getAsLong();
+
+        Mono.defer(() -> Mono.from(handler.handle(conditional(request, entry), context)))
+                .doFinally(signal -> hit.release())
+                .subscribe(response -> {
+                    if (NOT_MODIFIED.equals(response.status())) {
+                        response.consume();
+                        store.replace(key, entry, entry.revalidated(response.headers(), requestTime, clock.getAsLong(), staleWhileRevalidate));
+                    } else {
+                        entry.revalidationFailed();
+                        storing(key, request, response, requestTime).consume();
+                    }
+                }, cause -> {
+                    LOGGER.debug("Background revalidation failed. uri={}", entry.uri(), cause);
+                    entry.revalidationFailed();
+                });
+    }
+
+    // Replaces any validators of the client with those of the cached response.
+    private static LiveHttpRequest conditional(LiveHttpRequest request, CachedResponse entry) {
+        LiveHttpRequest.Transformer conditional = request.newBuilder()
+                .removeHeader(IF_NONE_MATCH)
+                .removeHeader(IF_MODIFIED_SINCE);
+        entry.etag().ifPresent(etag -> conditional.header(IF_NONE_MATCH, etag));
+        entry.lastModified().ifPresent(lastModified -> conditional.header(IF_MODIFIED_SINCE, lastModified));
+        return conditional.build();
+    }
+
+    private LiveHttpResponse serve(LiveHttpRequest request, CachedResponse entry, ByteBuf body, long now) {
+        long age = MILLISECONDS.toSeconds(entry.ageMillis(now));
+
+        if (OK.equals(entry.status()) && notModified(request, entry)) {
+            body.release();
+            LiveHttpResponse.Builder notModified = LiveHttpResponse.response(NOT_MODIFIED).header(AGE, age);
+            for (CharSequence name : NOT_MODIFIED_HEADERS) {
+                entry.headers().getAll(name).forEach(value -> notModified.addHeader(name, value));
+            }
+            return notModified.build();
+        }
+
+        return LiveHttpResponse.response(entry.status())
+                .headers(entry.headers())
+                .header(AGE, age)
+                .body(new ByteStream(Flux.just(Buffers.fromByteBuf(body))))
+                .build();
+    }
+
+    private static boolean notModified(LiveHttpRequest request, CachedResponse entry) {
+        Optional<String> ifNoneMatch = request.header(IF_NONE_MATCH);
+        if (ifNoneMatch.isPresent()) {
+            return entry.etag().map(etag -> etagMatches(ifNoneMatch.get(), etag)).orElse(false);
+        }
+
+        Optional<Instant> ifModifiedSince = request.header(IF_MODIFIED_SINCE).flatMap(CachedResponse::parseDate);
+        Optional<Instant> lastModified = entry.lastModified().flatMap(CachedResponse::parseDate);
+        return ifModifiedSince.isPresent() && lastModified.isPresent() && !lastModified.get().isAfter(ifModifiedSince.get());
+    }
+
+    // Weak comparison, as required for If-None-Match.
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        String opaque = weakless(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.equals("*") || weakless(trimmed).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String weakless(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    private LiveHttpResponse storing(String key, LiveHttpRequest request, LiveHttpResponse response, long requestTime) {
+        if (!CachePolicy.isStorable(response)) {
+            return response;
+        }
+
+        long contentLength = response.header(CONTENT_LENGTH).map(Long::parseLong).orElse(-1L);
+        if (contentLength > maxEntrySizeBytes) {
+            return response;
+        }
+
+        BodyAccumulator accumulator = new BodyAccumulator(key, request, response, requestTime, (int) contentLength);
+        return response.newBuilder()
+                .body(body -> body.doOnEach(accumulator::onSignal).doOnCancel(accumulator::cancel))
+                .build();
+    }
+
+    /**
+     * Copies a response body into an off-heap buffer as it streams to the client, and stores the
+     * response once the body is complete. Bodies larger than the maximum entry size are not stored.
+     */
+    private final class BodyAccumulator {
+        private final String key;
+        private final LiveHttpRequest request;
+        private final LiveHttpResponse response;
+        private final long requestTime;
+        private final int expectedLength;
+
+        // Guarded by `this`.
+        private ByteBuf content;
+        private boolean done;
+
+        BodyAccumulator(String key, LiveHttpRequest request, LiveHttpResponse response, long requestTime, int expectedLength) {
+            this.key = key;
+            this.request = request;
+            this.response = response;
+            this.requestTime = requestTime;
+            this.expectedLength = expectedLength;
+        }
+
+        synchronized void onSignal(Signal<Buffer> signal) {
+            if (done) {
+                return;
+            }
+
+            if (signal.isOnNext()) {
+                ByteBuf chunk = Buffers.toByteBuf(signal.get());
+                ByteBuf buffer = content();
+                if (buffer.readableBytes() + chunk.readableBytes() > maxEntrySizeBytes) {
+                    abandon();
+                    return;
+                }
+                buffer.writeBytes(chunk, chunk.readerIndex(), chunk.readableBytes());
+            } else if (signal.isOnComplete()) {
+                done = true;
+                store.put(key, CachedResponse.create(request, response.status(), response.headers(), content(), requestTime, clock.getAsLong(), staleWhileRevalidate));
+                content = null;
+            } else if (signal.isOnError()) {
+                abandon();
+            }
+        }
+
+        synchronized void cancel() {
+            if (!done) {
+                abandon();
+            }
+        }
+
+        private ByteBuf content() {
+            if (content == null) {
+                int initialCapacity = expectedLength >= 0 ? expectedLength : INITIAL_BODY_CAPACITY;
+                content = ByteBufAllocator.DEFAULT.directBuffer(Math.min(initialCapacity, maxEntrySizeBytes), maxEntrySizeBytes);
+            }
+            return content;
+        }
+
+        private void abandon() {
+            done = true;
+            if (content != null) {
+                content.release();
+                content = null;
+            }
+        }
+    }
+
+    /**
+     * A factory for creating ResponseCache routing objects.
+     */
+    public static class Factory implements RoutingObjectFactory {
+        @Override
+        public RoutingObject build(List<String> fullName, Context context, StyxObjectDefinition configBlock) {
+            JsonNodeConfig config = new JsonNodeConfig(configBlock.config());
+
+            JsonNode handlerConfig = config.get("handler", JsonNode.class)
+                    .orElseThrow(() -> missingAttributeError(configBlock, join(".", fullName), "handler"));
+
+            int maxSizeBytes = config.get("maxSizeBytes", Integer.class).orElse(DEFAULT_MAX_SIZE_BYTES);
+            int maxEntrySizeBytes = config.get("maxEntrySizeBytes", Integer.class).orElse(DEFAULT_MAX_ENTRY_SIZE_BYTES);
+            int staleWhileRevalidateSeconds = config.get("staleWhileRevalidateSeconds", Integer.class).orElse(0);
+
+            return new ResponseCache(
+                    Builtins.build(append(fullName, "handler"), context, toRoutingConfigNode(handlerConfig)),
+                    maxSizeBytes,
+                    maxEntrySizeBytes,
+                    staleWhileRevalidateSeconds);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.routing.cache;
+
+import com.hotels.styx.api.LiveHttpRequest;
+import io.netty.buffer.ByteBuf;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.hotels.styx.common.Preconditions.checkArgument;
+
+/**
+ * Holds cached responses, up to a total body size, evicting the least recently used ones first.
+ * <p>
+ * Entries are keyed by the request target. Each key holds the variants of a response selected
+ * by its {@code Vary} header. The bodies are reference counted, so an entry that is evicted
+ * while its body is being sent to a client is freed once the sending completes.
+ */
+final class ResponseCacheStore {
+    private final long maxSizeBytes;
+    private final Map<String, List<CachedResponse>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Guarded by `this`.
+    private long sizeBytes;
+    private long evictions;
+
+    ResponseCacheStore(long maxSizeBytes) {
+        checkArgument(maxSizeBytes > 0, "maxSizeBytes must be positive");
+        this.maxSizeBytes = maxSizeBytes;
+    }
+
+    /**
+     * Looks up the variant selected by a request.
+     *
+     * @param key     cache key
+     * @param request request
+     * @return the entry and a reference to its body, or null if there is no such entry
+     */
+    synchronized Hit lookup(String key, LiveHttpRequest request) {
+        List<CachedResponse> variants = entries.get(key);
+        if (variants == null) {
+            return null;
+        }
+        for (CachedResponse variant : variants) {
+            if (variant.matches(request)) {
+                return new Hit(variant, variant.retainedBody());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stores an entry, replacing any entry for the same variant.
+     * The store takes over the reference to the entry's body.
+     *
+     * @param key   cache key
+     * @param entry entry
+     */
+    synchronized void put(String key, CachedResponse entry) {
+        if (entry.size() > maxSizeBytes) {
+            entry.release();
+            return;
+        }
+
+        List<CachedResponse> variants = entries.computeIfAbsent(key, it -> new ArrayList<>(1));
+        Iterator<CachedResponse> existing = variants.iterator();
+        while (existing.hasNext()) {
+            CachedResponse variant = existing.next();
+            if (variant.sameVariant(entry)) {
+                existing.remove();
+                remove(variant);
+            }
+        }
+        variants.add(entry);
+        sizeBytes += entry.size();
+
+        evict();
+    }
+
+    /**
+     * Replaces an entry with its refreshed copy, provided the store still holds that entry.
+     * The store takes over the reference to the refreshed entry's body, releasing it if the
+     * entry has since been replaced, invalidated, purged or evicted.
+     *
+     * @param key       cache key
+     * @param current   entry that was refreshed
+     * @param refreshed refreshed entry
+     * @return true if the entry was replaced
+     */
+    synchronized boolean replace(String key, CachedResponse current, CachedResponse refreshed) {
+        List<CachedResponse> variants = entries.get(key);
+        int index = variants == null ? -1 : indexOf(variants, current);
+        if (index < 0) {
+            refreshed.release();
+            return false;
+        }
+
+        variants.set(index, refreshed);
+        remove(current);
+        sizeBytes += refreshed.size();
+
+        evict();
+        return true;
+    }
+
+    /**
+     * Removes all variants of a key.
+     *
+     * @param key cache key
+     */
+    synchronized void invalidate(String key) {
+        List<CachedResponse> variants = entries.remove(key);
+        if (variants != null) {
+            variants.forEach(this::remove);
+        }
+    }
+
+    /**
+     * Removes the entries whose request target starts with a prefix.
+     *
+     * @param uriPrefix prefix of path and query, or empty to remove all entries
+     * @return number of entries removed
+     */
+    synchronized int purge(String uriPrefix) {
+        int purged = 0;
+        Iterator<List<CachedResponse>> keys = entries.values().iterator();
+        while (keys.hasNext()) {
+            List<CachedResponse> variants = keys.next();
+            Iterator<CachedResponse> each = variants.iterator();
+            while (each.hasNext()) {
+                CachedResponse variant = each.next();
+                if (variant.uri().startsWith(uriPrefix)) {
+                    each.remove();
+                    remove(variant);
+                    purged++;
+                }
+            }
+            if (variants.isEmpty()) {
+                keys.remove();
+            }
+        }
+        return purged;
+    }
+
+    synchronized int entries() {
+        return entries.values().stream().mapToInt(List::size).sum();
+    }
+
+    synchronized long sizeBytes() {
+        return sizeBytes;
+    }
+
+    synchronized long evictions() {
+        return evictions;
+    }
+
+    long maxSizeBytes() {
+        return maxSizeBytes;
+    }
+
+    // Guarded by `this`.
+    private void evict() {
+        Iterator<Map.Entry<String, List<CachedResponse>>> leastRecentlyUsed = entries.entrySet().iterator();
+        while (sizeBytes > maxSizeBytes && leastRecentlyUsed.hasNext()) {
+            List<CachedResponse> variants = leastRecentlyUsed.next().getValue();
+            leastRecentlyUsed.remove();
+            variants.forEach(this::remove);
+            evictions += variants.size();
+        }
+    }
+
+    private static int indexOf(List<CachedResponse> variants, CachedResponse entry) {
+        for (int i = 0; i < variants.size(); i++) {
+            if (variants.get(i) == entry) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Guarded by `this`.
+    private void remove(CachedResponse entry) {
+        sizeBytes -= entry.size();
+        entry.release();
+    }
+
+    /**
+     * A cached entry found for a request, with a reference to its body that the holder must release,
+     * or hand over to a response.
+     */
+    static final class Hit {
+        private final CachedResponse entry;
+        private final ByteBuf body;
+
+        Hit(CachedResponse entry, ByteBuf body) {
+            this.entry = entry;
+            this.body = body;
+        }
+
+        CachedResponse entry() {
+            return entry;
+        }
+
+        ByteBuf body() {
+            return body;
+        }
+
+        void release() {
+            body.release();
+        }
+
+        /**
+         * Takes another reference to the body, to be released independently of this one.
+         *
+         * @return a hit holding a reference of its own
+         */
+        Hit retained() {
+            return new Hit(entry, body.retainedDuplicate());
+        }
+    }
+}
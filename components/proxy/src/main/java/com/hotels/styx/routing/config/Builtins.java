@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -25,6 +25,7 @@ import com.hotels.styx.api.extension.service.spi.StyxService;
 import com.hotels.styx.config.schema.Schema;
 import com.hotels.styx.executors.NettyExecutorFactory;
 import com.hotels.styx.routing.RoutingObject;
+import com.hotels.styx.routing.cache.ResponseCache;
 import com.hotels.styx.routing.db.StyxObjectStore;
 import com.hotels.styx.routing.handlers.ConditionRouter;
 import com.hotels.styx.routing.handlers.HostProxy;
@@ -34,6 +35,7 @@ import com.hotels.styx.routing.handlers.PathPrefixRouter;
 import com.hotels.styx.routing.handlers.ProxyToBackend;
 import com.hotels.styx.routing.handlers.RouteRefLookup;
 import com.hotels.styx.routing.handlers.StaticResponseHandler;
+import com.hotels.styx.routing.interceptors.RateLimitInterceptor;
 import com.hotels.styx.routing.interceptors.RewriteInterceptor;
 import com.hotels.styx.servers.StyxHttpServer;
 import com.hotels.styx.servers.StyxHttpServerFactory;
@@ -64,20 +66,24 @@ public final class Builtins {
     public static final String PATH_PREFIX_ROUTER = "PathPrefixRouter";
     public static final String HOST_PROXY = "HostProxy";
     public static final String LOAD_BALANCING_GROUP = "LoadBalancingGroup";
+    public static final String RESPONSE_CACHE = "ResponseCache";
 
     public static final String HEALTH_CHECK_MONITOR = "HealthCheckMonitor";
     public static final String YAML_FILE_CONFIGURATION_SERVICE = "YamlFileConfigurationService";
 
     public static final String REWRITE = "Rewrite";
+    public static final String RATE_LIMIT = "RateLimit";
 
     public static final Map<String, Schema.FieldType> BUILTIN_HANDLER_SCHEMAS;
     public static final Map<String, RoutingObjectFactory> BUILTIN_HANDLER_FACTORIES;
 
     public static final Map<String, HttpInterceptorFactory> INTERCEPTOR_FACTORIES =
-            Map.of(REWRITE, new RewriteInterceptor.Factory());
+            Map.of(REWRITE, new RewriteInterceptor.Factory(),
+                    RATE_LIMIT, new RateLimitInterceptor.Factory());
 
     public static final Map<String, Schema.FieldType> INTERCEPTOR_SCHEMAS =
-            Map.of(REWRITE, RewriteInterceptor.SCHEMA);
+            Map.of(REWRITE, RewriteInterceptor.SCHEMA,
+                    RATE_LIMIT, RateLimitInterceptor.SCHEMA);
 
     public static final Map<String, ServiceProviderFactory> BUILTIN_SERVICE_PROVIDER_FACTORIES =
             Map.of(HEALTH_CHECK_MONITOR, new HealthCheckMonitoringServiceFactory(),
@@ -119,7 +125,8 @@ public final class Builtins {
                 PROXY_TO_BACKEND, new ProxyToBackend.Factory(),
                 PATH_PREFIX_ROUTER, new PathPrefixRouter.Factory(),
                 HOST_PROXY, new HostProxy.Factory(),
-                LOAD_BALANCING_GROUP, new LoadBalancingGroup.Factory());
+                LOAD_BALANCING_GROUP, new LoadBalancingGroup.Factory(),
+                RESPONSE_CACHE, new ResponseCache.Factory());
 
         BUILTIN_HANDLER_SCHEMAS = Map.of(
                 STATIC_RESPONSE, StaticResponseHandler.SCHEMA,
@@ -128,7 +135,8 @@ public final class Builtins {
                 PROXY_TO_BACKEND, ProxyToBackend.SCHEMA,
                 PATH_PREFIX_ROUTER, PathPrefixRouter.SCHEMA,
                 HOST_PROXY, HostProxy.SCHEMA,
-                LOAD_BALANCING_GROUP,  LoadBalancingGroup.Companion.getSCHEMA());
+                LOAD_BALANCING_GROUP,  LoadBalancingGroup.Companion.getSCHEMA(),
+                RESPONSE_CACHE, ResponseCache.SCHEMA);
     }
 
     private Builtins() {
@@ -19,6 +19,7 @@ import com.hotels.styx.Environment;
 import com.hotels.styx.NettyExecutor;
 import com.hotels.styx.StyxObjectRecord;
 import com.hotels.styx.api.configuration.ObjectStore;
+import com.hotels.styx.executors.ClientExecutors;
 import com.hotels.styx.proxy.plugin.NamedPlugin;
 import com.hotels.styx.routing.RoutingObject;
 import com.hotels.styx.routing.RoutingObjectRecord;
@@ -65,6 +66,7 @@ public interface RoutingObjectFactory {
         private final Map<String, HttpInterceptorFactory> interceptorFactories;
         private final boolean requestTracking;
         private StyxObjectStore<StyxObjectRecord<NettyExecutor>> executorObjectStore;
+        private final ClientExecutors clientExecutors;
 
         // CHECKSTYLE:OFF
         public Context(
@@ -84,6 +86,7 @@ public interface RoutingObjectFactory {
             this.interceptorFactories = requireNonNull(interceptorFactories);
             this.requestTracking = requestTracking;
             this.executorObjectStore = executorObjectStore;
+            this.clientExecutors = new ClientExecutors(executorObjectStore, environment.centralisedMetrics());
         }
         // CHECKSTYLE:ON
 
@@ -118,5 +121,9 @@ public interface RoutingObjectFactory {
         public ObjectStore<StyxObjectRecord<NettyExecutor>> executors() {
             return executorObjectStore;
         };
+
+        public ClientExecutors clientExecutors() {
+            return clientExecutors;
+        }
     }
 }
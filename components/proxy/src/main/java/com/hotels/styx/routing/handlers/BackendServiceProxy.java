@@ -34,14 +34,20 @@ import com.hotels.styx.routing.config.StyxObjectDefinition;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static com.hotels.styx.routing.config.RoutingSupport.append;
 import static com.hotels.styx.routing.config.RoutingSupport.missingAttributeError;
 import static java.lang.String.format;
 import static java.lang.String.join;
+import static java.util.concurrent.CompletableFuture.completedFuture;
 
 /**
  * A HTTP routingObject that proxies requests to backend services based on the path prefix.
+ * <p>
+ * Origin connections run on a client executor borrowed from
+ * {@link com.hotels.styx.executors.ClientExecutors}: the one named by the optional
+ * {@code executor} attribute, or the global client executor.
  *
  * @deprecated  Will be removed in Styx 1.1 release. Use a combination of HostProxy and LoadBalancingGroup,
  *              and PathPrefixRouter to achieve the same functionality.
@@ -50,15 +56,18 @@ import static java.lang.String.join;
 public class BackendServiceProxy implements RoutingObject {
 
     private final RouteHandlerAdapter handler;
+    private final Runnable releaseExecutor;
 
     private BackendServiceProxy(
             BackendServiceClientFactory serviceClientFactory,
             Registry<BackendService> registry,
             Environment environment,
-            NettyExecutor executor) {
+            NettyExecutor executor,
+            Runnable releaseExecutor) {
         BackendServicesRouter router = new BackendServicesRouter(serviceClientFactory, environment, executor);
         registry.addListener(router);
-        handler = new RouteHandlerAdapter(router);
+        this.handler = new RouteHandlerAdapter(router);
+        this.releaseExecutor = releaseExecutor;
     }
 
     @Override
@@ -66,6 +75,12 @@ public class BackendServiceProxy implements RoutingObject {
         return handler.handle(request, context);
     }
 
+    @Override
+    public CompletableFuture<Void> stop() {
+        releaseExecutor.run();
+        return completedFuture(null);
+    }
+
     /**
      * Builds a BackendServiceProxy from yaml routing configuration.
      */
@@ -104,7 +119,11 @@ public class BackendServiceProxy implements RoutingObject {
                                 join(".", append(fullName, "backendProvider")), provider));
             }
 
-            return new BackendServiceProxy(serviceClientFactory, registry, environment, NettyExecutor.create("BackendServiceProxy", 0));
+            String executorName = config.get("executor").orElse(null);
+            NettyExecutor executor = context.clientExecutors().borrow(format("BackendServiceProxy(%s)", join(".", fullName)), executorName);
+
+            return new BackendServiceProxy(serviceClientFactory, registry, environment, executor,
+                    () -> context.clientExecutors().release(executorName));
         }
     }
 
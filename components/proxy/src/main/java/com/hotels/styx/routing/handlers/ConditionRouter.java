@@ -32,14 +32,14 @@ import com.hotels.styx.routing.config.StyxObjectConfiguration;
 import com.hotels.styx.routing.config.StyxObjectDefinition;
 import com.hotels.styx.server.HttpRouter;
 import com.hotels.styx.server.routing.AntlrMatcher;
+import com.hotels.styx.server.routing.antlr.ConditionTable;
 import com.hotels.styx.server.routing.antlr.DslFunctionResolutionError;
 import com.hotels.styx.server.routing.antlr.DslSyntaxError;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
 
 import static com.hotels.styx.api.HttpResponseStatus.BAD_GATEWAY;
 import static com.hotels.styx.routing.config.RoutingConfigParser.toRoutingConfigNode;
@@ -57,6 +57,9 @@ import static java.util.concurrent.CompletableFuture.completedFuture;
 
 /**
  * Condition predicate based HTTP router.
+ * <p>
+ * Routes to the destination of the first condition that a request satisfies. The conditions
+ * are compiled together into a {@link ConditionTable}.
  */
 public class ConditionRouter implements HttpRouter {
     public static final Schema.FieldType SCHEMA = object(
@@ -67,21 +70,21 @@ public class ConditionRouter implements HttpRouter {
             optional("fallback", routingObject())
     );
 
-    private final List<Route> routes;
+    private final ConditionTable conditions;
+    private final List<RoutingObject> destinations;
     private final RoutingObject fallback;
 
-    private ConditionRouter(List<Route> routes, RoutingObject fallback) {
-        this.routes = routes;
+    private ConditionRouter(ConditionTable conditions, List<RoutingObject> destinations, RoutingObject fallback) {
+        this.conditions = conditions;
+        this.destinations = destinations;
         this.fallback = fallback;
     }
 
     @Override
     public Optional<HttpHandler> route(LiveHttpRequest request, HttpInterceptor.Context context) {
-        for (Route route : routes) {
-            HttpHandler handler = route.match(request, context);
-            if (handler != null) {
-                return Optional.of(handler);
-            }
+        int match = conditions.firstMatch(request, context);
+        if (match >= 0) {
+            return Optional.of(destinations.get(match));
         }
 
         return Optional.ofNullable(fallback);
@@ -103,16 +106,18 @@ public class ConditionRouter implements HttpRouter {
             }
         }
 
-        private static Route buildRoute(
+        private static RoutingObject buildRoute(
                 List<String> parents,
                 Context context,
                 int index,
                 String condition,
-                StyxObjectConfiguration destination) {
+                StyxObjectConfiguration destination,
+                ConditionTable.Builder conditions) {
             try {
                 String attribute = format("destination[%d]", index);
                 RoutingObject handler = Builtins.build(append(parents, attribute), context, destination);
-                return new Route(condition, handler);
+                conditions.add(condition);
+                return handler;
             } catch (DslSyntaxError | DslFunctionResolutionError e) {
                 String attribute = format("condition[%d]", index);
                 String path = join(".", append(parents, attribute));
@@ -128,28 +133,29 @@ public class ConditionRouter implements HttpRouter {
                 throw missingAttributeError(configBlock, join(".", fullName), "routes");
             }
 
-            AtomicInteger index = new AtomicInteger(0);
-            List<Route> routes = config.routes.stream()
-                    .map(routeConfig -> buildRoute(
-                            append(fullName, "routes"),
-                            context,
-                            index.getAndIncrement(),
-                            routeConfig.condition,
-                            routeConfig.destination))
-                    .collect(Collectors.toList());
+            ConditionTable.Builder conditions = AntlrMatcher.conditionTable();
+            List<RoutingObject> destinations = new ArrayList<>();
+            for (int index = 0; index < config.routes.size(); index++) {
+                ConditionRouterRouteConfig routeConfig = config.routes.get(index);
+                destinations.add(buildRoute(
+                        append(fullName, "routes"),
+                        context,
+                        index,
+                        routeConfig.condition,
+                        routeConfig.destination,
+                        conditions));
+            }
 
             RoutingObject fallbackHandler = buildFallbackHandler(fullName, context, config);
 
-            ConditionRouter router = new ConditionRouter(routes, fallbackHandler);
+            ConditionRouter router = new ConditionRouter(conditions.build(), destinations, fallbackHandler);
 
             return new RouteHandlerAdapter(router) {
                 @Override
                 public CompletableFuture<Void> stop() {
                     fallbackHandler.stop();
 
-                    routes.stream()
-                            .map(route -> route.routingObject)
-                            .forEach(RoutingObject::stop);
+                    destinations.forEach(RoutingObject::stop);
 
                     return completedFuture(null);
                 }
@@ -179,18 +185,4 @@ public class ConditionRouter implements HttpRouter {
         }
     }
 
-    private static class Route {
-        private final AntlrMatcher matcher;
-        private final RoutingObject routingObject;
-
-        Route(String condition, RoutingObject routingObject) {
-            this.matcher = AntlrMatcher.antlrMatcher(condition);
-            this.routingObject = routingObject;
-        }
-
-        public HttpHandler match(LiveHttpRequest request, HttpInterceptor.Context context) {
-            return matcher.apply(request, context) ? routingObject : null;
-        }
-    }
-
 }
@@ -33,6 +33,7 @@ import com.hotels.styx.client.connectionpool.ExpiringConnectionFactory;
 import com.hotels.styx.client.connectionpool.SimpleConnectionPoolFactory;
 import com.hotels.styx.client.netty.connectionpool.NettyConnectionFactory;
 import com.hotels.styx.config.schema.Schema;
+import com.hotels.styx.executors.ClientExecutors;
 import com.hotels.styx.infrastructure.configuration.yaml.JsonNodeConfig;
 import com.hotels.styx.proxy.BackendServiceClientFactory;
 import com.hotels.styx.proxy.StyxBackendServiceClientFactory;
@@ -41,18 +42,26 @@ import com.hotels.styx.routing.config.RoutingObjectFactory;
 import com.hotels.styx.routing.config.StyxObjectDefinition;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static com.hotels.styx.client.HttpConfig.newHttpConfigBuilder;
 import static com.hotels.styx.client.HttpRequestOperationFactory.Builder.httpRequestOperationFactoryBuilder;
 import static com.hotels.styx.config.schema.SchemaDsl.field;
 import static com.hotels.styx.config.schema.SchemaDsl.object;
 import static com.hotels.styx.config.schema.SchemaDsl.opaque;
+import static com.hotels.styx.config.schema.SchemaDsl.optional;
+import static com.hotels.styx.config.schema.SchemaDsl.string;
 import static com.hotels.styx.routing.config.RoutingSupport.append;
 import static com.hotels.styx.routing.config.RoutingSupport.missingAttributeError;
+import static java.lang.String.format;
 import static java.lang.String.join;
+import static java.util.concurrent.CompletableFuture.completedFuture;
 
 /**
  * Routing object that proxies a request to a configured backend.
+ * <p>
+ * Origin connections run on a client executor borrowed from {@link ClientExecutors}:
+ * the one named by the optional {@code executor} attribute, or the global client executor.
  *
  * @deprecated  Will be removed in Styx 1.1 release. Use a combination of HostProxy and LoadBalancingGroup
  *              to achieve same functionality.
@@ -60,12 +69,15 @@ import static java.lang.String.join;
 @Deprecated
 public class ProxyToBackend implements RoutingObject {
     public static final Schema.FieldType SCHEMA = object(
-            field("backend", object(opaque()))
+            field("backend", object(opaque())),
+            optional("executor", string())
     );
     private final BackendServiceClient client;
+    private final Runnable releaseExecutor;
 
-    private ProxyToBackend(BackendServiceClient client) {
+    private ProxyToBackend(BackendServiceClient client, Runnable releaseExecutor) {
         this.client = client;
+        this.releaseExecutor = releaseExecutor;
     }
 
     @Override
@@ -73,6 +85,12 @@ public class ProxyToBackend implements RoutingObject {
         return new Eventual<>(client.sendRequest(request, context));
     }
 
+    @Override
+    public CompletableFuture<Void> stop() {
+        releaseExecutor.run();
+        return completedFuture(null);
+    }
+
     /**
      * ProxyToBackend factory that instantiates an object from the Yaml configuration.
      */
@@ -85,8 +103,6 @@ public class ProxyToBackend implements RoutingObject {
                     .get("backend", BackendService.class)
                     .orElseThrow(() ->  missingAttributeError(configBlock, join(".", parents), "backend"));
 
-            int clientWorkerThreadsCount = context.environment().configuration().proxyServerConfig().clientWorkerThreadsCount();
-
             boolean requestLoggingEnabled = context.environment().configuration().get("request-logging.outbound.enabled", Boolean.class)
                     .orElse(false);
 
@@ -99,8 +115,11 @@ public class ProxyToBackend implements RoutingObject {
 
             OriginStatsFactory originStatsFactory = new CachingOriginStatsFactory(context.environment().centralisedMetrics());
 
+            String executorName = jsConfig.get("executor").orElse(null);
+            NettyExecutor executor = context.clientExecutors().borrow(format("ProxyToBackend(%s)", join(".", parents)), executorName);
+
             Connection.Factory connectionFactory = new NettyConnectionFactory.Builder()
-                    .executor(NettyExecutor.create("Styx", clientWorkerThreadsCount))
+                    .executor(executor)
                     .httpRequestOperationFactory(
                             httpRequestOperationFactoryBuilder()
                                     .flowControlEnabled(true)
@@ -131,7 +150,9 @@ public class ProxyToBackend implements RoutingObject {
                     .connectionPoolFactory(connectionPoolFactory)
                     .initialOrigins(backendService.origins())
                     .build();
-            return new ProxyToBackend(clientFactory.createClient(backendService, inventory, originStatsFactory));
+            return new ProxyToBackend(
+                    clientFactory.createClient(backendService, inventory, originStatsFactory),
+                    () -> context.clientExecutors().release(executorName));
         }
 
         @Override
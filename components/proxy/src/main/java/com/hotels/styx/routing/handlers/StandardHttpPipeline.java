@@ -25,16 +25,22 @@ import org.reactivestreams.Publisher;
 import org.reactivestreams.Subscriber;
 
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import static java.util.Collections.emptyList;
 import static java.util.Objects.requireNonNull;
 
 /**
  * The pipeline consists of a chain of interceptors followed by a handler.
+ * <p>
+ * Each request is carried through the chain by a single {@link Exchange}. It serves as the
+ * {@link HttpInterceptor.Chain} for every interceptor, advancing an index on each call to
+ * {@code proceed}, and registers the request with the {@link RequestTracker} once. Therefore
+ * each interceptor is expected to proceed at most once per request.
  */
 class StandardHttpPipeline implements HttpHandler {
-    private final List<HttpInterceptor> interceptors;
+    private final HttpInterceptor[] interceptors;
+    private final List<HttpInterceptor> interceptorList;
     private final HttpHandler handler;
     private final RequestTracker requestTracker;
 
@@ -44,35 +50,44 @@ class StandardHttpPipeline implements HttpHandler {
     }
 
     public StandardHttpPipeline(List<HttpInterceptor> interceptors, HttpHandler handler, RequestTracker requestTracker) {
-        this.interceptors = requireNonNull(interceptors);
+        this.interceptorList = requireNonNull(interceptors);
+        this.interceptors = interceptors.toArray(new HttpInterceptor[0]);
         this.handler = requireNonNull(handler);
         this.requestTracker = requireNonNull(requestTracker);
     }
 
     @Override
     public Eventual<LiveHttpResponse> handle(LiveHttpRequest request, HttpInterceptor.Context context) {
-        HttpInterceptorChain interceptorsChain = new HttpInterceptorChain(interceptors, 0, handler, context, requestTracker);
+        return new Exchange(this, context).proceed(request);
+    }
 
-        return interceptorsChain.proceed(request);
+    @Override
+    public String toString() {
+        return "StandardHttpPipeline[" + interceptorList + ']';
     }
 
-    static final class HttpInterceptorChain implements HttpInterceptor.Chain {
-        private final List<HttpInterceptor> interceptors;
-        private final int index;
-        private final HttpHandler client;
+    /**
+     * The state of one request as it passes through the pipeline.
+     * <p>
+     * Once the request reaches the handler, the exchange also stands in for the handler's response
+     * publisher, allowing it to be subscribed to only once.
+     */
+    static final class Exchange implements HttpInterceptor.Chain, Publisher<LiveHttpResponse> {
+        private static final AtomicIntegerFieldUpdater<Exchange> SUBSCRIPTIONS =
+                AtomicIntegerFieldUpdater.newUpdater(Exchange.class, "subscriptions");
+
+        private final StandardHttpPipeline pipeline;
         private final HttpInterceptor.Context context;
-        private final RequestTracker requestTracker;
 
-        HttpInterceptorChain(List<HttpInterceptor> interceptors, int index, HttpHandler client, HttpInterceptor.Context context, RequestTracker requestTracker) {
-            this.interceptors = interceptors;
-            this.index = index;
-            this.client = client;
-            this.context = context;
-            this.requestTracker = requireNonNull(requestTracker);
-        }
+        private int index;
+        private Object trackedId;
+        private Thread trackedThread;
+        private Publisher<LiveHttpResponse> response;
+        private volatile int subscriptions;
 
-        HttpInterceptorChain(HttpInterceptorChain adapter, int index) {
-            this(adapter.interceptors, index, adapter.client, adapter.context, adapter.requestTracker);
+        Exchange(StandardHttpPipeline pipeline, HttpInterceptor.Context context) {
+            this.pipeline = pipeline;
+            this.context = context;
         }
 
         @Override
@@ -82,46 +97,53 @@ class StandardHttpPipeline implements HttpHandler {
 
         @Override
         public Eventual<LiveHttpResponse> proceed(LiveHttpRequest request) {
-            requestTracker.trackRequest(request);
+            track(request);
 
-            if (index < interceptors.size()) {
-                HttpInterceptor.Chain chain = new HttpInterceptorChain(this, index + 1);
-                HttpInterceptor interceptor = interceptors.get(index);
+            HttpInterceptor[] interceptors = pipeline.interceptors;
+            int current = index++;
 
+            if (current < interceptors.length) {
                 try {
-                    return interceptor.intercept(request, chain);
+                    return interceptors[current].intercept(request, this);
                 } catch (Throwable e) {
                     return Eventual.error(e);
                 }
             }
 
-            requestTracker.markRequestAsSent(request);
-
-            return new Eventual<>(new SingleSubscriptionPublisher(client.handle(request, this.context)));
-        }
-
-        @Override
-        public String toString() {
-            return "HttpInterceptorChain[" + interceptors + ']';
-        }
-    }
-
-    private static final class SingleSubscriptionPublisher implements Publisher<LiveHttpResponse> {
+            if (current > interceptors.length) {
+                return Eventual.error(new IllegalStateException("Request already sent to handler. Interceptors may proceed only once."));
+            }
 
-        private final AtomicInteger subscriptionCounter = new AtomicInteger();
-        private final Publisher<LiveHttpResponse> original;
+            pipeline.requestTracker.markRequestAsSent(request);
 
-        public SingleSubscriptionPublisher(Publisher<LiveHttpResponse> original) {
-            this.original = original;
+            response = pipeline.handler.handle(request, context);
+            return new Eventual<>(this);
         }
 
         @Override
         public void subscribe(Subscriber<? super LiveHttpResponse> subscriber) {
-            if (subscriptionCounter.incrementAndGet() > 1) {
+            if (SUBSCRIPTIONS.incrementAndGet(this) > 1) {
                 subscriber.onError(new IllegalStateException("Response already subscribed. Additional subscriptions forbidden."));
             } else {
-                original.subscribe(subscriber);
+                response.subscribe(subscriber);
+            }
+        }
+
+        // Registers the request once, and again only if an interceptor hands over to
+        // another thread or replaces the request ID.
+        private void track(LiveHttpRequest request) {
+            Thread thread = Thread.currentThread();
+            Object id = request.id();
+            if (thread != trackedThread || !id.equals(trackedId)) {
+                pipeline.requestTracker.trackRequest(request);
+                trackedThread = thread;
+                trackedId = id;
             }
         }
+
+        @Override
+        public String toString() {
+            return "HttpInterceptorChain[" + pipeline.interceptorList + ']';
+        }
     }
 }
@@ -0,0 +1,140 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.routing.interceptors;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.hotels.styx.api.Eventual;
+import com.hotels.styx.api.HttpInterceptor;
+import com.hotels.styx.api.LiveHttpRequest;
+import com.hotels.styx.api.LiveHttpResponse;
+import com.hotels.styx.config.schema.Schema;
+import com.hotels.styx.infrastructure.configuration.yaml.JsonNodeConfig;
+import com.hotels.styx.routing.config.HttpInterceptorFactory;
+import com.hotels.styx.routing.config.StyxObjectDefinition;
+import com.hotels.styx.server.routing.AntlrMatcher;
+import com.hotels.styx.server.routing.ValueExpression;
+import com.hotels.styx.server.routing.antlr.DslFunctionResolutionError;
+import com.hotels.styx.server.routing.antlr.DslSyntaxError;
+
+import static com.hotels.styx.api.HttpHeaderNames.CONTENT_LENGTH;
+import static com.hotels.styx.api.HttpHeaderNames.RETRY_AFTER;
+import static com.hotels.styx.api.HttpResponseStatus.statusWithCode;
+import static com.hotels.styx.config.schema.SchemaDsl.field;
+import static com.hotels.styx.config.schema.SchemaDsl.integer;
+import static com.hotels.styx.config.schema.SchemaDsl.object;
+import static com.hotels.styx.config.schema.SchemaDsl.optional;
+import static com.hotels.styx.config.schema.SchemaDsl.string;
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * A built-in interceptor that limits the rate of requests per client.
+ * <p>
+ * Clients are told apart by a key, a routing DSL expression such as {@code clientIp()} or
+ * {@code header('X-Api-Key')}. Requests whose key evaluates to an empty string share a single limit.
+ * Requests over the limit are rejected with the configured status, 429 by default, and a
+ * {@code Retry-After} header.
+ */
+public class RateLimitInterceptor implements HttpInterceptor {
+    public static final Schema.FieldType SCHEMA = object(
+            field("key", string()),
+            field("requestsPerSecond", integer()),
+            optional("burst", integer()),
+            optional("maxKeys", integer()),
+            optional("rejectStatus", integer())
+    );
+
+    private static final int DEFAULT_MAX_KEYS = 100_000;
+    private static final int DEFAULT_REJECT_STATUS = 429;
+
+    private final ValueExpression key;
+    private final RateLimiter limiter;
+    private final int rejectStatus;
+
+    RateLimitInterceptor(ValueExpression key, RateLimiter limiter, int rejectStatus) {
+        this.key = requireNonNull(key);
+        this.limiter = requireNonNull(limiter);
+        this.rejectStatus = rejectStatus;
+    }
+
+    @Override
+    public Eventual<LiveHttpResponse> intercept(LiveHttpRequest request, Chain chain) {
+        String value = key.evaluate(request, chain.context());
+        long wait = limiter.tryAcquire(value == null ? "" : value);
+        if (wait == 0) {
+            return chain.proceed(request);
+        }
+
+        return Eventual.of(LiveHttpResponse.response(statusWithCode(rejectStatus))
+                .header(RETRY_AFTER, retryAfterSeconds(wait))
+                .header(CONTENT_LENGTH, 0)
+                .build());
+    }
+
+    private static long retryAfterSeconds(long waitNanos) {
+        long nanosPerSecond = SECONDS.toNanos(1);
+        return (waitNanos + nanosPerSecond - 1) / nanosPerSecond;
+    }
+
+    /**
+     * A factory for built-in rate limiting interceptors.
+     */
+    public static class Factory implements HttpInterceptorFactory {
+        @Override
+        public HttpInterceptor build(StyxObjectDefinition configBlock) {
+            RateLimitConfig config = new JsonNodeConfig(configBlock.config()).as(RateLimitConfig.class);
+
+            int burst = config.burst != null ? config.burst : config.requestsPerSecond;
+            int maxKeys = config.maxKeys != null ? config.maxKeys : DEFAULT_MAX_KEYS;
+            int rejectStatus = config.rejectStatus != null ? config.rejectStatus : DEFAULT_REJECT_STATUS;
+
+            if (rejectStatus < 400 || rejectStatus > 599) {
+                throw new IllegalArgumentException(format("Rate limit rejectStatus must be an error status, was %d", rejectStatus));
+            }
+
+            return new RateLimitInterceptor(keyExpression(config.key), new RateLimiter(config.requestsPerSecond, burst, maxKeys), rejectStatus);
+        }
+
+        private static ValueExpression keyExpression(String key) {
+            try {
+                return AntlrMatcher.valueExpression(key);
+            } catch (DslSyntaxError | DslFunctionResolutionError e) {
+                throw new IllegalArgumentException(format("Rate limit failed to compile key expression key='%s'", key), e);
+            }
+        }
+    }
+
+    private static class RateLimitConfig {
+        private final String key;
+        private final int requestsPerSecond;
+        private final Integer burst;
+        private final Integer maxKeys;
+        private final Integer rejectStatus;
+
+        public RateLimitConfig(@JsonProperty("key") String key,
+                               @JsonProperty("requestsPerSecond") int requestsPerSecond,
+                               @JsonProperty("burst") Integer burst,
+                               @JsonProperty("maxKeys") Integer maxKeys,
+                               @JsonProperty("rejectStatus") Integer rejectStatus) {
+            this.key = key;
+            this.requestsPerSecond = requestsPerSecond;
+            this.burst = burst;
+            this.maxKeys = maxKeys;
+            this.rejectStatus = rejectStatus;
+        }
+    }
+}
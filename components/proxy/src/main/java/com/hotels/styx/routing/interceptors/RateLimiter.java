@@ -0,0 +1,160 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.routing.interceptors;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static com.hotels.styx.common.Preconditions.checkArgument;
+import static java.lang.Math.max;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Token buckets, one per key, for rate limiting.
+ * <p>
+ * Each bucket holds up to {@code burst} tokens, and is refilled at {@code rate} tokens per second.
+ * A bucket is a single atomic timestamp, the time at which it will be full again, that is updated
+ * without locks: taking a token moves the timestamp forward by the refill interval of one token.
+ * <p>
+ * The buckets are spread over a fixed number of shards, each holding at most its share of
+ * {@code maxKeys} buckets in least recently used order. A shard is locked only to look a bucket up.
+ * A bucket that has been idle long enough to be full again is indistinguishable from a new one, and is
+ * evicted when a new bucket is added to its shard. When a shard is full of active buckets, the least
+ * recently used one is evicted.
+ */
+final class RateLimiter {
+    static final int SHARDS = 16;
+
+    private final long interval;
+    private final long tolerance;
+    private final LongSupplier nanoClock;
+    private final Shard[] shards = new Shard[SHARDS];
+
+    RateLimiter(int rate, int burst, int maxKeys) {
+        this(rate, burst, maxKeys, System::nanoTime);
+    }
+
+    RateLimiter(int rate, int burst, int maxKeys, LongSupplier nanoClock) {
+        checkArgument(rate > 0, "rate must be positive");
+        checkArgument(burst > 0, "burst must be positive");
+        checkArgument(maxKeys > 0, "maxKeys must be positive");
+
+        this.interval = SECONDS.toNanos(1) / rate;
+        this.tolerance = interval * burst;
+        this.nanoClock = requireNonNull(nanoClock);
+
+        int capacity = (maxKeys + SHARDS - 1) / SHARDS;
+        for (int i = 0; i < SHARDS; i++) {
+            shards[i] = new Shard(capacity);
+        }
+    }
+
+    /**
+     * Takes a token from the bucket of a key.
+     *
+     * @param key key
+     * @return 0 if a token was taken, or else the number of nanoseconds until one is available
+     */
+    long tryAcquire(String key) {
+        long now = nanoClock.getAsLong();
+        return shardFor(key).bucket(key, now).tryAcquire(now);
+    }
+
+    /**
+     * The number of buckets held.
+     *
+     * @return number of buckets
+     */
+    int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    private Shard shardFor(String key) {
+        int hash = key.hashCode();
+        return shards[(hash ^ (hash >>> 16)) & (SHARDS - 1)];
+    }
+
+    private final class Shard {
+        private final int capacity;
+        private final Map<String, Bucket> buckets;
+
+        Shard(int capacity) {
+            this.capacity = capacity;
+            this.buckets = new LinkedHashMap<>(16, 0.75f, true);
+        }
+
+        synchronized Bucket bucket(String key, long now) {
+            Bucket bucket = buckets.get(key);
+            if (bucket == null) {
+                evict(now);
+                bucket = new Bucket(now);
+                buckets.put(key, bucket);
+            }
+            return bucket;
+        }
+
+        synchronized int size() {
+            return buckets.size();
+        }
+
+        // Guarded by `this`.
+        private void evict(long now) {
+            Iterator<Map.Entry<String, Bucket>> leastRecentlyUsed = buckets.entrySet().iterator();
+            while (leastRecentlyUsed.hasNext()) {
+                Bucket bucket = leastRecentlyUsed.next().getValue();
+                if (buckets.size() < capacity && !bucket.isFull(now)) {
+                    return;
+                }
+                leastRecentlyUsed.remove();
+            }
+        }
+    }
+
+    private final class Bucket {
+        // The time at which the bucket will be full.
+        private final AtomicLong fullAt;
+
+        Bucket(long now) {
+            this.fullAt = new AtomicLong(now);
+        }
+
+        long tryAcquire(long now) {
+            while (true) {
+                long current = fullAt.get();
+                long next = max(current, now) + interval;
+                long excess = next - now - tolerance;
+                if (excess > 0) {
+                    return excess;
+                }
+                if (fullAt.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+
+        boolean isFull(long now) {
+            return fullAt.get() - now <= 0;
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -20,6 +20,7 @@ import com.google.common.eventbus.AsyncEventBus;
 import com.hotels.styx.Environment;
 import com.hotels.styx.InetServer;
 import com.hotels.styx.NettyExecutor;
+import com.hotels.styx.NettyTransport;
 import com.hotels.styx.StartupConfig;
 import com.hotels.styx.StyxConfig;
 import com.hotels.styx.StyxObjectRecord;
@@ -30,6 +31,7 @@ import com.hotels.styx.api.extension.service.spi.StyxService;
 import com.hotels.styx.api.plugins.spi.Plugin;
 import com.hotels.styx.common.format.SanitisedHttpHeaderFormatter;
 import com.hotels.styx.common.format.SanitisedHttpMessageFormatter;
+import com.hotels.styx.executors.ClientExecutors;
 import com.hotels.styx.executors.NettyExecutorConfig;
 import com.hotels.styx.infrastructure.configuration.yaml.JsonNodeConfig;
 import com.hotels.styx.proxy.plugin.InstrumentedPlugin;
@@ -74,7 +76,7 @@ public class StyxServerComponents {
     private static final String NETTY_EXECUTOR = "NettyExecutor";
     private static final String GLOBAL_SERVER_BOSS_NAME = "StyxHttpServer-Global-Boss";
     private static final String GLOBAL_SERVER_WORKER_NAME = "StyxHttpServer-Global-Worker";
-    private static final String GLOBAL_CLIENT_WORKER_NAME = "Styx-Client-Global-Worker";
+    private static final String GLOBAL_CLIENT_WORKER_NAME = ClientExecutors.GLOBAL_CLIENT_WORKER_NAME;
 
     private final Environment environment;
     private final Map<String, StyxService> services;
@@ -99,30 +101,31 @@ public class StyxServerComponents {
         this.environment = newEnvironment(styxConfig, builder.registry);
         builder.loggingSetUp.setUp(environment);
 
-        this.executor = NettyExecutor.create("Styx-Client-Worker", environment.configuration().proxyServerConfig().clientWorkerThreadsCount());
+        NettyTransport transport = environment.configuration().proxyServerConfig().transport();
+        this.executor = NettyExecutor.create("Styx-Client-Worker", environment.configuration().proxyServerConfig().clientWorkerThreadsCount(), transport);
 
         // Overwrite any existing or user-supplied values:
         executorObjectStore.insert(GLOBAL_SERVER_BOSS_NAME, new StyxObjectRecord<>(
                 NETTY_EXECUTOR,
                 Set.of("StyxInternal"),
-                new NettyExecutorConfig(0, GLOBAL_SERVER_BOSS_NAME).asJsonNode(),
-                NettyExecutor.create(GLOBAL_SERVER_BOSS_NAME, 0)));
+                new NettyExecutorConfig(0, GLOBAL_SERVER_BOSS_NAME, transport.configName()).asJsonNode(),
+                NettyExecutor.create(GLOBAL_SERVER_BOSS_NAME, 0, transport)));
 
         // Overwrite any existing or user-supplied values:
         executorObjectStore.insert(GLOBAL_SERVER_WORKER_NAME,
                 new StyxObjectRecord<>(
                         NETTY_EXECUTOR,
                         Set.of("StyxInternal"),
-                        new NettyExecutorConfig(0, GLOBAL_SERVER_WORKER_NAME).asJsonNode(),
-                        NettyExecutor.create(GLOBAL_SERVER_WORKER_NAME, 0)));
+                        new NettyExecutorConfig(0, GLOBAL_SERVER_WORKER_NAME, transport.configName()).asJsonNode(),
+                        NettyExecutor.create(GLOBAL_SERVER_WORKER_NAME, 0, transport)));
 
         // Overwrite any existing or user-supplied values:
         executorObjectStore.insert(GLOBAL_CLIENT_WORKER_NAME,
                 new StyxObjectRecord<>(
                         NETTY_EXECUTOR,
                         Set.of("StyxInternal"),
-                        new NettyExecutorConfig(0, GLOBAL_CLIENT_WORKER_NAME).asJsonNode(),
-                        NettyExecutor.create(GLOBAL_CLIENT_WORKER_NAME, 0)));
+                        new NettyExecutorConfig(0, GLOBAL_CLIENT_WORKER_NAME, transport.configName()).asJsonNode(),
+                        NettyExecutor.create(GLOBAL_CLIENT_WORKER_NAME, 0, transport)));
 
         this.environment.configuration().get("executors", JsonNode.class)
                 .map(StyxServerComponents::readComponents)
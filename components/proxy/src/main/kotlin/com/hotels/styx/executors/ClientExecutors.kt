@@ -0,0 +1,86 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.executors
+
+import com.hotels.styx.NettyExecutor
+import com.hotels.styx.StyxObjectRecord
+import com.hotels.styx.api.configuration.ObjectStore
+import com.hotels.styx.metrics.CentralisedMetrics
+import io.netty.util.concurrent.SingleThreadEventExecutor
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Lends the executors declared in the executor object store to routing objects that
+ * connect to origins.
+ *
+ * Routing objects borrow a named executor instead of creating their own event loops,
+ * so the number of client threads depends on the executors declared rather than on
+ * the number of routing objects. Every borrowed executor publishes its size, queued
+ * tasks and number of borrowers as metrics.
+ */
+class ClientExecutors(
+        private val executors: ObjectStore<StyxObjectRecord<NettyExecutor>>,
+        private val metrics: CentralisedMetrics) {
+    private val borrowers = ConcurrentHashMap<String, AtomicInteger>()
+
+    /**
+     * Borrows an executor. Routing objects should [release] it when they stop.
+     *
+     * @param owner the borrowing object, as it should appear in error messages
+     * @param name executor name, or null for the global client executor
+     * @return the executor
+     * @throws IllegalArgumentException if the executor has not been declared
+     */
+    fun borrow(owner: String, name: String?): NettyExecutor {
+        val executorName = name ?: GLOBAL_CLIENT_WORKER_NAME
+        val executor = executors.get(executorName)
+                .orElseThrow { IllegalArgumentException("$owner configuration error: executor='$executorName' not declared.") }
+                .component4()
+
+        borrowers.computeIfAbsent(executorName) { registerMetrics(it) }.incrementAndGet()
+        return executor
+    }
+
+    /**
+     * Returns an executor borrowed with [borrow].
+     *
+     * @param name executor name, or null for the global client executor
+     */
+    fun release(name: String?) {
+        borrowers[name ?: GLOBAL_CLIENT_WORKER_NAME]?.decrementAndGet()
+    }
+
+    private fun registerMetrics(name: String): AtomicInteger {
+        val count = AtomicInteger()
+        val client = metrics.proxy.client
+        client.executorThreads(name).register { executor(name)?.eventLoopGroup()?.count() ?: 0 }
+        client.executorPendingTasks(name).register {
+            executor(name)?.eventLoopGroup()
+                    ?.filterIsInstance<SingleThreadEventExecutor>()
+                    ?.sumOf { it.pendingTasks() }
+                    ?: 0
+        }
+        client.executorBorrowers(name).register { count.get() }
+        return count
+    }
+
+    private fun executor(name: String): NettyExecutor? = executors.get(name).map { it.component4() }.orElse(null)
+
+    companion object {
+        const val GLOBAL_CLIENT_WORKER_NAME = "Styx-Client-Global-Worker"
+    }
+}
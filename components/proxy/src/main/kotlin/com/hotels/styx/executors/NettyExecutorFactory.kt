@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -22,6 +22,7 @@ import com.fasterxml.jackson.databind.ObjectMapper
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory
 import com.hotels.styx.ExecutorFactory
 import com.hotels.styx.NettyExecutor
+import com.hotels.styx.NettyTransport
 import com.hotels.styx.config.schema.SchemaDsl
 import com.hotels.styx.infrastructure.configuration.json.ObjectMappers
 import com.hotels.styx.infrastructure.configuration.yaml.JsonNodeConfig
@@ -31,14 +32,15 @@ class NettyExecutorFactory : ExecutorFactory {
 
     override fun create(name: String, configuration: JsonNode): NettyExecutor {
         val config = parseConfig(configuration)
-        return NettyExecutor.create(config.namePattern, config.threads)
+        return NettyExecutor.create(config.namePattern, config.threads, NettyTransport.fromName(config.transport))
     }
 
     companion object {
         @JvmField
         val SCHEMA = SchemaDsl.`object`(
                 SchemaDsl.field("threads", SchemaDsl.integer()),
-                SchemaDsl.field("namePattern", SchemaDsl.string())
+                SchemaDsl.field("namePattern", SchemaDsl.string()),
+                SchemaDsl.optional("transport", SchemaDsl.string())
         )
     }
 }
@@ -49,6 +51,7 @@ private val mapper = ObjectMappers.addStyxMixins(ObjectMapper(YAMLFactory()))
 
 internal data class NettyExecutorConfig(
         val threads: Int = 0,
-        val namePattern: String = "netty-executor") {
+        val namePattern: String = "netty-executor",
+        val transport: String = NettyTransport.defaultTransport().configName()) {
     fun asJsonNode(): JsonNode = mapper.readTree(mapper.writeValueAsString(this))
 }
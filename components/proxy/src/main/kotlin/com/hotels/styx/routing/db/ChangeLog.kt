@@ -0,0 +1,104 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.routing.db
+
+/**
+ * A persistent, bounded journal of the object names modified in each object store snapshot.
+ *
+ * Object store snapshots carry the journal along with their contents. The names
+ * modified between any two snapshots can then be looked up without comparing
+ * the snapshots in full, as long as the journal still reaches back far enough.
+ *
+ * The journal retains at least `capacity` of the most recent entries. Older
+ * entries are discarded, and the index of the newest discarded entry is
+ * remembered as a horizon beyond which the journal can't answer.
+ */
+internal class ChangeLog private constructor(
+        private val head: Entry?,
+        private val size: Int,
+        private val horizon: Long,
+        private val capacity: Int) {
+
+    /**
+     * Records that `names` were modified in the snapshot at `index`.
+     */
+    fun append(index: Long, names: Iterable<String>): ChangeLog {
+        var newHead = head
+        var newSize = size
+
+        names.forEach {
+            newHead = Entry(index, it, newHead)
+            newSize++
+        }
+
+        return if (newSize > 2 * capacity) {
+            truncated(newHead!!)
+        } else {
+            ChangeLog(newHead, newSize, horizon, capacity)
+        }
+    }
+
+    fun append(index: Long, name: String) = append(index, listOf(name))
+
+    /**
+     * Returns the names modified after the snapshot at `index`, or `null` if
+     * the journal no longer reaches back that far.
+     */
+    fun namesSince(index: Long): Set<String>? {
+        if (index < horizon) {
+            return null
+        }
+
+        val names = LinkedHashSet<String>()
+        var entry = head
+        while (entry != null && entry.index > index) {
+            names.add(entry.name)
+            entry = entry.next
+        }
+        return names
+    }
+
+    // Copies the `capacity` newest entries. Amortised over the `capacity`
+    // appends since the previous truncation.
+    private fun truncated(newest: Entry): ChangeLog {
+        val retained = ArrayList<Entry>(capacity)
+        var entry: Entry? = newest
+        while (retained.size < capacity) {
+            retained.add(entry!!)
+            entry = entry.next
+        }
+
+        val newHorizon = maxOf(horizon, entry!!.index)
+
+        var newHead: Entry? = null
+        for (i in retained.indices.reversed()) {
+            newHead = Entry(retained[i].index, retained[i].name, newHead)
+        }
+
+        return ChangeLog(newHead, capacity, newHorizon, capacity)
+    }
+
+    private class Entry(val index: Long, val name: String, val next: Entry?)
+
+    companion object {
+        const val DEFAULT_CAPACITY = 4096
+
+        fun empty(capacity: Int = DEFAULT_CAPACITY): ChangeLog {
+            require(capacity > 0) { "ChangeLog capacity must be positive, but was $capacity" }
+            return ChangeLog(null, 0, 0, capacity)
+        }
+    }
+}
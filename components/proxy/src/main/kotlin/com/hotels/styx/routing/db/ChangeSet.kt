@@ -0,0 +1,115 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.routing.db
+
+import com.hotels.styx.api.configuration.ObjectStore
+
+/**
+ * Describes how a set of objects changed between two notifications.
+ *
+ * Each object name appears in at most one of `added`, `updated`, and `removed`.
+ *
+ * @property snapshot the object store state after the change
+ * @property added objects that were not present before, by name
+ * @property updated objects replaced by a new instance, by name
+ * @property removed objects that are no longer present, by name. Holds their last values.
+ * @property resync true if the changes since the previous notification could not be
+ *                  tracked. All current objects are then listed as added, and state
+ *                  derived from previous notifications should be discarded.
+ */
+class ChangeSet<T> internal constructor(
+        val snapshot: ObjectStore<T>,
+        val added: Map<String, T>,
+        val updated: Map<String, Update<T>>,
+        val removed: Map<String, T>,
+        val resync: Boolean = false) {
+
+    fun isEmpty() = added.isEmpty() && updated.isEmpty() && removed.isEmpty()
+
+    override fun toString() = "ChangeSet(index=${snapshot.index()}, added=${added.keys}, updated=${updated.keys}, removed=${removed.keys}, resync=$resync)"
+
+    /**
+     * A replaced object.
+     */
+    data class Update<T>(val previous: T, val current: T)
+}
+
+/**
+ * Computes the changes from the `previous` snapshot to the `current` one.
+ * A `null` previous snapshot is treated as empty.
+ *
+ * Only visits the objects recorded in the change log of the current snapshot.
+ * Falls back to a resync when the change log no longer reaches back to the
+ * previous snapshot.
+ */
+internal fun <T> changesBetween(previous: IndexedSnapshot<T>?, current: IndexedSnapshot<T>): ChangeSet<T> {
+    if (previous == null) {
+        return ChangeSet(current.asObjectStore(), current.snapshot, mapOf(), mapOf())
+    }
+
+    val names = current.changes.namesSince(previous.index)
+            ?: return ChangeSet(current.asObjectStore(), current.snapshot, mapOf(), mapOf(), resync = true)
+
+    val added = LinkedHashMap<String, T>()
+    val updated = LinkedHashMap<String, ChangeSet.Update<T>>()
+    val removed = LinkedHashMap<String, T>()
+
+    names.forEach { name ->
+        val old = previous.snapshot[name]
+        val new = current.snapshot[name]
+
+        when {
+            old == null && new != null -> added[name] = new
+            old != null && new == null -> removed[name] = old
+            old != null && new != null && old !== new -> updated[name] = ChangeSet.Update(old, new)
+        }
+    }
+
+    return ChangeSet(current.asObjectStore(), added, updated, removed)
+}
+
+/**
+ * Computes the changes to objects tagged with `tag` from the `previous`
+ * snapshot to the `current` one. A `null` previous snapshot is treated as empty.
+ *
+ * Only visits the tagged objects of both snapshots.
+ */
+internal fun <T> changesTagged(tag: String, previous: IndexedSnapshot<T>?, current: IndexedSnapshot<T>): ChangeSet<T> {
+    val before = previous?.tags?.names(tag) ?: emptySet()
+    val after = current.tags.names(tag)
+
+    val added = LinkedHashMap<String, T>()
+    val updated = LinkedHashMap<String, ChangeSet.Update<T>>()
+    val removed = LinkedHashMap<String, T>()
+
+    after.forEach { name ->
+        val value = current.snapshot[name]!!
+        val old = if (name in before) previous!!.snapshot[name] else null
+
+        when {
+            old == null -> added[name] = value
+            old !== value -> updated[name] = ChangeSet.Update(old, value)
+        }
+    }
+
+    before.forEach { name ->
+        if (name !in after) {
+            removed[name] = previous!!.snapshot[name]!!
+        }
+    }
+
+    return ChangeSet(current.asObjectStore(), added, updated, removed)
+}
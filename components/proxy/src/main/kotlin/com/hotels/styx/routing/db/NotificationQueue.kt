@@ -18,7 +18,7 @@ package com.hotels.styx.routing.db
 import com.hotels.styx.api.configuration.ObjectStore
 import org.pcollections.HashTreePMap
 import org.pcollections.PMap
-import reactor.core.publisher.FluxSink
+import java.util.AbstractMap.SimpleImmutableEntry
 import java.util.Optional
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.CopyOnWriteArrayList
@@ -30,9 +30,9 @@ import kotlin.concurrent.withLock
 
 internal class NotificationQueue<T>(val watchers: CopyOnWriteArrayList<ChangeWatcher<T>>, val executor: ExecutorService) {
     @Volatile
-    private var pendingSnapshot = IndexedSnapshot<T>(0, HashTreePMap.empty())
+    private var pendingSnapshot = IndexedSnapshot<T>(0, HashTreePMap.empty(), TagIndex.EMPTY, ChangeLog.empty())
     @Volatile
-    private var issuedSnapshot = IndexedSnapshot<T>(0, HashTreePMap.empty())
+    private var issuedSnapshot = IndexedSnapshot<T>(0, HashTreePMap.empty(), TagIndex.EMPTY, ChangeLog.empty())
     private val pendingChangeNotification = AtomicBoolean(false)
     private val lock = ReentrantLock()
 
@@ -64,12 +64,12 @@ internal class NotificationQueue<T>(val watchers: CopyOnWriteArrayList<ChangeWat
                 }
 
                 watchers.forEach {
-                    it.invoke(newSnapshot(issuedSnapshot))
+                    it.invoke(issuedSnapshot)
                 }
 
                 listeners.forEach {
                     it.value.invoke(ChangeNotification(
-                            newSnapshot(issuedSnapshot),
+                            issuedSnapshot.asObjectStore(),
                             pendingChangeNotification.get()
                     ))
                 }
@@ -77,12 +77,12 @@ internal class NotificationQueue<T>(val watchers: CopyOnWriteArrayList<ChangeWat
         }
     }
 
-    fun publishInitialWatch(sink: FluxSink<ObjectStore<T>>) {
+    fun publishInitialWatch(watcher: ChangeWatcher<T>) {
         executor.submit {
-            sink.next(newSnapshot(issuedSnapshot))
+            watcher.invoke(issuedSnapshot)
             listeners.forEach {
                 it.value.invoke(InitialWatchNotification(
-                        newSnapshot(issuedSnapshot),
+                        issuedSnapshot.asObjectStore(),
                         pendingChangeNotification.get()
                 ))
             }
@@ -96,25 +96,42 @@ internal class NotificationQueue<T>(val watchers: CopyOnWriteArrayList<ChangeWat
     internal fun removeDispatchListener(key: String) {
         listeners.remove(key)
     }
+}
 
-    private fun newSnapshot(snapshot: IndexedSnapshot<T>) = object : ObjectStore<T> {
-        override fun get(key: String?): Optional<T> {
-            return Optional.ofNullable(snapshot.snapshot[key])
-        }
+internal fun <T> entrySet(snapshot: PMap<String, T>): Collection<Map.Entry<String, T>> = snapshot.entries
 
-        override fun entrySet(): Collection<Map.Entry<String, T>> = entrySet(snapshot.snapshot)
+internal fun <T> entriesTagged(snapshot: PMap<String, T>, tags: TagIndex, tag: String): Collection<Map.Entry<String, T>> =
+        tags.names(tag).mapNotNull { name ->
+            snapshot[name]?.let { SimpleImmutableEntry(name, it) }
+        }
 
-        override fun index() = snapshot.index
+internal data class IndexedSnapshot<T>(val index: Long, val snapshot: PMap<String, T>, val tags: TagIndex, val changes: ChangeLog) {
+    fun plus(key: String, value: T?) = IndexedSnapshot(
+            index + 1,
+            snapshot.plus(key, value),
+            tags.update(key, snapshot[key], value),
+            changes.append(index + 1, key))
+
+    fun minus(key: String) = if (snapshot.containsKey(key)) {
+        IndexedSnapshot(index + 1, snapshot.minus(key), tags.update(key, snapshot[key], null), changes.append(index + 1, key))
+    } else {
+        copy(index = index + 1)
     }
-}
 
-internal fun <T> entrySet(snapshot: PMap<String, T>): Collection<Map.Entry<String, T>> = snapshot.entries
+    fun entriesTagged(tag: String) = entriesTagged(snapshot, tags, tag)
+
+    fun asObjectStore() = object : ObjectStore<T> {
+        override fun get(key: String?): Optional<T> {
+            return Optional.ofNullable(snapshot[key])
+        }
+
+        override fun entrySet(): Collection<Map.Entry<String, T>> = entrySet(snapshot)
 
-internal data class IndexedSnapshot<T>(val index: Long, val snapshot: PMap<String, T>) {
-    fun map(modification: (PMap<String, T>) -> PMap<String, T>) = IndexedSnapshot(this.index + 1, modification(this.snapshot))
+        override fun index() = index
+    }
 }
 
-internal typealias ChangeWatcher<T> = (ObjectStore<T>) -> Unit
+internal typealias ChangeWatcher<T> = (IndexedSnapshot<T>) -> Unit
 
 internal typealias DispatchListener<T> = (DispatchListenerNotification<T>) -> Unit
 
@@ -17,8 +17,10 @@ package com.hotels.styx.routing.db;
 
 import com.hotels.styx.api.configuration.ObjectStore
 import org.pcollections.HashTreePMap
+import org.pcollections.PMap
 import org.reactivestreams.Publisher
 import reactor.core.publisher.Flux
+import reactor.core.publisher.FluxSink
 import java.util.Optional
 import java.util.concurrent.CopyOnWriteArrayList
 import java.util.concurrent.ExecutorService
@@ -29,9 +31,11 @@ import java.util.concurrent.atomic.AtomicReference
  * Styx Route Database.
  */
 
-class StyxObjectStore<T> internal constructor(executor: ExecutorService): ObjectStore<T> {
+class StyxObjectStore<T> internal constructor(
+        executor: ExecutorService,
+        changeLogCapacity: Int = ChangeLog.DEFAULT_CAPACITY): ObjectStore<T> {
     private val objects: AtomicReference<IndexedSnapshot<T>> = AtomicReference(
-            IndexedSnapshot(0, HashTreePMap.empty()))
+            IndexedSnapshot(0, HashTreePMap.empty(), TagIndex.EMPTY, ChangeLog.empty(changeLogCapacity)))
 
     private val watchers = CopyOnWriteArrayList<ChangeWatcher<T>>()
     private val notificationQueue = NotificationQueue(watchers, executor)
@@ -62,6 +66,17 @@ class StyxObjectStore<T> internal constructor(executor: ExecutorService): Object
      */
     override fun entrySet(): Collection<Map.Entry<String, T>> = entrySet(objects.get().snapshot)
 
+    /**
+     * Retrieves the entries whose objects carry `tag`.
+     *
+     * Looks the entries up from a secondary index, so the cost is proportional
+     * to the number of matching entries rather than to the size of the store.
+     * Only objects implementing [Tagged] are indexed.
+     *
+     * @property tag a tag, for example `lbGroup=shopping`
+     */
+    fun entriesTagged(tag: String): Collection<Map.Entry<String, T>> = objects.get().entriesTagged(tag)
+
     /**
      * Inserts a new object in object store.
      *
@@ -80,11 +95,11 @@ class StyxObjectStore<T> internal constructor(executor: ExecutorService): Object
         require(key.isNotEmpty()) { "ObjectStore insert: empty keys are not allowed." }
 
         var current = objects.get()
-        var new = current.map { it.plus(key, payload) }
+        var new = current.plus(key, payload)
 
         while (!objects.compareAndSet(current, new)) {
             current = objects.get()
-            new = current.map { it.plus(key, payload) }
+            new = current.plus(key, payload)
         }
 
         notificationQueue.publishChange(new)
@@ -135,10 +150,10 @@ class StyxObjectStore<T> internal constructor(executor: ExecutorService): Object
 
             new = if (existingValue !== null && result === null) {
                 //New value is null, removing key
-                current.map { it.minus(key) }
+                current.minus(key)
             } else if (result != existingValue) {
                 // Consumer REPLACES an existing value or ADDS a new value
-                current.map { it.plus(key, result) }
+                current.plus(key, result)
             } else {
                 // Consumer KEEPS the existing value
                 current
@@ -169,13 +184,13 @@ class StyxObjectStore<T> internal constructor(executor: ExecutorService): Object
      */
     fun remove(key: String): Optional<T> {
         var current = objects.get()
-        var new = current.map { it.minus(key) }
+        var new = current.minus(key)
 
         // Unnecessarily increments the index when "key" doesn't exist:
         // We will live with this for now.
         while (!objects.compareAndSet(current, new)) {
             current = objects.get()
-            new = current.map { it.minus(key) }
+            new = current.minus(key)
         }
 
         if (current.snapshot != new.snapshot) {
@@ -185,15 +200,60 @@ class StyxObjectStore<T> internal constructor(executor: ExecutorService): Object
         return Optional.ofNullable(current.snapshot[key])
     }
 
+    /**
+     * Applies a group of modifications as a single atomic change.
+     *
+     * The `block` is given a [Transaction] that sees the current state of the
+     * object store, and through which objects can be inserted, computed and
+     * removed. When the block returns, all its modifications are published
+     * together: the store index is incremented once, and watchers are notified
+     * once. If the block makes no modifications, the store is left untouched
+     * and watchers are not notified.
+     *
+     * The block is re-run against the newer state if another writer modifies
+     * the store concurrently. Therefore the block should not have side effects.
+     * Instead, it can return a value describing the applied changes, which is
+     * passed back to the caller from the successful run.
+     *
+     * This method is thread safe. It can be called simultaneously from many threads.
+     *
+     * @property block a function that applies the modifications
+     * @return the value returned from the block
+     */
+    fun <R> transaction(block: (Transaction<T>) -> R): R {
+        while (true) {
+            val current = objects.get()
+            val transaction = Transaction(current)
+            val result = block(transaction)
+
+            if (transaction.snapshot === current.snapshot) {
+                return result
+            }
+
+            val new = IndexedSnapshot(
+                    current.index + 1,
+                    transaction.snapshot,
+                    transaction.tags,
+                    current.changes.append(current.index + 1, transaction.modified))
+            if (objects.compareAndSet(current, new)) {
+                notificationQueue.publishChange(new)
+                return result
+            }
+        }
+    }
+
     /**
      * Returns a Publisher that emits an event at any modification.
      *
+     * Snapshots are buffered for a subscriber that falls behind, so that
+     * it sees every intermediate state.
+     *
      * Watch activates on subscription only.
      * Watch removed on unsubscription.
      */
     fun watch(): Publisher<ObjectStore<T>> {
-        return Flux.push { sink ->
-            val watcher: ChangeWatcher<T> = { sink.next(it) }
+        return Flux.push<ObjectStore<T>> { sink ->
+            val watcher: ChangeWatcher<T> = { sink.next(it.asObjectStore()) }
 
             sink.onDispose {
                 watchers.remove(watcher)
@@ -201,7 +261,56 @@ class StyxObjectStore<T> internal constructor(executor: ExecutorService): Object
 
             watchers.add(watcher)
 
-            notificationQueue.publishInitialWatch(sink)
+            notificationQueue.publishInitialWatch(watcher)
+        }
+    }
+
+    /**
+     * Returns a Publisher that emits the changes made at any modification.
+     *
+     * The first event lists all current objects as added. Subsequent events
+     * list the objects added, replaced, and removed since the previous event.
+     * Consecutive modifications made while the subscriber has no outstanding
+     * demand are merged into one event.
+     *
+     * If a subscriber falls so far behind that its changes can no longer be
+     * tracked, it receives a change set flagged as `resync`. This lists all
+     * current objects as added, and the subscriber should rebuild any state
+     * derived from the earlier events.
+     *
+     * Watch activates on subscription only.
+     * Watch removed on unsubscription.
+     */
+    fun watchChanges(): Publisher<ChangeSet<T>> = watchChangeSets { previous, current -> changesBetween(previous, current) }
+
+    /**
+     * Returns a Publisher that emits the changes to objects tagged with `tag`.
+     *
+     * The first event lists all currently tagged objects as added. After that,
+     * an event is emitted only when tagged objects are added, replaced, or
+     * removed, or when an object gains or loses the tag. Modifications to
+     * other objects are not emitted.
+     *
+     * Watch activates on subscription only.
+     * Watch removed on unsubscription.
+     *
+     * @property tag a tag, for example `lbGroup=shopping`
+     */
+    fun watch(tag: String): Publisher<ChangeSet<T>> = watchChangeSets { previous, current -> changesTagged(tag, previous, current) }
+
+    private fun watchChangeSets(diff: (IndexedSnapshot<T>?, IndexedSnapshot<T>) -> ChangeSet<T>): Publisher<ChangeSet<T>> {
+        return Flux.create<ChangeSet<T>> { sink ->
+            val watcher = ChangeSetWatcher(diff, sink)
+
+            sink.onRequest { watcher.emit() }
+
+            sink.onDispose {
+                watchers.remove(watcher)
+            }
+
+            watchers.add(watcher)
+
+            notificationQueue.publishInitialWatch(watcher)
         }
     }
 
@@ -220,3 +329,133 @@ class StyxObjectStore<T> internal constructor(executor: ExecutorService): Object
     }
 
 }
+
+/**
+ * A set of modifications to be applied to a [StyxObjectStore] in one atomic step.
+ *
+ * Reads reflect the modifications made so far within the same transaction.
+ */
+class Transaction<T> internal constructor(private val base: IndexedSnapshot<T>) : ObjectStore<T> {
+    internal var snapshot: PMap<String, T> = base.snapshot
+        private set
+
+    internal var tags: TagIndex = base.tags
+        private set
+
+    internal val modified = LinkedHashSet<String>()
+
+    override fun get(name: String): Optional<T> = Optional.ofNullable(snapshot[name])
+
+    override fun entrySet(): Collection<Map.Entry<String, T>> = entrySet(snapshot)
+
+    /**
+     * Retrieves the entries whose objects carry `tag`.
+     */
+    fun entriesTagged(tag: String): Collection<Map.Entry<String, T>> = entriesTagged(snapshot, tags, tag)
+
+    /**
+     * The index of the object store snapshot this transaction is based on.
+     */
+    override fun index() = base.index
+
+    /**
+     * Inserts or replaces an object.
+     *
+     * @property key object name
+     * @property payload the object itself
+     * @return the previous value
+     */
+    fun insert(key: String, payload: T): Optional<T> {
+        require(key.isNotEmpty()) { "ObjectStore insert: empty keys are not allowed." }
+
+        val previous = snapshot[key]
+        snapshot = snapshot.plus(key, payload)
+        tags = tags.update(key, previous, payload)
+        modified.add(key)
+        return Optional.ofNullable(previous)
+    }
+
+    /**
+     * Conditionally inserts, replaces, or removes an object. Follows the same
+     * contract as [StyxObjectStore.compute].
+     *
+     * @property key object name
+     * @property computation a function that produces the new value
+     * @return the previous value
+     */
+    fun compute(key: String, computation: (T?) -> T?): Optional<T> {
+        require(key.isNotEmpty()) { "ObjectStore compute: empty keys are not allowed." }
+
+        val existingValue = snapshot[key]
+        val result = computation(existingValue)
+
+        if (existingValue !== null && result === null) {
+            snapshot = snapshot.minus(key)
+            tags = tags.update(key, existingValue, null)
+            modified.add(key)
+        } else if (result != existingValue) {
+            snapshot = snapshot.plus(key, result)
+            tags = tags.update(key, existingValue, result)
+            modified.add(key)
+        }
+
+        return Optional.ofNullable(existingValue)
+    }
+
+    /**
+     * Removes an object.
+     *
+     * @property key object name
+     * @return the removed value
+     */
+    fun remove(key: String): Optional<T> {
+        val previous = snapshot[key]
+        if (previous != null) {
+            snapshot = snapshot.minus(key)
+            tags = tags.update(key, previous, null)
+            modified.add(key)
+        }
+        return Optional.ofNullable(previous)
+    }
+}
+
+/**
+ * Emits the differences between the snapshots dispatched to it.
+ *
+ * Emits only as many change sets as the subscriber has requested. While there
+ * is no demand it keeps hold of the latest snapshot only, and the next change
+ * set spans all the modifications made in the meantime. The first change set
+ * is always emitted, empty or not. Subsequent empty change sets are not.
+ */
+private class ChangeSetWatcher<T>(
+        val diff: (IndexedSnapshot<T>?, IndexedSnapshot<T>) -> ChangeSet<T>,
+        val sink: FluxSink<ChangeSet<T>>) : ChangeWatcher<T> {
+    private var emitted: IndexedSnapshot<T>? = null
+    private var latest: IndexedSnapshot<T>? = null
+
+    @Synchronized
+    override fun invoke(current: IndexedSnapshot<T>) {
+        val previous = latest
+        if (previous == null || current.index > previous.index) {
+            latest = current
+            emit()
+        }
+    }
+
+    @Synchronized
+    fun emit() {
+        val current = latest ?: return
+        val previous = emitted
+
+        if (sink.requestedFromDownstream() == 0L || (previous != null && previous.index >= current.index)) {
+            return
+        }
+
+        emitted = current
+
+        val changes = diff(previous, current)
+        if (previous == null || !changes.isEmpty()) {
+            sink.next(changes)
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.routing.db
+
+import org.pcollections.HashTreePMap
+import org.pcollections.HashTreePSet
+import org.pcollections.PMap
+import org.pcollections.PSet
+
+/**
+ * An object that carries a set of tags.
+ *
+ * [StyxObjectStore] indexes the objects that implement this interface by tag.
+ */
+interface Tagged {
+    val tags: Set<String>
+}
+
+/**
+ * A persistent secondary index from a tag to the names of objects carrying it.
+ *
+ * Each update returns a new index, sharing structure with the previous one,
+ * so that every object store snapshot carries an index consistent with its contents.
+ */
+internal class TagIndex private constructor(private val index: PMap<String, PSet<String>>) {
+
+    /**
+     * Names of the objects carrying `tag`.
+     */
+    fun names(tag: String): Set<String> = index[tag] ?: NO_NAMES
+
+    /**
+     * Returns an index reflecting a change of the object stored under `name`
+     * from `previous` to `current`. Either may be `null` for an added or a removed object.
+     */
+    fun update(name: String, previous: Any?, current: Any?): TagIndex {
+        val previousTags = tagsOf(previous)
+        val currentTags = tagsOf(current)
+
+        if (previousTags == currentTags) {
+            return this
+        }
+
+        var result = index
+
+        previousTags.forEach { tag ->
+            if (tag !in currentTags) {
+                val names = (result[tag] ?: NO_NAMES).minus(name)
+                result = if (names.isEmpty()) result.minus(tag) else result.plus(tag, names)
+            }
+        }
+
+        currentTags.forEach { tag ->
+            if (tag !in previousTags) {
+                result = result.plus(tag, (result[tag] ?: NO_NAMES).plus(name))
+            }
+        }
+
+        return TagIndex(result)
+    }
+
+    companion object {
+        private val NO_NAMES: PSet<String> = HashTreePSet.empty()
+
+        val EMPTY = TagIndex(HashTreePMap.empty())
+
+        private fun tagsOf(value: Any?): Set<String> = (value as? Tagged)?.tags ?: emptySet()
+    }
+}
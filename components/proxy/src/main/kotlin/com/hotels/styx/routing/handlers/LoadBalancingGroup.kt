@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -17,10 +17,11 @@ package com.hotels.styx.routing.handlers
 
 import com.fasterxml.jackson.annotation.JsonProperty
 import com.hotels.styx.api.Eventual
+import com.hotels.styx.api.HttpHandler
 import com.hotels.styx.api.HttpInterceptor
 import com.hotels.styx.api.Id
 import com.hotels.styx.api.LiveHttpRequest
-import com.hotels.styx.api.configuration.ObjectStore
+import com.hotels.styx.api.LiveHttpResponse
 import com.hotels.styx.api.extension.ActiveOrigins
 import com.hotels.styx.api.extension.Origin
 import com.hotels.styx.api.extension.Origin.newOriginBuilder
@@ -28,11 +29,16 @@ import com.hotels.styx.api.extension.RemoteHost
 import com.hotels.styx.api.extension.RemoteHost.remoteHost
 import com.hotels.styx.api.extension.loadbalancing.spi.LoadBalancer
 import com.hotels.styx.api.extension.loadbalancing.spi.LoadBalancingMetricSupplier
+import com.hotels.styx.api.extension.service.CollapsedForwardingConfig
 import com.hotels.styx.api.extension.service.StickySessionConfig
+import com.hotels.styx.client.CollapsedForwarding
 import com.hotels.styx.client.OriginRestrictionLoadBalancingStrategy
 import com.hotels.styx.client.StyxBackendServiceClient
+import com.hotels.styx.client.healthcheck.PassiveHealthSignals
 import com.hotels.styx.client.loadbalancing.strategies.PowerOfTwoStrategy
 import com.hotels.styx.client.stickysession.StickySessionLoadBalancingStrategy
+import com.hotels.styx.common.AdaptiveConcurrencyLimiter
+import com.hotels.styx.common.ConcurrencyLimitConfig
 import com.hotels.styx.config.schema.SchemaDsl.`object`
 import com.hotels.styx.config.schema.SchemaDsl.bool
 import com.hotels.styx.config.schema.SchemaDsl.field
@@ -41,16 +47,20 @@ import com.hotels.styx.config.schema.SchemaDsl.optional
 import com.hotels.styx.config.schema.SchemaDsl.string
 import com.hotels.styx.infrastructure.configuration.yaml.JsonNodeConfig
 import com.hotels.styx.lbGroupTag
+import com.hotels.styx.metrics.CentralisedMetrics
+import com.hotels.styx.metrics.Deleter
 import com.hotels.styx.routing.RoutingObject
 import com.hotels.styx.routing.RoutingObjectRecord
 import com.hotels.styx.routing.config.RoutingObjectFactory
 import com.hotels.styx.routing.config.StyxObjectDefinition
+import com.hotels.styx.routing.db.ChangeSet
 import com.hotels.styx.stateTag
 import org.slf4j.LoggerFactory
 import reactor.core.Disposable
 import reactor.core.publisher.toFlux
 import java.util.concurrent.CompletableFuture
 import java.util.concurrent.CompletableFuture.completedFuture
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.atomic.AtomicReference
 
 /**
@@ -58,13 +68,26 @@ import java.util.concurrent.atomic.AtomicReference
  * It has been designed to work with {@link PathPrefixRouter} and {@link HostProxy}
  * objects to implement application routing capability. In reality it will work
  * with any routing object.
+ *
+ * The outcome of each response is recorded as passive health evidence for the object
+ * that served it, under the key `<origins>/<object name>`.
+ *
+ * An optional `concurrencyLimit` block adapts a limit on the requests in flight through
+ * the group, and sheds the requests beyond it.
+ *
+ * An optional `collapsedForwarding` block lets identical GET and HEAD requests that arrive while
+ * one of them is in flight share its response.
  */
-internal class LoadBalancingGroup(val client: StyxBackendServiceClient, val changeWatcher: Disposable) : RoutingObject {
+internal class LoadBalancingGroup(
+        val client: StyxBackendServiceClient,
+        val changeWatcher: Disposable,
+        private val limitGauge: Deleter? = null) : RoutingObject {
 
     override fun handle(request: LiveHttpRequest, context: HttpInterceptor.Context) = Eventual(client.sendRequest(request, context))
 
     override fun stop(): CompletableFuture<Void> {
         changeWatcher.dispose()
+        limitGauge?.delete()
         return completedFuture(null)
     }
 
@@ -75,6 +98,12 @@ internal class LoadBalancingGroup(val client: StyxBackendServiceClient, val chan
                 optional("stickySession", `object`(
                         field("enabled", bool()),
                         field("timeoutSeconds", integer())
+                )),
+                optional("concurrencyLimit", ConcurrencyLimitConfig.SCHEMA),
+                optional("collapsedForwarding", `object`(
+                        field("enabled", bool()),
+                        optional("maxWaitMillis", integer()),
+                        optional("maxBodySizeBytes", integer())
                 ))
         )
 
@@ -88,17 +117,22 @@ internal class LoadBalancingGroup(val client: StyxBackendServiceClient, val chan
             val config = JsonNodeConfig(configBlock.config()).`as`(Config::class.java)
 
             val routeDb = context.routeDb()
+            val signals = context.environment().passiveHealthSignals()
             val remoteHosts = AtomicReference<Set<RemoteHost>>(setOf())
+            val activeHosts = HashMap<String, RemoteHost>()
+            val heldSignals = HeldSignals(signals)
 
-            val watch = routeDb.watch()
+            val watch = routeDb.watch(lbGroupTag(config.origins))
                     .toFlux()
                     .subscribe(
-                            { routeDatabaseChanged(config.origins, it, remoteHosts) },
+                            { routeDatabaseChanged(config.origins, it, activeHosts, remoteHosts, heldSignals) },
                             { watchFailed(appId, it) },
                             { watchCompleted(appId) }
                     )
 
 
+            val limiter = concurrencyLimiter(appId, config, context.environment().centralisedMetrics())
+
             val client = StyxBackendServiceClient.Builder(Id.id(appId))
                     .loadBalancer(loadBalancer(config, object: ActiveOrigins {
                         override fun  snapshot(): Iterable<RemoteHost> {
@@ -118,11 +152,38 @@ internal class LoadBalancingGroup(val client: StyxBackendServiceClient, val chan
                     .originIdHeader(context.environment().configuration().styxHeaderConfig().originIdHeaderName())
                     .stickySessionConfig(config.stickySession ?: StickySessionConfig.stickySessionDisabled())
                     .originsRestrictionCookieName(config.originRestrictionCookie)
+                    .concurrencyLimiter(limiter)
+                    .collapsedForwarding(collapsedForwarding(appId, config, context.environment().centralisedMetrics()))
                     .build()
 
-            return LoadBalancingGroup(client, watch)
+            val limitGauge = limiter?.let {
+                context.environment().centralisedMetrics().proxy.client.concurrencyLimit(appId).bind(it::limit)
+            }
+
+            val changeWatcher = Disposable {
+                watch.dispose()
+                heldSignals.releaseAll()
+            }
+
+            return LoadBalancingGroup(client, changeWatcher, limitGauge)
         }
 
+        private fun concurrencyLimiter(appId: String, config: Config, metrics: CentralisedMetrics): AdaptiveConcurrencyLimiter? =
+                config.concurrencyLimit
+                        ?.takeIf { it.enabled() }
+                        ?.let {
+                            val shed = metrics.proxy.client.requestsShed(appId)
+                            AdaptiveConcurrencyLimiter(it) { shed.increment() }
+                        }
+
+        private fun collapsedForwarding(appId: String, config: Config, metrics: CentralisedMetrics): CollapsedForwarding? =
+                config.collapsedForwarding
+                        ?.takeIf { it.enabled() }
+                        ?.let {
+                            val collapsed = metrics.proxy.client.requestsCollapsed(appId)
+                            CollapsedForwarding(it) { collapsed.increment() }
+                        }
+
         private fun loadBalancer(config: Config, activeOrigins: ActiveOrigins): LoadBalancer {
             val loadBalancer = PowerOfTwoStrategy(activeOrigins)
             return if (config.stickySessionConfig.stickySessionEnabled()) {
@@ -134,21 +195,41 @@ internal class LoadBalancingGroup(val client: StyxBackendServiceClient, val chan
             }
         }
 
-        private fun routeDatabaseChanged(appId: String, snapshot: ObjectStore<RoutingObjectRecord>, remoteHosts: AtomicReference<Set<RemoteHost>>) {
-            val newSet = snapshot.entrySet()
-                    .filter { it.value.tags.contains(lbGroupTag(appId)) }
-                    .filter { stateTag.find(it.value.tags)
-                            .let { it == null || it == "active" }
-                    }
-                    .map { toRemoteHost(appId, it) }
-                    .toSet()
+        private fun routeDatabaseChanged(
+                appId: String,
+                changes: ChangeSet<RoutingObjectRecord>,
+                activeHosts: MutableMap<String, RemoteHost>,
+                remoteHosts: AtomicReference<Set<RemoteHost>>,
+                signals: HeldSignals) {
+
+            changes.removed.keys.forEach {
+                activeHosts.remove(it)
+                signals.release(it)
+            }
+            changes.added.forEach { (name, record) -> hostChanged(appId, name, record, activeHosts, signals) }
+            changes.updated.forEach { (name, update) -> hostChanged(appId, name, update.current, activeHosts, signals) }
 
-            remoteHosts.set(newSet)
+            remoteHosts.set(activeHosts.values.toSet())
         }
 
-        private fun toRemoteHost(appId: String, record: Map.Entry<String, RoutingObjectRecord>): RemoteHost {
-            val routingObject = record.value.routingObject
-            val originName = record.key
+        private fun hostChanged(
+                appId: String,
+                name: String,
+                record: RoutingObjectRecord,
+                activeHosts: MutableMap<String, RemoteHost>,
+                signals: HeldSignals) {
+            val active = stateTag.find(record.tags).let { it == null || it == "active" }
+
+            if (active) {
+                activeHosts[name] = toRemoteHost(appId, name, record, signals.take(appId, name))
+            } else {
+                activeHosts.remove(name)
+                signals.release(name)
+            }
+        }
+
+        private fun toRemoteHost(appId: String, originName: String, record: RoutingObjectRecord, signal: PassiveHealthSignals.Signal): RemoteHost {
+            val routingObject = record.routingObject
 
             return remoteHost(
                     // The origin is used to determine remote host hostname or port
@@ -157,10 +238,22 @@ internal class LoadBalancingGroup(val client: StyxBackendServiceClient, val chan
                             .applicationId(appId)
                             .id(originName)
                             .build(),
-                    routingObject,
+                    recordingOutcomes(routingObject, signal),
                     LoadBalancingMetricSupplier { routingObject.metric() })
         }
 
+        private fun recordingOutcomes(routingObject: RoutingObject, signal: PassiveHealthSignals.Signal) = HttpHandler { request, context ->
+            routingObject.handle(request, context)
+                    .map { response ->
+                        if (response.status().code() >= 500) signal.failure() else signal.success()
+                        response
+                    }
+                    .onError { cause ->
+                        signal.failure()
+                        Eventual.error<LiveHttpResponse>(cause)
+                    }
+        }
+
         private fun watchFailed(name: String, cause: Throwable) {
             LOGGER.error("{}: Illegal state: watch error. Cause={}", name, cause)
         }
@@ -173,10 +266,29 @@ internal class LoadBalancingGroup(val client: StyxBackendServiceClient, val chan
     data class Config(
             @JsonProperty val origins: String,
             @JsonProperty val originRestrictionCookie: String?,
-            @JsonProperty val stickySession: StickySessionConfig?
+            @JsonProperty val stickySession: StickySessionConfig?,
+            @JsonProperty val concurrencyLimit: ConcurrencyLimitConfig? = null,
+            @JsonProperty val collapsedForwarding: CollapsedForwardingConfig? = null
     ) {
         val stickySessionConfig: StickySessionConfig
             get() = stickySession ?: StickySessionConfig.stickySessionDisabled()
     }
 
 }
+
+/**
+ * The passive health signals that a group holds for its active hosts.
+ */
+internal class HeldSignals(private val signals: PassiveHealthSignals) {
+    private val held = ConcurrentHashMap<String, PassiveHealthSignals.Signal>()
+
+    fun take(appId: String, name: String): PassiveHealthSignals.Signal = held.computeIfAbsent(name) { signals.signal("$appId/$it") }
+
+    fun release(name: String) {
+        held.remove(name)?.let { signals.release(it) }
+    }
+
+    fun releaseAll() {
+        held.keys.forEach(::release)
+    }
+}
@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -20,6 +20,8 @@ import com.hotels.styx.InetServer
 import com.hotels.styx.ProxyConnectorFactory
 import com.hotels.styx.ResponseInfoFormat
 import com.hotels.styx.StyxObjectRecord
+import com.hotels.styx.common.CompressionConfig
+import com.hotels.styx.common.ConcurrencyLimitConfig
 import com.hotels.styx.config.schema.SchemaDsl.*
 import com.hotels.styx.infrastructure.configuration.yaml.JsonNodeConfig
 import com.hotels.styx.proxy.ProxyServerConfig
@@ -32,6 +34,7 @@ import com.hotels.styx.server.HttpsConnectorConfig
 import com.hotels.styx.server.netty.NettyServerBuilder
 import com.hotels.styx.serviceproviders.StyxServerFactory
 import org.slf4j.LoggerFactory
+import java.time.Duration
 
 object StyxHttpServer {
     @JvmField
@@ -39,6 +42,7 @@ object StyxHttpServer {
             field("port", integer()),
             field("handler", string()),
             optional("compressResponses", bool()),
+            optional("compression", CompressionConfig.SCHEMA),
             optional("tlsSettings", `object`(
                     optional("sslProvider", string()),
                     optional("certificateFile", string()),
@@ -56,6 +60,10 @@ object StyxHttpServer {
             optional("requestTimeoutMillis", integer()),
             optional("keepAliveTimeoutMillis", integer()),
             optional("maxConnectionsCount", integer()),
+            optional("nioAcceptorBacklog", integer()),
+            optional("acceptorCount", integer()),
+            optional("drainTimeoutMillis", integer()),
+            optional("concurrencyLimit", ConcurrencyLimitConfig.SCHEMA),
 
             optional("bossExecutor", string()),
             optional("workerExecutor", string())
@@ -79,6 +87,7 @@ private data class StyxHttpServerConfiguration(
         val port: Int,
         val handler: String,
         val compressResponses: Boolean = false,
+        val compression: CompressionConfig? = null,
         val tlsSettings: StyxHttpServerTlsSettings?,
 
         val maxInitialLength: Int = 4096,
@@ -88,6 +97,10 @@ private data class StyxHttpServerConfiguration(
         val requestTimeoutMillis: Int = 60000,
         val keepAliveTimeoutMillis: Int = 120000,
         val maxConnectionsCount: Int = 512,
+        val nioAcceptorBacklog: Int = 1024,
+        val acceptorCount: Int = 1,
+        val drainTimeoutMillis: Int = 5000,
+        val concurrencyLimit: ConcurrencyLimitConfig? = null,
 
         val bossExecutor: String = "StyxHttpServer-Global-Boss",
         val workerExecutor: String = "StyxHttpServer-Global-Worker"
@@ -112,14 +125,17 @@ internal class StyxHttpServerFactory : StyxServerFactory {
                 .setMetricsRegistry(environment.metricRegistry())
                 .setProtocolConnector(
                         ProxyConnectorFactory(
+                                name,
                                 ProxyServerConfig.Builder()
                                         .setCompressResponses(config.compressResponses)
+                                        .setCompression(config.compression)
                                         .setMaxInitialLength(config.maxInitialLength)
                                         .setMaxHeaderSize(config.maxHeaderSize)
                                         .setMaxChunkSize(config.maxChunkSize)
                                         .setRequestTimeoutMillis(config.requestTimeoutMillis)
                                         .setKeepAliveTimeoutMillis(config.keepAliveTimeoutMillis)
                                         .setMaxConnectionsCount(config.maxConnectionsCount)
+                                        .setConcurrencyLimit(config.concurrencyLimit)
                                         .build(),
                                 environment.centralisedMetrics(),
                                 environment.errorListener(),
@@ -148,6 +164,9 @@ internal class StyxHttpServerFactory : StyxServerFactory {
                                         }))
                 .bossExecutor(bossExecutor)
                 .workerExecutor(workerExecutor)
+                .acceptorBacklog(config.nioAcceptorBacklog)
+                .acceptorCount(config.acceptorCount)
+                .drainTimeout(Duration.ofMillis(config.drainTimeoutMillis.toLong()))
                 .handler { request, ctx ->
                         context.refLookup()
                                 .apply(StyxObjectReference(config.handler))
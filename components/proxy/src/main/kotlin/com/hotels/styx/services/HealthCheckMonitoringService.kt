@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -26,6 +26,9 @@ import com.hotels.styx.STATE_UNREACHABLE
 import com.hotels.styx.api.HttpRequest
 import com.hotels.styx.api.extension.service.spi.AbstractStyxService
 import com.hotels.styx.api.extension.service.spi.StyxService
+import com.hotels.styx.client.healthcheck.AdaptiveInterval
+import com.hotels.styx.client.healthcheck.HealthCheckScheduler
+import com.hotels.styx.client.healthcheck.PassiveHealthSignals
 import com.hotels.styx.config.schema.SchemaDsl
 import com.hotels.styx.config.schema.SchemaDsl.field
 import com.hotels.styx.config.schema.SchemaDsl.integer
@@ -40,19 +43,29 @@ import com.hotels.styx.routing.config.RoutingObjectFactory
 import com.hotels.styx.routing.db.StyxObjectStore
 import com.hotels.styx.server.HttpInterceptorContext
 import com.hotels.styx.serviceproviders.ServiceProviderFactory
-import com.hotels.styx.services.HealthCheckMonitoringService.Companion.EXECUTOR
 import com.hotels.styx.stateTag
 import org.slf4j.LoggerFactory
+import reactor.core.Disposable
 import reactor.core.publisher.Flux
+import reactor.core.publisher.Mono
 import reactor.core.publisher.toMono
 import java.time.Duration
 import java.util.concurrent.CompletableFuture
-import java.util.concurrent.ScheduledExecutorService
-import java.util.concurrent.ScheduledFuture
-import java.util.concurrent.ScheduledThreadPoolExecutor
-import java.util.concurrent.TimeUnit.MILLISECONDS
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.atomic.AtomicReference
-
+import java.util.function.Supplier
+
+/**
+ * Actively health-checks the objects tagged with `lbGroup=<application>`, and tags them
+ * as active or unreachable accordingly.
+ *
+ * Each object is probed on its own phase of the interval by the shared [HealthCheckScheduler].
+ * Objects joining or leaving the group are picked up from the object store as they change.
+ *
+ * When [maxPeriod] is longer than [period], each object is probed at an [AdaptiveInterval],
+ * and a round is counted as healthy without a probe if the object has served live traffic
+ * successfully since the previous round, according to the [PassiveHealthSignals].
+ */
 internal class HealthCheckMonitoringService(
         private val objectStore: StyxObjectStore<RoutingObjectRecord>,
         private val application: String,
@@ -60,8 +73,10 @@ internal class HealthCheckMonitoringService(
         private val period: Duration,
         activeThreshold: Int,
         inactiveThreshold: Int,
-        private val executor: ScheduledExecutorService,
-        workerExecutor: NettyExecutor = healthCheckExecutor) : AbstractStyxService("HealthCheckMonitoringService-$application") {
+        private val scheduler: HealthCheckScheduler,
+        workerExecutor: NettyExecutor = healthCheckExecutor,
+        private val maxPeriod: Duration = period,
+        private val signals: PassiveHealthSignals = PassiveHealthSignals()) : AbstractStyxService("HealthCheckMonitoringService-$application") {
 
     companion object {
         @JvmField
@@ -70,12 +85,11 @@ internal class HealthCheckMonitoringService(
                 optional("path", string()),
                 optional("timeoutMillis", integer()),
                 optional("intervalMillis", integer()),
+                optional("maxIntervalMillis", integer()),
                 optional("healthyThreshold", integer()),
                 optional("unhealthyThreshold", integer())
         )
 
-        internal val EXECUTOR = ScheduledThreadPoolExecutor(2)
-
         internal val LOGGER = LoggerFactory.getLogger(HealthCheckMonitoringService::class.java)
     }
 
@@ -85,20 +99,24 @@ internal class HealthCheckMonitoringService(
             HttpInterceptorContext(false, null, workerExecutor.eventLoopGroup()))
 
     private val determineObjectState = healthCheckFunction(activeThreshold, inactiveThreshold)
-    private val futureRef: AtomicReference<ScheduledFuture<*>> = AtomicReference()
+    private val watch: AtomicReference<Disposable> = AtomicReference()
+    private val targets = ConcurrentHashMap<String, Target>()
 
     override fun startService() = CompletableFuture.runAsync {
-        LOGGER.info("started service for {} - {} - {}", arrayOf(application, period.toMillis(), period.toMillis()))
-        futureRef.set(executor.scheduleAtFixedRate(
-                { runChecks(application, objectStore) },
-                period.toMillis(),
-                period.toMillis(),
-                MILLISECONDS))
+        LOGGER.info("started service for {} - {}", application, period.toMillis())
+        watch.set(Flux.from(objectStore.watch(lbGroupTag(application)))
+                .subscribe { changes ->
+                    changes.removed.keys.forEach(::unschedule)
+                    changes.added.keys.forEach(::schedule)
+                })
     }
 
     override fun stopService() = CompletableFuture.runAsync {
         LOGGER.info("stopped service for {}", application)
 
+        watch.get()?.dispose()
+        targets.keys.forEach(::unschedule)
+
         objectStore.entrySet()
                 .filter(::containsRelevantStateTag)
                 .forEach { (name, record) ->
@@ -116,48 +134,80 @@ internal class HealthCheckMonitoringService(
                             previous
                     }
                 }
-        futureRef.get().cancel(false)
     }
 
-    fun isRunning() = futureRef.get()?.let { !it.isCancelled && !it.isDone } == true
+    fun isRunning() = watch.get()?.let { !it.isDisposed } == true
 
-    internal fun runChecks(application: String, objectStore: StyxObjectStore<RoutingObjectRecord>) {
-        val monitoredObjects = objectStore.entrySet()
-                .map { Pair(it.key, it.value) }
-                .filter { (_, record) -> record.tags.contains(lbGroupTag(application)) }
-                .map { (name, record) ->
-                    val tags = record.tags
-                    val objectHealth = objectHealthFrom(stateTag.find(tags), healthCheckTag.find(tags))
-                    Triple(name, record, objectHealth)
-                }
+    internal fun monitoredObjects() = targets.keys.toSet()
 
-        val pendingHealthChecks = monitoredObjects
-                .map { (name, record, objectHealth) ->
-                    healthCheck(probe, record.routingObject, objectHealth)
-                            .map { newHealth -> Triple(name, objectHealth, newHealth) }
-                            .doOnNext { (name, currentHealth, newHealth) ->
-                                if (currentHealth != newHealth) {
-                                    markObject(objectStore, name, newHealth)
-                                }
-                            }
-                }
+    internal fun currentInterval(name: String) = targets[name]?.interval?.current()
 
-        Flux.fromIterable(pendingHealthChecks)
-                .flatMap { it }
-                .collectList()
-                .subscribe {
-                    val details = it.joinToString(", ") { (name, _, health2) ->
-                        "{ app: $application, host: $name, result: $health2 }"
-                    }
+    private fun schedule(name: String) {
+        targets.computeIfAbsent(name) { Target(it) }
+    }
+
+    private fun unschedule(name: String) {
+        targets.remove(name)?.cancel()
+    }
+
+    /**
+     * Probes every object currently in the group once.
+     */
+    internal fun runChecks() {
+        objectStore.entriesTagged(lbGroupTag(application))
+                .forEach { runCheck(it.key) }
+    }
 
-                    LOGGER.debug("Health Check Completed: ${details}")
+    /**
+     * Probes a single object, and re-tags it if its health has changed.
+     * Completes when the object has been re-tagged.
+     */
+    internal fun runCheck(name: String) = check(name) { probe(it).toMono() }
+
+    private fun check(name: String, outcome: (RoutingObject) -> Mono<Boolean>): CompletableFuture<ObjectHealth?> {
+        val record = objectStore.get(name).orElse(null)
+        if (record == null || lbGroupTag(application) !in record.tags) {
+            return CompletableFuture.completedFuture(null)
+        }
+
+        val objectHealth = objectHealthFrom(stateTag.find(record.tags), healthCheckTag.find(record.tags))
+
+        return outcome(record.routingObject)
+                .doOnNext { reachable -> targets[name]?.interval?.let { if (reachable) it.healthy() else it.unhealthy() } }
+                .map { reachable -> determineObjectState(objectHealth, reachable) }
+                .doOnNext { newHealth ->
+                    if (objectHealth != newHealth) {
+                        markObject(objectStore, name, newHealth)
+                    }
+                    LOGGER.debug("Health Check Completed: { app: $application, host: $name, result: $newHealth }")
                 }
+                .toFuture()
     }
 
-    private fun healthCheck(probe: Probe, routingObject: RoutingObject, previous: ObjectHealth) =
-            probe(routingObject)
-                    .toMono()
-                    .map { reachable -> determineObjectState(previous, reachable) }
+    private inner class Target(private val name: String) {
+        val interval = AdaptiveInterval(period, maxPeriod)
+        private val signal = signals.signal("$application/$name")
+        @Volatile
+        private var lastRound = signal.mark()
+        private val registration: HealthCheckScheduler.Registration = scheduler.schedule("$application/$name", Supplier { interval.current() }) { round() }
+
+        fun cancel() {
+            registration.cancel()
+            signals.release(signal)
+        }
+
+        private fun round(): CompletableFuture<ObjectHealth?> {
+            val since = lastRound
+            lastRound = signal.mark()
+
+            return if (interval.isAdaptive && signal.servedSince(since)) {
+                LOGGER.debug("Health Check skipped, object is serving live traffic: { app: $application, host: $name }")
+                check(name) { Mono.just(true) }
+            } else {
+                runCheck(name)
+            }
+        }
+    }
 }
 
 internal data class HealthCheckConfiguration(
@@ -166,7 +216,8 @@ internal data class HealthCheckConfiguration(
         @JsonProperty val timeoutMillis: Long,
         @JsonProperty val intervalMillis: Long,
         @JsonProperty val healthyThreshod: Int,
-        @JsonProperty val unhealthyThreshold: Int)
+        @JsonProperty val unhealthyThreshold: Int,
+        @JsonProperty val maxIntervalMillis: Long = 0)
 
 private val healthCheckExecutor = NettyExecutor.create("HealthCheckMonitoringService-global", 1)
 
@@ -181,8 +232,10 @@ internal class HealthCheckMonitoringServiceFactory : ServiceProviderFactory {
                 Duration.ofMillis(config.intervalMillis),
                 config.healthyThreshod,
                 config.unhealthyThreshold,
-                EXECUTOR,
-                healthCheckExecutor)
+                context.environment().healthCheckScheduler(),
+                healthCheckExecutor,
+                Duration.ofMillis(maxOf(config.intervalMillis, config.maxIntervalMillis)),
+                context.environment().passiveHealthSignals())
     }
 }
 
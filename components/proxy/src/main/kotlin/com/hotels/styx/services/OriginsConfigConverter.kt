@@ -28,7 +28,6 @@ import com.hotels.styx.api.extension.Origin
 import com.hotels.styx.api.extension.service.BackendService
 import com.hotels.styx.api.extension.service.ConnectionPoolSettings
 import com.hotels.styx.api.extension.service.HealthCheckConfig
-import com.hotels.styx.api.extension.service.StickySessionConfig
 import com.hotels.styx.api.extension.service.TlsSettings
 import com.hotels.styx.infrastructure.configuration.ConfigurationParser
 import com.hotels.styx.infrastructure.configuration.ConfigurationSource.configSource
@@ -112,7 +111,8 @@ internal class OriginsConfigConverter(
                 healthCheckConfig.timeoutMillis(),
                 healthCheckConfig.intervalMillis(),
                 healthCheckConfig.healthyThreshold(),
-                healthCheckConfig.unhealthyThreshold()))
+                healthCheckConfig.unhealthyThreshold(),
+                healthCheckConfig.maxIntervalMillis()))
 
         val serviceConfig = MAPPER.readTree(str)
 
@@ -171,6 +171,14 @@ internal class OriginsConfigConverter(
             return MAPPER.readValue<List<BackendService>>(rootNode.traverse(), TYPE)
         }
 
+        internal fun readOriginsTree(text: String): List<JsonNode> {
+            val rootNode = MAPPER.readTree(text)
+            require(rootNode != null && rootNode.isArray) { "Origins configuration must be a list of applications" }
+            return rootNode.toList()
+        }
+
+        internal fun deserialiseApp(node: JsonNode): BackendService = MAPPER.readValue(node.traverse(), BackendService::class.java)
+
         private val MAPPER = ObjectMappers.addStyxMixins(ObjectMapper(YAMLFactory()))
                 .disable(FAIL_ON_UNKNOWN_PROPERTIES)
                 .configure(AUTO_CLOSE_SOURCE, true)
@@ -182,7 +190,7 @@ internal class OriginsConfigConverter(
             StyxObjectDefinition(
                     "${app.id()}",
                     LOAD_BALANCING_GROUP,
-                    loadBalancingGroupConfig(app.id().toString(), originRestrictionCookie, app.stickySessionConfig()))
+                    loadBalancingGroupConfig(app, originRestrictionCookie))
         } else {
             interceptorPipelineConfig(app, originRestrictionCookie)
         }
@@ -190,10 +198,12 @@ internal class OriginsConfigConverter(
         private fun isHealthCheckConfigured(app: BackendService): Boolean =
             app.healthCheckConfig()?.let { it.uri().isPresent && it.isEnabled } ?: false
 
-        private fun loadBalancingGroupConfig(origins: String,
-                                             originRestrictionCookie: String?,
-                                             stickySession: StickySessionConfig?): JsonNode = MAPPER.valueToTree(
-                LoadBalancingGroup.Config(origins, originRestrictionCookie, stickySession))
+        private fun loadBalancingGroupConfig(app: BackendService, originRestrictionCookie: String?): JsonNode = MAPPER.valueToTree(
+                LoadBalancingGroup.Config(
+                        app.id().toString(),
+                        originRestrictionCookie,
+                        app.stickySessionConfig(),
+                        collapsedForwarding = app.collapsedForwardingConfig().takeIf { it.enabled() }))
 
         internal fun interceptorPipelineConfig(app: BackendService, originRestrictionCookie: String?): StyxObjectDefinition {
             val rewrites = app.rewrites()
@@ -208,7 +218,7 @@ internal class OriginsConfigConverter(
                 """.trimIndent()
                     .replace("__rewrites__", rewrites)
 
-            val lbConfig = MAPPER.writeValueAsString(loadBalancingGroupConfig(app.id().toString(), originRestrictionCookie, app.stickySessionConfig()))
+            val lbConfig = MAPPER.writeValueAsString(loadBalancingGroupConfig(app, originRestrictionCookie))
                     .dropWhile { it == '-' || it == '\n' }
                     .prependIndent("  ")
 
@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -20,6 +20,7 @@ import com.hotels.styx.ProviderObjectRecord
 import com.hotels.styx.StyxObjectRecord
 import com.hotels.styx.api.HttpHeaderValues.HTML
 import com.hotels.styx.api.HttpHeaderValues.PLAIN_TEXT
+import com.hotels.styx.api.extension.service.BackendService
 import com.hotels.styx.api.extension.service.spi.StyxService
 import com.hotels.styx.common.http.handler.HttpAggregator
 import com.hotels.styx.common.http.handler.HttpContentHandler
@@ -32,7 +33,8 @@ import com.hotels.styx.routing.config.StyxObjectDefinition
 import com.hotels.styx.routing.db.StyxObjectStore
 import com.hotels.styx.server.handlers.ClassPathResourceHandler
 import com.hotels.styx.serviceproviders.ServiceProviderFactory
-import com.hotels.styx.services.OriginsConfigConverter.Companion.deserialiseOrigins
+import com.hotels.styx.services.OriginsConfigConverter.Companion.deserialiseApp
+import com.hotels.styx.services.OriginsConfigConverter.Companion.readOriginsTree
 import com.hotels.styx.sourceTag
 import org.slf4j.LoggerFactory
 import java.io.PrintWriter
@@ -65,7 +67,7 @@ internal class YamlFileConfigurationService(
         reloadAction(it)
     }
 
-    private val healthMonitors = AtomicReference<List<Pair<String, ProviderObjectRecord>>>(listOf())
+    private val applied = AtomicReference(AppliedConfig.EMPTY)
 
     @Volatile
     private var originsConfig = ""
@@ -103,17 +105,14 @@ internal class YamlFileConfigurationService(
             "/" to OriginsAdminHandler(namespace, name, routeDb, serviceDb))
 
     fun reloadAction(content: String): Unit {
-        LOGGER.info("New origins configuration: \n$content")
+        LOGGER.debug("New origins configuration: \n$content")
 
         kotlin.runCatching {
-            val deserialised = deserialiseOrigins(content)
+            val previous = applied.get()
+            val next = parse(content, previous)
+            val changes = ConfigChanges(previous, next)
 
-            val routingObjectDefs = (
-                    converter.routingObjects(deserialised) +
-                            converter.pathPrefixRouter(ingressObjectName, deserialised))
-                    .map { StyxObjectDefinition(it.name(), it.type(), it.tags() + objectSourceTag, it.config()) }
-
-            routingObjectDefs.forEach { objectDef ->
+            changes.routingObjects.forEach { objectDef ->
                 routeDb.get(objectDef.name()).ifPresent {
                     if (sourceTag.find(it.tags) != name) {
                         throw DuplicateObjectException("Object name='${objectDef.name()}' already exists. Provider='${name}', file='${config.originsFile}'.")
@@ -121,10 +120,7 @@ internal class YamlFileConfigurationService(
                 }
             }
 
-            val healthMonitors = converter.healthCheckServices(deserialised)
-                    .map { (name, record) -> Pair(name, record.copy(tags = record.tags + objectSourceTag)) }
-
-            healthMonitors.forEach { (objectName, _) ->
+            changes.healthMonitors.forEach { (objectName, _) ->
                 serviceDb.get(objectName).ifPresent {
                     if (sourceTag.find(it.tags) != name) {
                         throw DuplicateObjectException("Health Monitor name='${objectName}' already exists. Provider='${name}', file='${config.originsFile}'.")
@@ -132,10 +128,17 @@ internal class YamlFileConfigurationService(
                 }
             }
 
-            Pair(healthMonitors, routingObjectDefs)
-        }.mapCatching { (healthMonitors, routingObjectDefs) ->
-            updateRoutingObjects(routingObjectDefs)
-            updateHealthCheckServices(serviceDb, healthMonitors)
+            Pair(next, changes)
+        }.mapCatching { (next, changes) ->
+            if (changes.isEmpty()) {
+                LOGGER.debug("Origins configuration is unchanged")
+            } else {
+                updateRoutingObjects(changes.routingObjects, next.objectNames)
+                updateHealthCheckServices(serviceDb, changes.healthMonitors, changes.removedHealthMonitors)
+                LOGGER.info("Origins configuration reloaded. applications added={}, modified={}, removed={}",
+                        changes.added.size, changes.modified.size, changes.removed.size)
+            }
+            applied.set(next)
         }.onSuccess {
             originsConfig = content
             initialised.countDown()
@@ -144,79 +147,195 @@ internal class YamlFileConfigurationService(
         }
     }
 
+    /**
+     * Parses the origins file. Only the applications whose configuration differs from the last
+     * applied one are deserialised and converted into objects. The others are carried over.
+     */
+    private fun parse(content: String, previous: AppliedConfig): AppliedConfig {
+        val apps = LinkedHashMap<String, ParsedApp>()
+
+        readOriginsTree(content).forEach { node ->
+            val id = node.path("id").asText()
+            val unchanged = previous.apps[id]?.takeIf { it.node == node }
+            val parsed = unchanged ?: parseApp(node)
+
+            require(apps.put(parsed.app.id().toString(), parsed) == null) { "Duplicate application id='${parsed.app.id()}'" }
+        }
+
+        val routes = apps.values.map { Pair(it.app.id().toString(), it.app.path()) }
+        val router = previous.router?.takeIf { routes == previous.routes }
+                ?: converter.pathPrefixRouter(ingressObjectName, apps.values.map { it.app })
+                        .let { StyxObjectDefinition(it.name(), it.type(), it.tags() + objectSourceTag, it.config()) }
+
+        return AppliedConfig(apps, routes, router)
+    }
+
+    private fun parseApp(node: JsonNode): ParsedApp {
+        val app = deserialiseApp(node)
+
+        val routingObjects = converter.routingObjects(listOf(app))
+                .map { StyxObjectDefinition(it.name(), it.type(), it.tags() + objectSourceTag, it.config()) }
+
+        val healthMonitor = converter.healthCheckServices(listOf(app))
+                .map { (name, record) -> Pair(name, record.copy(tags = record.tags + objectSourceTag)) }
+                .firstOrNull()
+
+        return ParsedApp(node, app, routingObjects, healthMonitor)
+    }
+
     private fun changed(one: JsonNode, another: JsonNode) = !one.equals(another)
 
-    internal fun updateRoutingObjects(objectDefs: List<StyxObjectDefinition>) {
-        val previousObjectNames = routeDb.entrySet()
-                .filter { it.value.tags.contains(objectSourceTag) }
-                .map { it.key }
-
-        val newObjectNames = objectDefs.map { it.name() }
-        val removedObjects = previousObjectNames.minus(newObjectNames)
-
-        objectDefs.forEach { objectDef ->
-            routeDb.compute(objectDef.name()) { previous ->
-                if (previous == null || changed(objectDef.config(), previous.config)) {
-                    previous?.routingObject?.stop()
-                    converter.routingObjectRecord(objectDef)
-                } else {
-                    previous
+    internal fun updateRoutingObjects(objectDefs: List<StyxObjectDefinition>, objectNames: Set<String>) {
+        // All changes are applied as one atomic update, so that watchers are notified once per reload
+        // rather than once per object. The transaction may be re-run, so it must not have side effects.
+        // The objects are built before it, and the unused and replaced ones are stopped after it.
+        val built = mutableMapOf<String, RoutingObjectRecord>()
+
+        while (true) {
+            objectDefs.filter { it.name() !in built && needsUpdate(routeDb.get(it.name()).orElse(null), it) }
+                    .forEach { built[it.name()] = converter.routingObjectRecord(it) }
+
+            val update = routeDb.transaction { tx ->
+                val missing = objectDefs.filter { it.name() !in built && needsUpdate(tx.get(it.name()).orElse(null), it) }
+                if (missing.isNotEmpty()) {
+                    // Modified concurrently since the objects were built. Build the missing ones, and try again.
+                    return@transaction null
                 }
+
+                val replaced = mutableListOf<RoutingObjectRecord>()
+                val inserted = mutableSetOf<String>()
+
+                objectDefs.forEach { objectDef ->
+                    tx.compute(objectDef.name()) { previous ->
+                        if (needsUpdate(previous, objectDef)) {
+                            previous?.let { replaced.add(it) }
+                            inserted.add(objectDef.name())
+                            built[objectDef.name()]
+                        } else {
+                            previous
+                        }
+                    }
+                }
+
+                tx.entriesTagged(objectSourceTag)
+                        .filter { !objectNames.contains(it.key) }
+                        .map { it.key }
+                        .forEach { name -> tx.remove(name).ifPresent { replaced.add(it) } }
+
+                RoutingObjectUpdate(inserted, replaced)
             }
-        }
 
-        removedObjects.forEach {
-            routeDb.remove(it).ifPresent {
-                it.routingObject.stop()
+            if (update != null) {
+                built.filterKeys { it !in update.inserted }.values.forEach { it.routingObject.stop() }
+                update.replaced.forEach { it.routingObject.stop() }
+                return
             }
         }
     }
 
-    private fun updateHealthCheckServices(objectDb: StyxObjectStore<ProviderObjectRecord>, objects: List<Pair<String, ProviderObjectRecord>>): Unit {
-        val oldObjectNames = healthMonitors.get().map { it.first }
-        healthMonitors.set(objects)
-
-        val newObjectNames = objects.map { it.first }
-        val removedObjects = oldObjectNames.minus(newObjectNames)
-
-        objects.map { Triple(it.first, it.second, AtomicReference<StyxObjectRecord<StyxService>>()) }
-                .forEach { (name, new, cache) ->
-                    objectDb.compute(name) { previous ->
-                        if (cache.get() == null) {
-                            val result = if (previous == null || changed(new.config, previous.config)) {
-                                new.styxService.start()
-                                previous?.styxService?.stop()
-                                        ?.whenComplete { _, throwable ->
-                                            if (throwable != null) {
-                                                val stack = StringWriter().let {
-                                                    throwable.printStackTrace(PrintWriter(it))
-                                                    it.toString()
-                                                }
-                                                LOGGER.warn("Service failed to terminate cleanly. cause=$throwable stack=$stack")
-                                            }
-                                        }
-                                new
-                            } else {
-                                // No need to shout down the new one. It has yet been started.
-                                previous
-                            }
-                            cache.set(result)
-                        }
-
-                        cache.get()
+    private fun needsUpdate(previous: RoutingObjectRecord?, objectDef: StyxObjectDefinition) =
+            previous == null || changed(objectDef.config(), previous.config)
+
+    private fun updateHealthCheckServices(
+            objectDb: StyxObjectStore<ProviderObjectRecord>,
+            objects: List<Pair<String, ProviderObjectRecord>>,
+            removedObjects: Collection<String>): Unit {
+        // The transaction may be re-run, so it must not have side effects.
+        // Services are started and stopped once it has been committed.
+        val update = objectDb.transaction { tx ->
+            val replaced = mutableListOf<ProviderObjectRecord>()
+            val inserted = mutableListOf<ProviderObjectRecord>()
+
+            objects.forEach { (name, new) ->
+                tx.compute(name) { previous ->
+                    if (previous == null || changed(new.config, previous.config)) {
+                        previous?.let { replaced.add(it) }
+                        inserted.add(new)
+                        new
+                    } else {
+                        previous
                     }
                 }
-
-        removedObjects.forEach {
-            objectDb.remove(it).ifPresent {
-                it.styxService.stop()
             }
+
+            removedObjects.forEach { name -> tx.remove(name).ifPresent { replaced.add(it) } }
+
+            ServiceUpdate(inserted, replaced)
+        }
+
+        update.inserted.forEach { it.styxService.start() }
+
+        update.replaced.forEach { service ->
+            service.styxService.stop()
+                    .whenComplete { _, throwable ->
+                        if (throwable != null) {
+                            val stack = StringWriter().let {
+                                throwable.printStackTrace(PrintWriter(it))
+                                it.toString()
+                            }
+                            LOGGER.warn("Service failed to terminate cleanly. cause=$throwable stack=$stack")
+                        }
+                    }
         }
     }
 
+    private class RoutingObjectUpdate(val inserted: Set<String>, val replaced: List<RoutingObjectRecord>)
+
+    private class ServiceUpdate(val inserted: List<ProviderObjectRecord>, val replaced: List<ProviderObjectRecord>)
+
     private class DuplicateObjectException(message: String): RuntimeException(message)
 }
 
+/**
+ * An application from the origins file, with the objects derived from it.
+ */
+private class ParsedApp(
+        val node: JsonNode,
+        val app: BackendService,
+        val routingObjects: List<StyxObjectDefinition>,
+        val healthMonitor: Pair<String, ProviderObjectRecord>?)
+
+/**
+ * The origins file as last applied. Applications are keyed by their id, in file order.
+ */
+private class AppliedConfig(
+        val apps: Map<String, ParsedApp>,
+        val routes: List<Pair<String, String>>,
+        val router: StyxObjectDefinition?) {
+
+    val objectNames: Set<String> by lazy {
+        apps.values.flatMap { parsed -> parsed.routingObjects.map { it.name() } }.toSet() + listOfNotNull(router?.name())
+    }
+
+    val healthMonitorNames: Set<String>
+        get() = apps.values.mapNotNull { it.healthMonitor?.first }.toSet()
+
+    companion object {
+        val EMPTY = AppliedConfig(mapOf(), listOf(), null)
+    }
+}
+
+/**
+ * The structural difference between two versions of the origins file.
+ *
+ * An application is modified when its parsed YAML tree differs. Only the objects of added
+ * and modified applications are applied, together with the path prefix router when the
+ * application paths change.
+ */
+private class ConfigChanges(previous: AppliedConfig, next: AppliedConfig) {
+    val added = next.apps.keys - previous.apps.keys
+    val removed = previous.apps.keys - next.apps.keys
+    val modified = next.apps.filter { (id, parsed) -> previous.apps[id].let { it != null && it !== parsed } }.keys
+
+    private val changedApps = next.apps.filterKeys { it in added || it in modified }.values
+
+    val routingObjects = changedApps.flatMap { it.routingObjects } + listOfNotNull(next.router?.takeIf { it !== previous.router })
+    val healthMonitors = changedApps.mapNotNull { it.healthMonitor }
+    val removedHealthMonitors = previous.healthMonitorNames - next.healthMonitorNames
+
+    fun isEmpty() = removed.isEmpty() && routingObjects.isEmpty()
+}
+
 internal data class YamlFileConfigurationServiceConfig(
         val originsFile: String,
         val ingressObject: String = "",
@@ -0,0 +1,120 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.admin.handlers;
+
+import com.hotels.styx.api.HttpResponse;
+import com.hotels.styx.api.LiveHttpRequest;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+
+import static com.hotels.styx.api.Buffers.toByteBuf;
+import static com.hotels.styx.api.HttpHeaderNames.ACCEPT_ENCODING;
+import static com.hotels.styx.api.HttpHeaderNames.CONTENT_ENCODING;
+import static com.hotels.styx.api.HttpResponseStatus.OK;
+import static com.hotels.styx.api.LiveHttpRequest.get;
+import static com.hotels.styx.support.Support.requestContext;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+public class PrometheusHandlerTest {
+    private PrometheusMeterRegistry registry;
+    private PrometheusHandler handler;
+
+    @BeforeEach
+    public void setUp() {
+        registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        handler = new PrometheusHandler(registry);
+    }
+
+    @Test
+    public void exposesRegisteredMetrics() {
+        registry.counter("foo").increment();
+
+        HttpResponse response = scrape(get("/metrics").build());
+
+        assertThat(response.status(), is(OK));
+        assertThat(response.header(CONTENT_ENCODING).isPresent(), is(false));
+        assertThat(response.bodyAs(UTF_8), containsString("foo_total 1.0"));
+    }
+
+    @Test
+    public void filtersMetricFamiliesByName() {
+        registry.counter("foo").increment();
+        registry.counter("bar").increment();
+
+        HttpResponse response = scrape(get("/metrics?name%5B%5D=bar_total").build());
+
+        assertThat(response.bodyAs(UTF_8), containsString("bar_total 1.0"));
+        assertThat(response.bodyAs(UTF_8), not(containsString("foo_total")));
+    }
+
+    @Test
+    public void compressesScrapeWhenClientAcceptsGzip() throws IOException {
+        registry.counter("foo").increment();
+
+        HttpResponse response = scrape(get("/metrics").header(ACCEPT_ENCODING, "deflate, gzip").build());
+
+        assertThat(response.header(CONTENT_ENCODING).get(), is("gzip"));
+        assertThat(gunzip(response.body()), containsString("foo_total 1.0"));
+    }
+
+    @Test
+    public void doesNotCompressWhenGzipIsRejected() {
+        registry.counter("foo").increment();
+
+        HttpResponse response = scrape(get("/metrics").header(ACCEPT_ENCODING, "gzip;q=0").build());
+
+        assertThat(response.header(CONTENT_ENCODING).isPresent(), is(false));
+        assertThat(response.bodyAs(UTF_8), containsString("foo_total 1.0"));
+    }
+
+    @Test
+    public void streamsLargeScrapesInSeveralChunks() {
+        for (int i = 0; i < 5000; i++) {
+            registry.counter("requests" + i, "origin", "origin-" + i).increment();
+        }
+
+        Long chunks = Mono.from(handler.handle(get("/metrics").build(), requestContext()))
+                .flatMap(response -> Flux.from(response.body()).doOnNext(buffer -> toByteBuf(buffer).release()).count())
+                .block();
+
+        assertThat(chunks > 1, is(true));
+        assertThat(scrape(get("/metrics").build()).bodyAs(UTF_8), containsString("requests4999_total{origin=\"origin-4999\",}"));
+    }
+
+    private HttpResponse scrape(LiveHttpRequest request) {
+        return Mono.from(handler.handle(request, requestContext()))
+                .flatMap(response -> Mono.from(response.aggregate(10 * 1024 * 1024)))
+                .block();
+    }
+
+    private static String gunzip(byte[] content) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(content))) {
+            return new String(in.readAllBytes(), UTF_8);
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -15,10 +15,14 @@
  */
 package com.hotels.styx.infrastructure.configuration.yaml;
 
+import com.hotels.styx.NettyTransport;
+import com.hotels.styx.common.CompressionConfig;
 import com.hotels.styx.server.HttpsConnectorConfig;
 import com.hotels.styx.server.netty.NettyServerConfig;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+
 import static java.util.stream.StreamSupport.stream;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
@@ -52,6 +56,86 @@ public class NettyServerConfigTest {
         assertThat(serverConfig.compressResponses(), is(true));
     }
 
+    @Test
+    public void readsAcceptorSettings() {
+        String yaml = "" +
+                "proxy:\n" +
+                "  nioAcceptorBacklog: 4096\n" +
+                "  acceptorCount: 4\n" +
+                "  connectors:\n" +
+                "      http:\n" +
+                "        port: 8080\n";
+
+        NettyServerConfig serverConfig = new YamlConfig(yaml).get("proxy", NettyServerConfig.class).get();
+
+        assertThat(serverConfig.nioAcceptorBacklog(), is(4096));
+        assertThat(serverConfig.acceptorCount(), is(4));
+    }
+
+    @Test
+    public void defaultsToSingleAcceptor() {
+        String yaml = "" +
+                "proxy:\n" +
+                "  connectors:\n" +
+                "      http:\n" +
+                "        port: 8080\n";
+
+        NettyServerConfig serverConfig = new YamlConfig(yaml).get("proxy", NettyServerConfig.class).get();
+
+        assertThat(serverConfig.nioAcceptorBacklog(), is(1024));
+        assertThat(serverConfig.acceptorCount(), is(1));
+    }
+
+    @Test
+    public void readsTransport() {
+        String yaml = "" +
+                "proxy:\n" +
+                "  transport: io_uring\n" +
+                "  connectors:\n" +
+                "      http:\n" +
+                "        port: 8080\n";
+
+        NettyServerConfig serverConfig = new YamlConfig(yaml).get("proxy", NettyServerConfig.class).get();
+
+        assertThat(serverConfig.transport(), is(NettyTransport.IO_URING));
+    }
+
+    @Test
+    public void readsCompressionSettings() {
+        String yaml = "" +
+                "proxy:\n" +
+                "  compressResponses: true\n" +
+                "  compression:\n" +
+                "    encodings: [zstd, gzip]\n" +
+                "    contentTypes: [text/html]\n" +
+                "    minSizeBytes: 1024\n" +
+                "    gzipLevel: 4\n" +
+                "    zstdLevel: 6\n" +
+                "    precompressedCacheSizeBytes: 1048576\n" +
+                "  connectors:\n" +
+                "      http:\n" +
+                "        port: 8080\n";
+
+        NettyServerConfig serverConfig = new YamlConfig(yaml).get("proxy", NettyServerConfig.class).get();
+
+        assertThat(serverConfig.compression(), is(new CompressionConfig(List.of("zstd", "gzip"), List.of("text/html"), 1024, 4, null, 6, 1048576)));
+        assertThat(serverConfig.compression().brotliLevel(), is(CompressionConfig.DEFAULT_BROTLI_LEVEL));
+    }
+
+    @Test
+    public void usesDefaultCompressionSettings() {
+        String yaml = "" +
+                "proxy:\n" +
+                "  compressResponses: true\n" +
+                "  connectors:\n" +
+                "      http:\n" +
+                "        port: 8080\n";
+
+        NettyServerConfig serverConfig = new YamlConfig(yaml).get("proxy", NettyServerConfig.class).get();
+
+        assertThat(serverConfig.compression(), is(CompressionConfig.defaults()));
+    }
+
     private HttpsConnectorConfig httpsConnectorConfig(NettyServerConfig serverConfig) {
         return stream(serverConfig.connectors().spliterator(), false)
                 .filter(object -> object instanceof HttpsConnectorConfig)
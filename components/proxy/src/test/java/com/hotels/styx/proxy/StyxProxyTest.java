@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -95,6 +95,36 @@ public class StyxProxyTest extends SSLSetup {
         assertThat("Server should not be running", !server.isRunning());
     }
 
+    @Test
+    public void startsServerWithMultipleAcceptors() {
+        HttpInterceptor echoInterceptor = (request, chain) -> textResponse("Response from http connector");
+
+        InetServer styxServer = newBuilder()
+                .setProtocolConnector(connector(0))
+                .bossExecutor(NettyExecutor.create("Test-Server-Boss", 4))
+                .workerExecutor(NettyExecutor.create("Test-Server-Worker", 0))
+                .acceptorBacklog(256)
+                .acceptorCount(4)
+                .handler(new HttpInterceptorPipeline(
+                        List.of(echoInterceptor),
+                        (request, context) -> new HttpAggregator(new StandardHttpRouter()).handle(request, context),
+                        false))
+                .build();
+
+        Service server = StyxServers.toGuavaService(styxServer);
+
+        server.startAsync().awaitRunning();
+        assertThat("Server should be running", server.isRunning());
+
+        for (int i = 0; i < 10; i++) {
+            HttpResponse response = get("http://localhost:" + styxServer.inetAddress().getPort());
+            assertThat(response.bodyAs(UTF_8), containsString("Response from http connector"));
+        }
+
+        server.stopAsync().awaitTerminated();
+        assertThat("Server should not be running", !server.isRunning());
+    }
+
     private Eventual<LiveHttpResponse> textResponse(String body) {
         return Eventual.of(HttpResponse.response(OK)
                 .body("Response from http connector", UTF_8)
@@ -0,0 +1,88 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.proxy.accesslog;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AccessLogRingBufferTest {
+
+    @Test
+    public void drainsRecordsInPublicationOrder() {
+        AccessLogRingBuffer ring = new AccessLogRingBuffer(4);
+
+        publish(ring, "a", 200);
+        publish(ring, "b", 404);
+
+        List<String> drained = new ArrayList<>();
+        int count = ring.drain(record -> drained.add(record.requestId() + ":" + record.status()), 10);
+
+        assertThat(count, is(2));
+        assertThat(drained, contains("a:200", "b:404"));
+    }
+
+    @Test
+    public void dropsAndCountsRecordsWhenFull() {
+        AccessLogRingBuffer ring = new AccessLogRingBuffer(2);
+
+        assertThat(publish(ring, "a", 200), is(true));
+        assertThat(publish(ring, "b", 200), is(true));
+        assertThat(publish(ring, "c", 200), is(false));
+
+        assertThat(ring.droppedCount(), is(1L));
+    }
+
+    @Test
+    public void reusesSlotsOnceDrained() {
+        AccessLogRingBuffer ring = new AccessLogRingBuffer(2);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(publish(ring, "id-" + i, 200), is(true));
+            List<Object> drained = new ArrayList<>();
+            ring.drain(record -> drained.add(record.requestId()), 10);
+            assertThat(drained, contains("id-" + i));
+        }
+
+        assertThat(ring.droppedCount(), is(0L));
+    }
+
+    @Test
+    public void drainsNoMoreThanLimit() {
+        AccessLogRingBuffer ring = new AccessLogRingBuffer(4);
+        publish(ring, "a", 200);
+        publish(ring, "b", 200);
+        publish(ring, "c", 200);
+
+        assertThat(ring.drain(record -> { }, 2), is(2));
+        assertThat(ring.drain(record -> { }, 2), is(1));
+    }
+
+    @Test
+    public void rejectsCapacityThatIsNotPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new AccessLogRingBuffer(3));
+    }
+
+    private static boolean publish(AccessLogRingBuffer ring, String id, int status) {
+        return ring.publish(1000L, id, "GET", status, 0, 100, "app-01", false, 10, 20);
+    }
+}
@@ -0,0 +1,143 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.proxy.accesslog;
+
+import com.hotels.styx.StyxConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AccessLogTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    public void writesTextRecords() throws IOException {
+        Path file = directory.resolve("access.log");
+        AccessLog accessLog = new AccessLog(new AccessLogRingBuffer(16), AccessLogFormat.TEXT, new RotatingFileChannel(file, 1024 * 1024, 2));
+
+        accessLog.publish(0L, "req-1", "GET", 200, 0, 1234, "app-01", true, 1_000_000, 5_000_000);
+        accessLog.close();
+
+        List<String> lines = Files.readAllLines(file, UTF_8);
+        assertThat(lines.size(), is(1));
+        assertThat(lines.get(0), is("1970-01-01T00:00:00Z requestId=req-1 method=GET status=200 origin=app-01 secure=true "
+                + "requestBytes=0 responseBytes=1234 timeToFirstByteMicros=1000 latencyMicros=5000"));
+        assertThat(accessLog.writtenCount(), is(1L));
+    }
+
+    @Test
+    public void writesJsonRecords() throws IOException {
+        Path file = directory.resolve("access.json");
+        AccessLog accessLog = new AccessLog(new AccessLogRingBuffer(16), AccessLogFormat.JSON, new RotatingFileChannel(file, 1024 * 1024, 2));
+
+        accessLog.publish(5L, "req-\"1\"", "POST", 502, 10, 0, null, false, 0, 3_000);
+        accessLog.close();
+
+        assertThat(Files.readString(file, UTF_8), is("{\"timestamp\":5,\"requestId\":\"req-\\\"1\\\"\",\"method\":\"POST\",\"status\":502,"
+                + "\"origin\":null,\"secure\":false,\"requestBytes\":10,\"responseBytes\":0,\"timeToFirstByteMicros\":0,\"latencyMicros\":3}\n"));
+    }
+
+    @Test
+    public void writesLengthPrefixedBinaryRecords() throws IOException {
+        Path file = directory.resolve("access.bin");
+        AccessLog accessLog = new AccessLog(new AccessLogRingBuffer(16), AccessLogFormat.BINARY, new RotatingFileChannel(file, 1024 * 1024, 2));
+
+        accessLog.publish(7L, "r", "GET", 200, 1, 2, "o", true, 3, 4);
+        accessLog.publish(8L, "s", "GET", 404, 1, 2, "o", false, 3, 4);
+        accessLog.close();
+
+        ByteBuffer content = ByteBuffer.wrap(Files.readAllBytes(file));
+        int length = content.getInt();
+        assertThat(content.getLong(), is(7L));
+        assertThat((int) content.getShort(), is(200));
+        assertThat((int) content.get(), is(1));
+
+        content.position(Integer.BYTES + length);
+        content.getInt();
+        assertThat(content.getLong(), is(8L));
+        assertThat((int) content.getShort(), is(404));
+    }
+
+    @Test
+    public void countsEntriesPublishedAfterCloseAsDropped() throws IOException {
+        Path file = directory.resolve("access.log");
+        AccessLog accessLog = new AccessLog(new AccessLogRingBuffer(16), AccessLogFormat.TEXT, new RotatingFileChannel(file, 1024 * 1024, 2));
+
+        accessLog.publish(0L, "req-1", "GET", 200, 0, 0, null, false, 0, 0);
+        accessLog.close();
+
+        assertThat(accessLog.publish(1L, "req-2", "GET", 200, 0, 0, null, false, 0, 0), is(false));
+        assertThat(accessLog.writtenCount(), is(1L));
+        assertThat(accessLog.droppedCount(), is(1L));
+        assertThat(Files.readAllLines(file, UTF_8).size(), is(1));
+    }
+
+    @Test
+    public void acceptsMaximumFileSizeBeyondIntegerRange() {
+        StyxConfig config = StyxConfig.fromYaml(""
+                + "request-logging:\n"
+                + "  access:\n"
+                + "    enabled: true\n"
+                + "    path: " + directory.resolve("access.log") + "\n"
+                + "    maxFileSize: 5000000000\n", false);
+
+        AccessLog accessLog = AccessLog.fromConfig(config).orElseThrow();
+
+        accessLog.close();
+    }
+
+    @Test
+    public void rejectsUnknownFormatNamingTheSetting() {
+        StyxConfig config = StyxConfig.fromYaml(""
+                + "request-logging:\n"
+                + "  access:\n"
+                + "    enabled: true\n"
+                + "    path: " + directory.resolve("access.log") + "\n"
+                + "    format: XML\n", false);
+
+        Exception e = assertThrows(IllegalArgumentException.class, () -> AccessLog.fromConfig(config));
+
+        assertThat(e.getMessage(), containsString("request-logging.access.format='XML'"));
+    }
+
+    @Test
+    public void rotatesFileWhenMaximumSizeIsReached() throws IOException {
+        Path file = directory.resolve("access.log");
+        RotatingFileChannel channel = new RotatingFileChannel(file, 10, 2);
+
+        for (int i = 0; i < 4; i++) {
+            channel.write(ByteBuffer.wrap(("line-" + i + "\n").getBytes(UTF_8)));
+        }
+        channel.close();
+
+        assertThat(Files.readString(file, UTF_8), containsString("line-3"));
+        assertThat(Files.readString(directory.resolve("access.log.1"), UTF_8), containsString("line-2"));
+        assertThat(Files.readString(directory.resolve("access.log.2"), UTF_8), containsString("line-1"));
+        assertThat(Files.exists(directory.resolve("access.log.3")), is(false));
+    }
+}
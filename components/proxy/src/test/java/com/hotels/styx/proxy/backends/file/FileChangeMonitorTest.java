@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -24,7 +24,9 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 import java.time.Duration;
+import java.time.Instant;
 
 import static ch.qos.logback.classic.Level.INFO;
 import static java.lang.String.format;
@@ -32,10 +34,14 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.nio.file.Files.copy;
 import static java.nio.file.Files.createTempDirectory;
 import static java.nio.file.Files.delete;
+import static java.nio.file.Files.move;
+import static java.nio.file.Files.setLastModifiedTime;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.matchesPattern;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.after;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
@@ -140,6 +146,42 @@ public class FileChangeMonitorTest {
         verify(listener, timeout(3000).times(3)).fileChanged();
     }
 
+    @Test
+    public void detectsFilesReplacedByAtomicRename() throws Exception {
+        monitor.start(listener);
+        verify(listener, timeout(3000).times(1)).fileChanged();
+
+        Path staged = tempDir.resolve("origins.yml.tmp");
+        write(staged, "content-v2");
+        move(staged, monitoredFile, ATOMIC_MOVE, REPLACE_EXISTING);
+
+        verify(listener, timeout(3000).times(2)).fileChanged();
+    }
+
+    @Test
+    public void detectsChangesBetweenPolls() throws Exception {
+        FileChangeMonitor monitor = new FileChangeMonitor(monitoredFile.toString(), Duration.ofMillis(0), Duration.ofHours(1));
+        try {
+            monitor.start(listener);
+            verify(listener, timeout(3000).times(1)).fileChanged();
+
+            write(monitoredFile, "content-v2");
+            verify(listener, timeout(3000).times(2)).fileChanged();
+        } finally {
+            monitor.stop();
+        }
+    }
+
+    @Test
+    public void ignoresChangesThatLeaveContentIntact() throws Exception {
+        monitor.start(listener);
+        verify(listener, timeout(3000).times(1)).fileChanged();
+
+        setLastModifiedTime(monitoredFile, FileTime.from(Instant.now().plusSeconds(10)));
+
+        verify(listener, after(500).times(1)).fileChanged();
+    }
+
     void write(Path path, String text) throws Exception {
         LOGGER.info("Writing to temporary file '{}", path);
         LOGGER.info(text);
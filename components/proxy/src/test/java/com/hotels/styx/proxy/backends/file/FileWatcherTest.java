@@ -0,0 +1,90 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.proxy.backends.file;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.function.Consumer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createTempDirectory;
+import static java.nio.file.Files.deleteIfExists;
+import static java.nio.file.Files.write;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+public class FileWatcherTest {
+    private final FileWatcher watcher = new FileWatcher(Duration.ofMillis(200));
+
+    private Path tempDir;
+    private Path watchedFile;
+    private Path siblingFile;
+    private Consumer<Boolean> onChange;
+    private FileWatcher.Watch watch;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        tempDir = createTempDirectory("");
+        watchedFile = tempDir.resolve("origins.yml");
+        siblingFile = tempDir.resolve("other.yml");
+        write(watchedFile, "content-v0".getBytes(UTF_8));
+        onChange = mock(Consumer.class);
+        watch = watcher.watch(watchedFile, onChange);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        watch.cancel();
+        deleteIfExists(watchedFile);
+        deleteIfExists(siblingFile);
+        deleteIfExists(tempDir);
+    }
+
+    @Test
+    public void debouncesBurstsOfChanges() throws Exception {
+        for (int i = 1; i < 5; i++) {
+            write(watchedFile, ("content-v" + i).getBytes(UTF_8));
+        }
+
+        verify(onChange, timeout(3000)).accept(true);
+        verify(onChange, after(500).times(1)).accept(true);
+    }
+
+    @Test
+    public void reportsChangesToOtherFilesInTheDirectory() throws Exception {
+        write(siblingFile, "other".getBytes(UTF_8));
+
+        verify(onChange, timeout(3000)).accept(false);
+        verify(onChange, never()).accept(true);
+    }
+
+    @Test
+    public void stopsReportingChangesWhenCancelled() throws Exception {
+        watch.cancel();
+
+        write(watchedFile, "content-v1".getBytes(UTF_8));
+
+        verify(onChange, after(500).never()).accept(true);
+    }
+}
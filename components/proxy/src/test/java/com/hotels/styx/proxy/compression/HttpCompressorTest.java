@@ -0,0 +1,257 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.proxy.compression;
+
+import com.aayushatharva.brotli4j.decoder.BrotliInputStream;
+import com.github.luben.zstd.ZstdInputStream;
+import com.hotels.styx.common.CompressionConfig;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static io.netty.handler.codec.http.HttpHeaderNames.ACCEPT_ENCODING;
+import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_ENCODING;
+import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_LENGTH;
+import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_TYPE;
+import static io.netty.handler.codec.http.HttpHeaderNames.ETAG;
+import static io.netty.handler.codec.http.HttpHeaderNames.HOST;
+import static io.netty.handler.codec.http.HttpMethod.GET;
+import static io.netty.handler.codec.http.HttpResponseStatus.OK;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class HttpCompressorTest {
+    private static final String BODY = "Hello from http server! Hello from http server! Hello from http server!";
+
+    @Test
+    public void selectsEncodingByQValues() {
+        List<ContentEncoding> offered = List.of(ContentEncoding.GZIP, ContentEncoding.DEFLATE);
+
+        assertThat(ContentEncoding.select("gzip;q=0.5, deflate", offered), is(ContentEncoding.DEFLATE));
+        assertThat(ContentEncoding.select("gzip, deflate;q=0.8", offered), is(ContentEncoding.GZIP));
+        assertThat(ContentEncoding.select("deflate, gzip", offered), is(ContentEncoding.GZIP));
+        assertThat(ContentEncoding.select("*;q=0.5, gzip;q=0", offered), is(ContentEncoding.DEFLATE));
+        assertThat(ContentEncoding.select("gzip;q=0, deflate;q=0", offered), is(nullValue()));
+        assertThat(ContentEncoding.select("7z, identity", offered), is(nullValue()));
+    }
+
+    @Test
+    public void compressesWithGzip() throws IOException {
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpCompressor());
+
+        Exchange exchange = exchange(channel, "7z, gzip", response(BODY, "text/plain"));
+
+        assertThat(exchange.response.headers().get(CONTENT_ENCODING), is("gzip"));
+        assertThat(decode(new GZIPInputStream(exchange.body())), is(BODY));
+    }
+
+    @Test
+    public void offersOnlyGzipAndDeflateByDefault() {
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpCompressor());
+
+        Exchange exchange = exchange(channel, "br, zstd, gzip", response(BODY, "text/plain"));
+
+        assertThat(exchange.response.headers().get(CONTENT_ENCODING), is("gzip"));
+    }
+
+    @Test
+    public void compressesWithBrotli() throws IOException {
+        assumeTrue(ContentEncoding.available(List.of("br")).size() == 1);
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpCompressor(config(List.of("br", "gzip"), 0, 0), new PrecompressedVariants(0)));
+
+        Exchange exchange = exchange(channel, "gzip, br", response(BODY, "text/plain"));
+
+        assertThat(exchange.response.headers().get(CONTENT_ENCODING), is("br"));
+        assertThat(decode(new BrotliInputStream(exchange.body())), is(BODY));
+    }
+
+    @Test
+    public void compressesWithZstd() throws IOException {
+        assumeTrue(ContentEncoding.available(List.of("zstd")).size() == 1);
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpCompressor(config(List.of("gzip", "zstd"), 0, 0), new PrecompressedVariants(0)));
+
+        Exchange exchange = exchange(channel, "gzip;q=0.9, zstd", response(BODY, "text/plain"));
+
+        assertThat(exchange.response.headers().get(CONTENT_ENCODING), is("zstd"));
+        assertThat(decode(new ZstdInputStream(exchange.body())), is(BODY));
+    }
+
+    @Test
+    public void matchesContentTypeWithoutParameters() throws IOException {
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpCompressor());
+
+        Exchange exchange = exchange(channel, "gzip", response(BODY, "Text/HTML; charset=UTF-8"));
+
+        assertThat(exchange.response.headers().get(CONTENT_ENCODING), is("gzip"));
+        assertThat(decode(new GZIPInputStream(exchange.body())), is(BODY));
+    }
+
+    @Test
+    public void doesNotCompressOtherContentTypes() throws IOException {
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpCompressor());
+
+        Exchange exchange = exchange(channel, "gzip", response(BODY, "image/jpeg"));
+
+        assertThat(exchange.response.headers().get(CONTENT_ENCODING), is(nullValue()));
+        assertThat(decode(exchange.body()), is(BODY));
+    }
+
+    @Test
+    public void doesNotCompressResponsesBelowMinimumSize() throws IOException {
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpCompressor(config(List.of("gzip"), BODY.length() + 1, 0), new PrecompressedVariants(0)));
+
+        Exchange exchange = exchange(channel, "gzip", response(BODY, "text/plain"));
+
+        assertThat(exchange.response.headers().get(CONTENT_ENCODING), is(nullValue()));
+        assertThat(decode(exchange.body()), is(BODY));
+    }
+
+    @Test
+    public void doesNotCompressEncodedResponses() throws IOException {
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpCompressor());
+        FullHttpResponse response = response(BODY, "text/plain");
+        response.headers().set(CONTENT_ENCODING, "gzip");
+
+        Exchange exchange = exchange(channel, "gzip", response);
+
+        assertThat(exchange.response.headers().get(CONTENT_ENCODING), is("gzip"));
+        assertThat(decode(exchange.body()), is(BODY));
+    }
+
+    @Test
+    public void reusesPrecompressedVariants() throws IOException {
+        PrecompressedVariants variants = new PrecompressedVariants(1024 * 1024);
+        CompressionConfig config = config(List.of("gzip"), 0, 1024 * 1024);
+
+        FullHttpResponse first = response(BODY, "text/plain");
+        first.headers().set(ETAG, "\"v1\"");
+        exchange(new EmbeddedChannel(new HttpCompressor(config, variants)), "gzip", first);
+
+        // The same validator means the same body, so a kept variant is sent without looking at the body.
+        FullHttpResponse second = response(BODY.toUpperCase(), "text/plain");
+        second.headers().set(ETAG, "\"v1\"");
+        Exchange exchange = exchange(new EmbeddedChannel(new HttpCompressor(config, variants)), "gzip", second);
+
+        assertThat(variants.variants(), is(1));
+        assertThat(decode(new GZIPInputStream(exchange.body())), is(BODY));
+    }
+
+    @Test
+    public void keepsVariantsOfValidatedResponsesOnly() {
+        PrecompressedVariants variants = new PrecompressedVariants(1024 * 1024);
+        CompressionConfig config = config(List.of("gzip"), 0, 1024 * 1024);
+
+        FullHttpResponse weak = response(BODY, "text/plain");
+        weak.headers().set(ETAG, "W/\"v1\"");
+        exchange(new EmbeddedChannel(new HttpCompressor(config, variants)), "gzip", weak);
+        exchange(new EmbeddedChannel(new HttpCompressor(config, variants)), "gzip", response(BODY, "text/plain"));
+
+        assertThat(variants.variants(), is(0));
+    }
+
+    @Test
+    public void compressesChangedResponsesAfresh() throws IOException {
+        PrecompressedVariants variants = new PrecompressedVariants(1024 * 1024);
+        CompressionConfig config = config(List.of("gzip"), 0, 1024 * 1024);
+
+        FullHttpResponse first = response(BODY, "text/plain");
+        first.headers().set(ETAG, "\"v1\"");
+        exchange(new EmbeddedChannel(new HttpCompressor(config, variants)), "gzip", first);
+
+        FullHttpResponse second = response(BODY.toUpperCase(), "text/plain");
+        second.headers().set(ETAG, "\"v2\"");
+        Exchange exchange = exchange(new EmbeddedChannel(new HttpCompressor(config, variants)), "gzip", second);
+
+        assertThat(variants.variants(), is(2));
+        assertThat(decode(new GZIPInputStream(exchange.body())), is(BODY.toUpperCase()));
+    }
+
+    private static CompressionConfig config(List<String> encodings, int minSizeBytes, int precompressedCacheSizeBytes) {
+        return new CompressionConfig(encodings, null, minSizeBytes, null, null, null, precompressedCacheSizeBytes);
+    }
+
+    private static FullHttpResponse response(String body, String contentType) {
+        FullHttpResponse response = new DefaultFullHttpResponse(HTTP_1_1, OK, Unpooled.copiedBuffer(body, UTF_8));
+        response.headers().set(CONTENT_TYPE, contentType);
+        response.headers().set(CONTENT_LENGTH, response.content().readableBytes());
+        return response;
+    }
+
+    private static Exchange exchange(EmbeddedChannel channel, String acceptEncoding, FullHttpResponse response) {
+        DefaultFullHttpRequest request = new DefaultFullHttpRequest(HTTP_1_1, GET, "/page");
+        request.headers().set(HOST, "example.com");
+        request.headers().set(ACCEPT_ENCODING, acceptEncoding);
+        channel.writeInbound(request);
+        ReferenceCountUtil.release(channel.readInbound());
+
+        channel.writeOutbound(response);
+
+        HttpResponse head = null;
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (Object msg = channel.readOutbound(); msg != null; msg = channel.readOutbound()) {
+            if (msg instanceof HttpResponse) {
+                head = (HttpResponse) msg;
+            }
+            if (msg instanceof HttpContent) {
+                ByteBuf content = ((HttpContent) msg).content();
+                byte[] bytes = new byte[content.readableBytes()];
+                content.readBytes(bytes);
+                body.writeBytes(bytes);
+            }
+            ReferenceCountUtil.release(msg);
+        }
+        channel.finishAndReleaseAll();
+        return new Exchange(head, body.toByteArray());
+    }
+
+    private static String decode(InputStream stream) throws IOException {
+        try (InputStream in = stream) {
+            return new String(in.readAllBytes(), UTF_8);
+        }
+    }
+
+    private static final class Exchange {
+        private final HttpResponse response;
+        private final byte[] body;
+
+        private Exchange(HttpResponse response, byte[] body) {
+            this.response = response;
+            this.body = body;
+        }
+
+        private InputStream body() {
+            return new ByteArrayInputStream(body);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.proxy.interceptors;
+
+import com.hotels.styx.api.HttpInterceptor;
+import com.hotels.styx.api.HttpInterceptor.Chain;
+import com.hotels.styx.api.LiveHttpRequest;
+import com.hotels.styx.client.StyxHeaderConfig;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static com.hotels.styx.api.HttpHeaderNames.CONNECTION;
+import static com.hotels.styx.api.HttpHeaderNames.CONTENT_LENGTH;
+import static com.hotels.styx.api.HttpHeaderNames.CONTENT_TYPE;
+import static com.hotels.styx.api.HttpHeaderNames.HOST;
+import static com.hotels.styx.api.HttpHeaderNames.USER_AGENT;
+import static com.hotels.styx.api.HttpHeaderNames.VIA;
+import static com.hotels.styx.api.HttpHeaderNames.X_FORWARDED_FOR;
+import static com.hotels.styx.api.LiveHttpRequest.get;
+import static com.hotels.styx.api.LiveHttpResponse.response;
+import static com.hotels.styx.proxy.interceptors.HeaderRewritingInterceptorTest.chain;
+import static com.hotels.styx.proxy.interceptors.ReturnResponseChain.returnsResponse;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Compares the bytes allocated per proxied exchange by the built-in header edits,
+ * applied by the chained interceptors and by {@link HeaderRewritingInterceptor}.
+ * <p>
+ * Allocation counts vary between runs with JIT and escape analysis decisions, so each side is measured
+ * over a few short rounds and the lowest count is kept. The fused rewrite must allocate strictly less.
+ */
+public class HeaderRewritingAllocationTest {
+    private static final int WARM_UP = 5_000;
+    private static final int ITERATIONS = 2_000;
+    private static final int ROUNDS = 3;
+
+    private final LiveHttpRequest request = get("/search?q=styx")
+            .header(HOST, "www.example.com")
+            .header(USER_AGENT, "Mozilla/5.0")
+            .header("Accept", "text/html")
+            .header(CONNECTION, "keep-alive")
+            .header(X_FORWARDED_FOR, "172.21.175.59")
+            .build();
+
+    private final Chain origin = returnsResponse(response()
+            .header(CONTENT_TYPE, "text/html")
+            .header(CONTENT_LENGTH, "1024")
+            .header(CONNECTION, "keep-alive")
+            .header(VIA, "1.1 origin")
+            .build());
+
+    private final Chain chained = chain(List.of(
+            new UnexpectedRequestContentLengthRemover(),
+            new ViaHeaderAppendingInterceptor(),
+            new HopByHopHeadersRemovingInterceptor(),
+            new RequestEnrichingInterceptor(new StyxHeaderConfig())), 0, origin);
+
+    private final HttpInterceptor fused = new HeaderRewritingInterceptor(null, new StyxHeaderConfig());
+
+    @Test
+    public void fusedRewriteAllocatesLessPerExchange() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        long chainedBytes = bytesPerExchange(threads, () -> Mono.from(chained.proceed(request)).block());
+        long fusedBytes = bytesPerExchange(threads, () -> Mono.from(fused.intercept(request, origin)).block());
+
+        assertThat(fusedBytes, lessThan(chainedBytes));
+    }
+
+    private static long bytesPerExchange(com.sun.management.ThreadMXBean threads, Runnable exchange) {
+        for (int i = 0; i < WARM_UP; i++) {
+            exchange.run();
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long lowest = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long before = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < ITERATIONS; i++) {
+                exchange.run();
+            }
+            lowest = Math.min(lowest, (threads.getThreadAllocatedBytes(threadId) - before) / ITERATIONS);
+        }
+        return lowest;
+    }
+}
@@ -0,0 +1,165 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.proxy.interceptors;
+
+import com.hotels.styx.api.Eventual;
+import com.hotels.styx.api.HttpHeaders;
+import com.hotels.styx.api.HttpInterceptor;
+import com.hotels.styx.api.HttpInterceptor.Chain;
+import com.hotels.styx.api.LiveHttpRequest;
+import com.hotels.styx.api.LiveHttpResponse;
+import com.hotels.styx.client.StyxHeaderConfig;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static com.hotels.styx.api.HttpHeaderNames.CONNECTION;
+import static com.hotels.styx.api.HttpHeaderNames.CONTENT_LENGTH;
+import static com.hotels.styx.api.HttpHeaderNames.KEEP_ALIVE;
+import static com.hotels.styx.api.HttpHeaderNames.TRANSFER_ENCODING;
+import static com.hotels.styx.api.HttpHeaderNames.VIA;
+import static com.hotels.styx.api.HttpHeaderNames.X_FORWARDED_FOR;
+import static com.hotels.styx.api.HttpHeaderNames.X_FORWARDED_PROTO;
+import static com.hotels.styx.api.HttpVersion.HTTP_1_0;
+import static com.hotels.styx.api.LiveHttpRequest.get;
+import static com.hotels.styx.api.LiveHttpResponse.response;
+import static com.hotels.styx.proxy.interceptors.RequestRecordingChain.requestRecordingChain;
+import static com.hotels.styx.proxy.interceptors.ReturnResponseChain.returnsResponse;
+import static com.hotels.styx.support.matchers.IsOptional.isAbsent;
+import static com.hotels.styx.support.matchers.IsOptional.isValue;
+import static java.lang.String.CASE_INSENSITIVE_ORDER;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class HeaderRewritingInterceptorTest {
+    private final HttpInterceptor fused = new HeaderRewritingInterceptor("styx", new StyxHeaderConfig());
+
+    private final List<HttpInterceptor> chained = List.of(
+            new UnexpectedRequestContentLengthRemover(),
+            new ViaHeaderAppendingInterceptor("styx"),
+            new HopByHopHeadersRemovingInterceptor(),
+            new RequestEnrichingInterceptor(new StyxHeaderConfig()));
+
+    @Test
+    public void rewritesRequestsLikeTheChainedInterceptors() {
+        Stream.of(
+                get("/").build(),
+                get("/")
+                        .header(VIA, "1.0 ricky")
+                        .header(X_FORWARDED_FOR, "172.21.175.59")
+                        .header(X_FORWARDED_PROTO, "https")
+                        .header(CONNECTION, "keep-alive")
+                        .header(KEEP_ALIVE, "timeout=5")
+                        .build(),
+                get("/").version(HTTP_1_0).header(VIA, "").build(),
+                get("/").header(CONNECTION, "X-Forwarded-For, Via, X-Custom").header("X-Custom", "a").header(X_FORWARDED_FOR, "10.0.0.1").build(),
+                get("/foo").header(CONTENT_LENGTH, "50").header(TRANSFER_ENCODING, "chunked").build()
+        ).forEach(request ->
+                assertThat(request.toString(), headersOf(fusedRequest(request)), is(headersOf(chainedRequest(request)))));
+    }
+
+    @Test
+    public void rewritesResponsesLikeTheChainedInterceptors() {
+        Stream.of(
+                response().build(),
+                response()
+                        .header(VIA, "1.1 origin")
+                        .header(CONNECTION, "close")
+                        .header(TRANSFER_ENCODING, "chunked")
+                        .build(),
+                response().version(HTTP_1_0).build(),
+                response().header(CONNECTION, "Via, X-Custom").header("X-Custom", "a").header(VIA, "1.1 origin").build()
+        ).forEach(response ->
+                assertThat(response.toString(), headersOf(fusedResponse(response)), is(headersOf(chainedResponse(response)))));
+    }
+
+    @Test
+    public void appliesEditsInTheOriginalOrder() {
+        LiveHttpRequest request = fusedRequest(get("/")
+                .header(CONNECTION, "Via, X-Forwarded-For")
+                .header(X_FORWARDED_FOR, "10.0.0.1")
+                .build());
+
+        assertThat(request.header(VIA), isAbsent());
+        assertThat(request.header(X_FORWARDED_FOR), isValue("127.0.0.1"));
+        assertThat(request.header(X_FORWARDED_PROTO), isValue("http"));
+    }
+
+    @Test
+    public void usesCustomViaPseudonym() {
+        LiveHttpResponse response = Mono.from(new HeaderRewritingInterceptor("MyProxy", new StyxHeaderConfig())
+                .intercept(get("/").build(), returnsResponse(response().build()))).block();
+
+        assertThat(response.header(VIA), isValue("1.1 MyProxy"));
+    }
+
+    private LiveHttpRequest fusedRequest(LiveHttpRequest request) {
+        RequestRecordingChain recording = requestRecordingChain(returnsResponse(response().build()));
+        fused.intercept(request, recording);
+        return recording.recordedRequest();
+    }
+
+    private LiveHttpRequest chainedRequest(LiveHttpRequest request) {
+        RequestRecordingChain recording = requestRecordingChain(returnsResponse(response().build()));
+        chain(chained, 0, recording).proceed(request);
+        return recording.recordedRequest();
+    }
+
+    private LiveHttpResponse fusedResponse(LiveHttpResponse response) {
+        return Mono.from(fused.intercept(get("/").build(), returnsResponse(response))).block();
+    }
+
+    private LiveHttpResponse chainedResponse(LiveHttpResponse response) {
+        return Mono.from(chain(chained, 0, returnsResponse(response)).proceed(get("/").build())).block();
+    }
+
+    static Chain chain(List<HttpInterceptor> interceptors, int index, Chain terminal) {
+        if (index == interceptors.size()) {
+            return terminal;
+        }
+        Chain next = chain(interceptors, index + 1, terminal);
+        return new Chain() {
+            @Override
+            public HttpInterceptor.Context context() {
+                return terminal.context();
+            }
+
+            @Override
+            public Eventual<LiveHttpResponse> proceed(LiveHttpRequest request) {
+                return interceptors.get(index).intercept(request, next);
+            }
+        };
+    }
+
+    private static Map<String, List<String>> headersOf(LiveHttpRequest request) {
+        return headersOf(request.headers());
+    }
+
+    private static Map<String, List<String>> headersOf(LiveHttpResponse response) {
+        return headersOf(response.headers());
+    }
+
+    private static Map<String, List<String>> headersOf(HttpHeaders headers) {
+        Map<String, List<String>> result = new TreeMap<>(CASE_INSENSITIVE_ORDER);
+        headers.names().forEach(name -> result.put(name, headers.getAll(name).stream().collect(toList())));
+        return result;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.proxy.plugin;
+
+import com.hotels.styx.Environment;
+import com.hotels.styx.api.Eventual;
+import com.hotels.styx.api.HttpInterceptor.Chain;
+import com.hotels.styx.api.HttpResponse;
+import com.hotels.styx.api.LiveHttpRequest;
+import com.hotels.styx.api.MicrometerRegistry;
+import com.hotels.styx.server.netty.codec.NettyToStyxRequestDecoder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.HttpRequestEncoder;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.hotels.styx.api.HttpResponse.response;
+import static com.hotels.styx.api.HttpResponseStatus.OK;
+import static com.hotels.styx.proxy.plugin.NamedPlugin.namedPlugin;
+import static io.netty.buffer.Unpooled.copiedBuffer;
+import static io.netty.handler.codec.http.HttpMethod.POST;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Runs a request through the server decoder and an instrumented plugin in a fresh class loader,
+ * and checks that the RxJava 1 to Reactive Streams bridge is never loaded along the way.
+ */
+public class ReactiveStreamsBridgeTest {
+    private static final String[] BRIDGE_CLASSES = {
+            "rx.RxReactiveStreams",
+            "rx.internal.reactivestreams.PublisherAdapter",
+            "rx.internal.reactivestreams.SubscriberAdapter"
+    };
+
+    @Test
+    public void proxiedExchangeDoesNotLoadRxBridge() throws Exception {
+        try (IsolatedClassLoader loader = new IsolatedClassLoader()) {
+            Runnable exchange = (Runnable) loader.loadClass(ProxiedExchange.class.getName())
+                    .getDeclaredConstructor()
+                    .newInstance();
+
+            exchange.run();
+
+            for (String bridgeClass : BRIDGE_CLASSES) {
+                assertThat(bridgeClass + " loaded", loader.isLoaded(bridgeClass), is(false));
+            }
+        }
+    }
+
+    /**
+     * Decodes a request with a body, passes it through an {@link InstrumentedPlugin}
+     * to a handler that aggregates the request body, and aggregates the response.
+     */
+    public static class ProxiedExchange implements Runnable {
+        @Override
+        public void run() {
+            Environment environment = new Environment.Builder()
+                    .registry(new MicrometerRegistry(new SimpleMeterRegistry()))
+                    .build();
+
+            InstrumentedPlugin plugin = new InstrumentedPlugin(namedPlugin("passThrough", (request, chain) -> chain.proceed(request)), environment);
+
+            Chain handler = request -> new Eventual<>(Mono.from(request.aggregate(1024))
+                    .map(full -> response(OK).body(full.bodyAs(UTF_8), UTF_8).build().stream()));
+
+            List<LiveHttpRequest> requests = new ArrayList<>();
+            EmbeddedChannel channel = new EmbeddedChannel(
+                    new io.netty.handler.codec.http.HttpRequestDecoder(),
+                    new NettyToStyxRequestDecoder.Builder().build(),
+                    new SimpleChannelInboundHandler<LiveHttpRequest>() {
+                        @Override
+                        protected void channelRead0(ChannelHandlerContext ctx, LiveHttpRequest request) {
+                            requests.add(request);
+                        }
+                    });
+
+            EmbeddedChannel encoder = new EmbeddedChannel(new HttpRequestEncoder());
+            DefaultFullHttpRequest request = new DefaultFullHttpRequest(HTTP_1_1, POST, "/foo", copiedBuffer("hello", UTF_8));
+            request.headers().set("Host", "example.com");
+            request.headers().set("Content-Length", 5);
+            encoder.writeOutbound(request);
+
+            Object encoded;
+            while ((encoded = encoder.readOutbound()) != null) {
+                channel.writeInbound(encoded);
+            }
+
+            HttpResponse response = Mono.from(plugin.intercept(requests.get(0), handler))
+                    .flatMap(live -> Mono.from(live.aggregate(1024)))
+                    .block();
+
+            if (!"hello".equals(response.bodyAs(UTF_8))) {
+                throw new AssertionError("Unexpected response: " + response);
+            }
+        }
+    }
+
+    private static final class IsolatedClassLoader extends URLClassLoader {
+        IsolatedClassLoader() {
+            super(classPath(), ClassLoader.getPlatformClassLoader());
+        }
+
+        boolean isLoaded(String name) {
+            return findLoadedClass(name) != null;
+        }
+
+        private static URL[] classPath() {
+            String[] entries = System.getProperty("java.class.path").split(File.pathSeparator);
+            URL[] urls = new URL[entries.length];
+            for (int i = 0; i < entries.length; i++) {
+                try {
+                    urls[i] = new File(entries[i]).toURI().toURL();
+                } catch (MalformedURLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return urls;
+        }
+    }
+}
@@ -18,6 +18,7 @@ package com.hotels.styx.routing.handlers;
 import com.hotels.styx.api.Eventual;
 import com.hotels.styx.api.HttpHandler;
 import com.hotels.styx.api.HttpInterceptor;
+import com.hotels.styx.api.LiveHttpRequest;
 import com.hotels.styx.api.LiveHttpResponse;
 import com.hotels.styx.server.HttpInterceptorContext;
 import com.hotels.styx.server.track.RequestTracker;
@@ -30,6 +31,7 @@ import reactor.core.publisher.Mono;
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
@@ -45,6 +47,10 @@ import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 public class StandardHttpPipelineTest {
     @Test
@@ -169,6 +175,56 @@ public class StandardHttpPipelineTest {
                 () -> Mono.from(responseObservable).block());
     }
 
+    @Test
+    public void tracksRequestOncePerExchange() {
+        RequestTracker tracker = mock(RequestTracker.class);
+        HttpInterceptor passThrough = (request, chain) -> chain.proceed(request);
+
+        StandardHttpPipeline pipeline = new StandardHttpPipeline(
+                asList(passThrough, passThrough, passThrough),
+                (request, context) -> Eventual.of(response(OK).build()),
+                tracker);
+
+        LiveHttpRequest request = get("/").build();
+        Mono.from(pipeline.handle(request, requestContext())).block();
+
+        verify(tracker, times(1)).trackRequest(any(LiveHttpRequest.class));
+        verify(tracker).markRequestAsSent(request);
+    }
+
+    @Test
+    public void sendsExceptionWhenInterceptorProceedsTwice() {
+        HttpInterceptor proceedsTwice = (request, chain) -> {
+            Mono.from(chain.proceed(request)).block();
+            return chain.proceed(request);
+        };
+
+        StandardHttpPipeline pipeline = pipeline(proceedsTwice);
+
+        assertThrows(IllegalStateException.class,
+                () -> Mono.from(pipeline.handle(get("/").build(), requestContext())).block());
+    }
+
+    @Test
+    public void sendsExceptionWhenOuterInterceptorProceedsAgain() {
+        AtomicInteger handlerCalls = new AtomicInteger();
+        HttpInterceptor retries = (request, chain) -> chain.proceed(request)
+                .flatMap(response -> chain.proceed(request));
+        HttpInterceptor passes = (request, chain) -> chain.proceed(request);
+
+        StandardHttpPipeline pipeline = new StandardHttpPipeline(
+                asList(retries, passes),
+                (request, context) -> {
+                    handlerCalls.incrementAndGet();
+                    return Eventual.of(response(OK).build());
+                },
+                RequestTracker.NO_OP);
+
+        assertThrows(IllegalStateException.class,
+                () -> Mono.from(pipeline.handle(get("/").build(), requestContext())).block());
+        assertThat(handlerCalls.get(), is(1));
+    }
+
     @ParameterizedTest
     @MethodSource("multipleSubscriptionInterceptors")
     public void sendsExceptionUponExtraSubscriptionInsideInterceptor(HttpInterceptor interceptor) throws Exception {
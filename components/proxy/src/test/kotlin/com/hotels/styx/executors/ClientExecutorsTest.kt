@@ -0,0 +1,115 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.executors
+
+import com.hotels.styx.Environment
+import com.hotels.styx.NettyExecutor
+import com.hotels.styx.RoutingObjectFactoryContext
+import com.hotels.styx.StyxObjectRecord
+import com.hotels.styx.api.LiveHttpRequest
+import com.hotels.styx.api.MicrometerRegistry
+import com.hotels.styx.executors.ClientExecutors.Companion.GLOBAL_CLIENT_WORKER_NAME
+import com.hotels.styx.requestContext
+import com.hotels.styx.routing.RoutingObject
+import com.hotels.styx.routing.db.StyxObjectStore
+import com.hotels.styx.routing.handlers.ProxyToBackend
+import com.hotels.styx.routingObjectDef
+import io.kotlintest.shouldBe
+import io.kotlintest.shouldThrow
+import io.kotlintest.specs.StringSpec
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import reactor.core.publisher.Mono
+import reactor.core.publisher.toMono
+import java.net.ServerSocket
+
+class ClientExecutorsTest : StringSpec({
+    val meterRegistry = SimpleMeterRegistry()
+    val environment = Environment.Builder().registry(MicrometerRegistry(meterRegistry)).build()
+
+    val executors = StyxObjectStore<StyxObjectRecord<NettyExecutor>>().apply {
+        insert(GLOBAL_CLIENT_WORKER_NAME, StyxObjectRecord(
+                "NettyExecutor",
+                setOf(),
+                NettyExecutorConfig(1, "Shared-Client").asJsonNode(),
+                NettyExecutor.create("Shared-Client", 1)))
+    }
+
+    val context = RoutingObjectFactoryContext(environment = environment, executorObjectStore = executors).get()
+
+    val closedPort = ServerSocket(0).use { it.localPort }
+
+    val config = routingObjectDef("""
+              type: ProxyToBackend
+              config:
+                backend:
+                  id: "app"
+                  responseTimeoutMillis: 1000
+                  origins:
+                  - { id: "app-01", host: "localhost:$closedPort" }
+          """.trimIndent())
+
+    fun gauge(name: String, executor: String = GLOBAL_CLIENT_WORKER_NAME) =
+            meterRegistry.find(name).tag("executor", executor).gauge()?.value()
+
+    fun eventLoopThreads() = Thread.getAllStackTraces().keys.count { it.isAlive && it.name.matches(Regex(".*-\\d+-Thread")) }
+
+    fun buildAndExercise(count: Int): List<RoutingObject> = (1..count).map {
+        ProxyToBackend.Factory().build(listOf("proxy-$it"), context, config).also { proxy ->
+            proxy.handle(LiveHttpRequest.get("/").build(), requestContext())
+                    .toMono()
+                    .onErrorResume { Mono.empty() }
+                    .block()
+        }
+    }
+
+    "thread count stays flat as the number of routing objects grows" {
+        val few = buildAndExercise(5)
+        val threadsWithFewObjects = eventLoopThreads()
+
+        val many = buildAndExercise(50)
+        eventLoopThreads() shouldBe threadsWithFewObjects
+
+        gauge("proxy.client.executor.threads") shouldBe 1.0
+        gauge("proxy.client.executor.borrowers") shouldBe 55.0
+
+        (few + many).forEach { it.stop() }
+        gauge("proxy.client.executor.borrowers") shouldBe 0.0
+    }
+
+    "borrows executors by name" {
+        executors.insert("dedicated", StyxObjectRecord(
+                "NettyExecutor",
+                setOf(),
+                NettyExecutorConfig(1, "Dedicated-Client").asJsonNode(),
+                NettyExecutor.create("Dedicated-Client", 1)))
+
+        val clientExecutors = ClientExecutors(executors, environment.centralisedMetrics())
+
+        clientExecutors.borrow("test", "dedicated") shouldBe executors.get("dedicated").get().component4()
+        gauge("proxy.client.executor.borrowers", "dedicated") shouldBe 1.0
+
+        clientExecutors.release("dedicated")
+        gauge("proxy.client.executor.borrowers", "dedicated") shouldBe 0.0
+    }
+
+    "throws for an executor that has not been declared" {
+        val e = shouldThrow<IllegalArgumentException> {
+            ClientExecutors(executors, environment.centralisedMetrics()).borrow("ProxyToBackend(x)", "unknown")
+        }
+
+        e.message shouldBe "ProxyToBackend(x) configuration error: executor='unknown' not declared."
+    }
+})
@@ -0,0 +1,218 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.routing.cache
+
+import com.hotels.styx.api.Eventual
+import com.hotels.styx.api.HttpInterceptor
+import com.hotels.styx.api.HttpResponse
+import com.hotels.styx.api.HttpResponseStatus.NOT_MODIFIED
+import com.hotels.styx.api.HttpResponseStatus.OK
+import com.hotels.styx.api.LiveHttpRequest
+import com.hotels.styx.api.LiveHttpRequest.get
+import com.hotels.styx.api.LiveHttpRequest.post
+import com.hotels.styx.api.LiveHttpResponse
+import com.hotels.styx.routing.RoutingObject
+import com.hotels.styx.server.HttpInterceptorContext
+import io.kotlintest.shouldBe
+import io.kotlintest.specs.FeatureSpec
+import reactor.core.publisher.toMono
+import java.nio.charset.StandardCharsets.UTF_8
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.atomic.AtomicLong
+
+class ResponseCacheTest : FeatureSpec({
+    val context = HttpInterceptorContext(false, null, Runnable::run)
+
+    feature("Freshness") {
+        scenario("Serves fresh responses from the cache") {
+            val origin = Origin { response(body = "hello", headers = mapOf("Cache-Control" to "max-age=60")) }
+            val clock = AtomicLong()
+            val cache = ResponseCache(origin, 1000, 100, 0, clock::get)
+
+            cache.send(get("/a").build(), context).bodyAs(UTF_8) shouldBe "hello"
+            clock.addAndGet(10_000)
+            val cached = cache.send(get("/a").build(), context)
+
+            cached.bodyAs(UTF_8) shouldBe "hello"
+            cached.header("Age").get() shouldBe "10"
+            origin.requests.size shouldBe 1
+        }
+
+        scenario("Does not store responses that forbid it") {
+            listOf("no-store", "private, max-age=60").forEach {
+                val origin = Origin { _ -> response(body = "hello", headers = mapOf("Cache-Control" to it)) }
+                val cache = ResponseCache(origin, 1000, 100, 0, AtomicLong()::get)
+
+                cache.send(get("/a").build(), context)
+                cache.send(get("/a").build(), context)
+
+                origin.requests.size shouldBe 2
+            }
+        }
+
+        scenario("Keeps a variant per value of the headers named by Vary") {
+            val origin = Origin { request ->
+                response(body = request.header("Accept-Language").get(), headers = mapOf("Cache-Control" to "max-age=60", "Vary" to "Accept-Language"))
+            }
+            val cache = ResponseCache(origin, 1000, 100, 0, AtomicLong()::get)
+
+            cache.send(get("/a").header("Accept-Language", "en").build(), context).bodyAs(UTF_8) shouldBe "en"
+            cache.send(get("/a").header("Accept-Language", "fr").build(), context).bodyAs(UTF_8) shouldBe "fr"
+            cache.send(get("/a").header("Accept-Language", "en").build(), context).bodyAs(UTF_8) shouldBe "en"
+
+            origin.requests.size shouldBe 2
+        }
+    }
+
+    feature("Validation") {
+        scenario("Revalidates stale responses with their validators") {
+            val origin = Origin { request ->
+                if (request.header("If-None-Match").isPresent) {
+                    LiveHttpResponse.response(NOT_MODIFIED).header("Cache-Control", "max-age=60").build()
+                } else {
+                    response(body = "hello", headers = mapOf("Cache-Control" to "max-age=60", "ETag" to "\"v1\""))
+                }
+            }
+            val clock = AtomicLong()
+            val cache = ResponseCache(origin, 1000, 100, 0, clock::get)
+
+            cache.send(get("/a").build(), context)
+            clock.addAndGet(61_000)
+
+            cache.send(get("/a").build(), context).bodyAs(UTF_8) shouldBe "hello"
+            origin.requests[1].header("If-None-Match").get() shouldBe "\"v1\""
+
+            cache.send(get("/a").build(), context).bodyAs(UTF_8) shouldBe "hello"
+            origin.requests.size shouldBe 2
+        }
+
+        scenario("Serves stale responses while revalidating in the background") {
+            var version = "v1"
+            val origin = Origin { response(body = version, headers = mapOf("Cache-Control" to "max-age=1, stale-while-revalidate=30")) }
+            val clock = AtomicLong()
+            val cache = ResponseCache(origin, 1000, 100, 0, clock::get)
+
+            cache.send(get("/a").build(), context)
+            version = "v2"
+            clock.addAndGet(2_000)
+
+            cache.send(get("/a").build(), context).bodyAs(UTF_8) shouldBe "v1"
+            origin.requests.size shouldBe 2
+            cache.send(get("/a").build(), context).bodyAs(UTF_8) shouldBe "v2"
+        }
+
+        scenario("Does not restore a stale response that is purged while it is revalidated in the background") {
+            val notModified = CompletableFuture<LiveHttpResponse>()
+            val origin = Origin { response(body = "hello", headers = mapOf("Cache-Control" to "max-age=1, stale-while-revalidate=30", "ETag" to "\"v1\"")) }
+            val revalidating = object : RoutingObject {
+                override fun handle(request: LiveHttpRequest, context: HttpInterceptor.Context): Eventual<LiveHttpResponse> =
+                        if (request.header("If-None-Match").isPresent) Eventual.from(notModified) else origin.handle(request, context)
+            }
+            val clock = AtomicLong()
+            val cache = ResponseCache(revalidating, 1000, 100, 0, clock::get)
+
+            cache.send(get("/a").build(), context)
+            clock.addAndGet(2_000)
+            cache.send(get("/a").build(), context).bodyAs(UTF_8) shouldBe "hello"
+
+            cache.purge("") shouldBe 1
+            notModified.complete(LiveHttpResponse.response(NOT_MODIFIED).header("Cache-Control", "max-age=60").build())
+
+            cache.stats()["entries"] shouldBe 0L
+            cache.send(get("/a").build(), context).bodyAs(UTF_8) shouldBe "hello"
+            origin.requests.size shouldBe 2
+        }
+
+        scenario("Answers conditional requests for fresh responses with 304") {
+            val origin = Origin { response(body = "hello", headers = mapOf("Cache-Control" to "max-age=60", "ETag" to "W/\"v1\"")) }
+            val cache = ResponseCache(origin, 1000, 100, 0, AtomicLong()::get)
+
+            cache.send(get("/a").build(), context)
+            val response = cache.send(get("/a").header("If-None-Match", "\"v0\", \"v1\"").build(), context)
+
+            response.status() shouldBe NOT_MODIFIED
+            response.header("ETag").get() shouldBe "W/\"v1\""
+        }
+    }
+
+    feature("Storage") {
+        scenario("Evicts least recently used responses beyond the maximum size") {
+            val origin = Origin { response(body = "0123456789", headers = mapOf("Cache-Control" to "max-age=60")) }
+            val cache = ResponseCache(origin, 25, 100, 0, AtomicLong()::get)
+
+            cache.send(get("/a").build(), context)
+            cache.send(get("/b").build(), context)
+            cache.send(get("/a").build(), context)
+            cache.send(get("/c").build(), context)
+
+            cache.stats()["entries"] shouldBe 2L
+            cache.stats()["evictions"] shouldBe 1L
+
+            cache.send(get("/a").build(), context)
+            origin.requests.size shouldBe 3
+        }
+
+        scenario("Does not store bodies over the maximum entry size") {
+            val origin = Origin { response(body = "0123456789", headers = mapOf("Cache-Control" to "max-age=60")) }
+            val cache = ResponseCache(origin, 1000, 5, 0, AtomicLong()::get)
+
+            cache.send(get("/a").build(), context).bodyAs(UTF_8) shouldBe "0123456789"
+
+            cache.stats()["entries"] shouldBe 0L
+        }
+
+        scenario("Purges responses by path prefix") {
+            val origin = Origin { response(body = "hello", headers = mapOf("Cache-Control" to "max-age=60")) }
+            val cache = ResponseCache(origin, 1000, 100, 0, AtomicLong()::get)
+
+            cache.send(get("/images/a").build(), context)
+            cache.send(get("/images/b").build(), context)
+            cache.send(get("/styles/a").build(), context)
+
+            cache.purge("/images/") shouldBe 2
+            cache.stats()["entries"] shouldBe 1L
+        }
+
+        scenario("Invalidates responses on successful unsafe requests") {
+            val origin = Origin { response(body = "hello", headers = mapOf("Cache-Control" to "max-age=60")) }
+            val cache = ResponseCache(origin, 1000, 100, 0, AtomicLong()::get)
+
+            cache.send(get("/a").build(), context)
+            cache.send(post("/a").build(), context)
+            cache.send(get("/a").build(), context)
+
+            origin.requests.size shouldBe 3
+        }
+    }
+})
+
+private class Origin(val respond: (LiveHttpRequest) -> LiveHttpResponse) : RoutingObject {
+    val requests = mutableListOf<LiveHttpRequest>()
+
+    override fun handle(request: LiveHttpRequest, context: HttpInterceptor.Context): Eventual<LiveHttpResponse> {
+        requests.add(request)
+        return Eventual.of(respond(request))
+    }
+}
+
+private fun response(body: String, headers: Map<String, String>) = HttpResponse.response(OK)
+        .apply { headers.forEach { (name, value) -> header(name, value) } }
+        .body(body, UTF_8)
+        .build()
+        .stream()
+
+private fun ResponseCache.send(request: LiveHttpRequest, context: HttpInterceptor.Context): HttpResponse =
+        handle(request, context).toMono().flatMap { it.aggregate(1000).toMono() }.block()!!
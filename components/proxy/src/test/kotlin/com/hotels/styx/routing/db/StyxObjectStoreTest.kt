@@ -95,6 +95,28 @@ class StyxObjectStoreTest : FeatureSpec() {
                 db.watchers() shouldBe 0
             }
 
+            scenario("Buffers every change for a watcher with no demand") {
+                val db = StyxObjectStore<String>()
+
+                StepVerifier.create(db.watch(), 1)
+                        .expectNextCount(1)
+                        .then {
+                            db.insert("x", "x")
+                            db.insert("y", "y")
+                        }
+                        .expectNoEvent(100.milliseconds)
+                        .thenRequest(2)
+                        .assertNext {
+                            it.get("x") shouldBe Optional.of("x")
+                            it.get("y") shouldBe Optional.empty()
+                        }
+                        .assertNext {
+                            it.get("y") shouldBe Optional.of("y")
+                        }
+                        .thenCancel()
+                        .verify(4.seconds)
+            }
+
             scenario("Maintains database integrity in concurrent operations") {
                 val db = StyxObjectStore<String>()
                 val executor = newFixedThreadPool(8)
@@ -420,6 +442,281 @@ class StyxObjectStoreTest : FeatureSpec() {
 
         }
 
+        feature("Transaction") {
+            scenario("Applies all modifications as one change") {
+                val db = StyxObjectStore<String>()
+                db.insert("x", "x")
+                db.insert("y", "y")
+                val index = db.index()
+
+                StepVerifier.create(db.watch())
+                        .expectNextCount(1)
+                        .then {
+                            db.transaction {
+                                it.insert("a", "a")
+                                it.compute("x") { "x2" }
+                                it.remove("y")
+                            }
+                        }
+                        .assertNext {
+                            it.index() shouldBe index + 1
+                            it.entrySet().map { it.toPair() }.toSet() shouldBe setOf("a" to "a", "x" to "x2")
+                        }
+                        .expectNoEvent(10.milliseconds)
+                        .thenCancel()
+                        .verify()
+            }
+
+            scenario("Sees its own modifications") {
+                val db = StyxObjectStore<String>()
+
+                db.transaction {
+                    it.insert("x", "x")
+                    it.get("x") shouldBe Optional.of("x")
+                    it.compute("x") { previous -> previous + "2" } shouldBe Optional.of("x")
+                    it.remove("x") shouldBe Optional.of("x2")
+                    it.entrySet().shouldBeEmpty()
+                }
+            }
+
+            scenario("Returns the value from the block") {
+                val db = StyxObjectStore<String>()
+
+                db.transaction { it.insert("x", "x"); "result" } shouldBe "result"
+                db.get("x") shouldBe Optional.of("x")
+            }
+
+            scenario("Does not notify watchers when nothing changes") {
+                val db = StyxObjectStore<String>()
+                db.insert("x", "x")
+                val index = db.index()
+
+                StepVerifier.create(db.watch())
+                        .expectNextCount(1)
+                        .then {
+                            db.transaction {
+                                it.compute("x") { previous -> previous }
+                                it.remove("not-there")
+                            }
+                        }
+                        .expectNoEvent(10.milliseconds)
+                        .thenCancel()
+                        .verify()
+
+                db.index() shouldBe index
+            }
+
+            scenario("Retries against the latest state when a concurrent modification occurs") {
+                val db = StyxObjectStore<Int>()
+                db.insert("counter", 0)
+                var attempts = 0
+
+                db.transaction { tx ->
+                    attempts++
+                    if (attempts == 1) {
+                        db.compute("counter") { 10 }
+                    }
+                    tx.compute("counter") { it!! + 1 }
+                }
+
+                attempts shouldBe 2
+                db.get("counter") shouldBe Optional.of(11)
+            }
+        }
+
+        feature("Tag index") {
+            scenario("Retrieves entries by tag") {
+                val db = StyxObjectStore<TaggedValue>()
+                db.insert("a", TaggedValue("a", setOf("lbGroup=x")))
+                db.insert("b", TaggedValue("b", setOf("lbGroup=x", "state=active")))
+                db.insert("c", TaggedValue("c", setOf("lbGroup=y")))
+
+                db.entriesTagged("lbGroup=x").map { it.key }.toSet() shouldBe setOf("a", "b")
+                db.entriesTagged("state=active").map { it.key }.toSet() shouldBe setOf("b")
+                db.entriesTagged("lbGroup=z").shouldBeEmpty()
+            }
+
+            scenario("Follows tag changes and removals") {
+                val db = StyxObjectStore<TaggedValue>()
+                db.insert("a", TaggedValue("a", setOf("lbGroup=x")))
+                db.insert("b", TaggedValue("b", setOf("lbGroup=x")))
+
+                db.compute("a") { TaggedValue("a", setOf("lbGroup=y")) }
+                db.remove("b")
+
+                db.entriesTagged("lbGroup=x").shouldBeEmpty()
+                db.entriesTagged("lbGroup=y").map { it.key } shouldBe listOf("a")
+            }
+
+            scenario("Maintains the index in transactions") {
+                val db = StyxObjectStore<TaggedValue>()
+                db.insert("a", TaggedValue("a", setOf("lbGroup=x")))
+
+                db.transaction {
+                    it.insert("b", TaggedValue("b", setOf("lbGroup=x")))
+                    it.remove("a")
+                    it.entriesTagged("lbGroup=x").map { it.key } shouldBe listOf("b")
+                }
+
+                db.entriesTagged("lbGroup=x").map { it.key } shouldBe listOf("b")
+            }
+
+            scenario("Tag watch starts with all tagged objects") {
+                val db = StyxObjectStore<TaggedValue>()
+                db.insert("a", TaggedValue("a", setOf("lbGroup=x")))
+                db.insert("c", TaggedValue("c", setOf("lbGroup=y")))
+
+                StepVerifier.create(db.watch("lbGroup=x"))
+                        .assertNext {
+                            it.added.keys shouldBe setOf("a")
+                            it.updated.keys.shouldBeEmpty()
+                            it.removed.keys.shouldBeEmpty()
+                        }
+                        .thenCancel()
+                        .verify()
+            }
+
+            scenario("Tag watch emits only changes to tagged objects") {
+                val db = StyxObjectStore<TaggedValue>()
+                val a1 = TaggedValue("a1", setOf("lbGroup=x"))
+                val a2 = TaggedValue("a2", setOf("lbGroup=x"))
+                db.insert("a", a1)
+
+                StepVerifier.create(db.watch("lbGroup=x"))
+                        .expectNextCount(1)
+                        .then { db.insert("c", TaggedValue("c", setOf("lbGroup=y"))) }
+                        .expectNoEvent(10.milliseconds)
+                        .then { db.insert("a", a2) }
+                        .assertNext {
+                            it.added.keys.shouldBeEmpty()
+                            it.updated shouldBe mapOf("a" to ChangeSet.Update(a1, a2))
+                            it.removed.keys.shouldBeEmpty()
+                        }
+                        .then { db.insert("b", TaggedValue("b", setOf("lbGroup=x"))) }
+                        .assertNext {
+                            it.added.keys shouldBe setOf("b")
+                            it.snapshot.entrySet().map { it.key }.toSet() shouldBe setOf("a", "b", "c")
+                        }
+                        .then { db.compute("b") { TaggedValue("b", setOf("lbGroup=y")) } }
+                        .assertNext {
+                            it.removed.keys shouldBe setOf("b")
+                        }
+                        .thenCancel()
+                        .verify()
+            }
+        }
+
+        feature("Change watch") {
+            scenario("Starts with all current objects") {
+                val db = StyxObjectStore<String>()
+                db.insert("x", "x")
+                db.insert("y", "y")
+
+                StepVerifier.create(db.watchChanges())
+                        .assertNext {
+                            it.added shouldBe mapOf("x" to "x", "y" to "y")
+                            it.resync shouldBe false
+                        }
+                        .thenCancel()
+                        .verify()
+            }
+
+            scenario("Emits added, updated and removed objects") {
+                val db = StyxObjectStore<String>()
+                db.insert("x", "x")
+                db.insert("y", "y")
+
+                StepVerifier.create(db.watchChanges())
+                        .expectNextCount(1)
+                        .then { db.insert("z", "z") }
+                        .assertNext {
+                            it.added shouldBe mapOf("z" to "z")
+                            it.updated.keys.shouldBeEmpty()
+                            it.removed.keys.shouldBeEmpty()
+                        }
+                        .then { db.insert("x", "x2") }
+                        .assertNext {
+                            it.updated shouldBe mapOf("x" to ChangeSet.Update("x", "x2"))
+                        }
+                        .then { db.remove("y") }
+                        .assertNext {
+                            it.removed shouldBe mapOf("y" to "y")
+                            it.snapshot.entrySet().map { it.toPair() }.toSet() shouldBe setOf("x" to "x2", "z" to "z")
+                        }
+                        .thenCancel()
+                        .verify()
+            }
+
+            scenario("Emits a transaction as one change set") {
+                val db = StyxObjectStore<String>()
+                db.insert("x", "x")
+                db.insert("y", "y")
+
+                StepVerifier.create(db.watchChanges())
+                        .expectNextCount(1)
+                        .then {
+                            db.transaction {
+                                it.insert("a", "a")
+                                it.insert("x", "x2")
+                                it.remove("y")
+                            }
+                        }
+                        .assertNext {
+                            it.added shouldBe mapOf("a" to "a")
+                            it.updated shouldBe mapOf("x" to ChangeSet.Update("x", "x2"))
+                            it.removed shouldBe mapOf("y" to "y")
+                        }
+                        .expectNoEvent(10.milliseconds)
+                        .thenCancel()
+                        .verify()
+            }
+
+            scenario("Merges changes made while the subscriber has no demand") {
+                val db = StyxObjectStore<String>()
+                db.insert("x", "x")
+
+                StepVerifier.create(db.watchChanges(), 1)
+                        .expectNextCount(1)
+                        .then {
+                            db.insert("a", "a")
+                            db.insert("b", "b")
+                            db.insert("x", "x2")
+                            db.remove("a")
+                        }
+                        .expectNoEvent(100.milliseconds)
+                        .thenRequest(1)
+                        .assertNext {
+                            it.added shouldBe mapOf("b" to "b")
+                            it.updated shouldBe mapOf("x" to ChangeSet.Update("x", "x2"))
+                            it.removed.keys.shouldBeEmpty()
+                            it.resync shouldBe false
+                        }
+                        .thenCancel()
+                        .verify()
+            }
+
+            scenario("Resyncs a subscriber that falls behind the change log") {
+                val db = StyxObjectStore<String>(Executors.newSingleThreadExecutor(), changeLogCapacity = 2)
+                db.insert("x", "x")
+
+                StepVerifier.create(db.watchChanges(), 1)
+                        .expectNextCount(1)
+                        .then {
+                            (1..10).forEach { db.insert("key-$it", "value-$it") }
+                            db.remove("x")
+                        }
+                        .expectNoEvent(100.milliseconds)
+                        .thenRequest(1)
+                        .assertNext {
+                            it.resync shouldBe true
+                            it.added.keys shouldBe (1..10).map { "key-$it" }.toSet()
+                            it.removed.keys.shouldBeEmpty()
+                        }
+                        .thenCancel()
+                        .verify()
+            }
+        }
+
         feature("Watch") {
             scenario("Publishes an immutable final state snapshot") {
                 val db = StyxObjectStore<String>()
@@ -554,3 +851,5 @@ class StyxObjectStoreTest : FeatureSpec() {
     }
 
 }
+
+private data class TaggedValue(val value: String, override val tags: Set<String>) : Tagged
@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -194,6 +194,36 @@ class LoadBalancingGroupTest : FeatureSpec() {
             }
         }
 
+        feature("Passive health signals") {
+            scenario("Records the outcome of each response against the object that served it") {
+                val routeDb = StyxObjectStore<RoutingObjectRecord>()
+                val headers = HttpHeaders.Builder().build()
+
+                routeDb.insert("appz-01", RoutingObjectRecord.create("HostProxy", setOf(lbGroupTag("appZ")), mockk(), StaticResponseHandler(200, "appz-01", headers)))
+                routeDb.insert("appw-01", RoutingObjectRecord.create("HostProxy", setOf(lbGroupTag("appW")), mockk(), StaticResponseHandler(503, "appw-01", headers)))
+
+                val context = RoutingObjectFactoryContext(objectStore = routeDb)
+                val serving = context.environment.passiveHealthSignals().signal("appZ/appz-01")
+                val failing = context.environment.passiveHealthSignals().signal("appW/appw-01")
+                val mark = serving.mark()
+
+                val appZ = lbGroup(context, "appZ")
+                val appW = lbGroup(context, "appW")
+
+                eventually(2.seconds, NoAvailableHostsException::class.java) {
+                    appZ.call(get("/").build())!!.bodyAs(UTF_8) shouldBe "appz-01"
+                    appW.call(get("/").build())!!.bodyAs(UTF_8) shouldBe "appw-01"
+                }
+
+                serving.servedSince(mark) shouldBe true
+                failing.servedSince(mark) shouldBe false
+                failing.failedSince(mark) shouldBe true
+
+                appZ.stop()
+                appW.stop()
+            }
+        }
+
         feature("Lifecycle handling") {
             scenario("Stops watching route database") {
                 val watcher = mockk<Disposable>(relaxed = true)
@@ -205,10 +235,42 @@ class LoadBalancingGroupTest : FeatureSpec() {
                     watcher.dispose()
                 }
             }
+
+            scenario("Leaves the concurrency limit gauge to the group that replaced it") {
+                val context = RoutingObjectFactoryContext()
+                val registry = context.environment.meterRegistry()
+
+                val previous = limitedLbGroup(context, "appL", 10)
+                val replacement = limitedLbGroup(context, "appL", 20)
+                previous.stop()
+
+                registry.find("proxy.client.concurrency.limit").tag("appId", "appL").gauge()!!.value() shouldBe 20.0
+
+                replacement.stop()
+
+                registry.find("proxy.client.concurrency.limit").tag("appId", "appL").gauge().shouldBeNull()
+            }
         }
     }
 }
 
+private fun lbGroup(context: RoutingObjectFactoryContext, origins: String) = LoadBalancingGroup.Factory()
+        .build(listOf(origins), context.get(), routingObjectDef("""
+                type: LoadBalancingGroup
+                config:
+                  origins: $origins
+                """.trimIndent()))
+
+private fun limitedLbGroup(context: RoutingObjectFactoryContext, origins: String, initialLimit: Int) = LoadBalancingGroup.Factory()
+        .build(listOf(origins), context.get(), routingObjectDef("""
+                type: LoadBalancingGroup
+                config:
+                  origins: $origins
+                  concurrencyLimit:
+                    enabled: true
+                    initialLimit: $initialLimit
+                """.trimIndent()))
+
 internal fun Publisher<ObjectStore<RoutingObjectRecord>>.waitUntil(duration: Duration = Duration.ofSeconds(1), predicate: (ObjectStore<RoutingObjectRecord>) -> Boolean) = this
         .toFlux()
         .filter(predicate)
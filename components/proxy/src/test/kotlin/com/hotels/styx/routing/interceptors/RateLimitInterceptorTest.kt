@@ -0,0 +1,111 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.routing.interceptors
+
+import com.hotels.styx.api.HttpHeaderNames.RETRY_AFTER
+import com.hotels.styx.api.LiveHttpRequest
+import com.hotels.styx.routingObjectDef
+import io.kotlintest.shouldBe
+import io.kotlintest.shouldThrow
+import io.kotlintest.specs.StringSpec
+import reactor.core.publisher.toMono
+import java.util.concurrent.TimeUnit.MILLISECONDS
+import java.util.concurrent.atomic.AtomicLong
+
+class RateLimitInterceptorTest : StringSpec({
+
+    "limits requests per key" {
+        val interceptor = RateLimitInterceptor.Factory().build(routingObjectDef("""
+                type: RateLimit
+                config:
+                    key: header('X-Client-Id')
+                    requestsPerSecond: 1
+                    burst: 2
+        """.trimIndent()))
+
+        fun statusFor(clientId: String) = interceptor.intercept(
+                LiveHttpRequest.get("/").header("X-Client-Id", clientId).build(), CapturingChain())
+                .toMono().block()!!
+
+        statusFor("a").status().code() shouldBe 200
+        statusFor("a").status().code() shouldBe 200
+        statusFor("b").status().code() shouldBe 200
+
+        val rejected = statusFor("a")
+        rejected.status().code() shouldBe 429
+        rejected.header(RETRY_AFTER).get() shouldBe "1"
+    }
+
+    "does not pass rejected requests on" {
+        val interceptor = RateLimitInterceptor.Factory().build(routingObjectDef("""
+                type: RateLimit
+                config:
+                    key: header('X-Client-Id')
+                    requestsPerSecond: 1
+                    rejectStatus: 503
+        """.trimIndent()))
+
+        interceptor.intercept(LiveHttpRequest.get("/").build(), CapturingChain()).toMono().block()
+
+        val chain = CapturingChain()
+        interceptor.intercept(LiveHttpRequest.get("/").build(), chain).toMono().block()!!.status().code() shouldBe 503
+        chain.request() shouldBe null
+    }
+
+    "rejects invalid key expressions" {
+        shouldThrow<IllegalArgumentException> {
+            RateLimitInterceptor.Factory().build(routingObjectDef("""
+                type: RateLimit
+                config:
+                    key: header('X-Client-Id') == 'x'
+                    requestsPerSecond: 1
+            """.trimIndent()))
+        }
+    }
+
+    "refills buckets over time" {
+        val clock = AtomicLong()
+        val limiter = RateLimiter(10, 2, 100, clock::get)
+
+        limiter.tryAcquire("a") shouldBe 0L
+        limiter.tryAcquire("a") shouldBe 0L
+        limiter.tryAcquire("a") shouldBe MILLISECONDS.toNanos(100)
+
+        clock.addAndGet(MILLISECONDS.toNanos(100))
+        limiter.tryAcquire("a") shouldBe 0L
+        limiter.tryAcquire("a") shouldBe MILLISECONDS.toNanos(100)
+    }
+
+    "evicts idle buckets" {
+        val clock = AtomicLong()
+        val limiter = RateLimiter(10, 1, 100_000, clock::get)
+
+        (1..1000).forEach { limiter.tryAcquire("key-$it") }
+        limiter.size() shouldBe 1000
+
+        clock.addAndGet(MILLISECONDS.toNanos(100))
+        (1..1000).forEach { limiter.tryAcquire("other-$it") }
+        limiter.size() shouldBe 1000
+    }
+
+    "holds at most maxKeys buckets per shard" {
+        val limiter = RateLimiter(1, 1, RateLimiter.SHARDS * 2, AtomicLong()::get)
+
+        (1..1000).forEach { limiter.tryAcquire("key-$it") }
+
+        (limiter.size() <= RateLimiter.SHARDS * 2) shouldBe true
+    }
+})
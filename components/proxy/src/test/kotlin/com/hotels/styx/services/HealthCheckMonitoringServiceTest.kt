@@ -18,26 +18,36 @@ package com.hotels.styx.services
 import com.hotels.styx.NettyExecutor
 import com.hotels.styx.STATE_INACTIVE
 import com.hotels.styx.api.LiveHttpRequest
+import com.hotels.styx.api.MicrometerRegistry
+import com.hotels.styx.client.healthcheck.HealthCheckScheduler
+import com.hotels.styx.client.healthcheck.PassiveHealthSignals
 import com.hotels.styx.lbGroupTag
 import com.hotels.styx.CaptureList
 import com.hotels.styx.routing.RoutingObjectRecord
 import com.hotels.styx.routing.db.StyxObjectStore
 import com.hotels.styx.failingMockObject
+import com.hotels.styx.metrics.CentralisedMetrics
 import com.hotels.styx.mockObject
+import io.kotlintest.eventually
+import io.kotlintest.matchers.collections.shouldBeEmpty
+import io.kotlintest.matchers.collections.shouldContain
 import io.kotlintest.matchers.collections.shouldContainAll
 import io.kotlintest.matchers.collections.shouldContainExactly
 import io.kotlintest.matchers.collections.shouldContainExactlyInAnyOrder
+import io.kotlintest.matchers.collections.shouldNotContain
+import io.kotlintest.matchers.comparables.shouldBeGreaterThan
+import io.kotlintest.matchers.numerics.shouldBeLessThanOrEqual
 import io.kotlintest.matchers.withClue
 import io.kotlintest.milliseconds
+import io.kotlintest.seconds
 import io.kotlintest.shouldBe
 import io.kotlintest.specs.FeatureSpec
-import io.mockk.every
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
 import io.mockk.mockk
 import io.mockk.verify
 import org.slf4j.LoggerFactory
-import java.util.concurrent.ScheduledExecutorService
-import java.util.concurrent.ScheduledFuture
-import java.util.concurrent.TimeUnit.MILLISECONDS
+import java.time.Duration
+import java.util.Collections
 
 class HealthCheckMonitoringServiceTest : FeatureSpec({
     val LOGGER = LoggerFactory.getLogger(HealthCheckMonitoringServiceTest::class.java)
@@ -45,13 +55,9 @@ class HealthCheckMonitoringServiceTest : FeatureSpec({
     fun createdTag(tag: String) = tag.matches("created=.*".toRegex())
 
     val workerExecutor = NettyExecutor.create("monitoringServiceTest", 1)
+    val scheduler = HealthCheckScheduler(CentralisedMetrics(MicrometerRegistry(SimpleMeterRegistry())))
 
     feature("Lifecycle management") {
-        val scheduledFuture = mockk<ScheduledFuture<Void>>(relaxed = true)
-
-        val executor = mockk<ScheduledExecutorService> {
-            every { scheduleAtFixedRate(any(), any(), any(), any()) } returns scheduledFuture
-        }
 
         val objectStore = StyxObjectStore<RoutingObjectRecord>()
                 .apply {
@@ -69,22 +75,45 @@ class HealthCheckMonitoringServiceTest : FeatureSpec({
                 objectStore = objectStore,
                 application = "aaa",
                 urlPath = "/",
-                period = 100.milliseconds,
+                period = Duration.ofHours(1),
                 activeThreshold = 2,
                 inactiveThreshold = 2,
-                executor = executor,
+                scheduler = scheduler,
                 workerExecutor = workerExecutor
         )
 
-        scenario("Starts scheduled executor") {
+        scenario("Schedules a probe for each object in the group") {
             monitor.start().get()
-            verify { executor.scheduleAtFixedRate(any(), 100, 100, MILLISECONDS) }
+
+            eventually(1.seconds, AssertionError::class.java) {
+                monitor.monitoredObjects().shouldContainExactlyInAnyOrder(
+                        "aaa-01", "aaa-02", "aaa-03", "aaa-04", "aaa-05", "aaa-06", "aaa-07", "aaa-08")
+            }
+            monitor.isRunning() shouldBe true
+        }
+
+        scenario("Follows objects joining and leaving the group") {
+            objectStore.record("aaa-09", "x", setOf(lbGroupTag("aaa")), mockk(), mockk())
+            objectStore.record("bbb-01", "x", setOf(lbGroupTag("bbb")), mockk(), mockk())
+
+            eventually(1.seconds, AssertionError::class.java) {
+                monitor.monitoredObjects().shouldContain("aaa-09")
+            }
+            monitor.monitoredObjects().shouldNotContain("bbb-01")
+
+            objectStore.remove("aaa-09")
+            objectStore.remove("bbb-01")
+
+            eventually(1.seconds, AssertionError::class.java) {
+                monitor.monitoredObjects().shouldNotContain("aaa-09")
+            }
         }
 
         scenario("Changes unreachable tag to active, and removes any healthCheck tags, when health check is stopped") {
             monitor.stop().get()
 
-            verify { scheduledFuture.cancel(false) }
+            monitor.isRunning() shouldBe false
+            monitor.monitoredObjects().shouldBeEmpty()
 
             objectStore["aaa-01"].get().tags.filterNot{ createdTag(it) }.shouldContainExactly(lbGroupTag("aaa"))
             objectStore["aaa-02"].get().tags.filterNot{ createdTag(it) }.shouldContainExactly(lbGroupTag("aaa"), "state=active")
@@ -123,12 +152,6 @@ class HealthCheckMonitoringServiceTest : FeatureSpec({
     fun isStateOrHealthCheckTag(tag: String) = tag.matches("state=.*".toRegex()) || tag.matches("healthCheck=.*".toRegex())
 
     feature("Health check monitoring") {
-        val scheduledFuture = mockk<ScheduledFuture<Void>>(relaxed = true)
-
-        val executor = mockk<ScheduledExecutorService> {
-            every { scheduleAtFixedRate(any(), any(), any(), any()) } returns scheduledFuture
-        }
-
         val probeRequests = mutableListOf<LiveHttpRequest>()
 
         val handler00 = mockObject("handler-00", CaptureList(probeRequests))
@@ -142,10 +165,10 @@ class HealthCheckMonitoringServiceTest : FeatureSpec({
                     record("aaa-02", "x", setOf(lbGroupTag("aaa")), mockk(), handler02)
                 }
 
-        val monitor = HealthCheckMonitoringService(objectStore, "aaa", "/healthCheck.txt", 100.milliseconds, 3, 3, executor, workerExecutor)
+        val monitor = HealthCheckMonitoringService(objectStore, "aaa", "/healthCheck.txt", 100.milliseconds, 3, 3, scheduler, workerExecutor)
 
         scenario("Probes discovered objects at specified URL") {
-            monitor.runChecks("aaa", objectStore)
+            monitor.runChecks()
 
             verify(exactly = 1) { handler00.handle(any(), any()) }
             verify(exactly = 1) { handler01.handle(any(), any()) }
@@ -171,9 +194,9 @@ class HealthCheckMonitoringServiceTest : FeatureSpec({
         }
 
         scenario("... marks objects active after N successful probes") {
-            monitor.runChecks("aaa", objectStore)
-            monitor.runChecks("aaa", objectStore)
-            monitor.runChecks("aaa", objectStore)
+            monitor.runChecks()
+            monitor.runChecks()
+            monitor.runChecks()
 
             withClue(tagClue(objectStore, "aaa-01")) {
                 objectStore.get("aaa-01").get().tags
@@ -194,7 +217,7 @@ class HealthCheckMonitoringServiceTest : FeatureSpec({
                 record("aaa-04", "X", setOf(lbGroupTag("aaa"), "state=unreachable"), mockk(), failingMockObject())
             }
 
-            monitor.runChecks("aaa", objectStore)
+            monitor.runChecks()
 
             withClue(tagClue(objectStore, "aaa-03")) {
                 objectStore.get("aaa-03").get().tags.shouldContainAll("state=active", "healthCheck=on;probes-FAIL:1")
@@ -205,7 +228,7 @@ class HealthCheckMonitoringServiceTest : FeatureSpec({
                         .shouldContainExactly("state=unreachable", "healthCheck=on")
             }
 
-            monitor.runChecks("aaa", objectStore)
+            monitor.runChecks()
 
             withClue(tagClue(objectStore, "aaa-03")) {
                 objectStore.get("aaa-03").get().tags.shouldContainAll("state=active", "healthCheck=on;probes-FAIL:2")
@@ -219,6 +242,49 @@ class HealthCheckMonitoringServiceTest : FeatureSpec({
         }
     }
 
+    feature("Adaptive health checking") {
+        val probeRequests = Collections.synchronizedList(mutableListOf<LiveHttpRequest>())
+        val signals = PassiveHealthSignals()
+
+        val objectStore = StyxObjectStore<RoutingObjectRecord>()
+                .apply {
+                    record("aaa-00", "X", setOf(lbGroupTag("aaa"), "state=active"), mockk(), mockObject("handler-00", CaptureList(probeRequests)))
+                    record("aaa-01", "X", setOf(lbGroupTag("aaa"), "state=active"), mockk(), failingMockObject())
+                }
+
+        val monitor = HealthCheckMonitoringService(objectStore, "aaa", "/healthCheck.txt", 100.milliseconds, 3, 3, scheduler, workerExecutor,
+                maxPeriod = 400.milliseconds, signals = signals)
+
+        scenario("Tightens the interval of failing objects, and backs off for healthy ones") {
+            monitor.start().get()
+            eventually(1.seconds, AssertionError::class.java) {
+                monitor.monitoredObjects().shouldContainExactlyInAnyOrder("aaa-00", "aaa-01")
+            }
+
+            monitor.runChecks()
+            monitor.runChecks()
+            monitor.runChecks()
+
+            eventually(1.seconds, AssertionError::class.java) {
+                monitor.currentInterval("aaa-00")!!.shouldBeGreaterThan(100.milliseconds)
+                monitor.currentInterval("aaa-01") shouldBe 50.milliseconds
+            }
+        }
+
+        scenario("Skips probes while an object serves live traffic") {
+            val signal = signals.signal("aaa/aaa-00")
+            val probesBefore = probeRequests.size
+
+            repeat(50) {
+                signal.success()
+                Thread.sleep(10)
+            }
+
+            (probeRequests.size - probesBefore).shouldBeLessThanOrEqual(1)
+            monitor.stop().get()
+        }
+    }
+
     feature("retagging") {
         scenario("Re-tag an active object") {
             reTag(setOf(lbGroupTag("aaa"), "state=active", "healthCheck=on;probes-FAIL:0"), ObjectActive(1))
@@ -270,4 +336,5 @@ class HealthCheckMonitoringServiceTest : FeatureSpec({
     }
 
     workerExecutor.shut()
+    scheduler.close()
 })
@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -70,6 +70,27 @@ class OriginsConfigConverterTest : StringSpec({
                 }
     }
 
+    "Translates collapsed forwarding settings to the LoadBalancingGroup" {
+        val config = """
+            ---
+            - id: "app"
+              path: "/"
+              collapsedForwarding:
+                enabled: true
+                maxWaitMillis: 500
+              origins:
+              - { id: "app1", host: "localhost:9090" }
+            """.trimIndent()
+
+        loadBalancingGroup(deserialiseOrigins(config)[0], null)
+                .config()["collapsedForwarding"]
+                .let {
+                    it["enabled"].booleanValue() shouldBe true
+                    it["maxWaitMillis"].intValue() shouldBe 500
+                    it["maxBodySizeBytes"].intValue() shouldBe 1024 * 1024
+                }
+    }
+
     "Translates one rewrite rules" {
         val config = """
             ---
@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -127,6 +127,88 @@ class YamlFileConfigurationServiceTest : FunSpec() {
             }
         }
 
+        context("When the configuration is reloaded") {
+            test("It applies all routing object changes as a single object store update") {
+                val routeDb = StyxObjectStore<RoutingObjectRecord>()
+                val serviceDb = StyxObjectStore<ProviderObjectRecord>()
+                val service = serviceWithInitialConfig(routeDb, serviceDb)
+
+                service.reloadAction("""
+                    ---
+                    - id: "app"
+                      path: "/"
+                      origins:
+                      - { id: "app-01", host: "localhost:9090" }
+                      - { id: "app-02", host: "localhost:9091" }
+                    """.trimIndent())
+
+                routeDb.entrySet().size shouldBe 4
+                routeDb.index() shouldBe 1L
+
+                service.reloadAction("""
+                    ---
+                    - id: "app"
+                      path: "/"
+                      origins:
+                      - { id: "app-01", host: "localhost:9090" }
+                      - { id: "app-03", host: "localhost:9092" }
+                    """.trimIndent())
+
+                routeDb.toMap().keys shouldBe setOf("app", "app.app-01", "app.app-03", "originsProvider-router")
+                routeDb.index() shouldBe 2L
+            }
+
+            test("It leaves the object store untouched when the configuration is unchanged") {
+                val routeDb = StyxObjectStore<RoutingObjectRecord>()
+                val serviceDb = StyxObjectStore<ProviderObjectRecord>()
+                val service = serviceWithInitialConfig(routeDb, serviceDb)
+                val config = """
+                    ---
+                    - id: "app"
+                      path: "/"
+                      origins:
+                      - { id: "app-01", host: "localhost:9090" }
+                    """.trimIndent()
+
+                service.reloadAction(config)
+                routeDb.index() shouldBe 1L
+
+                service.reloadAction("# A comment does not change the configuration\n$config")
+                routeDb.index() shouldBe 1L
+            }
+
+            test("It applies only the objects affected by a single-line edit to a large configuration") {
+                val routeDb = StyxObjectStore<RoutingObjectRecord>()
+                val serviceDb = StyxObjectStore<ProviderObjectRecord>()
+                val service = serviceWithInitialConfig(routeDb, serviceDb)
+                val apps = 5000
+
+                // Each application has a host proxy and a load balancing group, for 10k objects in total:
+                fun largeConfig(editedPort: Int) = (0 until apps).joinToString(separator = "\n", prefix = "---\n") {
+                    """
+                    - id: "app$it"
+                      path: "/app$it/"
+                      origins:
+                      - { id: "app$it-01", host: "localhost:${if (it == 4242) editedPort else 9090}" }
+                    """.trimIndent()
+                }
+
+                service.reloadAction(largeConfig(editedPort = 9090))
+                routeDb.entrySet().size shouldBe 2 * apps + 1
+
+                val before = routeDb.toMap()
+                val index = routeDb.index()
+
+                service.reloadAction(largeConfig(editedPort = 9999))
+
+                routeDb.index() shouldBe index + 1
+                val after = routeDb.toMap()
+                after.keys shouldBe before.keys
+                after.filter { (name, record) -> record !== before[name] }.keys shouldBe setOf("app4242.app4242-01")
+                JsonNodeConfig(after["app4242.app4242-01"]!!.config).get("host") shouldBe Optional.of("localhost:9999")
+            }
+        }
+
         context("Service detects configuration changes") {
             val objectStore = StyxObjectStore<RoutingObjectRecord>()
             val serviceDb = StyxObjectStore<ProviderObjectRecord>()
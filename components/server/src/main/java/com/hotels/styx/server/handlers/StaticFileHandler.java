@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -15,33 +15,87 @@
  */
 package com.hotels.styx.server.handlers;
 
+import com.hotels.styx.api.Buffer;
+import com.hotels.styx.api.Buffers;
+import com.hotels.styx.api.ByteStream;
 import com.hotels.styx.api.Eventual;
 import com.hotels.styx.api.HttpHandler;
 import com.hotels.styx.api.HttpInterceptor;
 import com.hotels.styx.api.HttpResponse;
+import com.hotels.styx.api.HttpResponseStatus;
 import com.hotels.styx.api.LiveHttpRequest;
 import com.hotels.styx.api.LiveHttpResponse;
 import com.hotels.styx.common.http.handler.HttpAggregator;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import org.slf4j.Logger;
+import reactor.core.publisher.Flux;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import static com.hotels.styx.api.HttpHeaderNames.ACCEPT_RANGES;
+import static com.hotels.styx.api.HttpHeaderNames.CONTENT_LENGTH;
+import static com.hotels.styx.api.HttpHeaderNames.CONTENT_RANGE;
 import static com.hotels.styx.api.HttpHeaderNames.CONTENT_TYPE;
+import static com.hotels.styx.api.HttpHeaderNames.ETAG;
+import static com.hotels.styx.api.HttpHeaderNames.IF_MODIFIED_SINCE;
+import static com.hotels.styx.api.HttpHeaderNames.IF_NONE_MATCH;
+import static com.hotels.styx.api.HttpHeaderNames.IF_RANGE;
+import static com.hotels.styx.api.HttpHeaderNames.LAST_MODIFIED;
+import static com.hotels.styx.api.HttpHeaderNames.RANGE;
+import static com.hotels.styx.api.HttpMethod.GET;
+import static com.hotels.styx.api.HttpMethod.HEAD;
 import static com.hotels.styx.api.HttpResponseStatus.INTERNAL_SERVER_ERROR;
+import static com.hotels.styx.api.HttpResponseStatus.NOT_MODIFIED;
+import static com.hotels.styx.api.HttpResponseStatus.OK;
+import static com.hotels.styx.api.HttpResponseStatus.PARTIAL_CONTENT;
+import static com.hotels.styx.api.HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE;
 import static com.hotels.styx.common.http.handler.NotFoundHandler.NOT_FOUND_HANDLER;
 import static com.hotels.styx.server.handlers.MediaTypes.mediaTypeOf;
-import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.time.format.DateTimeFormatter.RFC_1123_DATE_TIME;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
- * HTTP handler that provides a static file.
+ * HTTP handler that provides static files.
+ * <p>
+ * Files are sent as they are, so binary files are served intact. The content is read on demand, in chunks
+ * of {@value #CHUNK_SIZE} bytes that go straight from the file into direct buffers.
+ * <p>
+ * Responses carry {@code ETag} and {@code Last-Modified} validators. The handler answers conditional requests
+ * with {@code 304 Not Modified}, and requests for a single byte range, honouring {@code If-Range}, with
+ * {@code 206 Partial Content}. Requests for several ranges get the whole file.
+ * <p>
+ * The attributes of resolved files are cached, and read again from the file system once they are older than
+ * the revalidation interval.
  */
 public class StaticFileHandler implements HttpHandler {
+    static final int CHUNK_SIZE = 64 * 1024;
+
     private static final Logger LOG = getLogger(StaticFileHandler.class);
+    private static final Duration DEFAULT_REVALIDATE_AFTER = Duration.ofSeconds(1);
+    private static final int MAX_CACHED_FILES = 10_000;
+
     private final File dir;
+    private final long revalidateAfterNanos;
+    private final ConcurrentMap<String, ResolvedFile> resolved = new ConcurrentHashMap<>();
 
     /**
      * Constructor.
@@ -49,66 +103,275 @@ public class StaticFileHandler implements HttpHandler {
      * @param dir directory to find files in
      */
     public StaticFileHandler(File dir) {
+        this(dir, DEFAULT_REVALIDATE_AFTER);
+    }
+
+    StaticFileHandler(File dir, Duration revalidateAfter) {
         this.dir = dir;
+        this.revalidateAfterNanos = revalidateAfter.toNanos();
     }
 
     @Override
     public Eventual<LiveHttpResponse> handle(LiveHttpRequest request, HttpInterceptor.Context context) {
         try {
-            return resolveFile(request.path())
-                    .map(ResolvedFile::new)
-                    .map(resolvedFile -> HttpResponse.response()
-                            .addHeader(CONTENT_TYPE, resolvedFile.mediaType)
-                            .body(resolvedFile.content, UTF_8)
-                            .build()
-                            .stream())
-                    .map(Eventual::of)
-                    .orElseGet(() -> new HttpAggregator(NOT_FOUND_HANDLER).handle(request, context));
+            ResolvedFile file = resolve(request.path());
+            if (!file.exists()) {
+                return new HttpAggregator(NOT_FOUND_HANDLER).handle(request, context);
+            }
+            return Eventual.of(respond(request, file));
         } catch (IOException e) {
             return Eventual.of(HttpResponse.response(INTERNAL_SERVER_ERROR).build().stream());
         }
     }
 
-    private static class ResolvedFile {
-        private final String content;
-        private final CharSequence mediaType;
+    private static LiveHttpResponse respond(LiveHttpRequest request, ResolvedFile file) {
+        boolean getOrHead = request.method().equals(GET) || request.method().equals(HEAD);
+        if (getOrHead && notModified(request, file)) {
+            return validated(LiveHttpResponse.response(NOT_MODIFIED), file).build();
+        }
+
+        ByteRange range = range(request, file);
+        if (range == null) {
+            return content(request, file, OK, 0, file.size).build();
+        }
+        if (range == ByteRange.UNSATISFIABLE) {
+            return LiveHttpResponse.response(REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(CONTENT_RANGE, "bytes */" + file.size)
+                    .header(CONTENT_LENGTH, 0)
+                    .build();
+        }
+        return content(request, file, PARTIAL_CONTENT, range.start, range.length)
+                .header(CONTENT_RANGE, "bytes " + range.start + "-" + (range.start + range.length - 1) + "/" + file.size)
+                .build();
+    }
+
+    private static LiveHttpResponse.Builder content(LiveHttpRequest request, ResolvedFile file, HttpResponseStatus status, long start, long length) {
+        LiveHttpResponse.Builder response = request.method().equals(HEAD) || length == 0
+                ? LiveHttpResponse.response(status)
+                : LiveHttpResponse.response(status, new ByteStream(read(file.path, start, length)));
+
+        return validated(response, file)
+                .header(CONTENT_TYPE, file.mediaType)
+                .header(CONTENT_LENGTH, length)
+                .header(ACCEPT_RANGES, "bytes");
+    }
+
+    private static LiveHttpResponse.Builder validated(LiveHttpResponse.Builder response, ResolvedFile file) {
+        return response
+                .header(ETAG, file.etag)
+                .header(LAST_MODIFIED, RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(file.lastModified).atZone(ZoneOffset.UTC)));
+    }
+
+    private static boolean notModified(LiveHttpRequest request, ResolvedFile file) {
+        Optional<String> ifNoneMatch = request.header(IF_NONE_MATCH);
+        if (ifNoneMatch.isPresent()) {
+            return etagMatches(ifNoneMatch.get(), file.etag);
+        }
+        return request.header(IF_MODIFIED_SINCE)
+                .map(StaticFileHandler::parseDate)
+                .map(since -> file.lastModified / 1000 <= since.getEpochSecond())
+                .orElse(false);
+    }
+
+    private static ByteRange range(LiveHttpRequest request, ResolvedFile file) {
+        Optional<String> range = request.header(RANGE);
+        if (!range.isPresent() || !request.method().equals(GET)) {
+            return null;
+        }
+        Optional<String> ifRange = request.header(IF_RANGE);
+        if (ifRange.isPresent() && !ifRangeMatches(ifRange.get(), file)) {
+            return null;
+        }
+        return ByteRange.parse(range.get(), file.size);
+    }
+
+    // Weak comparison, as for If-None-Match.
+    private static boolean etagMatches(String header, String etag) {
+        for (String candidate : header.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || (tag.startsWith("W/") ? tag.substring(2) : tag).equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Strong comparison for entity tags, and exact match for dates.
+    private static boolean ifRangeMatches(String header, ResolvedFile file) {
+        String value = header.trim();
+        if (value.startsWith("\"") || value.startsWith("W/")) {
+            return value.equals(file.etag);
+        }
+        Instant date = parseDate(value);
+        return date != null && date.getEpochSecond() == file.lastModified / 1000;
+    }
 
-        private ResolvedFile(File file) {
-            this.content = readLines(file);
-            this.mediaType = mediaTypeOf(file.getName());
+    private static Instant parseDate(String value) {
+        try {
+            return ZonedDateTime.parse(value.trim(), RFC_1123_DATE_TIME).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
         }
     }
 
-    private static String readLines(File file) {
+    private static Flux<Buffer> read(Path path, long start, long length) {
+        long end = start + length;
+        return Flux.using(
+                () -> FileChannel.open(path, READ),
+                channel -> Flux.<Buffer, Long>generate(() -> start, (position, sink) -> {
+                    if (position >= end) {
+                        sink.complete();
+                        return position;
+                    }
+                    int size = (int) min(CHUNK_SIZE, end - position);
+                    ByteBuf chunk = ByteBufAllocator.DEFAULT.directBuffer(size);
+                    try {
+                        int read = chunk.writeBytes(channel, position, size);
+                        if (read <= 0) {
+                            chunk.release();
+                            sink.error(new EOFException("File was truncated while being read. File=" + path));
+                            return position;
+                        }
+                        sink.next(Buffers.fromByteBuf(chunk));
+                        return position + read;
+                    } catch (IOException e) {
+                        chunk.release();
+                        sink.error(e);
+                        return position;
+                    }
+                }),
+                StaticFileHandler::closeQuietly);
+    }
+
+    private static void closeQuietly(FileChannel channel) {
         try {
-            return Files.readString(file.toPath(), UTF_8);
+            channel.close();
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            LOG.debug("Failed to close file channel", e);
+        }
+    }
+
+    private ResolvedFile resolve(String path) throws IOException {
+        long now = System.nanoTime();
+        ResolvedFile cached = resolved.get(path);
+        if (cached != null && now - cached.resolvedAt < revalidateAfterNanos) {
+            return cached;
+        }
+
+        ResolvedFile file = resolveFile(path, now);
+        if (resolved.size() >= MAX_CACHED_FILES) {
+            resolved.values().removeIf(it -> now - it.resolvedAt >= revalidateAfterNanos);
         }
+        if (resolved.size() < MAX_CACHED_FILES) {
+            resolved.put(path, file);
+        }
+        return file;
     }
 
     /**
      * Resolve path to actual file.
      *
      * @param path file path
-     * @return file if it exists
+     * @param now  time of resolution
+     * @return file, which may not exist
      * @throws IOException I/O exception
      */
-    private Optional<File> resolveFile(String path) throws IOException {
+    private ResolvedFile resolveFile(String path, long now) throws IOException {
         File result = new File(dir, path).getCanonicalFile();
         LOG.debug("Resolved path={}", result);
 
-        if (!result.exists()) {
-            return Optional.empty();
-        }
-
         // For security, check file really does exist under root.
         String fullPath = result.getPath();
         if (!fullPath.startsWith(dir.getCanonicalPath() + File.separator) && !fullPath.equals(dir.getCanonicalPath())) {
             // Prevent paths like http://foo/../../etc/passwd
-            result = null;
+            return ResolvedFile.missing(now);
+        }
+
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(result.toPath(), BasicFileAttributes.class);
+            return attributes.isRegularFile()
+                    ? new ResolvedFile(result.toPath(), attributes.size(), attributes.lastModifiedTime().toMillis(), now)
+                    : ResolvedFile.missing(now);
+        } catch (NoSuchFileException e) {
+            return ResolvedFile.missing(now);
+        }
+    }
+
+    private static final class ResolvedFile {
+        private final Path path;
+        private final long size;
+        private final long lastModified;
+        private final String etag;
+        private final CharSequence mediaType;
+        private final long resolvedAt;
+
+        private ResolvedFile(Path path, long size, long lastModified, long resolvedAt) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.etag = path == null ? null : "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(size) + "\"";
+            this.mediaType = path == null ? null : mediaTypeOf(path.getFileName().toString());
+            this.resolvedAt = resolvedAt;
+        }
+
+        private static ResolvedFile missing(long resolvedAt) {
+            return new ResolvedFile(null, 0, 0, resolvedAt);
+        }
+
+        private boolean exists() {
+            return path != null;
+        }
+    }
+
+    /**
+     * A single range of bytes, from a {@code Range} header.
+     */
+    private static final class ByteRange {
+        private static final ByteRange UNSATISFIABLE = new ByteRange(0, 0);
+
+        private final long start;
+        private final long length;
+
+        private ByteRange(long start, long length) {
+            this.start = start;
+            this.length = length;
+        }
+
+        /**
+         * Parses a range header.
+         *
+         * @param header header value
+         * @param size   file size
+         * @return the range, {@link #UNSATISFIABLE}, or null if the header is to be ignored
+         */
+        private static ByteRange parse(String header, long size) {
+            String value = header.trim();
+            if (!value.regionMatches(true, 0, "bytes=", 0, 6) || value.indexOf(',') >= 0) {
+                return null;
+            }
+
+            String spec = value.substring(6).trim();
+            int dash = spec.indexOf('-');
+            try {
+                if (dash == 0) {
+                    return suffix(Long.parseLong(spec.substring(1).trim()), size);
+                }
+                return dash < 0 ? null : span(Long.parseLong(spec.substring(0, dash).trim()), spec.substring(dash + 1).trim(), size);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        private static ByteRange suffix(long length, long size) {
+            return length <= 0 || size == 0 ? UNSATISFIABLE : new ByteRange(max(0, size - length), min(length, size));
         }
 
-        return Optional.ofNullable(result);
+        private static ByteRange span(long first, String lastSpec, long size) {
+            long last = lastSpec.isEmpty() ? Long.MAX_VALUE : Long.parseLong(lastSpec);
+            if (last < first) {
+                return null;
+            }
+            return first >= size ? UNSATISFIABLE : new ByteRange(first, min(last, size - 1) - first + 1);
+        }
     }
 }
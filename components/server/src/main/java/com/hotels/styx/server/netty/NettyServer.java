@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -24,16 +24,22 @@ import io.netty.bootstrap.ServerBootstrap;
 import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.group.ChannelGroup;
 import org.slf4j.Logger;
 
 import java.net.BindException;
 import java.net.InetSocketAddress;
+import java.time.Duration;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static com.hotels.styx.api.HttpHeaderNames.CONTENT_TYPE;
+import static com.hotels.styx.api.HttpHeaderValues.APPLICATION_JSON;
+import static com.hotels.styx.api.HttpMethod.POST;
 import static com.hotels.styx.api.HttpResponse.response;
 import static com.hotels.styx.api.HttpResponseStatus.OK;
 import static io.netty.channel.ChannelOption.ALLOCATOR;
@@ -41,6 +47,7 @@ import static io.netty.channel.ChannelOption.SO_BACKLOG;
 import static io.netty.channel.ChannelOption.SO_KEEPALIVE;
 import static io.netty.channel.ChannelOption.SO_REUSEADDR;
 import static io.netty.channel.ChannelOption.TCP_NODELAY;
+import static io.netty.channel.unix.UnixChannelOption.SO_REUSEPORT;
 import static java.lang.String.format;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Objects.requireNonNull;
@@ -60,8 +67,13 @@ final class NettyServer extends AbstractStyxService implements InetServer {
     private final NettyExecutor bossExecutor;
     private final NettyExecutor workerExecutor;
     private final Runnable shutdownAction;
+    private final int acceptorBacklog;
+    private final int acceptorCount;
+    private final Duration drainTimeout;
 
     private volatile InetSocketAddress address;
+    private volatile boolean draining;
+    private CompletableFuture<Void> drained;
 
     NettyServer(NettyServerBuilder nettyServerBuilder) {
         super("");
@@ -72,6 +84,9 @@ final class NettyServer extends AbstractStyxService implements InetServer {
         this.bossExecutor = nettyServerBuilder.bossExecutor();
         this.workerExecutor = nettyServerBuilder.workerExecutor();
         this.shutdownAction = nettyServerBuilder.shutdownAction();
+        this.acceptorBacklog = nettyServerBuilder.acceptorBacklog();
+        this.acceptorCount = nettyServerBuilder.acceptorCount();
+        this.drainTimeout = nettyServerBuilder.drainTimeout();
     }
 
     @Override
@@ -83,7 +98,19 @@ final class NettyServer extends AbstractStyxService implements InetServer {
                                 .body(format("%d", this.address.getPort()), UTF_8)
                                 .build()
                                 .stream()
-                ));
+                ),
+                "drain", (request, context) -> {
+                    if (POST.equals(request.method())) {
+                        drain();
+                    }
+                    return Eventual.of(
+                            response(OK)
+                                    .disableCaching()
+                                    .header(CONTENT_TYPE, APPLICATION_JSON)
+                                    .body(format("{\"draining\":%s,\"connections\":%d}", draining, serverConnector.drainingConnections()), UTF_8)
+                                    .build()
+                                    .stream());
+                });
     }
 
     @Override
@@ -105,11 +132,19 @@ final class NettyServer extends AbstractStyxService implements InetServer {
 
         CompletableFuture<Void> serviceFuture = new CompletableFuture<>();
 
+        if (bossExecutor.transport() != workerExecutor.transport()) {
+            serviceFuture.completeExceptionally(new IllegalStateException(format(
+                    "Boss and worker executors must use the same transport. boss=%s, worker=%s",
+                    bossExecutor.transport().configName(), workerExecutor.transport().configName())));
+            return serviceFuture;
+        }
+
         ServerBootstrap b = new ServerBootstrap();
+        int acceptors = acceptors();
 
         b.group(bossExecutor.eventLoopGroup(), workerExecutor.eventLoopGroup())
                 .channel(bossExecutor.serverEventLoopClass())
-                .option(SO_BACKLOG, 1024)
+                .option(SO_BACKLOG, acceptorBacklog)
                 .option(SO_REUSEADDR, true)
                 .childOption(SO_REUSEADDR, true)
                 .childOption(SO_KEEPALIVE, true)
@@ -122,6 +157,10 @@ final class NettyServer extends AbstractStyxService implements InetServer {
                     }
                 });
 
+        if (acceptors > 1) {
+            b.option(SO_REUSEPORT, true);
+        }
+
         // Bind and start to accept incoming connections.
         int port = serverConnector.port();
 
@@ -132,7 +171,8 @@ final class NettyServer extends AbstractStyxService implements InetServer {
                         channelGroup.add(channel);
                         address = (InetSocketAddress) channel.localAddress();
                         LOGGER.debug("server connector {} bound successfully on port {} socket port {}", new Object[]{serverConnector.getClass(), port, address});
-                        serviceFuture.complete(null);
+                        // The remaining sockets bind to the actual port, which differs when an ephemeral port was requested:
+                        bindAdditionalAcceptors(b, address.getPort(), acceptors - 1, serviceFuture);
                     } else {
                         LOGGER.warn("Failed to start service={} cause={}", this, future.cause());
                         serviceFuture.completeExceptionally(mapToBetterException(future.cause(), port));
@@ -142,23 +182,66 @@ final class NettyServer extends AbstractStyxService implements InetServer {
         return serviceFuture;
     }
 
+    private int acceptors() {
+        if (acceptorCount > 1 && !bossExecutor.transport().supportsReusePort()) {
+            LOGGER.info("SO_REUSEPORT is not supported by the {} transport. Binding a single acceptor.",
+                    bossExecutor.transport().configName());
+            return 1;
+        }
+        return acceptorCount;
+    }
+
+    private void bindAdditionalAcceptors(ServerBootstrap bootstrap, int port, int count, CompletableFuture<Void> serviceFuture) {
+        if (count == 0) {
+            serviceFuture.complete(null);
+            return;
+        }
+
+        AtomicInteger remaining = new AtomicInteger(count);
+        for (int i = 0; i < count; i++) {
+            bootstrap.bind(new InetSocketAddress(port)).addListener((ChannelFutureListener) future -> {
+                acceptorBound(future, port);
+                if (remaining.decrementAndGet() == 0) {
+                    serviceFuture.complete(null);
+                }
+            });
+        }
+    }
+
+    private void acceptorBound(ChannelFuture future, int port) {
+        if (future.isSuccess()) {
+            channelGroup.add(future.channel());
+            LOGGER.debug("additional acceptor bound on port {}", port);
+        } else {
+            // The first socket is bound already. Carry on with fewer acceptors rather than fail:
+            LOGGER.warn("Failed to bind an additional acceptor. port={}, cause={}", port, future.cause().toString());
+        }
+    }
+
     @Override
     protected CompletableFuture<Void> stopService() {
-        return CompletableFuture.runAsync(() -> {
-            try {
-                channelGroup.close().awaitUninterruptibly();
-                if (this.shutdownAction != null) {
-                    shutdownAction.run();
-                }
-                address = null;
-            } catch (RuntimeException e) {
-                throw e;
-            } catch (Exception e) {
-                throw new RuntimeException(e);
+        return drain().thenRun(() -> {
+            serverConnector.close();
+            if (this.shutdownAction != null) {
+                shutdownAction.run();
             }
+            address = null;
         });
     }
 
+    /**
+     * Stops accepting new connections, and drains the existing ones.
+     */
+    private synchronized CompletableFuture<Void> drain() {
+        if (drained == null) {
+            draining = true;
+            drained = CompletableFuture
+                    .runAsync(() -> channelGroup.close().awaitUninterruptibly())
+                    .thenCompose(closed -> serverConnector.drain(drainTimeout));
+        }
+        return drained;
+    }
+
     private Throwable mapToBetterException(Throwable cause, int port) {
         if (cause instanceof BindException) {
             return new BindException(format("Address [%s] already is use.", port));
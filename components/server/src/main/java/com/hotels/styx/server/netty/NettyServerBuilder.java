@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -24,6 +24,8 @@ import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.DefaultChannelGroup;
 import io.netty.util.concurrent.ImmediateEventExecutor;
 
+import java.time.Duration;
+
 import static com.hotels.styx.api.HttpResponseStatus.NOT_FOUND;
 import static com.hotels.styx.api.LiveHttpResponse.response;
 import static com.hotels.styx.common.Preconditions.checkArgument;
@@ -45,6 +47,9 @@ public final class NettyServerBuilder {
     private NettyExecutor bossExecutor;
     private NettyExecutor workerExecutor;
     private Runnable shutdownAction = () -> { };
+    private int acceptorBacklog = 1024;
+    private int acceptorCount = 1;
+    private Duration drainTimeout = Duration.ofSeconds(5);
 
     public static NettyServerBuilder newBuilder() {
         return new NettyServerBuilder();
@@ -74,6 +79,18 @@ public final class NettyServerBuilder {
         return this.shutdownAction;
     }
 
+    int acceptorBacklog() {
+        return this.acceptorBacklog;
+    }
+
+    int acceptorCount() {
+        return this.acceptorCount;
+    }
+
+    Duration drainTimeout() {
+        return this.drainTimeout;
+    }
+
     HttpHandler handler() {
         return this.handler;
     }
@@ -103,6 +120,38 @@ public final class NettyServerBuilder {
         return this;
     }
 
+    public NettyServerBuilder acceptorBacklog(int acceptorBacklog) {
+        checkArgument(acceptorBacklog > 0, "Acceptor backlog must be positive");
+        this.acceptorBacklog = acceptorBacklog;
+        return this;
+    }
+
+    /**
+     * Sets the number of listening sockets to bind with {@code SO_REUSEPORT}. Each is served by a boss
+     * thread of its own, provided that the boss executor has enough threads. Takes effect with the native
+     * epoll transport only. Other transports bind a single socket.
+     *
+     * @param acceptorCount number of listening sockets
+     * @return this builder
+     */
+    public NettyServerBuilder acceptorCount(int acceptorCount) {
+        checkArgument(acceptorCount > 0, "Acceptor count must be positive");
+        this.acceptorCount = acceptorCount;
+        return this;
+    }
+
+    /**
+     * Sets the time allowed for active connections to finish their current exchange when the server stops.
+     *
+     * @param drainTimeout drain timeout
+     * @return this builder
+     */
+    public NettyServerBuilder drainTimeout(Duration drainTimeout) {
+        checkArgument(!requireNonNull(drainTimeout).isNegative(), "Drain timeout must not be negative");
+        this.drainTimeout = drainTimeout;
+        return this;
+    }
+
     public NettyServerBuilder handler(HttpHandler handler) {
         this.handler = handler;
         return this;
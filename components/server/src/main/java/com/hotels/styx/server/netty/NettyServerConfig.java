@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -18,6 +18,9 @@ package com.hotels.styx.server.netty;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+import com.hotels.styx.NettyTransport;
+import com.hotels.styx.common.CompressionConfig;
+import com.hotels.styx.common.ConcurrencyLimitConfig;
 import com.hotels.styx.server.ConnectorConfig;
 import com.hotels.styx.server.HttpConnectorConfig;
 import com.hotels.styx.server.HttpsConnectorConfig;
@@ -42,13 +45,18 @@ public class NettyServerConfig {
     private int workerThreadsCount = HALF_OF_AVAILABLE_PROCESSORS;
 
     private int nioAcceptorBacklog = 1024;
+    private int acceptorCount = 1;
     private int maxInitialLength = 4096;
     private int maxHeaderSize = 8192;
     private int maxChunkSize = 8192;
     private int requestTimeoutMs = 12000;
     private int keepAliveTimeoutMillis = 12000;
     private int maxConnectionsCount = 512;
+    private int drainTimeoutMillis = 5000;
+    private NettyTransport transport = NettyTransport.defaultTransport();
+    private ConcurrencyLimitConfig concurrencyLimit = ConcurrencyLimitConfig.disabled();
     private boolean compressResponses;
+    private CompressionConfig compression = CompressionConfig.defaults();
 
     private final Optional<HttpConnectorConfig> httpConnectorConfig;
     private final Optional<HttpsConnectorConfig> httpsConnectorConfig;
@@ -65,16 +73,21 @@ public class NettyServerConfig {
         this.bossThreadsCount = builder.bossThreadsCount;
         this.workerThreadsCount = builder.workerThreadsCount;
         this.nioAcceptorBacklog = builder.nioAcceptorBacklog;
+        this.acceptorCount = builder.acceptorCount;
         this.maxInitialLength = builder.maxInitialLength;
         this.maxHeaderSize = builder.maxHeaderSize;
         this.maxChunkSize = builder.maxChunkSize;
         this.requestTimeoutMs = builder.requestTimeoutMs;
         this.keepAliveTimeoutMillis = builder.keepAliveTimeoutMillis;
         this.maxConnectionsCount = builder.maxConnectionsCount;
+        this.drainTimeoutMillis = builder.drainTimeoutMillis;
+        this.transport = builder.transport;
+        this.concurrencyLimit = builder.concurrencyLimit;
 
         this.httpConnectorConfig = Optional.ofNullable(builder.httpConnectorConfig);
         this.httpsConnectorConfig = Optional.ofNullable(builder.httpsConnectorConfig);
         this.compressResponses = builder.compressResponses;
+        this.compression = builder.compression;
         this.connectors = connectorsIterable();
     }
 
@@ -97,6 +110,24 @@ public class NettyServerConfig {
         return connectors;
     }
 
+    /**
+     * The socket transport requested for the server threads. If it is not available, the next best one is used.
+     *
+     * @return requested transport
+     */
+    public NettyTransport transport() {
+        return this.transport;
+    }
+
+    /**
+     * Adaptive limit on the number of requests in flight on each connector.
+     *
+     * @return concurrency limit settings
+     */
+    public ConcurrencyLimitConfig concurrencyLimit() {
+        return this.concurrencyLimit;
+    }
+
     /**
      * Number of threads for establishing new channels.
      *
@@ -115,10 +146,26 @@ public class NettyServerConfig {
         return this.workerThreadsCount;
     }
 
+    /**
+     * The maximum length of the queue of connections waiting to be accepted, for each listening socket.
+     *
+     * @return accept queue length
+     */
     public int nioAcceptorBacklog() {
         return this.nioAcceptorBacklog;
     }
 
+    /**
+     * Number of listening sockets bound to each connector port with {@code SO_REUSEPORT}, each served
+     * by its own boss thread. The kernel spreads incoming connections across them. Values above 1 take
+     * effect with the native epoll and io_uring transports only. Other transports bind a single socket.
+     *
+     * @return number of listening sockets
+     */
+    public int acceptorCount() {
+        return this.acceptorCount;
+    }
+
     /**
      * The maximum length in bytes of the initial line of an HTTP message, e.g. {@code GET http://example.org/ HTTP/1.1}.
      *
@@ -175,6 +222,16 @@ public class NettyServerConfig {
         return this.maxConnectionsCount;
     }
 
+    /**
+     * Time allowed for active connections to finish their current exchange when the server stops, in milliseconds.
+     * Connections still open after this time are closed.
+     *
+     * @return time in millis
+     */
+    public int drainTimeoutMillis() {
+        return this.drainTimeoutMillis;
+    }
+
     /**
      * Whether responses should be compressed.
      *
@@ -184,6 +241,15 @@ public class NettyServerConfig {
         return compressResponses;
     }
 
+    /**
+     * How responses are compressed, when {@link #compressResponses()} is enabled.
+     *
+     * @return compression settings
+     */
+    public CompressionConfig compression() {
+        return compression;
+    }
+
     /**
      * Builder.
      *
@@ -194,15 +260,20 @@ public class NettyServerConfig {
         protected int bossThreadsCount = HALF_OF_AVAILABLE_PROCESSORS;
         protected int workerThreadsCount = HALF_OF_AVAILABLE_PROCESSORS;
         protected int nioAcceptorBacklog = 1024;
+        protected int acceptorCount = 1;
         protected int maxInitialLength = 4096;
         protected int maxHeaderSize = 8192;
         protected int maxChunkSize = 8192;
         protected int requestTimeoutMs = 12000;
         protected int keepAliveTimeoutMillis = 12000;
         protected int maxConnectionsCount = 512;
+        protected int drainTimeoutMillis = 5000;
+        protected NettyTransport transport = NettyTransport.defaultTransport();
+        protected ConcurrencyLimitConfig concurrencyLimit = ConcurrencyLimitConfig.disabled();
         protected HttpConnectorConfig httpConnectorConfig;
         protected HttpsConnectorConfig httpsConnectorConfig;
         protected boolean compressResponses;
+        protected CompressionConfig compression = CompressionConfig.defaults();
 
         public Builder httpPort(int port) {
             return (T) setHttpConnector(new HttpConnectorConfig(port));
@@ -232,6 +303,14 @@ public class NettyServerConfig {
             return (T) this;
         }
 
+        @JsonProperty("acceptorCount")
+        public T setAcceptorCount(Integer acceptorCount) {
+            if (acceptorCount != null && acceptorCount > 0) {
+                this.acceptorCount = acceptorCount;
+            }
+            return (T) this;
+        }
+
         @JsonProperty("maxInitialLength")
         public T setMaxInitialLength(Integer maxInitialLength) {
             if (maxInitialLength != null) {
@@ -297,12 +376,44 @@ public class NettyServerConfig {
             return (T) this;
         }
 
+        @JsonProperty("drainTimeoutMillis")
+        public T setDrainTimeoutMillis(Integer drainTimeoutMillis) {
+            if (drainTimeoutMillis != null && drainTimeoutMillis >= 0) {
+                this.drainTimeoutMillis = drainTimeoutMillis;
+            }
+            return (T) this;
+        }
+
+        @JsonProperty("transport")
+        public T setTransport(String transport) {
+            if (transport != null) {
+                this.transport = NettyTransport.fromName(transport);
+            }
+            return (T) this;
+        }
+
+        @JsonProperty("concurrencyLimit")
+        public T setConcurrencyLimit(ConcurrencyLimitConfig concurrencyLimit) {
+            if (concurrencyLimit != null) {
+                this.concurrencyLimit = concurrencyLimit;
+            }
+            return (T) this;
+        }
+
         @JsonProperty("compressResponses")
         public T setCompressResponses(boolean compressResponses) {
             this.compressResponses = compressResponses;
             return (T) this;
         }
 
+        @JsonProperty("compression")
+        public T setCompression(CompressionConfig compression) {
+            if (compression != null) {
+                this.compression = compression;
+            }
+            return (T) this;
+        }
+
         public NettyServerConfig build() {
             return new NettyServerConfig(this);
         }
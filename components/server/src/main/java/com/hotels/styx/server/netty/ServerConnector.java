@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -19,6 +19,11 @@ package com.hotels.styx.server.netty;
 import com.hotels.styx.api.HttpHandler;
 import io.netty.channel.Channel;
 
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+
 
 /**
  * ServerConnector.
@@ -31,4 +36,31 @@ public interface ServerConnector {
 
     void configure(Channel channel, HttpHandler httpPipeline);
 
+    /**
+     * Drains the connections accepted through this connector. Idle connections are closed,
+     * and active ones are closed once they finish their current exchange. Connections still
+     * open when the deadline passes are closed.
+     *
+     * @param deadline time allowed for the active connections to finish
+     * @return a future that completes when all connections are closed
+     */
+    default CompletableFuture<Void> drain(Duration deadline) {
+        return completedFuture(null);
+    }
+
+    /**
+     * Number of connections still open while draining.
+     *
+     * @return number of draining connections
+     */
+    default int drainingConnections() {
+        return 0;
+    }
+
+    /**
+     * Releases what this connector holds, such as its metrics, once the server has stopped.
+     */
+    default void close() {
+    }
+
 }
@@ -16,33 +16,57 @@
 package com.hotels.styx.server.netty;
 
 import com.hotels.styx.api.HttpHandler;
+import com.hotels.styx.metrics.CentralisedMetrics;
+import com.hotels.styx.metrics.Deleter;
 import com.hotels.styx.server.ConnectorConfig;
 import com.hotels.styx.server.HttpsConnectorConfig;
 import com.hotels.styx.server.netty.codec.NettyToStyxRequestDecoder;
 import com.hotels.styx.server.netty.connectors.HttpPipelineHandler;
+import com.hotels.styx.server.netty.handlers.ConnectionDrainer;
 import io.netty.channel.Channel;
 import io.netty.handler.codec.http.HttpServerCodec;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslHandler;
 
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
 import static com.hotels.styx.server.netty.SslContexts.newSSLContext;
 import static java.util.Objects.requireNonNull;
 
 /**
- * Creates connectors for web servers.
+ * Creates connectors for web servers. Given a server name and metrics, the connectors export
+ * the number of connections still open while draining.
  */
 public class WebServerConnectorFactory implements ServerConnectorFactory {
+    private final String serverName;
+    private final CentralisedMetrics metrics;
+
+    public WebServerConnectorFactory() {
+        this.serverName = null;
+        this.metrics = null;
+    }
+
+    public WebServerConnectorFactory(String serverName, CentralisedMetrics metrics) {
+        this.serverName = requireNonNull(serverName);
+        this.metrics = requireNonNull(metrics);
+    }
 
     @Override
     public ServerConnector create(ConnectorConfig config) {
-        return new WebServerConnector(config);
+        return new WebServerConnector(config, this);
     }
 
     private static final class WebServerConnector implements ServerConnector {
         private final ConnectorConfig config;
+        private final ConnectionDrainer drainer = new ConnectionDrainer();
+        private final Optional<Deleter> drainingGauge;
 
-        private WebServerConnector(ConnectorConfig config) {
+        private WebServerConnector(ConnectorConfig config, WebServerConnectorFactory factory) {
             this.config = requireNonNull(config);
+            this.drainingGauge = Optional.ofNullable(factory.metrics)
+                    .map(metrics -> metrics.proxy().server().drainingConnections(factory.serverName, config.type()).bind(drainer::drainingConnections));
         }
 
         @Override
@@ -63,11 +87,27 @@ public class WebServerConnectorFactory implements ServerConnectorFactory {
 
             channel.pipeline()
                     .addLast(new HttpServerCodec())
+                    .addLast(drainer.newHandler())
                     .addLast(new NettyToStyxRequestDecoder.Builder()
                             .build())
                     .addLast(new HttpPipelineHandler.Builder(httpHandler).build());
         }
 
+        @Override
+        public CompletableFuture<Void> drain(Duration deadline) {
+            return drainer.drain(deadline);
+        }
+
+        @Override
+        public int drainingConnections() {
+            return drainer.drainingConnections();
+        }
+
+        @Override
+        public void close() {
+            drainingGauge.ifPresent(Deleter::delete);
+        }
+
         private SslHandler sslHandler(Channel channel) {
             SslContext sslContext = newSSLContext((HttpsConnectorConfig) config);
 
@@ -16,6 +16,7 @@
 package com.hotels.styx.server.netty.codec;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.hotels.styx.api.Buffer;
 import com.hotels.styx.api.Buffers;
 import com.hotels.styx.api.ByteStream;
 import com.hotels.styx.api.HttpVersion;
@@ -36,9 +37,10 @@ import io.netty.handler.codec.http.HttpObject;
 import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.LastHttpContent;
 import io.netty.util.ReferenceCountUtil;
-import rx.Observable;
-import rx.Producer;
-import rx.Subscriber;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.Operators;
 
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -54,7 +56,6 @@ import static com.hotels.styx.server.UniqueIdSuppliers.UUID_VERSION_ONE_SUPPLIER
 import static com.hotels.styx.server.netty.codec.UnwiseCharsEncoder.IGNORE;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.StreamSupport.stream;
-import static rx.RxReactiveStreams.toPublisher;
 
 /**
  * This {@link MessageToMessageDecoder} is responsible for decode {@link io.netty.handler.codec.http.HttpRequest}
@@ -88,13 +89,9 @@ public final class NettyToStyxRequestDecoder extends MessageToMessageDecoder<Htt
         try {
             if (httpObject instanceof HttpRequest) {
                 this.producer = new FlowControllingHttpContentProducer(ctx, this.flowControlEnabled);
-                Observable<ByteBuf> contentObservable = Observable.create(contentSubscriber -> {
-                    contentSubscriber.setProducer(this.producer);
-                    this.producer.subscriptionStart(contentSubscriber);
-                });
 
                 HttpRequest request = (HttpRequest) httpObject;
-                LiveHttpRequest styxRequest = toStyxRequest(request, contentObservable);
+                LiveHttpRequest styxRequest = toStyxRequest(request, this.producer);
                 out.add(styxRequest);
             } else if (httpObject instanceof HttpContent && this.producer != null) {
                 this.producer.onNext(content(httpObject));
@@ -139,9 +136,9 @@ public final class NettyToStyxRequestDecoder extends MessageToMessageDecoder<Htt
         }
     }
 
-    private LiveHttpRequest toStyxRequest(HttpRequest request, Observable<ByteBuf> contentObservable) {
+    private LiveHttpRequest toStyxRequest(HttpRequest request, Publisher<Buffer> content) {
         validateHostHeader(request);
-        return makeAStyxRequestFrom(request, contentObservable)
+        return makeAStyxRequestFrom(request, content)
                 .removeHeader(EXPECT)
                 .build();
     }
@@ -168,14 +165,14 @@ public final class NettyToStyxRequestDecoder extends MessageToMessageDecoder<Htt
 
 
     @VisibleForTesting
-    LiveHttpRequest.Builder makeAStyxRequestFrom(HttpRequest request, Observable<ByteBuf> content) {
+    LiveHttpRequest.Builder makeAStyxRequestFrom(HttpRequest request, Publisher<Buffer> content) {
         Url url = UrlDecoder.decodeUrl(unwiseCharEncoder, request);
         LiveHttpRequest.Builder requestBuilder = new LiveHttpRequest.Builder()
                 .method(toStyxMethod(request.method()))
                 .url(url)
                 .version(toStyxVersion(request.protocolVersion()))
                 .id(uniqueIdSupplier.get())
-                .body(new ByteStream(toPublisher(content.map(Buffers::fromByteBuf))));
+                .body(new ByteStream(content));
 
         stream(request.headers().spliterator(), false)
                 .forEach(entry -> requestBuilder.addHeader(entry.getKey(), entry.getValue()));
@@ -191,12 +188,28 @@ public final class NettyToStyxRequestDecoder extends MessageToMessageDecoder<Htt
         return com.hotels.styx.api.HttpMethod.httpMethod(method.name());
     }
 
-    private static class FlowControllingHttpContentProducer implements Producer {
+    /**
+     * Publishes the request content to a single subscriber.
+     * <p>
+     * Content is queued as it is decoded, and handed to the subscriber on the event loop
+     * as demand allows. When flow control is enabled, each request for more content
+     * triggers a channel read.
+     */
+    private static final class FlowControllingHttpContentProducer implements Publisher<Buffer>, Subscription {
         private final ChannelHandlerContext ctx;
 
         private final Queue<ByteBuf> readQueue = new ArrayDeque<>();
-        private boolean completed;
-        private Subscriber<? super ByteBuf> contentSubscriber;
+        private volatile Subscriber<? super Buffer> contentSubscriber;
+        private volatile boolean completed;
+
+        // Guarded by readQueue
+        private long requested;
+        private boolean cancelled;
+        private boolean terminated;
+
+        // Only accessed from the event loop
+        private boolean draining;
+        private boolean missed;
 
         FlowControllingHttpContentProducer(ChannelHandlerContext ctx, boolean flowControlEnabled) {
             this.ctx = ctx;
@@ -206,14 +219,45 @@ public final class NettyToStyxRequestDecoder extends MessageToMessageDecoder<Htt
             }
         }
 
+        @Override
+        public void subscribe(Subscriber<? super Buffer> subscriber) {
+            synchronized (this.readQueue) {
+                if (this.contentSubscriber != null) {
+                    Operators.error(subscriber, new IllegalStateException("Request content can only be subscribed once"));
+                    return;
+                }
+                this.contentSubscriber = subscriber;
+            }
+            subscriber.onSubscribe(this);
+            drainOnEventLoop();
+        }
+
         @Override
         public void request(long n) {
-            this.ctx.channel().read();
+            if (Operators.validate(n)) {
+                synchronized (this.readQueue) {
+                    this.requested = Operators.addCap(this.requested, n);
+                }
+                this.ctx.channel().read();
+                drainOnEventLoop();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this.readQueue) {
+                this.cancelled = true;
+            }
+            cleanUp();
         }
 
         void onNext(ByteBuf content) {
             synchronized (this.readQueue) {
-                this.readQueue.add(content);
+                if (this.cancelled) {
+                    ReferenceCountUtil.release(content);
+                } else {
+                    this.readQueue.add(content);
+                }
             }
         }
 
@@ -223,22 +267,19 @@ public final class NettyToStyxRequestDecoder extends MessageToMessageDecoder<Htt
         }
 
         void notifySubscriber() {
-            if (this.contentSubscriber != null) {
-                synchronized (this.readQueue) {
-                    ByteBuf value;
-                    while ((value = this.readQueue.poll()) != null) {
-                        this.contentSubscriber.onNext(value);
-                    }
-                }
-                if (this.completed) {
-                    this.contentSubscriber.onCompleted();
-                }
+            if (this.draining) {
+                this.missed = true;
+                return;
+            }
+            this.draining = true;
+            try {
+                do {
+                    this.missed = false;
+                    drain();
+                } while (this.missed);
+            } finally {
+                this.draining = false;
             }
-        }
-
-        void subscriptionStart(Subscriber<? super ByteBuf> subscriber) {
-            this.contentSubscriber = subscriber;
-            notifySubscriber();
         }
 
         void cleanUp() {
@@ -249,6 +290,43 @@ public final class NettyToStyxRequestDecoder extends MessageToMessageDecoder<Htt
                 }
             }
         }
+
+        private void drainOnEventLoop() {
+            if (this.ctx.executor().inEventLoop()) {
+                notifySubscriber();
+            } else {
+                this.ctx.executor().execute(this::notifySubscriber);
+            }
+        }
+
+        private void drain() {
+            Subscriber<? super Buffer> subscriber = this.contentSubscriber;
+            if (subscriber == null) {
+                return;
+            }
+
+            while (true) {
+                ByteBuf value;
+                synchronized (this.readQueue) {
+                    if (this.cancelled || this.terminated || this.requested == 0 || (value = this.readQueue.poll()) == null) {
+                        break;
+                    }
+                    if (this.requested != Long.MAX_VALUE) {
+                        this.requested--;
+                    }
+                }
+                subscriber.onNext(Buffers.fromByteBuf(value));
+            }
+
+            boolean complete;
+            synchronized (this.readQueue) {
+                complete = this.completed && this.readQueue.isEmpty() && !this.cancelled && !this.terminated;
+                this.terminated |= complete;
+            }
+            if (complete) {
+                subscriber.onComplete();
+            }
+        }
     }
 
     /**
@@ -26,6 +26,10 @@ import static com.hotels.styx.api.HttpHeaderNames.HOST;
 import static com.hotels.styx.api.Url.Builder.url;
 
 final class UrlDecoder {
+    private static final boolean[] PATH_CHARS = allowed("-_.!~*'():@&=+$,;/");
+    private static final boolean[] QUERY_CHARS = allowed("-_.!~*'():@&=+$,;/?");
+    private static final boolean[] HOST_CHARS = allowed("-_.!~*'():@&=+$,;[]");
+
     private UrlDecoder() {
     }
 
@@ -33,7 +37,14 @@ final class UrlDecoder {
         String host = request.headers().get(HOST);
 
         if (request.uri().startsWith("/") && host != null) {
-            String encodedUrl = "http://" + host + unwiseCharEncoder.encode(request.uri());
+            String target = unwiseCharEncoder.encode(request.uri());
+
+            Url url = decodeOriginForm(host, target);
+            if (url != null) {
+                return url;
+            }
+
+            String encodedUrl = "http://" + host + target;
             URI uri;
             try {
                 uri = URI.create(encodedUrl);
@@ -49,4 +60,68 @@ final class UrlDecoder {
             return url(unwiseCharEncoder.encode(request.uri())).build();
         }
     }
+
+    /*
+     * Splits a plain origin-form request target into path and query without going through java.net.URI.
+     * Handles only targets that java.net.URI would accept unchanged, and returns null for anything else,
+     * such as fragments, non-ASCII characters or malformed escapes. Those take the general route.
+     */
+    private static Url decodeOriginForm(String host, String target) {
+        if (!validHost(host)) {
+            return null;
+        }
+
+        int queryStart = target.indexOf('?');
+        int pathEnd = queryStart < 0 ? target.length() : queryStart;
+
+        if (!valid(target, 0, pathEnd, PATH_CHARS)) {
+            return null;
+        }
+        if (queryStart >= 0 && !valid(target, queryStart + 1, target.length(), QUERY_CHARS)) {
+            return null;
+        }
+
+        return new Url.Builder()
+                .path(target.substring(0, pathEnd))
+                .rawQuery(queryStart < 0 ? null : target.substring(queryStart + 1))
+                .build();
+    }
+
+    private static boolean validHost(String host) {
+        return !host.isEmpty() && valid(host, 0, host.length(), HOST_CHARS);
+    }
+
+    private static boolean valid(String value, int start, int end, boolean[] allowed) {
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c == '%') {
+                if (i + 2 >= end || !isHexDigit(value.charAt(i + 1)) || !isHexDigit(value.charAt(i + 2))) {
+                    return false;
+                }
+                i += 2;
+            } else if (c >= allowed.length || !allowed[c]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isHexDigit(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+
+    private static boolean[] allowed(String punctuation) {
+        boolean[] allowed = new boolean[128];
+        for (char c = '0'; c <= '9'; c++) {
+            allowed[c] = true;
+        }
+        for (char c = 'a'; c <= 'z'; c++) {
+            allowed[c] = true;
+            allowed[Character.toUpperCase(c)] = true;
+        }
+        for (char c : punctuation.toCharArray()) {
+            allowed[c] = true;
+        }
+        return allowed;
+    }
 }
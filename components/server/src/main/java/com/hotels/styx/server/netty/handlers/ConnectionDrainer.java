@@ -0,0 +1,167 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.server.netty.handlers;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import org.slf4j.Logger;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import static io.netty.handler.codec.http.HttpUtil.setKeepAlive;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Drains the connections of a server connector.
+ * <p>
+ * The handlers created by {@link #newHandler()} must be placed after the HTTP codec, one per connection.
+ * While draining:
+ * <ul>
+ *     <li>Idle connections are closed at once.</li>
+ *     <li>Connections in the middle of an exchange finish it. The response is sent with
+ *     {@code Connection: close}, unless its headers have already been sent, and the connection
+ *     is closed after the last content.</li>
+ *     <li>New connections are closed as soon as they become active.</li>
+ * </ul>
+ * Connections still open when the deadline passes are closed.
+ */
+public class ConnectionDrainer {
+    private static final Logger LOGGER = getLogger(ConnectionDrainer.class);
+    private static final Object DRAIN = new Object();
+
+    private final ChannelGroup channels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+
+    private volatile CompletableFuture<Void> drained;
+
+    /**
+     * Creates a handler for a new connection.
+     *
+     * @return a channel handler
+     */
+    public ChannelHandler newHandler() {
+        return new DrainHandler();
+    }
+
+    /**
+     * Starts draining the connections. Subsequent calls return the same future as the first one.
+     *
+     * @param deadline time allowed for the connections to finish their exchanges
+     * @return a future that completes when all connections are closed
+     */
+    public synchronized CompletableFuture<Void> drain(Duration deadline) {
+        if (drained != null) {
+            return drained;
+        }
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        drained = future;
+
+        LOGGER.info("Draining connections. connections={}, deadline={}", channels.size(), deadline);
+        channels.newCloseFuture().addListener(it -> future.complete(null));
+        channels.forEach(channel -> channel.pipeline().fireUserEventTriggered(DRAIN));
+
+        GlobalEventExecutor.INSTANCE.schedule(() -> {
+            if (!future.isDone()) {
+                LOGGER.warn("Drain deadline passed. Closing remaining connections={}", channels.size());
+                channels.close().addListener(it -> future.complete(null));
+            }
+        }, deadline.toMillis(), MILLISECONDS);
+
+        return future;
+    }
+
+    /**
+     * Returns true once draining has started.
+     *
+     * @return true if draining
+     */
+    public boolean isDraining() {
+        return drained != null;
+    }
+
+    /**
+     * Number of connections still open while draining, or 0 if not draining.
+     *
+     * @return number of draining connections
+     */
+    public int drainingConnections() {
+        return isDraining() ? channels.size() : 0;
+    }
+
+    private final class DrainHandler extends ChannelDuplexHandler {
+        private boolean exchangeInProgress;
+        private boolean draining;
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) throws Exception {
+            channels.add(ctx.channel());
+            if (isDraining()) {
+                ctx.close();
+                return;
+            }
+            super.channelActive(ctx);
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            if (msg instanceof HttpRequest) {
+                exchangeInProgress = true;
+            }
+            super.channelRead(ctx, msg);
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+            if (draining && msg instanceof HttpResponse) {
+                setKeepAlive((HttpResponse) msg, false);
+            }
+
+            if (msg instanceof LastHttpContent) {
+                exchangeInProgress = false;
+                if (draining) {
+                    ChannelPromise unvoided = promise.unvoid();
+                    unvoided.addListener(ChannelFutureListener.CLOSE);
+                    super.write(ctx, msg, unvoided);
+                    return;
+                }
+            }
+            super.write(ctx, msg, promise);
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+            if (evt == DRAIN) {
+                draining = true;
+                if (!exchangeInProgress) {
+                    ctx.close();
+                }
+                return;
+            }
+            super.userEventTriggered(ctx, evt);
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -19,6 +19,9 @@ import com.hotels.styx.api.HttpInterceptor;
 import com.hotels.styx.api.LiveHttpRequest;
 import com.hotels.styx.api.RequestCookie;
 import com.hotels.styx.server.routing.antlr.AntlrConditionParser;
+import com.hotels.styx.server.routing.antlr.ConditionTable;
+
+import java.net.InetSocketAddress;
 
 import static com.hotels.styx.api.HttpHeaderNames.USER_AGENT;
 
@@ -26,11 +29,12 @@ import static com.hotels.styx.api.HttpHeaderNames.USER_AGENT;
  * A Route matcher based on ANTLR condition parser.
  */
 public final class AntlrMatcher implements Matcher {
-    private static final Condition.Parser CONDITION_PARSER = new AntlrConditionParser.Builder()
+    private static final AntlrConditionParser CONDITION_PARSER = new AntlrConditionParser.Builder()
             .registerFunction("method", (request, context) -> request.method().name())
             .registerFunction("path", (request, context) -> request.path())
             .registerFunction("userAgent", (request, context) -> request.header(USER_AGENT).orElse(""))
             .registerFunction("protocol", (request, context) -> context.isSecure() ? "https" : "http")
+            .registerFunction("clientIp", (request, context) -> context.clientAddress().map(AntlrMatcher::hostAddress).orElse(""))
             .registerFunction("header", (request, context, input) -> request.header(input).orElse(""))
             .registerFunction("cookie", (request, context, input) -> request.cookie(input).map(RequestCookie::value).orElse(""))
             .build();
@@ -41,6 +45,29 @@ public final class AntlrMatcher implements Matcher {
         return new AntlrMatcher(condition);
     }
 
+    /**
+     * Starts a table of conditions that share the functions available to an {@link AntlrMatcher}.
+     *
+     * @return a condition table builder
+     */
+    public static ConditionTable.Builder conditionTable() {
+        return CONDITION_PARSER.conditionTable();
+    }
+
+    /**
+     * Parses a string valued expression that uses the functions available to an {@link AntlrMatcher}.
+     *
+     * @param expression expression, such as {@code cookie('session')}
+     * @return a value expression
+     */
+    public static ValueExpression valueExpression(String expression) {
+        return CONDITION_PARSER.parseValue(expression);
+    }
+
+    private static String hostAddress(InetSocketAddress address) {
+        return address.getAddress() != null ? address.getAddress().getHostAddress() : address.getHostString();
+    }
+
     private AntlrMatcher(Condition condition) {
         this.condition = condition;
     }
@@ -27,14 +27,16 @@ import static java.util.Objects.requireNonNull;
  */
 class AntlrCondition implements Condition {
     private final Expression<Boolean> expression;
+    private final int attributeCount;
 
-    AntlrCondition(Expression<Boolean> expression) {
+    AntlrCondition(Expression<Boolean> expression, int attributeCount) {
         this.expression = requireNonNull(expression);
+        this.attributeCount = attributeCount;
     }
 
     @Override
     public boolean evaluate(LiveHttpRequest request, HttpInterceptor.Context context) {
-        return expression.evaluate(request, context);
+        return expression.evaluate(new Attributes(request, context, attributeCount));
     }
 
 }
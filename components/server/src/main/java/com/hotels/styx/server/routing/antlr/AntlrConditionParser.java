@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -18,37 +18,80 @@ package com.hotels.styx.server.routing.antlr;
 import com.hotels.styx.server.routing.Condition;
 import com.hotels.styx.server.routing.ConditionLexer;
 import com.hotels.styx.server.routing.ConditionParser;
+import com.hotels.styx.server.routing.ValueExpression;
 import org.antlr.v4.runtime.ANTLRInputStream;
 import org.antlr.v4.runtime.BaseErrorListener;
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.RecognitionException;
 import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
 
 import java.util.HashMap;
 import java.util.Map;
 
+import static java.lang.String.format;
+
 /**
  * A {@link Condition} parser based on ANLR.
  */
 public class AntlrConditionParser implements Condition.Parser {
-    private final ExpressionVisitor expressionVisitor;
+    private final FunctionResolver functionResolver;
 
     public AntlrConditionParser(Builder builder) {
-        this.expressionVisitor = new ExpressionVisitor(builder.zeroArgumentFunctions, builder.oneArgumentFunctions);
+        this.functionResolver = new FunctionResolver(builder.zeroArgumentFunctions, builder.oneArgumentFunctions);
     }
 
     @Override
     public Condition parse(String condition) {
+        Map<String, Integer> attributes = new HashMap<>();
+        Expression<Boolean> expression = compile(condition, attributes);
+        return new AntlrCondition(expression, attributes.size());
+    }
+
+    /**
+     * Parses a string valued expression, such as {@code header('X-Client-Id')}, that is evaluated
+     * with the same functions as conditions.
+     *
+     * @param expression expression
+     * @return a value expression
+     */
+    public ValueExpression parseValue(String expression) {
+        Map<String, Integer> attributes = new HashMap<>();
+        ConditionParser parser = parser(expression);
+        Expression<String> value = new StringCompareVisitor(functionResolver, attributes).visitStringExpression(parser.stringExpression());
+
+        Token trailing = parser.getCurrentToken();
+        if (trailing.getType() != Token.EOF) {
+            throw new DslSyntaxError(trailing.getLine(), trailing.getCharPositionInLine(), format("extraneous input '%s'", trailing.getText()), null);
+        }
+
+        int slots = attributes.size();
+        return (request, context) -> value.evaluate(new Attributes(request, context, slots));
+    }
+
+    /**
+     * Starts a {@link ConditionTable} of conditions that are parsed by this parser.
+     *
+     * @return a condition table builder
+     */
+    public ConditionTable.Builder conditionTable() {
+        return new ConditionTable.Builder(this);
+    }
+
+    Expression<Boolean> compile(String condition, Map<String, Integer> attributes) {
+        return new ExpressionVisitor(functionResolver, attributes).visit(parser(condition).expression());
+    }
+
+    private static ConditionParser parser(String text) {
         ConditionParser parser = new ConditionParser(
-                new CommonTokenStream(new ConditionLexer(new ANTLRInputStream(condition))));
+                new CommonTokenStream(new ConditionLexer(new ANTLRInputStream(text))));
         parser.addErrorListener(new BaseErrorListener() {
             @Override
             public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
                 throw new DslSyntaxError(line, charPositionInLine, msg, e);
             }
         });
-
-        return new AntlrCondition(expressionVisitor.visit(parser.expression()));
+        return parser;
     }
 
     /**
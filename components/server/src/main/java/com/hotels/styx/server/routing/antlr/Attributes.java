@@ -0,0 +1,48 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.server.routing.antlr;
+
+import com.hotels.styx.api.HttpInterceptor;
+import com.hotels.styx.api.LiveHttpRequest;
+
+/**
+ * The request attributes that conditions are evaluated against.
+ * <p>
+ * Each distinct function call, such as {@code header('Host')}, is allocated a slot when a condition
+ * is compiled. The call is made the first time its value is needed, and the value is reused for
+ * the rest of the evaluation.
+ */
+final class Attributes {
+    private final LiveHttpRequest request;
+    private final HttpInterceptor.Context context;
+    private final String[] values;
+    private final boolean[] resolved;
+
+    Attributes(LiveHttpRequest request, HttpInterceptor.Context context, int slots) {
+        this.request = request;
+        this.context = context;
+        this.values = new String[slots];
+        this.resolved = new boolean[slots];
+    }
+
+    String get(int slot, FunctionResolver.PartialFunction function) {
+        if (!resolved[slot]) {
+            values[slot] = function.call(request, context);
+            resolved[slot] = true;
+        }
+        return values[slot];
+    }
+}
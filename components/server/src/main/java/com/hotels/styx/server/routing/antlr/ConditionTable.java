@@ -0,0 +1,188 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.server.routing.antlr;
+
+import com.hotels.styx.api.HttpInterceptor;
+import com.hotels.styx.api.LiveHttpRequest;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * An ordered list of conditions, compiled together to find the first condition that a request satisfies.
+ * <p>
+ * Function calls such as {@code header('Host')} are made at most once per request, however many
+ * conditions refer to them. Conditions that require a function to equal a literal, such as
+ * {@code path() == '/foo' AND ...}, are indexed by that literal: one hash lookup rules out every
+ * condition expecting a different value. The lookup is made when the scan first reaches a
+ * condition that depends on it, so the outcome is always that of evaluating each condition in turn.
+ */
+public final class ConditionTable {
+    private final List<Expression<Boolean>> conditions;
+    private final int attributeCount;
+    private final Index[] indices;
+
+    private ConditionTable(List<Expression<Boolean>> conditions, int attributeCount) {
+        this.conditions = unmodifiableList(new ArrayList<>(conditions));
+        this.attributeCount = attributeCount;
+        this.indices = indices(this.conditions);
+    }
+
+    public int size() {
+        return conditions.size();
+    }
+
+    /**
+     * Finds the first condition that the request satisfies.
+     *
+     * @param request HTTP request
+     * @param context request context
+     * @return position of the first matching condition, or -1 if none match
+     */
+    public int firstMatch(LiveHttpRequest request, HttpInterceptor.Context context) {
+        Attributes attributes = new Attributes(request, context, attributeCount);
+        BitSet candidates = null;
+        int nextIndex = 0;
+
+        int i = 0;
+        while (i >= 0 && i < conditions.size()) {
+            if (nextIndex < indices.length && indices[nextIndex].firstCondition <= i) {
+                candidates = indices[nextIndex++].narrow(attributes, candidates);
+                i = candidates.nextSetBit(i);
+            } else if (conditions.get(i).evaluate(attributes)) {
+                return i;
+            } else {
+                i = candidates == null ? i + 1 : candidates.nextSetBit(i + 1);
+            }
+        }
+        return -1;
+    }
+
+    private static Index[] indices(List<Expression<Boolean>> conditions) {
+        Map<Integer, Expressions.Call> calls = new HashMap<>();
+        Map<Integer, TreeMap<Integer, Set<String>>> literalsBySlot = new HashMap<>();
+
+        for (int i = 0; i < conditions.size(); i++) {
+            for (Expression<Boolean> conjunct : conjuncts(conditions.get(i), new ArrayList<>())) {
+                if (conjunct instanceof Expressions.Equals) {
+                    Expressions.Equals equals = (Expressions.Equals) conjunct;
+                    if (equals.left instanceof Expressions.Call && equals.right instanceof Expressions.Literal) {
+                        Expressions.Call call = (Expressions.Call) equals.left;
+                        calls.put(call.slot, call);
+                        literalsBySlot.computeIfAbsent(call.slot, slot -> new TreeMap<>())
+                                .computeIfAbsent(i, condition -> new HashSet<>())
+                                .add(((Expressions.Literal) equals.right).value);
+                    }
+                }
+            }
+        }
+
+        List<Index> indices = new ArrayList<>();
+        literalsBySlot.forEach((slot, literalsByCondition) -> {
+            if (literalsByCondition.size() > 1) {
+                indices.add(new Index(calls.get(slot), conditions.size(), literalsByCondition));
+            }
+        });
+        indices.sort(Comparator.comparingInt(index -> index.firstCondition));
+        return indices.toArray(new Index[0]);
+    }
+
+    private static List<Expression<Boolean>> conjuncts(Expression<Boolean> expression, List<Expression<Boolean>> conjuncts) {
+        if (expression instanceof Expressions.And) {
+            conjuncts(((Expressions.And) expression).left, conjuncts);
+            conjuncts(((Expressions.And) expression).right, conjuncts);
+        } else {
+            conjuncts.add(expression);
+        }
+        return conjuncts;
+    }
+
+    /**
+     * The conditions that remain possible for each value of one function call.
+     */
+    private static final class Index {
+        private final Expressions.Call call;
+        private final int firstCondition;
+        private final BitSet unconstrained;
+        private final Map<String, BitSet> possible = new HashMap<>();
+
+        Index(Expressions.Call call, int conditionCount, TreeMap<Integer, Set<String>> literalsByCondition) {
+            this.call = call;
+            this.firstCondition = literalsByCondition.firstKey();
+            this.unconstrained = new BitSet(conditionCount);
+            this.unconstrained.set(0, conditionCount);
+            literalsByCondition.keySet().forEach(this.unconstrained::clear);
+
+            literalsByCondition.forEach((condition, literals) -> {
+                // A condition that requires two different values can never match.
+                if (literals.size() == 1) {
+                    possible.computeIfAbsent(literals.iterator().next(), literal -> (BitSet) unconstrained.clone())
+                            .set(condition);
+                }
+            });
+        }
+
+        BitSet narrow(Attributes attributes, BitSet candidates) {
+            String value = call.evaluate(attributes);
+            BitSet allowed = possible.getOrDefault(value == null ? "" : value, unconstrained);
+            if (candidates == null) {
+                return allowed;
+            }
+            BitSet narrowed = (BitSet) candidates.clone();
+            narrowed.and(allowed);
+            return narrowed;
+        }
+    }
+
+    /**
+     * Builds a {@link ConditionTable}.
+     */
+    public static final class Builder {
+        private final AntlrConditionParser parser;
+        private final Map<String, Integer> attributes = new HashMap<>();
+        private final List<Expression<Boolean>> conditions = new ArrayList<>();
+
+        Builder(AntlrConditionParser parser) {
+            this.parser = parser;
+        }
+
+        /**
+         * Appends a condition.
+         *
+         * @param condition condition expression
+         * @return this builder
+         * @throws DslSyntaxError if the condition cannot be parsed
+         * @throws DslFunctionResolutionError if the condition calls an unknown function
+         */
+        public Builder add(String condition) {
+            conditions.add(parser.compile(condition, attributes));
+            return this;
+        }
+
+        public ConditionTable build() {
+            return new ConditionTable(conditions, attributes.size());
+        }
+    }
+}
@@ -15,9 +15,6 @@
  */
 package com.hotels.styx.server.routing.antlr;
 
-import com.hotels.styx.api.HttpInterceptor;
-import com.hotels.styx.api.LiveHttpRequest;
-
 interface Expression<T> {
-    T evaluate(LiveHttpRequest request, HttpInterceptor.Context context);
+    T evaluate(Attributes attributes);
 }
@@ -26,62 +26,87 @@ import static com.hotels.styx.common.Strings.isNotEmpty;
 import static com.hotels.styx.server.routing.antlr.Strings.stripFirstAndLastCharacter;
 
 class ExpressionVisitor extends ConditionBaseVisitor<Expression<Boolean>> {
+    private static final String REGEX_METACHARACTERS = "\\^$.|?*+()[]{}";
+
     private final StringCompareVisitor stringVisitor;
 
-    public ExpressionVisitor(Map<String, Function0> zeroArgumentFunctions, Map<String, Function1> oneArgumentFunctions) {
-        this.stringVisitor = new StringCompareVisitor(
-                new FunctionResolver(zeroArgumentFunctions, oneArgumentFunctions));
+    public ExpressionVisitor(FunctionResolver functionResolver, Map<String, Integer> attributes) {
+        this.stringVisitor = new StringCompareVisitor(functionResolver, attributes);
     }
 
     @Override
     public Expression<Boolean> visitAndExpression(ConditionParser.AndExpressionContext ctx) {
         Expression<Boolean> left = visit(ctx.expression(0));
         Expression<Boolean> right = visit(ctx.expression(1));
-        return (request, context) -> left.evaluate(request, context) && right.evaluate(request, context);
+        return new Expressions.And(left, right);
     }
 
     @Override
     public Expression<Boolean> visitOrExpression(ConditionParser.OrExpressionContext ctx) {
         Expression<Boolean> left = visit(ctx.expression(0));
         Expression<Boolean> right = visit(ctx.expression(1));
-        return (request, context) -> left.evaluate(request, context) || right.evaluate(request, context);
+        return attributes -> left.evaluate(attributes) || right.evaluate(attributes);
     }
 
     @Override
     public Expression<Boolean> visitNotExpression(ConditionParser.NotExpressionContext ctx) {
         Expression<Boolean> expression = visit(ctx.expression());
-        return (request, context) -> !expression.evaluate(request, context);
+        return attributes -> !expression.evaluate(attributes);
     }
 
     @Override
     public Expression<Boolean> visitSubExpression(ConditionParser.SubExpressionContext ctx) {
-        Expression<Boolean> expression = visit(ctx.expression());
-        return expression::evaluate;
+        return visit(ctx.expression());
     }
 
     @Override
     public Expression<Boolean> visitStringIsPresent(StringIsPresentContext ctx) {
         Expression<String> stringExpression = stringVisitor.visitStringExpression(ctx.stringExpression());
-        return (request, context) -> isNotEmpty(stringExpression.evaluate(request, context));
+        return attributes -> isNotEmpty(stringExpression.evaluate(attributes));
     }
 
     @Override
     public Expression<Boolean> visitStringEqualsString(ConditionParser.StringEqualsStringContext ctx) {
         Expression<String> left = stringVisitor.visitStringExpression(ctx.stringExpression(0));
         Expression<String> right = stringVisitor.visitStringExpression(ctx.stringExpression(1));
-        return (request, context) -> {
-            String leftValue = left.evaluate(request, context);
-            return (leftValue == null ? "" : leftValue).equals(right.evaluate(request, context));
-        };
+        return new Expressions.Equals(left, right);
     }
 
     @Override
     public Expression<Boolean> visitStringMatchesRegexp(ConditionParser.StringMatchesRegexpContext ctx) {
         Expression<String> stringExpression = stringVisitor.visitStringExpression(ctx.stringExpression());
-        Pattern pattern = Pattern.compile(stripFirstAndLastCharacter(ctx.string().getText()));
-        return (request, context) -> {
-            String evaluate = stringExpression.evaluate(request, context);
-            return pattern.matcher(evaluate).matches();
+        String regex = stripFirstAndLastCharacter(ctx.string().getText());
+        Pattern pattern = Pattern.compile(regex);
+        String prefix = literalPrefix(regex);
+
+        if (prefix.length() == regex.length()) {
+            return attributes -> stringExpression.evaluate(attributes).equals(regex);
+        }
+        if (prefix.isEmpty()) {
+            return attributes -> pattern.matcher(stringExpression.evaluate(attributes)).matches();
+        }
+        return attributes -> {
+            String evaluate = stringExpression.evaluate(attributes);
+            return evaluate.startsWith(prefix) && pattern.matcher(evaluate).matches();
         };
     }
+
+    /**
+     * Returns the literal text that every string matching the regular expression must start with.
+     * This is the whole expression when it contains no metacharacters, and empty when it contains
+     * an alternation.
+     */
+    static String literalPrefix(String regex) {
+        if (regex.indexOf('|') >= 0) {
+            return "";
+        }
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (REGEX_METACHARACTERS.indexOf(c) >= 0) {
+                boolean optionalPrevious = (c == '?' || c == '*' || c == '{') && i > 0;
+                return regex.substring(0, optionalPrevious ? i - 1 : i);
+            }
+        }
+        return regex;
+    }
 }
@@ -0,0 +1,95 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.server.routing.antlr;
+
+/**
+ * Expressions whose structure {@link ConditionTable} inspects to build its indices.
+ */
+final class Expressions {
+    private Expressions() {
+    }
+
+    /**
+     * A quoted string.
+     */
+    static final class Literal implements Expression<String> {
+        final String value;
+
+        Literal(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public String evaluate(Attributes attributes) {
+            return value;
+        }
+    }
+
+    /**
+     * A function call, such as {@code header('Host')}, whose value is memoized in an attribute slot.
+     */
+    static final class Call implements Expression<String> {
+        final int slot;
+        private final FunctionResolver.PartialFunction function;
+
+        Call(int slot, FunctionResolver.PartialFunction function) {
+            this.slot = slot;
+            this.function = function;
+        }
+
+        @Override
+        public String evaluate(Attributes attributes) {
+            return attributes.get(slot, function);
+        }
+    }
+
+    /**
+     * {@code left == right}. A missing left hand value compares as an empty string.
+     */
+    static final class Equals implements Expression<Boolean> {
+        final Expression<String> left;
+        final Expression<String> right;
+
+        Equals(Expression<String> left, Expression<String> right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public Boolean evaluate(Attributes attributes) {
+            String leftValue = left.evaluate(attributes);
+            return (leftValue == null ? "" : leftValue).equals(right.evaluate(attributes));
+        }
+    }
+
+    /**
+     * {@code left AND right}.
+     */
+    static final class And implements Expression<Boolean> {
+        final Expression<Boolean> left;
+        final Expression<Boolean> right;
+
+        And(Expression<Boolean> left, Expression<Boolean> right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public Boolean evaluate(Attributes attributes) {
+            return left.evaluate(attributes) && right.evaluate(attributes);
+        }
+    }
+}
@@ -20,20 +20,23 @@ import com.hotels.styx.server.routing.ConditionParser;
 import org.antlr.v4.runtime.RuleContext;
 
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import static com.hotels.styx.server.routing.antlr.Strings.stripFirstAndLastCharacter;
 
 class StringCompareVisitor extends ConditionBaseVisitor<Expression<String>> {
     private final FunctionResolver functionResolver;
+    private final Map<String, Integer> attributes;
 
-    public StringCompareVisitor(FunctionResolver functionResolver) {
+    public StringCompareVisitor(FunctionResolver functionResolver, Map<String, Integer> attributes) {
         this.functionResolver = functionResolver;
+        this.attributes = attributes;
     }
 
     @Override
     public Expression<String> visitString(ConditionParser.StringContext ctx) {
-        return (request, context) -> stripFirstAndLastCharacter(ctx.getText());
+        return new Expressions.Literal(stripFirstAndLastCharacter(ctx.getText()));
     }
 
     @Override
@@ -41,7 +44,8 @@ class StringCompareVisitor extends ConditionBaseVisitor<Expression<String>> {
         String name = ctx.ID().getSymbol().getText();
         List<String> arguments = extractArguments(ctx.arglist());
         FunctionResolver.PartialFunction function = functionResolver.resolveFunction(name, arguments);
-        return function::call;
+        int slot = attributes.computeIfAbsent(name + arguments, key -> attributes.size());
+        return new Expressions.Call(slot, function);
 
     }
 
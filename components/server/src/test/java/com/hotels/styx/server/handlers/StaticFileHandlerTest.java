@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -15,6 +15,7 @@
  */
 package com.hotels.styx.server.handlers;
 
+import com.hotels.styx.api.HttpResponse;
 import com.hotels.styx.api.LiveHttpRequest;
 import com.hotels.styx.api.LiveHttpResponse;
 import org.junit.jupiter.api.AfterEach;
@@ -28,14 +29,29 @@ import reactor.core.publisher.Mono;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Random;
 import java.util.stream.Stream;
 
+import static com.hotels.styx.api.HttpHeaderNames.CONTENT_LENGTH;
+import static com.hotels.styx.api.HttpHeaderNames.CONTENT_RANGE;
+import static com.hotels.styx.api.HttpHeaderNames.ETAG;
+import static com.hotels.styx.api.HttpHeaderNames.IF_MODIFIED_SINCE;
+import static com.hotels.styx.api.HttpHeaderNames.IF_NONE_MATCH;
+import static com.hotels.styx.api.HttpHeaderNames.IF_RANGE;
+import static com.hotels.styx.api.HttpHeaderNames.LAST_MODIFIED;
+import static com.hotels.styx.api.HttpHeaderNames.RANGE;
 import static com.hotels.styx.api.HttpHeaderValues.APPLICATION_JSON;
 import static com.hotels.styx.api.HttpHeaderValues.HTML;
 import static com.hotels.styx.api.HttpHeaderValues.PLAIN_TEXT;
 import static com.hotels.styx.api.HttpResponseStatus.NOT_FOUND;
+import static com.hotels.styx.api.HttpResponseStatus.NOT_MODIFIED;
 import static com.hotels.styx.api.HttpResponseStatus.OK;
+import static com.hotels.styx.api.HttpResponseStatus.PARTIAL_CONTENT;
+import static com.hotels.styx.api.HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE;
 import static com.hotels.styx.api.LiveHttpRequest.get;
+import static com.hotels.styx.api.LiveHttpRequest.head;
 import static com.hotels.styx.server.handlers.MediaTypes.ICON;
 import static com.hotels.styx.server.handlers.MediaTypes.MICROSOFT_ASF_VIDEO;
 import static com.hotels.styx.server.handlers.MediaTypes.MICROSOFT_MS_VIDEO;
@@ -44,8 +60,11 @@ import static com.hotels.styx.server.handlers.MediaTypes.WAV_AUDIO;
 import static com.hotels.styx.support.Support.requestContext;
 import static com.hotels.styx.support.api.matchers.HttpStatusMatcher.hasStatus;
 import static com.hotels.styx.support.matchers.IsOptional.isValue;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.nio.file.Files.createTempDirectory;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 
 public class StaticFileHandlerTest {
     private File dir;
@@ -126,6 +145,89 @@ public class StaticFileHandlerTest {
         assertThat(handle(get("/%2e%2e%2fprivate/index.html").build()), hasStatus(NOT_FOUND));
     }
 
+    @Test
+    public void servesBinaryFilesIntact() throws Exception {
+        byte[] content = new byte[3 * StaticFileHandler.CHUNK_SIZE + 17];
+        new Random(1).nextBytes(content);
+        Files.write(new File(dir, "image.png").toPath(), content);
+
+        HttpResponse response = handleFully(get("/image.png").build());
+
+        assertThat(response.status(), is(OK));
+        assertThat(response.header(CONTENT_LENGTH), isValue(String.valueOf(content.length)));
+        assertThat(response.body(), is(content));
+    }
+
+    @Test
+    public void servesHeadRequestsWithoutBody() throws Exception {
+        writeFile("index.html", "Hello world");
+
+        HttpResponse response = handleFully(head("/index.html").build());
+
+        assertThat(response.status(), is(OK));
+        assertThat(response.header(CONTENT_LENGTH), isValue("11"));
+        assertThat(response.body().length, is(0));
+    }
+
+    @Test
+    public void answersConditionalRequests() throws Exception {
+        writeFile("index.html", "Hello world");
+        HttpResponse response = handleFully(get("/index.html").build());
+        String etag = response.header(ETAG).get();
+        String lastModified = response.header(LAST_MODIFIED).get();
+
+        assertThat(handleFully(get("/index.html").header(IF_NONE_MATCH, etag).build()).status(), is(NOT_MODIFIED));
+        assertThat(handleFully(get("/index.html").header(IF_NONE_MATCH, "W/" + etag).build()).status(), is(NOT_MODIFIED));
+        assertThat(handleFully(get("/index.html").header(IF_NONE_MATCH, "\"other\"").build()).status(), is(OK));
+        assertThat(handleFully(get("/index.html").header(IF_MODIFIED_SINCE, lastModified).build()).status(), is(NOT_MODIFIED));
+        assertThat(handleFully(get("/index.html").header(IF_MODIFIED_SINCE, "Thu, 01 Jan 1970 00:00:00 GMT").build()).status(), is(OK));
+    }
+
+    @Test
+    public void servesByteRanges() throws Exception {
+        writeFile("digits.txt", "0123456789");
+
+        HttpResponse span = handleFully(get("/digits.txt").header(RANGE, "bytes=2-4").build());
+        assertThat(span.status(), is(PARTIAL_CONTENT));
+        assertThat(span.header(CONTENT_RANGE), isValue("bytes 2-4/10"));
+        assertThat(span.bodyAs(UTF_8), is("234"));
+
+        assertThat(handleFully(get("/digits.txt").header(RANGE, "bytes=7-").build()).bodyAs(UTF_8), is("789"));
+        assertThat(handleFully(get("/digits.txt").header(RANGE, "bytes=-3").build()).bodyAs(UTF_8), is("789"));
+        assertThat(handleFully(get("/digits.txt").header(RANGE, "bytes=8-100").build()).bodyAs(UTF_8), is("89"));
+        assertThat(handleFully(get("/digits.txt").header(RANGE, "bytes=0-1,4-5").build()).status(), is(OK));
+        assertThat(handleFully(get("/digits.txt").header(RANGE, "bytes=10-").build()).status(), is(REQUESTED_RANGE_NOT_SATISFIABLE));
+    }
+
+    @Test
+    public void servesWholeFileWhenIfRangeDoesNotMatch() throws Exception {
+        writeFile("digits.txt", "0123456789");
+        String etag = handleFully(get("/digits.txt").build()).header(ETAG).get();
+
+        assertThat(handleFully(get("/digits.txt").header(RANGE, "bytes=2-4").header(IF_RANGE, etag).build()).status(), is(PARTIAL_CONTENT));
+        assertThat(handleFully(get("/digits.txt").header(RANGE, "bytes=2-4").header(IF_RANGE, "\"stale\"").build()).status(), is(OK));
+    }
+
+    @Test
+    public void noticesChangedFiles() throws Exception {
+        handler = new StaticFileHandler(dir, Duration.ZERO);
+        writeFile("index.html", "Hello world");
+        String etag = handleFully(get("/index.html").build()).header(ETAG).get();
+
+        writeFile("index.html", "Hello again, world");
+        HttpResponse response = handleFully(get("/index.html").build());
+
+        assertThat(response.bodyAs(UTF_8), is("Hello again, world"));
+        assertThat(response.header(ETAG).get(), is(not(etag)));
+    }
+
+    @Test
+    public void doesNotServeDirectories() throws Exception {
+        mkdir("/a/b");
+
+        assertThat(handle(get("/a").build()), hasStatus(NOT_FOUND));
+    }
+
     @ParameterizedTest
     @MethodSource("fileTypesProvider")
     public void setsTheContentTypeBasedOnFileExtension(String path, CharSequence mediaType) throws Exception {
@@ -177,4 +279,10 @@ public class StaticFileHandlerTest {
     private LiveHttpResponse handle(LiveHttpRequest request) {
         return Mono.from(handler.handle(request, requestContext())).block();
     }
+
+    private HttpResponse handleFully(LiveHttpRequest request) {
+        return Mono.from(handler.handle(request, requestContext()))
+                .flatMap(response -> Mono.from(response.aggregate(1024 * 1024)))
+                .block();
+    }
 }
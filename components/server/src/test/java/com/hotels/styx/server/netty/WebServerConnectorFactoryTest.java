@@ -0,0 +1,62 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.server.netty;
+
+import com.hotels.styx.api.MeterRegistry;
+import com.hotels.styx.api.MicrometerRegistry;
+import com.hotels.styx.metrics.CentralisedMetrics;
+import com.hotels.styx.server.HttpConnectorConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class WebServerConnectorFactoryTest {
+    private final MeterRegistry meterRegistry = new MicrometerRegistry(new SimpleMeterRegistry());
+
+    @Test
+    public void exportsDrainingConnectionsUntilClosed() {
+        ServerConnector connector = new WebServerConnectorFactory("admin", new CentralisedMetrics(meterRegistry))
+                .create(new HttpConnectorConfig(0));
+
+        assertThat(drainingGauge("admin").value(), is(0.0));
+
+        connector.close();
+
+        assertThat(drainingGauge("admin"), is(nullValue()));
+    }
+
+    @Test
+    public void exportsDrainingConnectionsOfEachServerSeparately() {
+        CentralisedMetrics metrics = new CentralisedMetrics(meterRegistry);
+        ServerConnector first = new WebServerConnectorFactory("first", metrics).create(new HttpConnectorConfig(0));
+        ServerConnector second = new WebServerConnectorFactory("second", metrics).create(new HttpConnectorConfig(0));
+
+        first.close();
+
+        assertThat(drainingGauge("first"), is(nullValue()));
+        assertThat(drainingGauge("second").value(), is(0.0));
+
+        second.close();
+    }
+
+    private Gauge drainingGauge(String server) {
+        return meterRegistry.find("proxy.server.connection.draining").tags("server", server, "connector", "http").gauge();
+    }
+}
@@ -44,7 +44,7 @@ import io.netty.handler.codec.http.HttpResponse;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import rx.Observable;
+import reactor.core.publisher.Flux;
 import rx.Subscriber;
 import rx.observers.TestSubscriber;
 
@@ -267,7 +267,7 @@ public class NettyToStyxRequestDecoderTest {
                 .flowControlEnabled(true)
                 .build();
 
-        LiveHttpRequest styxRequest = decoder.makeAStyxRequestFrom(request, Observable.<ByteBuf>empty())
+        LiveHttpRequest styxRequest = decoder.makeAStyxRequestFrom(request, Flux.<Buffer>empty())
                 .build();
 
         LiveHttpRequest expected = new LiveHttpRequest.Builder(
@@ -292,7 +292,7 @@ public class NettyToStyxRequestDecoderTest {
                 .flowControlEnabled(true)
                 .build();
 
-        LiveHttpRequest styxRequest = decoder.makeAStyxRequestFrom(request, Observable.<ByteBuf>empty())
+        LiveHttpRequest styxRequest = decoder.makeAStyxRequestFrom(request, Flux.<Buffer>empty())
                 .build();
 
         LiveHttpRequest expected = new LiveHttpRequest.Builder(
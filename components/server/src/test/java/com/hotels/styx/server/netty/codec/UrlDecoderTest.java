@@ -56,6 +56,42 @@ public class UrlDecoderTest {
         assertThat(url.scheme(), is(""));
     }
 
+    @Test
+    public void decodesOriginFormWithQuery() {
+        DefaultFullHttpRequest request = new DefaultFullHttpRequest(HTTP_1_1, GET, "/foo/bar?a=1&b=x%20y&c=");
+        request.headers().add(HOST, "example.com");
+
+        Url url = UrlDecoder.decodeUrl(x -> x, request);
+
+        assertThat(url.path(), is("/foo/bar"));
+        assertThat(url.getRawQuery(), is(Optional.of("a=1&b=x%20y&c=")));
+        assertThat(url.queryParam("b"), is(Optional.of("x y")));
+        assertThat(url, is(Url.Builder.url("/foo/bar?a=1&b=x%20y&c=").build()));
+    }
+
+    @Test
+    public void decodesOriginFormWithEmptyQuery() {
+        DefaultFullHttpRequest request = new DefaultFullHttpRequest(HTTP_1_1, GET, "/foo?");
+        request.headers().add(HOST, "example.com");
+
+        Url url = UrlDecoder.decodeUrl(x -> x, request);
+
+        assertThat(url.path(), is("/foo"));
+        assertThat(url.getRawQuery(), is(Optional.of("")));
+    }
+
+    @Test
+    public void decodesOriginFormWithFragment() {
+        DefaultFullHttpRequest request = new DefaultFullHttpRequest(HTTP_1_1, GET, "/foo?a=b#section%201");
+        request.headers().add(HOST, "example.com");
+
+        Url url = UrlDecoder.decodeUrl(x -> x, request);
+
+        assertThat(url.path(), is("/foo"));
+        assertThat(url.getRawQuery(), is(Optional.of("a=b")));
+        assertThat(url.fragment(), is(Optional.of("section 1")));
+    }
+
     // From GitHub issue #391.
     @Test
     public void exposesPathComponentsWithDoubleSlashSeparators() {
@@ -0,0 +1,99 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.server.netty.handlers;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.LastHttpContent;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import static io.netty.handler.codec.http.HttpMethod.GET;
+import static io.netty.handler.codec.http.HttpResponseStatus.OK;
+import static io.netty.handler.codec.http.HttpUtil.isKeepAlive;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class ConnectionDrainerTest {
+    private static final Duration DEADLINE = Duration.ofSeconds(10);
+
+    private final ConnectionDrainer drainer = new ConnectionDrainer();
+
+    @Test
+    public void closesIdleConnections() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(drainer.newHandler());
+
+        CompletableFuture<Void> drained = drainer.drain(DEADLINE);
+
+        assertThat(channel.isOpen(), is(false));
+        drained.get(1, SECONDS);
+    }
+
+    @Test
+    public void letsExchangesInProgressFinishWithConnectionClose() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(drainer.newHandler());
+        channel.writeInbound(new DefaultHttpRequest(HTTP_1_1, GET, "/"));
+
+        CompletableFuture<Void> drained = drainer.drain(DEADLINE);
+
+        assertThat(channel.isOpen(), is(true));
+        assertThat(drainer.isDraining(), is(true));
+        assertThat(drainer.drainingConnections(), is(1));
+
+        channel.writeOutbound(new DefaultHttpResponse(HTTP_1_1, OK));
+        assertThat(channel.isOpen(), is(true));
+
+        channel.writeOutbound(LastHttpContent.EMPTY_LAST_CONTENT);
+        assertThat(channel.isOpen(), is(false));
+        drained.get(1, SECONDS);
+
+        HttpResponse response = channel.readOutbound();
+        assertThat(isKeepAlive(response), is(false));
+    }
+
+    @Test
+    public void closesConnectionsStillOpenAtDeadline() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(drainer.newHandler());
+        channel.writeInbound(new DefaultHttpRequest(HTTP_1_1, GET, "/"));
+
+        drainer.drain(Duration.ofMillis(50)).get(1, SECONDS);
+
+        assertThat(channel.isOpen(), is(false));
+    }
+
+    @Test
+    public void closesConnectionsOpenedWhileDraining() {
+        drainer.drain(DEADLINE);
+
+        EmbeddedChannel channel = new EmbeddedChannel(drainer.newHandler());
+
+        assertThat(channel.isOpen(), is(false));
+    }
+
+    @Test
+    public void reportsNoDrainingConnectionsBeforeDraining() {
+        new EmbeddedChannel(drainer.newHandler());
+
+        assertThat(drainer.isDraining(), is(false));
+        assertThat(drainer.drainingConnections(), is(0));
+    }
+}
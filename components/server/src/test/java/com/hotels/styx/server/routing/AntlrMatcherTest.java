@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -18,7 +18,7 @@ package com.hotels.styx.server.routing;
 import com.hotels.styx.server.HttpInterceptorContext;
 import org.junit.jupiter.api.Test;
 
-import java.util.concurrent.Executors;
+import java.net.InetSocketAddress;
 
 import static com.hotels.styx.api.LiveHttpRequest.get;
 import static org.hamcrest.CoreMatchers.is;
@@ -36,4 +36,13 @@ public class AntlrMatcherTest {
         assertThat(matcher.apply(get("/path").build(), contextHttp), is(false));
     }
 
+    @Test
+    public void evaluatesClientIp() {
+        ValueExpression clientIp = AntlrMatcher.valueExpression("clientIp()");
+        HttpInterceptorContext context = new HttpInterceptorContext(false, new InetSocketAddress("10.1.2.3", 8080), Runnable::run);
+
+        assertThat(clientIp.evaluate(get("/path").build(), context), is("10.1.2.3"));
+        assertThat(clientIp.evaluate(get("/path").build(), contextHttp), is(""));
+    }
+
 }
\ No newline at end of file
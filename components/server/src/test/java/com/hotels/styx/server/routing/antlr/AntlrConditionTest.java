@@ -1,5 +1,5 @@
 /*
-  Copyright (C) 2013-2021 Expedia Inc.
+  Copyright (C) 2013-2022 Expedia Inc.
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -34,7 +34,7 @@ import static org.hamcrest.core.Is.is;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class AntlrConditionTest {
-    final Condition.Parser parser = new AntlrConditionParser.Builder()
+    final AntlrConditionParser parser = new AntlrConditionParser.Builder()
             .registerFunction("method", (request, context) -> request.method().name())
             .registerFunction("path", (request, context) -> request.path())
             .registerFunction("userAgent", (request, context) -> request.header(USER_AGENT).orElse(""))
@@ -519,4 +519,27 @@ public class AntlrConditionTest {
     public void throwsIllegalArgumentExceptionWhenTooManyArgumentsAreProvided() {
         assertThrows(IllegalArgumentException.class, () -> condition("queryString('foobar', 'blah')"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void evaluatesValueExpressions() {
+        LiveHttpRequest request = newRequest()
+                .header("X-Client-Id", "abc")
+                .cookies(requestCookie("session", "s1"))
+                .build();
+
+        assertThat(parser.parseValue("header('X-Client-Id')").evaluate(request, context), is("abc"));
+        assertThat(parser.parseValue("cookie('session')").evaluate(request, context), is("s1"));
+        assertThat(parser.parseValue("header('X-Missing')").evaluate(request, context), is(""));
+        assertThat(parser.parseValue("'constant'").evaluate(request, context), is("constant"));
+    }
+
+    @Test
+    public void throwsSyntaxErrorForValueExpressionWithTrailingInput() {
+        assertThrows(DslSyntaxError.class, () -> parser.parseValue("header('X-Client-Id') == 'abc'"));
+    }
+
+    @Test
+    public void throwsErrorForValueExpressionWithUnknownFunction() {
+        assertThrows(DslFunctionResolutionError.class, () -> parser.parseValue("queryParam('id')"));
+    }
+}
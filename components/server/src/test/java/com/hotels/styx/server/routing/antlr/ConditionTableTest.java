@@ -0,0 +1,155 @@
+/*
+  Copyright (C) 2013-2022 Expedia Inc.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package com.hotels.styx.server.routing.antlr;
+
+import com.hotels.styx.api.HttpInterceptor;
+import com.hotels.styx.api.LiveHttpRequest;
+import com.hotels.styx.server.routing.Condition;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.hotels.styx.api.LiveHttpRequest.get;
+import static com.hotels.styx.api.LiveHttpRequest.post;
+import static com.hotels.styx.support.Support.requestContext;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ConditionTableTest {
+    private final AtomicInteger headerCalls = new AtomicInteger();
+
+    private final AntlrConditionParser parser = new AntlrConditionParser.Builder()
+            .registerFunction("method", (request, context) -> request.method().name())
+            .registerFunction("path", (request, context) -> request.path())
+            .registerFunction("header", (request, context, input) -> {
+                headerCalls.incrementAndGet();
+                return request.header(input).orElse("");
+            })
+            .build();
+
+    private final HttpInterceptor.Context context = requestContext();
+
+    private static final List<String> CONDITIONS = List.of(
+            "header('Host') == 'a.com' AND path() =~ '/shop/.*'",
+            "header('Host') == 'a.com' AND path() == '/'",
+            "NOT header('Host') == 'a.com' AND path() =~ '/(foo|bar)'",
+            "header('Host') == 'b.com' AND header('Host') == 'c.com'",
+            "(method() == 'POST' AND header('Host') == 'b.com')",
+            "path() =~ '/pre+fix?[0-9]*'",
+            "header('Host') == 'b.com' OR path() == '/b'",
+            "header('X-Missing')",
+            "header('Host') == 'b.com'",
+            "'a.com' == header('Host')");
+
+    private static final List<LiveHttpRequest> REQUESTS = List.of(
+            get("/shop/x").header("Host", "a.com").build(),
+            get("/").header("Host", "a.com").build(),
+            get("/foo").header("Host", "a.com").build(),
+            get("/foo").header("Host", "b.com").build(),
+            post("/").header("Host", "b.com").build(),
+            get("/").header("Host", "b.com").build(),
+            get("/b").header("Host", "c.com").build(),
+            get("/prefix").header("Host", "c.com").build(),
+            get("/pre").header("Host", "c.com").build(),
+            get("/preeefix12").build(),
+            get("/prfix").build(),
+            get("/other").header("Host", "a.com").build(),
+            get("/other").header("Host", "d.com").build(),
+            get("/other").build());
+
+    @Test
+    public void findsSameFirstMatchAsEvaluatingEachConditionInOrder() {
+        ConditionTable table = table(CONDITIONS);
+
+        for (LiveHttpRequest request : REQUESTS) {
+            assertThat(request.toString(), table.firstMatch(request, context), is(firstMatchInOrder(CONDITIONS, request)));
+        }
+    }
+
+    @Test
+    public void findsSameFirstMatchForEveryRotationOfConditions() {
+        for (int rotation = 0; rotation < CONDITIONS.size(); rotation++) {
+            List<String> conditions = new ArrayList<>(CONDITIONS.subList(rotation, CONDITIONS.size()));
+            conditions.addAll(CONDITIONS.subList(0, rotation));
+            ConditionTable table = table(conditions);
+
+            for (LiveHttpRequest request : REQUESTS) {
+                assertThat(request.toString(), table.firstMatch(request, context), is(firstMatchInOrder(conditions, request)));
+            }
+        }
+    }
+
+    @Test
+    public void returnsMinusOneWhenNothingMatches() {
+        ConditionTable table = table(List.of("path() == '/a'", "path() == '/b'"));
+
+        assertThat(table.firstMatch(get("/c").build(), context), is(-1));
+        assertThat(table.size(), is(2));
+    }
+
+    @Test
+    public void callsEachFunctionOncePerRequest() {
+        ConditionTable table = table(List.of(
+                "header('Host') == 'a.com'",
+                "header('Host') =~ 'b.*'",
+                "header('Host') == 'c.com' AND header('X-Foo') == 'x'",
+                "header('Host') == 'd.com'",
+                "header('X-Foo')"));
+
+        assertThat(table.firstMatch(get("/").header("Host", "e.com").header("X-Foo", "x").build(), context), is(4));
+        assertThat(headerCalls.get(), is(2));
+    }
+
+    @Test
+    public void regularExpressionsWithLiteralPrefixesMatchAsBefore() {
+        assertThat(ExpressionVisitor.literalPrefix("/shop/.*"), is("/shop/"));
+        assertThat(ExpressionVisitor.literalPrefix("/shop"), is("/shop"));
+        assertThat(ExpressionVisitor.literalPrefix("/shop?"), is("/sho"));
+        assertThat(ExpressionVisitor.literalPrefix("/shop*"), is("/sho"));
+        assertThat(ExpressionVisitor.literalPrefix("/shop{2}"), is("/sho"));
+        assertThat(ExpressionVisitor.literalPrefix("/shop+"), is("/shop"));
+        assertThat(ExpressionVisitor.literalPrefix("/a|/b"), is(""));
+        assertThat(ExpressionVisitor.literalPrefix("(?i)/shop"), is(""));
+        assertThat(ExpressionVisitor.literalPrefix("\\d/shop"), is(""));
+    }
+
+    @Test
+    public void rejectsInvalidConditions() {
+        ConditionTable.Builder builder = parser.conditionTable();
+
+        assertThrows(DslSyntaxError.class, () -> builder.add("path( == '/'"));
+        assertThrows(DslFunctionResolutionError.class, () -> builder.add("foo() == '/'"));
+    }
+
+    private ConditionTable table(List<String> conditions) {
+        ConditionTable.Builder builder = parser.conditionTable();
+        conditions.forEach(builder::add);
+        return builder.build();
+    }
+
+    private int firstMatchInOrder(List<String> conditions, LiveHttpRequest request) {
+        for (int i = 0; i < conditions.size(); i++) {
+            Condition condition = parser.parse(conditions.get(i));
+            if (condition.evaluate(request, context)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}